@@ -0,0 +1,85 @@
+package com.ne0fhyklabs.androhud.render;
+
+import android.graphics.Bitmap;
+
+import junit.framework.TestCase;
+
+public class BitmapRingTest extends TestCase {
+
+    private BitmapRing mRing;
+
+    @Override
+    protected void setUp() {
+        mRing = new BitmapRing(2, 4, 4, Bitmap.Config.ARGB_8888);
+    }
+
+    @Override
+    protected void tearDown() {
+        mRing.recycle();
+    }
+
+    public void testFramesCycle() {
+        final BitmapRing.Frame first = mRing.obtain();
+        final BitmapRing.Frame second = mRing.obtain();
+        assertNotNull(first);
+        assertNotNull(second);
+        assertNull(mRing.obtain());
+
+        mRing.publish(first, 10, 0);
+        mRing.discard(second);
+
+        final BitmapRing.Frame consumed = mRing.poll();
+        assertSame(first, consumed);
+        assertEquals(10, consumed.getTimestamp());
+        assertNull(mRing.poll());
+
+        mRing.release(consumed);
+        assertNotNull(mRing.obtain());
+        assertNotNull(mRing.obtain());
+    }
+
+    public void testDoubleReleaseIsRejected() {
+        final BitmapRing.Frame frame = mRing.obtain();
+        mRing.publish(frame, 0, 0);
+        mRing.release(mRing.poll());
+
+        try {
+            mRing.release(frame);
+            fail("A frame was released twice.");
+        } catch (IllegalStateException expected) {
+        }
+
+        //The free queue still holds each frame once.
+        assertNotNull(mRing.obtain());
+        assertNotNull(mRing.obtain());
+        assertNull(mRing.obtain());
+    }
+
+    public void testReleaseOfUnconsumedFrameIsRejected() {
+        final BitmapRing.Frame frame = mRing.obtain();
+        try {
+            mRing.release(frame);
+            fail("A frame was released before being published.");
+        } catch (IllegalStateException expected) {
+        }
+
+        mRing.publish(frame, 0, 0);
+        try {
+            mRing.publish(frame, 0, 1);
+            fail("A frame was published twice.");
+        } catch (IllegalStateException expected) {
+        }
+    }
+
+    public void testFrameOfAnotherRingIsRejected() {
+        final BitmapRing other = new BitmapRing(1, 4, 4, Bitmap.Config.ARGB_8888);
+        try {
+            final BitmapRing.Frame frame = other.obtain();
+            mRing.discard(frame);
+            fail("A frame was handed to another ring.");
+        } catch (IllegalArgumentException expected) {
+        } finally {
+            other.recycle();
+        }
+    }
+}
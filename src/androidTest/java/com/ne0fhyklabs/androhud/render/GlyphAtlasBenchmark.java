@@ -0,0 +1,86 @@
+package com.ne0fhyklabs.androhud.render;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.PorterDuff;
+
+import junit.framework.TestCase;
+
+/**
+ * Compares drawing tape labels from the glyph atlas with drawing them as text. Each frame draws
+ * as many labels as a busy hud: both tapes, and the compass.
+ */
+public class GlyphAtlasBenchmark extends TestCase {
+
+    private static final int LABELS_PER_FRAME = 40;
+    private static final int WARMUP_FRAMES = 200;
+    private static final int MEASURED_FRAMES = 2000;
+
+    private Bitmap mBitmap;
+    private Canvas mCanvas;
+    private Paint mTextPaint;
+    private GlyphAtlas mAtlas;
+
+    @Override
+    protected void setUp() {
+        mBitmap = Bitmap.createBitmap(480, 320, Bitmap.Config.ARGB_8888);
+        mCanvas = new Canvas(mBitmap);
+
+        mTextPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+        mTextPaint.setColor(Color.WHITE);
+        mTextPaint.setTextSize(24);
+        mTextPaint.setTextAlign(Paint.Align.RIGHT);
+        mAtlas = new GlyphAtlas(mTextPaint);
+    }
+
+    @Override
+    protected void tearDown() {
+        mAtlas.release();
+        mBitmap.recycle();
+    }
+
+    public void testAtlasVersusDrawText() {
+        drawTextFrames(WARMUP_FRAMES);
+        drawAtlasFrames(WARMUP_FRAMES);
+
+        long start = System.nanoTime();
+        drawTextFrames(MEASURED_FRAMES);
+        final long textNanos = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        drawAtlasFrames(MEASURED_FRAMES);
+        final long atlasNanos = System.nanoTime() - start;
+
+        final int labels = LABELS_PER_FRAME * MEASURED_FRAMES;
+        System.out.println(String.format("GlyphAtlas: drawText %.0f ns/label, atlas %.0f ns/label "
+                + "(%.2fx)", textNanos / (double) labels, atlasNanos / (double) labels,
+                textNanos / (double) atlasNanos));
+    }
+
+    private void drawTextFrames(int frames) {
+        for (int frame = 0; frame < frames; frame++) {
+            mCanvas.drawColor(Color.TRANSPARENT, PorterDuff.Mode.CLEAR);
+            for (int i = 0; i < LABELS_PER_FRAME; i++) {
+                mCanvas.drawText(Integer.toString(label(frame, i)), 100, 10 + i * 7, mTextPaint);
+            }
+        }
+    }
+
+    private void drawAtlasFrames(int frames) {
+        for (int frame = 0; frame < frames; frame++) {
+            mCanvas.drawColor(Color.TRANSPARENT, PorterDuff.Mode.CLEAR);
+            for (int i = 0; i < LABELS_PER_FRAME; i++) {
+                mAtlas.drawInt(mCanvas, label(frame, i), 100, 10 + i * 7, Paint.Align.RIGHT);
+            }
+        }
+    }
+
+    /**
+     * @return a label value changing with the frame, as a scrolling tape's would.
+     */
+    private static int label(int frame, int index) {
+        return (frame / 10 + index) * 5 - 100;
+    }
+}
@@ -0,0 +1,104 @@
+package com.ne0fhyklabs.androhud.render;
+
+import android.graphics.Bitmap;
+
+import com.ne0fhyklabs.androhud.telemetry.HudLogPlayer;
+import com.ne0fhyklabs.androhud.telemetry.HudLogReader;
+import com.ne0fhyklabs.androhud.telemetry.HudLogWriter;
+import com.ne0fhyklabs.androhud.telemetry.HudState;
+
+import junit.framework.TestCase;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+public class HudBatchRendererTest extends TestCase {
+
+    private static final int WIDTH = 160;
+    private static final int HEIGHT = 120;
+
+    private File mLogFile;
+
+    @Override
+    protected void setUp() throws IOException {
+        mLogFile = File.createTempFile("hud", ".log");
+    }
+
+    @Override
+    protected void tearDown() {
+        mLogFile.delete();
+    }
+
+    /**
+     * Writes a log with a sample every 100ms, starting at 0.
+     */
+    private HudLogPlayer writeLog(int sampleCount) throws IOException {
+        final HudLogWriter writer = new HudLogWriter(new FileOutputStream(mLogFile));
+        final HudState state = new HudState();
+        for (int i = 0; i < sampleCount; i++) {
+            state.timestamp = i * 100;
+            state.airSpeed = i;
+            writer.append(state);
+        }
+        writer.close();
+        return new HudLogPlayer(new HudLogReader(mLogFile));
+    }
+
+    /**
+     * @return the air speed of each rendered frame's state.
+     */
+    private List<Float> render(final HudBatchRenderer.StateSource source) throws IOException,
+            InterruptedException {
+        final List<Float> speeds = new ArrayList<Float>();
+        final HudBatchRenderer.StateSource recorder = new HudBatchRenderer.StateSource() {
+            @Override
+            public boolean next(HudState out) throws IOException {
+                //Fails instead of rendering endlessly.
+                assertTrue("Too many frames.", speeds.size() < 100);
+                if (!source.next(out))
+                    return false;
+                speeds.add(out.airSpeed);
+                return true;
+            }
+        };
+
+        final HudBatchRenderer renderer = new HudBatchRenderer(WIDTH, HEIGHT);
+        final long frameCount = renderer.render(recorder, new HudBatchRenderer.FrameSink() {
+            @Override
+            public void onFrame(long index, Bitmap frame) {
+                assertEquals(WIDTH, frame.getWidth());
+            }
+        });
+        assertEquals(speeds.size(), frameCount);
+        return speeds;
+    }
+
+    public void testEmptyLogRendersNoFrame() throws Exception {
+        final HudLogPlayer player = writeLog(0);
+
+        assertTrue(render(HudBatchRenderer.fromLog(player, 0, 10)).isEmpty());
+    }
+
+    public void testFinishedLogRendersNoFrame() throws Exception {
+        final HudLogPlayer player = writeLog(5);
+        player.seek(10000);
+        assertTrue(player.isFinished());
+
+        assertTrue(render(HudBatchRenderer.fromLog(player, 10000, 10)).isEmpty());
+    }
+
+    public void testLogRendersUntilItsLastSample() throws Exception {
+        final HudLogPlayer player = writeLog(5);
+
+        //Frames every 50ms, from 100ms before the first sample, to the last one.
+        final List<Float> speeds = render(HudBatchRenderer.fromLog(player, -100, 20));
+        assertEquals(11, speeds.size());
+        assertEquals(0f, speeds.get(0));
+        assertEquals(0f, speeds.get(2));
+        assertEquals(1f, speeds.get(4));
+        assertEquals(4f, speeds.get(10));
+    }
+}
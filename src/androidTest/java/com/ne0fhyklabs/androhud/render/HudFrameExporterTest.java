@@ -0,0 +1,51 @@
+package com.ne0fhyklabs.androhud.render;
+
+import android.test.AndroidTestCase;
+
+import com.ne0fhyklabs.androhud.legacy.HudView;
+import com.ne0fhyklabs.androhud.telemetry.HudState;
+
+import java.util.concurrent.TimeUnit;
+
+public class HudFrameExporterTest extends AndroidTestCase {
+
+    private static final int WIDTH = 320;
+    private static final int HEIGHT = 240;
+
+    public void testIdenticalStatesExportIdenticalFrames() throws InterruptedException {
+        final HudState state = new HudState();
+        state.timestamp = 1000;
+        state.pitch = 5;
+        state.roll = -20;
+        state.yaw = 135;
+        state.airSpeed = 25;
+        state.targetSpeed = 30;
+        state.verticalSpeed = 1.5f;
+        state.altitude = 120;
+
+        final HudFrameExporter exporter = new HudFrameExporter(new HudView(getContext()), WIDTH,
+                HEIGHT, 60, 2);
+        exporter.submitState(state);
+        exporter.start();
+
+        final BitmapRing ring = exporter.getRing();
+        final BitmapRing.Frame first;
+        final BitmapRing.Frame second;
+        try {
+            first = ring.poll(5, TimeUnit.SECONDS);
+            second = ring.poll(5, TimeUnit.SECONDS);
+        } finally {
+            exporter.stop();
+        }
+
+        assertNotNull(first);
+        assertNotNull(second);
+        assertTrue(second.getSequence() > first.getSequence());
+        assertTrue("Frames of the same state differ.",
+                first.getBitmap().sameAs(second.getBitmap()));
+
+        ring.release(first);
+        ring.release(second);
+        ring.recycle();
+    }
+}
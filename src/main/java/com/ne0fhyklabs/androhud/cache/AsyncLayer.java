@@ -0,0 +1,210 @@
+package com.ne0fhyklabs.androhud.cache;
+
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.RectF;
+import android.os.Handler;
+import android.os.Looper;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A widget's shared layer, rebuilt on a background thread when the widget's size, or theme
+ * changes.
+ * Until the new layer is ready, the previous one stays in use, and is drawn scaled to the
+ * widget's new size, so a resize never renders a layer on the ui thread. The new layer is
+ * swapped in on the ui thread, between two frames.
+ * Renderers must only draw from a snapshot of the widget's theme, and geometry taken when the
+ * layer is requested, never from the widget's fields: the layer is built on another thread, and
+ * may be picked up from the shared cache by other widgets. A build superseded while rendering
+ * still matches its key, so it stays cached.
+ * Must be used from the ui thread.
+ */
+public class AsyncLayer {
+
+    /**
+     * Notified when a new layer is swapped in.
+     */
+    public interface Callback {
+        /**
+         * Called on the ui thread, e.g: to invalidate the widget.
+         */
+        void onLayerSwapped(AsyncLayer layer);
+    }
+
+    private static ExecutorService sExecutor;
+
+    /**
+     * @return the thread shared by all the layer builds. Builds are rare, and bursty, so a
+     * single low priority thread keeps them from competing with the ui thread.
+     */
+    private static synchronized ExecutorService getExecutor() {
+        if (sExecutor == null) {
+            sExecutor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable runnable) {
+                    final Thread thread = new Thread(runnable, "AsyncLayer");
+                    thread.setDaemon(true);
+                    thread.setPriority(Thread.MIN_PRIORITY);
+                    return thread;
+                }
+            });
+        }
+        return sExecutor;
+    }
+
+    private final StaticLayerCache mCache;
+    private final Callback mCallback;
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
+
+    /**
+     * Layer being drawn. Can be older than the requested one.
+     */
+    private Layer mLayer;
+    private LayerKey mRequestedKey;
+
+    /**
+     * Incremented by each request, so superseded builds are dropped.
+     */
+    private final AtomicInteger mGeneration = new AtomicInteger();
+
+    /*
+    Allocated at startup, and reused to avoid unnecessary memory allocation at runtime.
+     */
+    private final RectF mDstRect = new RectF();
+    private final Paint mScalePaint = new Paint(Paint.FILTER_BITMAP_FLAG);
+
+    public AsyncLayer(Callback callback) {
+        this(StaticLayerCache.getInstance(), callback);
+    }
+
+    public AsyncLayer(StaticLayerCache cache, Callback callback) {
+        mCache = cache;
+        mCallback = callback;
+    }
+
+    /**
+     * Requests the layer for the given key. Cached layers are swapped in immediately, others are
+     * rendered on a background thread while the current layer stays in use.
+     *
+     * @param key      key of the new layer.
+     * @param renderer used to render the layer on a cache miss. Called on a background thread, so
+     *                 it must hold its own copy of the paints, and sizes it draws with.
+     */
+    public void request(final LayerKey key, final StaticLayerCache.LayerRenderer renderer) {
+        if (key.equals(mRequestedKey))
+            return;
+
+        mRequestedKey = key;
+        final int generation = mGeneration.incrementAndGet();
+        if (mLayer != null && mLayer.getKey().equals(key))
+            return;
+
+        final Layer cached = mCache.acquireIfCached(key);
+        if (cached != null) {
+            swap(cached);
+            return;
+        }
+
+        getExecutor().execute(new Runnable() {
+            @Override
+            public void run() {
+                if (mGeneration.get() != generation)
+                    return;
+
+                Layer layer = mCache.acquireIfCached(key);
+                if (layer == null) {
+                    layer = mCache.acquire(key, renderer);
+                    if (mGeneration.get() != generation) {
+                        mCache.release(layer);
+                        return;
+                    }
+                }
+
+                final Layer built = layer;
+                mHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (mGeneration.get() != generation) {
+                            mCache.release(built);
+                            return;
+                        }
+
+                        swap(built);
+                        mCallback.onLayerSwapped(AsyncLayer.this);
+                    }
+                });
+            }
+        });
+    }
+
+    private void swap(Layer layer) {
+        if (mLayer != null)
+            mCache.release(mLayer);
+        mLayer = layer;
+    }
+
+    /**
+     * @return the layer being drawn, or null if none was built yet.
+     */
+    public Layer getLayer() {
+        return mLayer;
+    }
+
+    /**
+     * @return true if the layer being drawn matches the last request.
+     */
+    public boolean isCurrent() {
+        return mLayer != null && mLayer.getKey().equals(mRequestedKey);
+    }
+
+    /**
+     * Draws the current layer into the given bounds, scaling it if it was built for another
+     * size.
+     *
+     * @return false if there is no layer to draw yet.
+     */
+    public boolean draw(Canvas canvas, float left, float top, float width, float height) {
+        return draw(canvas, left, top, width, height, null);
+    }
+
+    /**
+     * Draws the current layer into the given bounds, scaling it if it was built for another
+     * size.
+     *
+     * @param paint paint used when the layer isn't scaled, e.g: to filter a rotated layer. Can
+     *              be null.
+     * @return false if there is no layer to draw yet.
+     */
+    public boolean draw(Canvas canvas, float left, float top, float width, float height,
+                        Paint paint) {
+        final Layer layer = mLayer;
+        if (layer == null)
+            return false;
+
+        final LayerKey key = layer.getKey();
+        if (key.getWidth() == width && key.getHeight() == height) {
+            layer.draw(canvas, left, top, paint);
+        }
+        else {
+            mDstRect.set(left, top, left + width, top + height);
+            layer.draw(canvas, null, mDstRect, mScalePaint);
+        }
+        return true;
+    }
+
+    /**
+     * Releases the current layer, and cancels the pending build.
+     */
+    public void release() {
+        mGeneration.incrementAndGet();
+        mRequestedKey = null;
+        if (mLayer != null) {
+            mCache.release(mLayer);
+            mLayer = null;
+        }
+    }
+}
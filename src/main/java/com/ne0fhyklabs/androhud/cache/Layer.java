@@ -0,0 +1,61 @@
+package com.ne0fhyklabs.androhud.cache;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Rect;
+import android.graphics.RectF;
+
+/**
+ * Pre-rendered static hud layer, shared by all the widgets using the same {@link LayerKey}.
+ * Layers are immutable once handed out by the {@link StaticLayerCache}, and must be released
+ * through {@link StaticLayerCache#release(Layer)} when no longer used.
+ */
+public final class Layer {
+
+    private final LayerKey mKey;
+    private final Bitmap mBitmap;
+    private final int mByteCount;
+
+    /**
+     * Number of widgets currently using this layer. Guarded by the owning cache.
+     */
+    int mRefCount;
+
+    /**
+     * Whether the layer is still held by the owning cache. Guarded by the owning cache.
+     */
+    boolean mCached;
+
+    Layer(LayerKey key, Bitmap bitmap) {
+        mKey = key;
+        mBitmap = bitmap;
+        mByteCount = bitmap.getRowBytes() * bitmap.getHeight();
+    }
+
+    public LayerKey getKey() {
+        return mKey;
+    }
+
+    public int getByteCount() {
+        return mByteCount;
+    }
+
+    /**
+     * Draws the layer with its top left corner at the given position.
+     */
+    public void draw(Canvas canvas, float left, float top, Paint paint) {
+        canvas.drawBitmap(mBitmap, left, top, paint);
+    }
+
+    /**
+     * Draws a region of the layer, e.g: a glyph from a glyph atlas.
+     */
+    public void draw(Canvas canvas, Rect src, RectF dst, Paint paint) {
+        canvas.drawBitmap(mBitmap, src, dst, paint);
+    }
+
+    Bitmap getBitmap() {
+        return mBitmap;
+    }
+}
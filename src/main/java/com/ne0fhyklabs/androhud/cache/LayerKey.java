@@ -0,0 +1,85 @@
+package com.ne0fhyklabs.androhud.cache;
+
+import java.util.Arrays;
+
+/**
+ * Identifies a static hud layer: which widget part it holds, its size in pixels, the screen
+ * density, and the theme properties (colors, stroke widths, ...) it was rendered with.
+ * Theme properties are compared by value, so two themes only share a layer if they would render
+ * the same pixels.
+ */
+public final class LayerKey {
+
+    private final String mLayerType;
+    private final int mWidth;
+    private final int mHeight;
+    private final float mDensity;
+    private final Object[] mTheme;
+    private final int mThemeHash;
+
+    /**
+     * @param theme properties the layer is rendered with, e.g: colors, stroke widths, text size,
+     *              typeface. Compared with {@link Object#equals(Object)}.
+     */
+    public LayerKey(String layerType, int width, int height, float density, Object... theme) {
+        if (width <= 0 || height <= 0) {
+            throw new IllegalArgumentException("Layer size should be positive (" + width + "x" +
+                    height + ").");
+        }
+
+        mLayerType = layerType;
+        mWidth = width;
+        mHeight = height;
+        mDensity = density;
+        mTheme = theme.clone();
+        mThemeHash = Arrays.hashCode(mTheme);
+    }
+
+    public String getLayerType() {
+        return mLayerType;
+    }
+
+    public int getWidth() {
+        return mWidth;
+    }
+
+    public int getHeight() {
+        return mHeight;
+    }
+
+    public float getDensity() {
+        return mDensity;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o)
+            return true;
+        if (!(o instanceof LayerKey))
+            return false;
+
+        final LayerKey other = (LayerKey) o;
+        return mWidth == other.mWidth
+                && mHeight == other.mHeight
+                && Float.compare(mDensity, other.mDensity) == 0
+                && mThemeHash == other.mThemeHash
+                && mLayerType.equals(other.mLayerType)
+                && Arrays.equals(mTheme, other.mTheme);
+    }
+
+    @Override
+    public int hashCode() {
+        int result = mLayerType.hashCode();
+        result = 31 * result + mWidth;
+        result = 31 * result + mHeight;
+        result = 31 * result + Float.floatToIntBits(mDensity);
+        result = 31 * result + mThemeHash;
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return mLayerType + "[" + mWidth + "x" + mHeight + ", density=" + mDensity + ", theme=" +
+                Arrays.toString(mTheme) + "]";
+    }
+}
@@ -0,0 +1,234 @@
+package com.ne0fhyklabs.androhud.cache;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Process wide cache of the static hud layers, i.e: the parts of a widget which only depend on
+ * its size, and theme (roll arcs, tape frames, compass roses, ...).
+ * Widgets with the same size, and theme share the same rasterized layer. Layers are reference
+ * counted, and the least recently used unreferenced layers are evicted when the cache grows past
+ * its byte budget. Referenced layers are never evicted.
+ * This class is thread safe. Layers are rendered outside of the cache lock, so they can be
+ * prepared from a background thread without blocking the ui thread.
+ */
+public class StaticLayerCache {
+
+    /**
+     * Used to render a layer on a cache miss.
+     */
+    public interface LayerRenderer {
+        /**
+         * Renders the layer's content.
+         *
+         * @param canvas canvas backed by the layer's bitmap, cleared to transparent.
+         * @param key    key of the layer being rendered.
+         */
+        void render(Canvas canvas, LayerKey key);
+    }
+
+    private static final long DEFAULT_MAX_BYTES = 8 * 1024 * 1024;
+
+    private static final StaticLayerCache sInstance = new StaticLayerCache(DEFAULT_MAX_BYTES);
+
+    public static StaticLayerCache getInstance() {
+        return sInstance;
+    }
+
+    /**
+     * Cached layers, in access order.
+     */
+    private final LinkedHashMap<LayerKey, Layer> mLayers = new LinkedHashMap<LayerKey, Layer>(16,
+            0.75f, true);
+
+    private long mMaxBytes;
+    private long mSizeBytes;
+
+    /*
+    Cache statistics.
+     */
+    private long mHitCount;
+    private long mMissCount;
+    private long mEvictionCount;
+
+    public StaticLayerCache(long maxBytes) {
+        mMaxBytes = maxBytes;
+    }
+
+    /**
+     * Returns the layer for the given key, rendering it if it's not cached yet. The returned
+     * layer must be released when no longer used.
+     *
+     * @param key      layer's key.
+     * @param renderer used to render the layer on a cache miss. If it throws, the layer's bitmap
+     *                 is recycled, and nothing is cached.
+     * @return the shared layer.
+     */
+    public Layer acquire(LayerKey key, LayerRenderer renderer) {
+        synchronized (this) {
+            final Layer layer = mLayers.get(key);
+            if (layer != null) {
+                mHitCount++;
+                layer.mRefCount++;
+                return layer;
+            }
+            mMissCount++;
+        }
+
+        final Bitmap bitmap = Bitmap.createBitmap(key.getWidth(), key.getHeight(),
+                Bitmap.Config.ARGB_8888);
+        boolean rendered = false;
+        try {
+            renderer.render(new Canvas(bitmap), key);
+            rendered = true;
+        } finally {
+            if (!rendered)
+                bitmap.recycle();
+        }
+        final Layer layer = new Layer(key, bitmap);
+
+        synchronized (this) {
+            //Another thread may have rendered the same layer in the meantime.
+            final Layer cached = mLayers.get(key);
+            if (cached != null) {
+                cached.mRefCount++;
+                bitmap.recycle();
+                return cached;
+            }
+
+            layer.mRefCount = 1;
+            layer.mCached = true;
+            mLayers.put(key, layer);
+            mSizeBytes += layer.getByteCount();
+            trimToSize(mMaxBytes);
+            return layer;
+        }
+    }
+
+    /**
+     * Returns the layer for the given key if it's cached, without rendering it. The returned
+     * layer must be released when no longer used.
+     *
+     * @return the shared layer, or null on a cache miss.
+     */
+    public synchronized Layer acquireIfCached(LayerKey key) {
+        final Layer layer = mLayers.get(key);
+        if (layer == null)
+            return null;
+
+        mHitCount++;
+        layer.mRefCount++;
+        return layer;
+    }
+
+    /**
+     * Releases a layer returned by {@link #acquire(LayerKey, LayerRenderer)}. The layer stays
+     * cached until evicted.
+     */
+    public synchronized void release(Layer layer) {
+        if (layer == null)
+            return;
+
+        if (layer.mRefCount <= 0) {
+            throw new IllegalStateException("Layer " + layer.getKey() + " was already released.");
+        }
+
+        layer.mRefCount--;
+        if (layer.mRefCount == 0 && !layer.mCached) {
+            //No longer cached, e.g: after the cache was cleared.
+            layer.getBitmap().recycle();
+        }
+        else if (mSizeBytes > mMaxBytes) {
+            trimToSize(mMaxBytes);
+        }
+    }
+
+    /**
+     * Releases a layer, and drops it from the cache, e.g: when its content may not match its key.
+     * The layer is recycled once all its references are released.
+     */
+    public synchronized void discard(Layer layer) {
+        if (layer.mCached && mLayers.get(layer.getKey()) == layer) {
+            mLayers.remove(layer.getKey());
+            layer.mCached = false;
+            mSizeBytes -= layer.getByteCount();
+        }
+        release(layer);
+    }
+
+    /**
+     * Evicts all the unreferenced layers. Can be called on low memory.
+     */
+    public synchronized void evictAll() {
+        trimToSize(0);
+    }
+
+    /**
+     * Drops all the layers from the cache. Referenced layers are recycled once released.
+     */
+    public synchronized void clear() {
+        for (Layer layer : mLayers.values()) {
+            layer.mCached = false;
+            if (layer.mRefCount == 0) {
+                layer.getBitmap().recycle();
+            }
+        }
+        mLayers.clear();
+        mSizeBytes = 0;
+    }
+
+    private void trimToSize(long maxBytes) {
+        final Iterator<Map.Entry<LayerKey, Layer>> it = mLayers.entrySet().iterator();
+        while (mSizeBytes > maxBytes && it.hasNext()) {
+            final Layer layer = it.next().getValue();
+            if (layer.mRefCount > 0)
+                continue;
+
+            it.remove();
+            layer.mCached = false;
+            mSizeBytes -= layer.getByteCount();
+            mEvictionCount++;
+            layer.getBitmap().recycle();
+        }
+    }
+
+    public synchronized long getMaxBytes() {
+        return mMaxBytes;
+    }
+
+    public synchronized void setMaxBytes(long maxBytes) {
+        mMaxBytes = maxBytes;
+        trimToSize(maxBytes);
+    }
+
+    public synchronized long getSizeBytes() {
+        return mSizeBytes;
+    }
+
+    public synchronized int getLayerCount() {
+        return mLayers.size();
+    }
+
+    public synchronized long getHitCount() {
+        return mHitCount;
+    }
+
+    public synchronized long getMissCount() {
+        return mMissCount;
+    }
+
+    public synchronized long getEvictionCount() {
+        return mEvictionCount;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "StaticLayerCache{layers=" + mLayers.size() + ", size=" + mSizeBytes + "/" +
+                mMaxBytes + ", hits=" + mHitCount + ", misses=" + mMissCount + ", evictions=" +
+                mEvictionCount + "}";
+    }
+}
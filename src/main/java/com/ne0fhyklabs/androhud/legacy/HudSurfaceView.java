@@ -0,0 +1,604 @@
+package com.ne0fhyklabs.androhud.legacy;
+
+import android.annotation.TargetApi;
+import android.content.Context;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.os.Build;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.SystemClock;
+import android.util.AttributeSet;
+import android.view.Choreographer;
+import android.view.SurfaceHolder;
+import android.view.SurfaceView;
+
+import com.ne0fhyklabs.androhud.telemetry.HudState;
+import com.ne0fhyklabs.androhud.telemetry.HudStateSource;
+import com.ne0fhyklabs.androhud.telemetry.LatencyMonitor;
+
+/**
+ * {@link HudView} variant rendering on its own thread, into a surface. Stalls of the ui thread
+ * no longer delay the hud updates.
+ * It supports the same attributes, and setters as {@link HudView}, except for the shared layers:
+ * those are built, and swapped on the ui thread, while this view draws on its own thread. The
+ * useSharedLayers attribute is ignored. The flight values are handed to the render thread, which
+ * draws at most once per vsync when they change.
+ */
+public class HudSurfaceView extends SurfaceView implements SurfaceHolder.Callback {
+
+    /**
+     * Detached hud view used to draw the frames. Only accessed while holding mHudLock.
+     */
+    private final HudView mHudView;
+    private final Object mHudLock = new Object();
+
+    /*
+    Flight values, written by the setters, and read by the render thread. Guarded by mStateLock.
+     */
+    private final Object mStateLock = new Object();
+    private final HudState mPendingState = new HudState();
+    private long mPendingSampleTime = HudView.NO_SAMPLE_TIME;
+    private boolean mFrameScheduled;
+
+    /**
+     * Time the pending air speed was set, on the {@link SystemClock#uptimeMillis()} clock, until
+     * it's added to the trend history by the next frame. Guarded by mStateLock.
+     */
+    private long mPendingSpeedTime = HudView.NO_SAMPLE_TIME;
+
+    /**
+     * Shared state read by the render thread instead of the pending state, when set. Guarded by
+     * mStateLock. Frames are only scheduled when a new version is published.
+     */
+    private HudStateSource mStateSource;
+    private final HudStateSource.Listener mStateListener = new HudStateSource.Listener() {
+        @Override
+        public void onStateChanged(HudStateSource source, long version) {
+            mSourcePublishTime = SystemClock.uptimeMillis();
+            scheduleFrame();
+        }
+    };
+
+    /*
+    Time of the latest publish, on the SystemClock.uptimeMillis() clock, and the version drawn by
+    the render thread, so each published state adds one trend sample.
+     */
+    private volatile long mSourcePublishTime;
+    private HudStateSource mRenderedSource;
+    private long mRenderedVersion;
+
+    /**
+     * Render thread's copy of the flight values.
+     */
+    private final HudState mRenderState = new HudState();
+
+    /**
+     * Set while the surface can be drawn to. Guarded by mHudLock.
+     */
+    private boolean mSurfaceReady;
+
+    private HandlerThread mRenderThread;
+    private Handler mRenderHandler;
+    private VsyncScheduler mVsyncScheduler;
+
+    private final Runnable mRenderRunnable = new Runnable() {
+        @Override
+        public void run() {
+            renderFrame();
+        }
+    };
+
+    /**
+     * Redraws the hud once the latest speed sample left the trend window, to hide the trend.
+     */
+    private final Runnable mTrendExpiryRunnable = new Runnable() {
+        @Override
+        public void run() {
+            scheduleFrame();
+        }
+    };
+
+    private final Runnable mScheduleRunnable = new Runnable() {
+        @Override
+        public void run() {
+            if (mVsyncScheduler != null)
+                mVsyncScheduler.scheduleFrame();
+            else
+                renderFrame();
+        }
+    };
+
+    public HudSurfaceView(Context context) {
+        this(context, null);
+    }
+
+    public HudSurfaceView(Context context, AttributeSet attrs) {
+        this(context, attrs, 0);
+    }
+
+    public HudSurfaceView(Context context, AttributeSet attrs, int defStyle) {
+        super(context, attrs, defStyle);
+
+        mHudView = new HudView(context, attrs, defStyle);
+        mHudView.setUseSharedLayers(false);
+        super.setEnabled(mHudView.isEnabled());
+        getHolder().addCallback(this);
+    }
+
+    @Override
+    protected void onAttachedToWindow() {
+        super.onAttachedToWindow();
+
+        final HandlerThread renderThread = new HandlerThread("HudSurfaceView");
+        renderThread.start();
+        synchronized (mStateLock) {
+            mRenderThread = renderThread;
+            mRenderHandler = new Handler(renderThread.getLooper());
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN) {
+                mVsyncScheduler = new VsyncScheduler(mRenderRunnable);
+            }
+            if (mStateSource != null)
+                mStateSource.addListener(mStateListener);
+        }
+        scheduleFrame();
+    }
+
+    @Override
+    protected void onDetachedFromWindow() {
+        super.onDetachedFromWindow();
+
+        //Quitting the render looper drops any pending frame.
+        synchronized (mStateLock) {
+            if (mStateSource != null)
+                mStateSource.removeListener(mStateListener);
+            mRenderThread.quit();
+            mRenderThread = null;
+            mRenderHandler = null;
+            mVsyncScheduler = null;
+            mFrameScheduled = false;
+        }
+    }
+
+    @Override
+    public void surfaceCreated(SurfaceHolder holder) {
+    }
+
+    @Override
+    public void surfaceChanged(SurfaceHolder holder, int format, int width, int height) {
+        synchronized (mHudLock) {
+            mHudView.measure(MeasureSpec.makeMeasureSpec(width, MeasureSpec.EXACTLY),
+                    MeasureSpec.makeMeasureSpec(height, MeasureSpec.EXACTLY));
+            mHudView.layout(0, 0, width, height);
+            mSurfaceReady = true;
+        }
+        scheduleFrame();
+    }
+
+    @Override
+    public void surfaceDestroyed(SurfaceHolder holder) {
+        //Waits for any frame in progress, the surface can't be used once this returns.
+        synchronized (mHudLock) {
+            mSurfaceReady = false;
+            mHudView.releaseDrawingCaches();
+        }
+    }
+
+    /**
+     * Requests a new frame from the render thread. Frames requested before the previous one is
+     * drawn are coalesced.
+     */
+    private void scheduleFrame() {
+        synchronized (mStateLock) {
+            if (mFrameScheduled || mRenderHandler == null)
+                return;
+            mFrameScheduled = true;
+            mRenderHandler.post(mScheduleRunnable);
+        }
+    }
+
+    private void renderFrame() {
+        final HudStateSource stateSource;
+        final long sampleTime;
+        long speedTime;
+        final Handler renderHandler;
+        synchronized (mStateLock) {
+            stateSource = mStateSource;
+            if (stateSource == null)
+                mRenderState.set(mPendingState);
+            //The shared state's values carry no receive time.
+            sampleTime = stateSource == null ? mPendingSampleTime : HudView.NO_SAMPLE_TIME;
+            speedTime = mPendingSpeedTime;
+            mPendingSpeedTime = HudView.NO_SAMPLE_TIME;
+            renderHandler = mRenderHandler;
+            mFrameScheduled = false;
+        }
+
+        if (stateSource != null) {
+            final long version = stateSource.read(mRenderState);
+            speedTime = stateSource != mRenderedSource || version != mRenderedVersion
+                    ? mSourcePublishTime : HudView.NO_SAMPLE_TIME;
+            mRenderedSource = stateSource;
+            mRenderedVersion = version;
+        }
+
+        synchronized (mHudLock) {
+            //Applied even without a surface, so no trend sample is lost.
+            mHudView.setDrawnState(mRenderState, speedTime);
+            mHudView.setDisplayedSampleTime(sampleTime);
+
+            final long trendExpiryTime = mHudView.getSpeedTrendExpiryTime();
+            if (speedTime != HudView.NO_SAMPLE_TIME && trendExpiryTime != HudView.NO_SAMPLE_TIME
+                    && renderHandler != null) {
+                renderHandler.removeCallbacks(mTrendExpiryRunnable);
+                renderHandler.postAtTime(mTrendExpiryRunnable, trendExpiryTime);
+            }
+
+            if (!mSurfaceReady)
+                return;
+
+            final SurfaceHolder holder = getHolder();
+            final Canvas canvas = holder.lockCanvas();
+            if (canvas == null)
+                return;
+
+            try {
+                canvas.drawColor(Color.BLACK);
+                mHudView.draw(canvas);
+            } finally {
+                holder.unlockCanvasAndPost(canvas);
+            }
+        }
+    }
+
+    /**
+     * Paces the frames on the display vsync. Only loaded on api 16 and above.
+     */
+    @TargetApi(Build.VERSION_CODES.JELLY_BEAN)
+    private static class VsyncScheduler implements Choreographer.FrameCallback {
+
+        private final Runnable mRenderRunnable;
+        private boolean mPosted;
+
+        VsyncScheduler(Runnable renderRunnable) {
+            mRenderRunnable = renderRunnable;
+        }
+
+        /**
+         * Must be called on the render thread.
+         */
+        void scheduleFrame() {
+            if (mPosted)
+                return;
+            mPosted = true;
+            Choreographer.getInstance().postFrameCallback(this);
+        }
+
+        @Override
+        public void doFrame(long frameTimeNanos) {
+            mPosted = false;
+            mRenderRunnable.run();
+        }
+    }
+
+    /*
+    Flight values setters. Can be called from any thread.
+     */
+    public void setPitch(float pitch) {
+        synchronized (mStateLock) {
+            mPendingState.pitch = pitch;
+            mPendingSampleTime = HudView.NO_SAMPLE_TIME;
+        }
+        scheduleFrame();
+    }
+
+    public void setRoll(float roll) {
+        synchronized (mStateLock) {
+            mPendingState.roll = roll;
+            mPendingSampleTime = HudView.NO_SAMPLE_TIME;
+        }
+        scheduleFrame();
+    }
+
+    public void setYaw(float yaw) {
+        synchronized (mStateLock) {
+            mPendingState.yaw = yaw;
+            mPendingSampleTime = HudView.NO_SAMPLE_TIME;
+        }
+        scheduleFrame();
+    }
+
+    public void setVerticalSpeed(float verticalSpeed) {
+        synchronized (mStateLock) {
+            mPendingState.verticalSpeed = verticalSpeed;
+            mPendingSampleTime = HudView.NO_SAMPLE_TIME;
+        }
+        scheduleFrame();
+    }
+
+    public void setSpeed(float speed) {
+        synchronized (mStateLock) {
+            mPendingState.airSpeed = speed;
+            mPendingSampleTime = HudView.NO_SAMPLE_TIME;
+            mPendingSpeedTime = SystemClock.uptimeMillis();
+        }
+        scheduleFrame();
+    }
+
+    public void setTargetSpeed(float targetSpeed) {
+        synchronized (mStateLock) {
+            mPendingState.targetSpeed = targetSpeed;
+            mPendingSampleTime = HudView.NO_SAMPLE_TIME;
+        }
+        scheduleFrame();
+    }
+
+    public void setAltitude(float altitude) {
+        synchronized (mStateLock) {
+            mPendingState.altitude = altitude;
+            mPendingSampleTime = HudView.NO_SAMPLE_TIME;
+        }
+        scheduleFrame();
+    }
+
+    /**
+     * Updates all the flight values at once.
+     */
+    public void setHudState(float pitch, float roll, float yaw, float speed, float verticalSpeed,
+                            float altitude) {
+        synchronized (mStateLock) {
+            mPendingState.pitch = pitch;
+            mPendingState.roll = roll;
+            mPendingState.yaw = yaw;
+            mPendingState.airSpeed = speed;
+            mPendingState.verticalSpeed = verticalSpeed;
+            mPendingState.altitude = altitude;
+            mPendingSampleTime = HudView.NO_SAMPLE_TIME;
+            mPendingSpeedTime = SystemClock.uptimeMillis();
+        }
+        scheduleFrame();
+    }
+
+    /**
+     * Updates all the flight values at once, and records their staleness in the latency
+     * monitor.
+     *
+     * @param sampleTimeNanos time the values were received, on the {@link System#nanoTime()}
+     *                        clock.
+     */
+    public void setHudState(float pitch, float roll, float yaw, float speed, float verticalSpeed,
+                            float altitude, long sampleTimeNanos) {
+        mHudView.getLatencyMonitor().onSampleReceived(sampleTimeNanos);
+        synchronized (mStateLock) {
+            mPendingState.pitch = pitch;
+            mPendingState.roll = roll;
+            mPendingState.yaw = yaw;
+            mPendingState.airSpeed = speed;
+            mPendingState.verticalSpeed = verticalSpeed;
+            mPendingState.altitude = altitude;
+            mPendingSampleTime = sampleTimeNanos;
+            mPendingSpeedTime = SystemClock.uptimeMillis();
+        }
+        scheduleFrame();
+    }
+
+    /**
+     * @return the sample age, and ingestion jitter histograms of the values set with a
+     * timestamp. The age is measured when the frame is drawn on the render thread.
+     */
+    public LatencyMonitor getLatencyMonitor() {
+        return mHudView.getLatencyMonitor();
+    }
+
+    /**
+     * Updates all the flight values at once.
+     */
+    public void setHudState(HudState state) {
+        synchronized (mStateLock) {
+            mPendingState.set(state);
+            mPendingSampleTime = HudView.NO_SAMPLE_TIME;
+            mPendingSpeedTime = SystemClock.uptimeMillis();
+        }
+        scheduleFrame();
+    }
+
+    public HudStateSource getStateSource() {
+        synchronized (mStateLock) {
+            return mStateSource;
+        }
+    }
+
+    /**
+     * Reads the flight values from the given shared state on the render thread, instead of
+     * through the setters.
+     *
+     * @param source shared state, or null to detach from the current one.
+     */
+    public void setStateSource(HudStateSource source) {
+        synchronized (mStateLock) {
+            if (mStateSource != null)
+                mStateSource.removeListener(mStateListener);
+
+            mStateSource = source;
+            if (source != null && mRenderHandler != null)
+                source.addListener(mStateListener);
+        }
+        scheduleFrame();
+    }
+
+    /*
+    Theme properties getters, and setters. These wait for the frame in progress, if any.
+     */
+    @Override
+    public void setEnabled(boolean enabled) {
+        super.setEnabled(enabled);
+        synchronized (mHudLock) {
+            mHudView.setEnabled(enabled);
+        }
+        scheduleFrame();
+    }
+
+    public int getGroundColor() {
+        synchronized (mHudLock) {
+            return mHudView.getGroundColor();
+        }
+    }
+
+    public void setGroundColor(int color) {
+        synchronized (mHudLock) {
+            mHudView.setGroundColor(color);
+        }
+        scheduleFrame();
+    }
+
+    public int getSkyColor() {
+        synchronized (mHudLock) {
+            return mHudView.getSkyColor();
+        }
+    }
+
+    public void setSkyColor(int color) {
+        synchronized (mHudLock) {
+            mHudView.setSkyColor(color);
+        }
+        scheduleFrame();
+    }
+
+    public int getReticleColor() {
+        synchronized (mHudLock) {
+            return mHudView.getReticleColor();
+        }
+    }
+
+    public void setReticleColor(int color) {
+        synchronized (mHudLock) {
+            mHudView.setReticleColor(color);
+        }
+        scheduleFrame();
+    }
+
+    public float getReticleRadius() {
+        synchronized (mHudLock) {
+            return mHudView.getReticleRadius();
+        }
+    }
+
+    public void setReticleRadius(float radius) {
+        synchronized (mHudLock) {
+            mHudView.setReticleRadius(radius);
+        }
+        scheduleFrame();
+    }
+
+    public int getTextColor() {
+        synchronized (mHudLock) {
+            return mHudView.getTextColor();
+        }
+    }
+
+    public void setTextColor(int color) {
+        synchronized (mHudLock) {
+            mHudView.setTextColor(color);
+        }
+        scheduleFrame();
+    }
+
+    public float getTextSize() {
+        synchronized (mHudLock) {
+            return mHudView.getTextSize();
+        }
+    }
+
+    public void setTextSize(float textSize) {
+        synchronized (mHudLock) {
+            mHudView.setTextSize(textSize);
+        }
+        scheduleFrame();
+    }
+
+    public int getYawBgColor() {
+        synchronized (mHudLock) {
+            return mHudView.getYawBgColor();
+        }
+    }
+
+    public void setYawBgColor(int color) {
+        synchronized (mHudLock) {
+            mHudView.setYawBgColor(color);
+        }
+        scheduleFrame();
+    }
+
+    public boolean isUsingComponentLayers() {
+        synchronized (mHudLock) {
+            return mHudView.isUsingComponentLayers();
+        }
+    }
+
+    public void setUseComponentLayers(boolean useComponentLayers) {
+        synchronized (mHudLock) {
+            mHudView.setUseComponentLayers(useComponentLayers);
+        }
+        scheduleFrame();
+    }
+
+    public boolean isShowingSpeedTrend() {
+        synchronized (mHudLock) {
+            return mHudView.isShowingSpeedTrend();
+        }
+    }
+
+    public void setShowSpeedTrend(boolean showSpeedTrend) {
+        synchronized (mHudLock) {
+            mHudView.setShowSpeedTrend(showSpeedTrend);
+        }
+        scheduleFrame();
+    }
+
+    public boolean isUsingGlyphAtlas() {
+        synchronized (mHudLock) {
+            return mHudView.isUsingGlyphAtlas();
+        }
+    }
+
+    public void setUseGlyphAtlas(boolean useGlyphAtlas) {
+        synchronized (mHudLock) {
+            mHudView.setUseGlyphAtlas(useGlyphAtlas);
+        }
+        scheduleFrame();
+    }
+
+    public boolean isAdaptiveQuality() {
+        synchronized (mHudLock) {
+            return mHudView.isAdaptiveQuality();
+        }
+    }
+
+    public void setAdaptiveQuality(boolean adaptiveQuality) {
+        synchronized (mHudLock) {
+            mHudView.setAdaptiveQuality(adaptiveQuality);
+        }
+        scheduleFrame();
+    }
+
+    public float getFrameBudget() {
+        synchronized (mHudLock) {
+            return mHudView.getFrameBudget();
+        }
+    }
+
+    public void setFrameBudget(float budgetMs) {
+        synchronized (mHudLock) {
+            mHudView.setFrameBudget(budgetMs);
+        }
+    }
+
+    /**
+     * @return the current render quality level of the hud.
+     */
+    public int getQualityLevel() {
+        synchronized (mHudLock) {
+            return mHudView.getQualityLevel();
+        }
+    }
+}
@@ -2,6 +2,7 @@ package com.ne0fhyklabs.androhud.legacy;
 
 import android.content.Context;
 import android.content.res.TypedArray;
+import android.graphics.Bitmap;
 import android.graphics.Canvas;
 import android.graphics.Color;
 import android.graphics.Paint;
@@ -9,10 +10,24 @@ import android.graphics.Path;
 import android.graphics.Rect;
 import android.graphics.RectF;
 import android.graphics.Region;
+import android.os.SystemClock;
 import android.util.AttributeSet;
 import android.view.View;
 
 import com.ne0fhyklabs.androhud.R;
+import com.ne0fhyklabs.androhud.cache.AsyncLayer;
+import com.ne0fhyklabs.androhud.cache.LayerKey;
+import com.ne0fhyklabs.androhud.cache.StaticLayerCache;
+import com.ne0fhyklabs.androhud.render.GlyphAtlas;
+import com.ne0fhyklabs.androhud.render.QualityGovernor;
+import com.ne0fhyklabs.androhud.telemetry.HudState;
+import com.ne0fhyklabs.androhud.telemetry.HudStateSource;
+import com.ne0fhyklabs.androhud.telemetry.LatencyMonitor;
+import com.ne0fhyklabs.androhud.utils.HeadingLabels;
+import com.ne0fhyklabs.androhud.utils.HudTrace;
+import com.ne0fhyklabs.androhud.utils.MathUtils;
+import com.ne0fhyklabs.androhud.utils.TickIterator;
+import com.ne0fhyklabs.androhud.utils.ValueHistory;
 
 /**
  * Widget for a HUD Originally copied from http://code.google.com/p/copter-gcs/
@@ -31,12 +46,22 @@ public class HudView extends View {
     static final int SCROLLER_ALT_RANGE = 26;
     static final int SCROLLER_SPEED_RANGE = 26;
 
+    /*
+    Speed trend vector defaults. The speed rate of change is measured over the trend window, and
+    the vector points to the speed predicted after the trend time.
+     */
+    static final float DEFAULT_TREND_TIME = 10f;
+    static final long TREND_WINDOW_MS = 2000;
+    static final int TREND_HISTORY_CAPACITY = 128;
+
     // in relation to the resulting size of PITCH_FACTOR_TEXT
     static final float PITCH_FACTOR_TEXT_Y_OFFSET = -.16f;
     // in relation to attHeightPx
     static final float PITCH_FACTOR_SCALE_Y_SPACE = 0.02f;
     // in relation to width
     static final float PITCH_FACTOR_SCALE_TEXT_X_OFFSET = 0.025f;
+    // outermost rungs of the pitch ladder, in degrees
+    static final int PITCH_LADDER_LIMIT = 180;
 
     // in relation to averaged of width and height
     static final float HUD_FACTOR_BORDER_WIDTH = .0075f;
@@ -65,6 +90,32 @@ public class HudView extends View {
     // in relation to width
     static final float ATT_FACTOR_INFOTEXT_X_OFFSET = .013f;
 
+    /*
+    Trace sections, and counters names. See HudTrace.
+     */
+    static final String TRACE_DRAW = "HudView.onDraw";
+    static final String TRACE_DRAW_PITCH = "HudView.drawPitch";
+    static final String TRACE_DRAW_ROLL = "HudView.drawRoll";
+    static final String TRACE_DRAW_YAW = "HudView.drawYaw";
+    static final String TRACE_DRAW_RETICLE = "HudView.drawReticle";
+    static final String TRACE_DRAW_SCROLLERS = "HudView.drawScrollers";
+    static final String TRACE_TICK_COUNT = "HudView.ticks";
+    static final String TRACE_LABEL_COUNT = "HudView.labels";
+    static final String TRACE_LAYER_UPDATE_COUNT = "HudView.layerUpdates";
+
+    /**
+     * Sample time of values set without a timestamp.
+     */
+    static final long NO_SAMPLE_TIME = Long.MIN_VALUE;
+
+    /*
+    Independent parts of the hud, rendered in their own layer when component layers are enabled.
+     */
+    static final int COMPONENT_ATTITUDE = 0;
+    static final int COMPONENT_YAW = 1;
+    static final int COMPONENT_SPEED = 2;
+    static final int COMPONENT_VSI = 3;
+
     private int width;
     private int height;
     private boolean enabled;
@@ -153,6 +204,25 @@ public class HudView extends View {
     private Paint greenPen;
     private Paint blueVSI;
 
+    /*
+    Speed trend vector properties.
+     */
+    private final ValueHistory speedHistory = new ValueHistory(TREND_HISTORY_CAPACITY,
+            TREND_WINDOW_MS);
+    private boolean showSpeedTrend;
+    private float trendTime;
+    private Paint trendPaint;
+
+    /**
+     * Redraws the hud once the latest speed sample left the trend window, to hide the trend.
+     */
+    private final Runnable trendExpiry = new Runnable() {
+        @Override
+        public void run() {
+            invalidate();
+        }
+    };
+
     /*
     Pitch's related properties
      */
@@ -175,6 +245,128 @@ public class HudView extends View {
     private final Path commonPath = new Path();
     private final Rect commonRect = new Rect();
     private final RectF commonRectFloat = new RectF();
+    private final TickIterator commonTicks = new TickIterator();
+
+    /*
+    Shared static layers. When enabled, the roll scale is rendered once in a layer shared by all
+    the hud views with the same size, and theme. The layer is rebuilt in the background when the
+    size, or theme changes, and the previous one is drawn scaled in the meantime.
+     */
+    private boolean useSharedLayers;
+
+    private final AsyncLayer rollScaleLayer = new AsyncLayer(new AsyncLayer.Callback() {
+        @Override
+        public void onLayerSwapped(AsyncLayer layer) {
+            attitudeLayer.invalidate();
+            invalidate();
+        }
+    });
+    private final Rect rollScaleLayerBounds = new Rect();
+
+    /**
+     * Renders the roll scale layer from a copy of the paints, and geometry taken when the layer
+     * is requested. The layer is built on a background thread, so it never reads the view's
+     * fields.
+     */
+    private static class RollScaleRenderer implements StaticLayerCache.LayerRenderer {
+        private final Paint border;
+        private final Paint reticle;
+        private final Paint ticks;
+        private final int left;
+        private final int top;
+        private final int attHeightPx;
+        private final int rollTopOffsetPx;
+        private final int rollSizePxTics;
+        private final Path pathCache = new Path();
+        private final RectF rectCache = new RectF();
+
+        RollScaleRenderer(HudView hud) {
+            border = new Paint(hud.whiteBorder);
+            reticle = new Paint(hud.reticlePaint);
+            ticks = new Paint(hud.whiteThickTics);
+            left = hud.rollScaleLayerBounds.left;
+            top = hud.rollScaleLayerBounds.top;
+            attHeightPx = hud.attHeightPx;
+            rollTopOffsetPx = hud.rollTopOffsetPx;
+            rollSizePxTics = hud.rollSizePxTics;
+        }
+
+        @Override
+        public void render(Canvas canvas, LayerKey key) {
+            canvas.translate(-left, -top);
+            drawRollScale(canvas, pathCache, rectCache, border, reticle, ticks, attHeightPx,
+                    rollTopOffsetPx, rollSizePxTics);
+        }
+    }
+
+    /*
+    If enabled, the labels are drawn from a pre-rasterized glyph atlas instead of being shaped as
+    text on each frame.
+     */
+    private boolean useGlyphAtlas;
+    private GlyphAtlas glyphAtlas;
+
+    /*
+    Lowers the render quality when drawing overruns the frame budget. The pitch ladder rotates
+    with the roll, so only the tapes' ticks lose their anti-aliasing.
+     */
+    private final QualityGovernor qualityGovernor = new QualityGovernor();
+    private final Paint aliasedThinTics = new Paint();
+    private final Paint aliasedThickTics = new Paint();
+    private Paint tapeThinTics;
+    private Paint tapeThickTics;
+
+    /*
+    Number of ticks, and labels drawn by the current frame, reported to the trace counters.
+     */
+    private int drawnTickCount;
+    private int drawnLabelCount;
+
+    /*
+    Per component retained layers. When enabled, each part of the hud is rendered in its own
+    layer, which is only rendered again when the values it depends on change; the frame then
+    composites the layers. In cruise, only the tapes whose value moved are redrawn.
+     */
+    private boolean useComponentLayers;
+    private final ComponentLayer attitudeLayer = new ComponentLayer(COMPONENT_ATTITUDE);
+    private final ComponentLayer yawLayer = new ComponentLayer(COMPONENT_YAW);
+    private final ComponentLayer speedLayer = new ComponentLayer(COMPONENT_SPEED);
+    private final ComponentLayer vsiLayer = new ComponentLayer(COMPONENT_VSI);
+    private int layersQualityLevel;
+    private int updatedLayerCount;
+
+    /*
+    Staleness of the displayed values, see setHudState(..., sampleTimeNanos).
+     */
+    private final LatencyMonitor latencyMonitor = new LatencyMonitor();
+    private long sampleTimeNanos = NO_SAMPLE_TIME;
+
+    /*
+    First frame metrics, in nanoseconds. -1 until the first frame is drawn. See prewarm().
+     */
+    private final long creationNanos = System.nanoTime();
+    private long firstFrameCostNanos = -1;
+    private long timeToFirstFrameNanos = -1;
+
+    /*
+    Shared state the hud reads its values from at draw time. Can be null.
+     */
+    private HudStateSource stateSource;
+    private final HudState sourceState = new HudState();
+    private volatile long drawnVersion;
+    /*
+    Time of the latest publish, on the SystemClock.uptimeMillis() clock. Stamps the trend samples
+    read from the source, since they're only read when the view draws.
+     */
+    private volatile long sourcePublishTime;
+    private final HudStateSource.Listener stateListener = new HudStateSource.Listener() {
+        @Override
+        public void onStateChanged(HudStateSource source, long version) {
+            sourcePublishTime = SystemClock.uptimeMillis();
+            if (version != drawnVersion)
+                postInvalidate();
+        }
+    };
 
     /*
     HUD's properties
@@ -243,6 +435,15 @@ public class HudView extends View {
             blueVSI.setARGB(255, 0, 50, 250);
             blueVSI.setAntiAlias(true);
 
+            trendPaint = new Paint();
+            trendPaint.setColor(attributes.getColor(R.styleable.HudView_trendColor,
+                    Color.MAGENTA));
+            trendPaint.setStrokeWidth(3);
+            trendPaint.setStyle(Paint.Style.STROKE);
+            trendPaint.setAntiAlias(true);
+            showSpeedTrend = attributes.getBoolean(R.styleable.HudView_trendVector, false);
+            trendTime = attributes.getFloat(R.styleable.HudView_trendTime, DEFAULT_TREND_TIME);
+
             whiteBorder = new Paint();
             whiteBorder.setColor(Color.WHITE);
             whiteBorder.setStyle(Paint.Style.STROKE);
@@ -286,6 +487,16 @@ public class HudView extends View {
             scrollerTextHorizontalMargin = attributes.getDimension(R.styleable.HudView_scrollerTextHorizontalMargin, 23f);
             scrollerTextVerticalMargin = attributes.getDimension(R.styleable
                     .HudView_scrollerTextVerticalMargin, 10f);
+
+            useSharedLayers = attributes.getBoolean(R.styleable.HudView_useSharedLayers, false);
+            useComponentLayers = attributes.getBoolean(R.styleable.HudView_componentLayers,
+                    false);
+            useGlyphAtlas = attributes.getBoolean(R.styleable.HudView_glyphAtlasText, false);
+
+            qualityGovernor.setEnabled(attributes.getBoolean(R.styleable.HudView_adaptiveQuality,
+                    false));
+            qualityGovernor.setFrameBudget(attributes.getFloat(R.styleable.HudView_frameBudget,
+                    QualityGovernor.DEFAULT_FRAME_BUDGET_MS));
         } finally {
             attributes.recycle();
         }
@@ -294,6 +505,9 @@ public class HudView extends View {
     @Override
     public void onDraw(Canvas canvas) {
         super.onDraw(canvas);
+        final long firstFrameStart = firstFrameCostNanos < 0 ? System.nanoTime() : 0;
+
+        pullSourceState();
 
         // set center of HUD excluding YAW area
         canvas.translate(width / 2, (height + topBarHeight) / 2);
@@ -302,11 +516,133 @@ public class HudView extends View {
         // transformations, clippings, etc by itself
         // this will improve performance because not every routine applies that
         // stuff, so general save and restore is not necessary
-        drawPitch(canvas);
-        drawRoll(canvas);
-        drawYaw(canvas);
-        drawReticle(canvas);
-        drawScrollers(canvas);
+        qualityGovernor.beginFrame();
+
+        if (useGlyphAtlas)
+            glyphAtlas = GlyphAtlas.update(glyphAtlas, textPaint);
+
+        if (qualityGovernor.isAliasingLines()) {
+            tapeThinTics = QualityGovernor.aliasedCopy(whiteThinTics, aliasedThinTics);
+            tapeThickTics = QualityGovernor.aliasedCopy(whiteThickTics, aliasedThickTics);
+        }
+        else {
+            tapeThinTics = whiteThinTics;
+            tapeThickTics = whiteThickTics;
+        }
+
+        HudTrace.beginSection(TRACE_DRAW);
+        drawnTickCount = 0;
+        drawnLabelCount = 0;
+
+        if (useComponentLayers) {
+            drawComponentLayers(canvas);
+        }
+        else {
+            HudTrace.beginSection(TRACE_DRAW_PITCH);
+            drawPitch(canvas);
+            HudTrace.endSection();
+
+            HudTrace.beginSection(TRACE_DRAW_ROLL);
+            drawRoll(canvas);
+            HudTrace.endSection();
+
+            HudTrace.beginSection(TRACE_DRAW_YAW);
+            drawYaw(canvas);
+            HudTrace.endSection();
+
+            HudTrace.beginSection(TRACE_DRAW_RETICLE);
+            drawReticle(canvas);
+            HudTrace.endSection();
+
+            HudTrace.beginSection(TRACE_DRAW_SCROLLERS);
+            drawSpeedScroller(canvas);
+            drawVsiScroller(canvas);
+            HudTrace.endSection();
+        }
+
+        HudTrace.setCounter(TRACE_TICK_COUNT, drawnTickCount);
+        HudTrace.setCounter(TRACE_LABEL_COUNT, drawnLabelCount);
+        HudTrace.endSection();
+
+        qualityGovernor.endFrame();
+
+        if (sampleTimeNanos != NO_SAMPLE_TIME)
+            latencyMonitor.onFrameDrawn(sampleTimeNanos);
+
+        if (firstFrameCostNanos < 0) {
+            final long now = System.nanoTime();
+            firstFrameCostNanos = now - firstFrameStart;
+            timeToFirstFrameNanos = now - creationNanos;
+        }
+    }
+
+    /**
+     * Warms up the process wide state used by the hud views, so the first frame of the views
+     * created afterwards is closer to the steady state: the classes, and their compiled code,
+     * the font glyph caches, and the shared layers, and glyph atlas matching the expected size,
+     * and style. Each view still builds its own paints, and layout variables.
+     * Does not need a window, so it can be called from a background thread, e.g: while a splash
+     * screen is showing.
+     *
+     * @param context  context the hud views will be created with. Its theme resolves the hud's
+     *                 attributes.
+     * @param width    expected hud width, in pixels.
+     * @param height   expected hud height, in pixels.
+     * @param defStyle default style attribute the hud views will be created with, or 0.
+     * @return the time spent prewarming, in milliseconds.
+     */
+    public static float prewarm(Context context, int width, int height, int defStyle) {
+        if (width <= 0 || height <= 0)
+            throw new IllegalArgumentException("Expected hud size should be positive.");
+
+        final long start = System.nanoTime();
+        final HudView hud = new HudView(context, null, defStyle);
+        hud.enabled = true;
+        hud.onSizeChanged(width, height, 0, 0);
+
+        //Non zero values, so every label is laid out.
+        hud.pitch = 12.5;
+        hud.roll = -22.5;
+        hud.yaw = 45;
+        hud.airSpeed = 18.5;
+        hud.targetSpeed = 20;
+        hud.verticalSpeed = -1.5;
+        hud.altitude = 120.5;
+
+        //Rendered in the cache, and kept there until evicted, so the views find it right away.
+        if (hud.useSharedLayers && !hud.rollScaleLayerBounds.isEmpty()) {
+            final StaticLayerCache cache = StaticLayerCache.getInstance();
+            cache.release(cache.acquire(hud.getRollScaleLayerKey(), new RollScaleRenderer(hud)));
+        }
+
+        final Bitmap frame = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+        try {
+            hud.onDraw(new Canvas(frame));
+        } finally {
+            frame.recycle();
+            hud.releaseGlyphAtlas();
+        }
+
+        return (System.nanoTime() - start) / 1e6f;
+    }
+
+    public static float prewarm(Context context, int width, int height) {
+        return prewarm(context, width, height, 0);
+    }
+
+    /**
+     * @return the time spent drawing the first frame, in milliseconds, or -1 until it's drawn.
+     */
+    public float getFirstFrameCostMs() {
+        return firstFrameCostNanos < 0 ? -1 : firstFrameCostNanos / 1e6f;
+    }
+
+    /**
+     * @return the time from the view creation to the end of its first frame, in milliseconds,
+     * or -1 until it's drawn.
+     */
+    public float getTimeToFirstFrameMs() {
+        return timeToFirstFrameNanos < 0 ? -1 : timeToFirstFrameNanos / 1e6f;
     }
 
     @Override
@@ -323,6 +659,54 @@ public class HudView extends View {
         updatePitchVariables();
         updateYawVariables();
         updateRollVariables();
+        updateSharedLayers();
+        updateComponentLayers();
+    }
+
+    @Override
+    protected void onAttachedToWindow() {
+        super.onAttachedToWindow();
+        if (stateSource != null)
+            stateSource.addListener(stateListener);
+        updateSharedLayers();
+    }
+
+    @Override
+    protected void onDetachedFromWindow() {
+        super.onDetachedFromWindow();
+        if (stateSource != null)
+            stateSource.removeListener(stateListener);
+        removeCallbacks(trendExpiry);
+        releaseDrawingCaches();
+    }
+
+    /**
+     * Releases the layers, and the glyph atlas. They're rebuilt by the next frame. Also used by
+     * {@link HudSurfaceView}, whose hud view is never attached to a window.
+     */
+    void releaseDrawingCaches() {
+        releaseSharedLayers();
+        releaseGlyphAtlas();
+        releaseComponentLayers();
+    }
+
+    /**
+     * Reads the latest values from the state source, if they changed since the last draw.
+     */
+    private void pullSourceState() {
+        if (stateSource == null || stateSource.getVersion() == drawnVersion)
+            return;
+
+        drawnVersion = stateSource.read(sourceState);
+        pitch = sourceState.pitch;
+        roll = sourceState.roll;
+        yaw = MathUtils.normalizeHeading(sourceState.yaw);
+        airSpeed = sourceState.airSpeed;
+        targetSpeed = sourceState.targetSpeed;
+        verticalSpeed = sourceState.verticalSpeed;
+        altitude = sourceState.altitude;
+        addSpeedSample(sourcePublishTime, sourceState.airSpeed);
+        sampleTimeNanos = NO_SAMPLE_TIME;
     }
 
     private Paint getGroundPaint(){
@@ -394,6 +778,21 @@ public class HudView extends View {
         rollTopOffsetPx = (int) topBarHeight;
         rollSizePxTics = Math.round(rollTopOffsetPx * ROLL_FACTOR_TIC_LENGTH);
         rollPosPxTextYOffset = Math.round(rollSizePxTics * ROLL_FACTOR_TEXT_Y_OFFSET);
+
+        // bounds of the roll scale, relative to the hud center
+        int r = Math.round(attHeightPx / 2 - rollTopOffsetPx);
+        if (r <= 0) {
+            rollScaleLayerBounds.setEmpty();
+            return;
+        }
+
+        int pad = (int) Math.ceil(Math.max(whiteBorder.getStrokeWidth(),
+                Math.max(whiteThickTics.getStrokeWidth(), reticlePaint.getStrokeWidth()))) + 1;
+        int outerRadius = r + rollSizePxTics;
+        int triangleTop = -attHeightPx / 2 + rollTopOffsetPx / 2
+                - Math.round(reticlePaint.getStrokeWidth() / 2);
+        rollScaleLayerBounds.set(-outerRadius - pad, Math.min(-outerRadius, triangleTop) - pad,
+                outerRadius + pad, (int) Math.ceil(-r * Math.cos(Math.PI / 4)) + pad);
     }
 
     private void updateYawVariables() {
@@ -441,17 +840,32 @@ public class HudView extends View {
         canvas.drawPath(arrow, reticlePaint);
 
         // Draw gauge
-        int yPos;
-        float halfPitchScaleWidth = pitchScaleWidth / 2;
-        for (int i = -180; i <= 180; i += 5) {
-            yPos = Math.round(-i * pitchPixPerDegree + pitchOffsetPx);
-            if ((yPos < -rollTriangleBottom) && (yPos > rollTriangleBottom)
-                    && (yPos != pitchOffsetPx)) {
-                if (i % 2 == 0) {
+        // Only the rungs strictly between the roll triangle bottom, and its symmetric are drawn.
+        // Compute that window in degrees, so the ladder only walks the rungs that are visible.
+        if (pitchPixPerDegree > 0) {
+            int yPos;
+            float halfPitchScaleWidth = pitchScaleWidth / 2;
+            int firstRung = (int) Math.floor((double) (pitchOffsetPx + rollTriangleBottom)
+                    / pitchPixPerDegree) + 1;
+            int lastRung = (int) Math.ceil((double) (pitchOffsetPx - rollTriangleBottom)
+                    / pitchPixPerDegree) - 1;
+
+            boolean thinLabels = qualityGovernor.isThinningLabels();
+            TickIterator ticks = commonTicks.reset(Math.max(-PITCH_LADDER_LIMIT, firstRung),
+                    Math.min(PITCH_LADDER_LIMIT, lastRung), 0, pitchOffsetPx, -pitchPixPerDegree,
+                    10, qualityGovernor.isDrawingMinorTicks() ? 5 : 10);
+            while (ticks.next()) {
+                // the horizon line is already drawn
+                if (ticks.getValue() == 0)
+                    continue;
+
+                yPos = Math.round(ticks.getPosition());
+                drawnTickCount++;
+                if (ticks.isMajor()) {
                     canvas.drawLine(-pitchScaleWidth, yPos, -pitchScaleTextXOffset,
                             yPos, whiteThinTics);
-                    canvas.drawText(String.valueOf(i), 0, yPos - pitchTextCenterOffsetPx,
-                            textPaint);
+                    if (!thinLabels || ticks.getLabelId() % 2 == 0)
+                        drawLabel(canvas, ticks.getValue(), 0, yPos - pitchTextCenterOffsetPx);
                     canvas.drawLine(pitchScaleTextXOffset, yPos, pitchScaleWidth,
                             yPos, whiteThinTics);
                 }
@@ -472,15 +886,30 @@ public class HudView extends View {
     }
 
     private void drawRoll(Canvas canvas) {
+        //Until its first layer is built, the roll scale is drawn directly.
+        if (!useSharedLayers || rollScaleLayerBounds.isEmpty() || !rollScaleLayer.draw(canvas,
+                rollScaleLayerBounds.left, rollScaleLayerBounds.top,
+                rollScaleLayerBounds.width(), rollScaleLayerBounds.height())) {
+            drawRollScale(canvas, commonPath, commonRectFloat, whiteBorder, reticlePaint,
+                    whiteThickTics, attHeightPx, rollTopOffsetPx, rollSizePxTics);
+        }
+
+        //current roll angle will be drawn by drawPitch()
+    }
+
+    private static void drawRollScale(Canvas canvas, Path pathCache, RectF rectCache,
+                                      Paint whiteBorder, Paint reticlePaint,
+                                      Paint whiteThickTics, int attHeightPx, int rollTopOffsetPx,
+                                      int rollSizePxTics) {
         int r = Math.round(attHeightPx / 2 - rollTopOffsetPx);
-        commonRectFloat.set(-r, -r, r, r);
+        rectCache.set(-r, -r, r, r);
 
         //Draw the arc
-        canvas.drawArc(commonRectFloat, 225, 90, false, whiteBorder);
+        canvas.drawArc(rectCache, 225, 90, false, whiteBorder);
 
         //Draw center triangle
-        commonPath.reset();
-        Path arrow = commonPath;
+        pathCache.reset();
+        Path arrow = pathCache;
         int tempOffset = Math.round(reticlePaint.getStrokeWidth() / 2);
         arrow.moveTo(0, -attHeightPx / 2 + rollTopOffsetPx - tempOffset);
         arrow.lineTo(-rollTopOffsetPx / 3, -attHeightPx / 2 + rollTopOffsetPx / 2 - tempOffset);
@@ -508,12 +937,30 @@ public class HudView extends View {
 //                canvas.drawText(Math.abs(i) + "", dx, -dy, textPaint);
             }
         }
+    }
 
-        //current roll angle will be drawn by drawPitch()
+    private LayerKey getRollScaleLayerKey() {
+        return new LayerKey("HudView.rollScale", rollScaleLayerBounds.width(),
+                rollScaleLayerBounds.height(), getResources().getDisplayMetrics().density,
+                whiteBorder.getColor(), reticlePaint.getColor(), whiteThickTics.getColor(),
+                whiteBorder.getStrokeWidth(), whiteThickTics.getStrokeWidth(),
+                reticlePaint.getStrokeWidth(), attHeightPx, rollTopOffsetPx, rollSizePxTics);
     }
 
-    private void drawScrollers(Canvas canvas) {
-        //Drawing left scroller
+    /**
+     * Requests the shared layers matching the current size, and theme. They're built in the
+     * background if not cached yet.
+     */
+    private void updateSharedLayers() {
+        if (useSharedLayers && !rollScaleLayerBounds.isEmpty() && getWindowToken() != null)
+            rollScaleLayer.request(getRollScaleLayerKey(), new RollScaleRenderer(this));
+    }
+
+    private void releaseSharedLayers() {
+        rollScaleLayer.release();
+    }
+
+    private void drawSpeedScroller(Canvas canvas) {
         final float textHalfSize = textPaint.getTextSize() / 2;
 
         // Outside box
@@ -540,23 +987,34 @@ public class HudView extends View {
         }
 
         float targetSpdPos = Float.MIN_VALUE;
-        for (int a = start; a <= (airSpeed + SCROLLER_SPEED_RANGE / 2); a += 1) {
-            float lineHeight = commonRectFloat.centerY() - space * (a - (int) airSpeed);
+        final int end = (int) (airSpeed + SCROLLER_SPEED_RANGE / 2);
+        final int targetSpeedTick = (int) targetSpeed;
+        if (targetSpeed != 0 && targetSpeedTick >= start && targetSpeedTick <= end) {
+            targetSpdPos = commonRectFloat.centerY() - space * (targetSpeedTick - (int) airSpeed);
+            canvas.drawLine(commonRectFloat.left, targetSpdPos, commonRectFloat.right,
+                    targetSpdPos, greenPen);
+        }
 
-            if (a == ((int) targetSpeed) && targetSpeed != 0) {
-                canvas.drawLine(commonRectFloat.left, lineHeight, commonRectFloat.right,
-                        lineHeight, greenPen);
-                targetSpdPos = lineHeight;
-            }
-            if (a % 5 == 0) {
-                canvas.drawLine(commonRectFloat.right, lineHeight, commonRectFloat.right
-                        - scrollerTicWidth, lineHeight, whiteThickTics);
-                canvas.drawText(Integer.toString(a), commonRectFloat.right
+        boolean thinLabels = qualityGovernor.isThinningLabels();
+        TickIterator ticks = commonTicks.reset(start, end, (int) airSpeed,
+                commonRectFloat.centerY(), -space, 5, 5);
+        while (ticks.next()) {
+            float lineHeight = ticks.getPosition();
+            canvas.drawLine(commonRectFloat.right, lineHeight, commonRectFloat.right
+                    - scrollerTicWidth, lineHeight, tapeThickTics);
+            drawnTickCount++;
+            if (!thinLabels || ticks.getLabelId() % 2 == 0) {
+                drawLabel(canvas, ticks.getValue(), commonRectFloat.right
                         - scrollerTextHorizontalMargin, lineHeight + textHalfSize
-                        - scrollerTextVerticalMargin, textPaint);
+                        - scrollerTextVerticalMargin);
             }
         }
 
+        if (showSpeedTrend) {
+            drawSpeedTrend(canvas, commonRectFloat.right - (scrollerTicWidth
+                    + scrollerTextHorizontalMargin) / 2);
+        }
+
         // Arrow with current speed
         String actualText = Integer.toString((int) airSpeed);
         int borderWidth = Math.round(whiteBorder.getStrokeWidth());
@@ -583,14 +1041,95 @@ public class HudView extends View {
         }
 
         canvas.drawPath(arrow, reticlePaint);
-        canvas.drawText(actualText, commonRectFloat.right - scrollerTextHorizontalMargin,
-                textPaint.getTextSize() / 2 - scrollerTextVerticalMargin, textPaint);
+        drawLabel(canvas, (int) airSpeed, commonRectFloat.right - scrollerTextHorizontalMargin,
+                textPaint.getTextSize() / 2 - scrollerTextVerticalMargin);
 
         // Reset clipping of Scroller
         canvas.clipRect(-width / 2, -height / 2,
                 width / 2, height / 2, Region.Op.REPLACE);
+    }
+
+    /**
+     * Draws the speed trend vector, from the speed arrow to the speed predicted after the trend
+     * time. Hidden while the predicted speed is under the arrow.
+     */
+    private void drawSpeedTrend(Canvas canvas, float x) {
+        float trendLength = getSpeedTrendLength();
+        if (Math.abs(trendLength) <= scrollerArrowHeight / 2)
+            return;
+
+        trendLength = Math.max(-scrollerHeight / 2, Math.min(scrollerHeight / 2, trendLength));
+        final float direction = Math.signum(trendLength);
+        final float headSize = scrollerTicWidth / 3;
+
+        canvas.drawLine(x, -direction * scrollerArrowHeight / 2, x, -trendLength, trendPaint);
+        canvas.drawLine(x, -trendLength, x - headSize, -trendLength + direction * headSize,
+                trendPaint);
+        canvas.drawLine(x, -trendLength, x + headSize, -trendLength + direction * headSize,
+                trendPaint);
+    }
+
+    /**
+     * Adds an air speed sample to the trend history, and schedules a redraw for when it leaves
+     * the trend window, so the trend is hidden once the updates stop.
+     *
+     * @param timeMs time the speed was set, or published, on the
+     *               {@link SystemClock#uptimeMillis()} clock.
+     */
+    private void addSpeedSample(long timeMs, float speed) {
+        //Setters, and the state source stamp their samples on different threads.
+        timeMs = Math.max(timeMs, speedHistory.getLatestTime());
+        speedHistory.add(timeMs, speed);
+
+        if (showSpeedTrend && getWindowToken() != null) {
+            removeCallbacks(trendExpiry);
+            postDelayed(trendExpiry, timeMs + TREND_WINDOW_MS + 1 - SystemClock.uptimeMillis());
+        }
+    }
+
+    /**
+     * Sets the values drawn by the next frames, for views drawing the hud on their own thread.
+     * Doesn't invalidate the view.
+     *
+     * @param speedTimeMs time the air speed was set, on the {@link SystemClock#uptimeMillis()}
+     *                    clock, or {@link #NO_SAMPLE_TIME} if it was already added by a previous
+     *                    call. Keeps redrawn frames from adding trend samples.
+     */
+    void setDrawnState(HudState state, long speedTimeMs) {
+        pitch = state.pitch;
+        roll = state.roll;
+        yaw = MathUtils.normalizeHeading(state.yaw);
+        airSpeed = state.airSpeed;
+        targetSpeed = state.targetSpeed;
+        verticalSpeed = state.verticalSpeed;
+        altitude = state.altitude;
+        if (speedTimeMs != NO_SAMPLE_TIME)
+            addSpeedSample(speedTimeMs, state.airSpeed);
+    }
+
+    /**
+     * @return the time the speed trend leaves its window, on the
+     * {@link SystemClock#uptimeMillis()} clock, or {@link #NO_SAMPLE_TIME} if it's not shown.
+     */
+    long getSpeedTrendExpiryTime() {
+        if (!showSpeedTrend || speedHistory.size() == 0)
+            return NO_SAMPLE_TIME;
+        return speedHistory.getLatestTime() + TREND_WINDOW_MS + 1;
+    }
+
+    /**
+     * @return the speed trend vector length, in pixels, or 0 if the speed wasn't updated during
+     * the last trend window.
+     */
+    private float getSpeedTrendLength() {
+        if (SystemClock.uptimeMillis() - speedHistory.getLatestTime() > TREND_WINDOW_MS)
+            return 0;
+        return speedHistory.getRate() * trendTime * scrollerHeight / SCROLLER_SPEED_RANGE;
+    }
+
+    private void drawVsiScroller(Canvas canvas) {
+        int borderWidth = Math.round(whiteBorder.getStrokeWidth());
 
-        /* Drawing right scroller */
         // Outside box
         commonRectFloat.set(width / 2 - scrollerWidth, -scrollerHeight / 2, width / 2,
                 scrollerHeight / 2);
@@ -624,8 +1163,9 @@ public class HudView extends View {
         for (int a = 1; a < SCROLLER_VSI_RANGE; a++) { // draw ticks
             float lineHeight = commonRectFloat.top + linespace * a;
             canvas.drawLine(commonRectFloat.left - vsi_width, lineHeight,
-                    commonRectFloat.left - vsi_width + vsi_width / 3, lineHeight, whiteThickTics);
+                    commonRectFloat.left - vsi_width + vsi_width / 3, lineHeight, tapeThickTics);
         }
+        drawnTickCount += SCROLLER_VSI_RANGE - 1;
 
         // Reset clipping of Scroller
         canvas.clipRect(-width / 2, -height / 2, width / 2, height / 2, Region.Op.REPLACE);
@@ -635,46 +1175,168 @@ public class HudView extends View {
                 - vsi_width - borderWidth, 0, reticlePaint);
     }
 
+    /**
+     * Composites the parts of the hud from their layers, rendering again the layers whose values
+     * changed since the last frame.
+     */
+    private void drawComponentLayers(Canvas canvas) {
+        final int qualityLevel = qualityGovernor.getLevel();
+        if (qualityLevel != layersQualityLevel) {
+            layersQualityLevel = qualityLevel;
+            invalidateComponentLayers();
+        }
+        updatedLayerCount = 0;
+
+        // the pitch section covers the whole attitude layer, roll included
+        HudTrace.beginSection(TRACE_DRAW_PITCH);
+        drawComponentLayer(canvas, attitudeLayer, (int) (pitch * pitchPixPerDegree), (int) roll,
+                0);
+        HudTrace.endSection();
+
+        HudTrace.beginSection(TRACE_DRAW_YAW);
+        drawComponentLayer(canvas, yawLayer, yaw, 0, 0);
+        HudTrace.endSection();
+
+        HudTrace.beginSection(TRACE_DRAW_RETICLE);
+        drawReticle(canvas);
+        HudTrace.endSection();
+
+        HudTrace.beginSection(TRACE_DRAW_SCROLLERS);
+        drawComponentLayer(canvas, speedLayer, airSpeed, targetSpeed,
+                showSpeedTrend ? Math.round(getSpeedTrendLength()) : 0);
+        drawComponentLayer(canvas, vsiLayer, verticalSpeed, 0, 0);
+        HudTrace.endSection();
+
+        HudTrace.setCounter(TRACE_LAYER_UPDATE_COUNT, updatedLayerCount);
+    }
+
+    /**
+     * Draws a component from its layer, rendering the layer first if its values changed.
+     *
+     * @param canvas hud canvas, translated to the hud center.
+     * @param first  first value the component depends on.
+     * @param second second value the component depends on.
+     * @param third  third value the component depends on.
+     */
+    private void drawComponentLayer(Canvas canvas, ComponentLayer layer, double first,
+                                    double second, double third) {
+        if (layer.bounds.isEmpty()) {
+            drawComponent(canvas, layer.component);
+            return;
+        }
+
+        final float centerX = width / 2;
+        final float centerY = (height + topBarHeight) / 2;
+        if (layer.needsUpdate(first, second, third)) {
+            drawComponent(layer.beginRender(centerX, centerY), layer.component);
+            layer.endRender();
+            updatedLayerCount++;
+        }
+        layer.draw(canvas, centerX, centerY);
+    }
+
+    private void drawComponent(Canvas canvas, int component) {
+        switch (component) {
+            case COMPONENT_ATTITUDE:
+                drawPitch(canvas);
+                drawRoll(canvas);
+                break;
+
+            case COMPONENT_YAW:
+                drawYaw(canvas);
+                break;
+
+            case COMPONENT_SPEED:
+                drawSpeedScroller(canvas);
+                break;
+
+            case COMPONENT_VSI:
+                drawVsiScroller(canvas);
+                break;
+        }
+    }
+
+    /**
+     * Computes the bounds of the component layers, in view coordinates.
+     */
+    private void updateComponentLayers() {
+        final int centerX = width / 2;
+        final float centerY = (height + topBarHeight) / 2;
+        final int pad = (int) Math.ceil(Math.max(reticlePaint.getStrokeWidth(), Math.max
+                (whiteBorder.getStrokeWidth(), greenPen.getStrokeWidth()))) + 2;
+
+        attitudeLayer.setBounds(0, 0, width, height, width, height);
+
+        final int yawBottom = -attHeightPx / 2;
+        yawLayer.setBounds(0, 0, width, (int) Math.ceil(centerY + yawBottom
+                + yawSizePxCenterLineOverRun) + pad, width, height);
+
+        // the speed tape is clipped to its box
+        final int speedLeft = centerX - width / 2;
+        speedLayer.setBounds(speedLeft - pad, (int) Math.floor(centerY - scrollerHeight / 2) - pad,
+                (int) Math.ceil(speedLeft + scrollerWidth) + pad,
+                (int) Math.ceil(centerY + scrollerHeight / 2) + pad, width, height);
+
+        // the vsi fill isn't clipped, so the layer spans the whole height
+        final float vsiLeft = centerX + width / 2 - scrollerWidth;
+        final int borderWidth = Math.round(whiteBorder.getStrokeWidth());
+        vsiLayer.setBounds((int) Math.floor(vsiLeft - scrollerWidth / 4 - borderWidth) - pad, 0,
+                (int) Math.ceil(vsiLeft) + borderWidth + pad, height, width, height);
+    }
+
+    private void invalidateComponentLayers() {
+        attitudeLayer.invalidate();
+        yawLayer.invalidate();
+        speedLayer.invalidate();
+        vsiLayer.invalidate();
+    }
+
+    private void releaseComponentLayers() {
+        attitudeLayer.release();
+        yawLayer.release();
+        speedLayer.release();
+        vsiLayer.release();
+    }
+
     private void drawYaw(Canvas canvas) {
         int yawBottom = -attHeightPx / 2;
         canvas.drawRect(-width / 2, yawBottom - topBarHeight, width / 2, yawBottom, topBarBgPaint);
         canvas.drawLine(-width / 2, yawBottom, width / 2, yawBottom, whiteBorder);
 
-        double centerDegrees = yaw;
-
-        double mod = yaw % 5;
-        for (double angle = (centerDegrees - mod) - YAW_DEGREES_TO_SHOW / 2.0;
-             angle <= (centerDegrees - mod) + YAW_DEGREES_TO_SHOW / 2.0; angle += 5) {
+        boolean thinLabels = qualityGovernor.isThinningLabels();
+        TickIterator ticks = commonTicks.resetCentered((float) yaw, YAW_DEGREES_TO_SHOW, 0,
+                (float) yawDegreesPerPixel, 45, qualityGovernor.isDrawingMinorTicks() ? 5 : 15);
+        while (ticks.next()) {
 
             // protect from wraparound
-            double workAngle = (angle + 360.0);
-            while (workAngle >= 360)
-                workAngle -= 360.0;
+            int workAngle = MathUtils.normalizeHeading(ticks.getValue());
 
             // need to draw "angle"
             // How many pixels from center should it be?
-            int distanceToCenter = (int) ((angle - centerDegrees) * yawDegreesPerPixel);
+            int distanceToCenter = (int) ticks.getPosition();
+            drawnTickCount++;
 
-            if (workAngle % 45 == 0) {
-                String compass[] = {"N", "NE", "E", "SE", "S", "SW", "W", "NW"};
-                int index = (int) workAngle / 45;
+            String compassLabel = HeadingLabels.getCompassLabel(workAngle);
+            if (compassLabel != null) {
                 canvas.drawLine(distanceToCenter, yawBottom
                         - yawSizePxTicsSmall, distanceToCenter, yawBottom,
-                        whiteThinTics);
-                canvas.drawText(compass[index], distanceToCenter, yawBottom
-                        - yawYPosPxText, textPaint);
+                        tapeThinTics);
+                drawLabel(canvas, compassLabel, distanceToCenter, yawBottom
+                        - yawYPosPxText);
             }
-            else if (workAngle % 15 == 0) {
+            else if (HeadingLabels.isDegreeLabel(workAngle)) {
                 canvas.drawLine(distanceToCenter,
                         yawBottom - yawSizePxTicsTall, distanceToCenter,
-                        yawBottom, whiteThinTics);
-                canvas.drawText((int) (workAngle) + "", distanceToCenter,
-                        yawBottom - yawYPosPxTextNumbers, textPaint);
+                        yawBottom, tapeThinTics);
+                if (!thinLabels) {
+                    drawLabel(canvas, workAngle, distanceToCenter,
+                            yawBottom - yawYPosPxTextNumbers);
+                }
             }
             else {
                 canvas.drawLine(distanceToCenter, yawBottom
                         - yawSizePxTicsSmall, distanceToCenter, yawBottom,
-                        whiteThinTics);
+                        tapeThinTics);
             }
         }
 
@@ -683,6 +1345,29 @@ public class HudView extends View {
                 reticlePaint);
     }
 
+    private void drawLabel(Canvas canvas, String label, float x, float y) {
+        drawnLabelCount++;
+        if (glyphAtlas != null)
+            glyphAtlas.drawText(canvas, label, x, y, textPaint.getTextAlign());
+        else
+            canvas.drawText(label, x, y, textPaint);
+    }
+
+    private void drawLabel(Canvas canvas, int label, float x, float y) {
+        drawnLabelCount++;
+        if (glyphAtlas != null)
+            glyphAtlas.drawInt(canvas, label, x, y, textPaint.getTextAlign());
+        else
+            canvas.drawText(Integer.toString(label), x, y, textPaint);
+    }
+
+    private void releaseGlyphAtlas() {
+        if (glyphAtlas != null) {
+            glyphAtlas.release();
+            glyphAtlas = null;
+        }
+    }
+
     /*
     Properties getters, and setters
      */
@@ -692,36 +1377,146 @@ public class HudView extends View {
 
     public void setEnabled(boolean enabled) {
         this.enabled = enabled;
+        invalidateComponentLayers();
         invalidate();
     }
 
     public void setPitch(float pitch){
         this.pitch = pitch;
+        sampleTimeNanos = NO_SAMPLE_TIME;
         invalidate();
     }
 
     public void setRoll(float roll){
         this.roll = roll;
+        sampleTimeNanos = NO_SAMPLE_TIME;
         invalidate();
     }
 
     public void setYaw(float yaw){
-        this.yaw = yaw;
+        this.yaw = MathUtils.normalizeHeading(yaw);
+        sampleTimeNanos = NO_SAMPLE_TIME;
         invalidate();
     }
 
+    /**
+     * Updates the attitude values at once, with a single invalidation.
+     */
+    public void setAttitude(float pitch, float roll, float yaw){
+        this.pitch = pitch;
+        this.roll = roll;
+        this.yaw = MathUtils.normalizeHeading(yaw);
+        sampleTimeNanos = NO_SAMPLE_TIME;
+        invalidate();
+    }
+
+    /**
+     * Updates the speed, vertical speed, and altitude at once, with a single invalidation.
+     */
+    public void setAirData(float speed, float verticalSpeed, float altitude){
+        this.airSpeed = speed;
+        this.verticalSpeed = verticalSpeed;
+        this.altitude = altitude;
+        addSpeedSample(SystemClock.uptimeMillis(), speed);
+        sampleTimeNanos = NO_SAMPLE_TIME;
+        invalidate();
+    }
+
+    /**
+     * Updates all the flight values at once, with a single invalidation.
+     */
+    public void setHudState(float pitch, float roll, float yaw, float speed, float verticalSpeed,
+                            float altitude){
+        this.pitch = pitch;
+        this.roll = roll;
+        this.yaw = MathUtils.normalizeHeading(yaw);
+        this.airSpeed = speed;
+        this.verticalSpeed = verticalSpeed;
+        this.altitude = altitude;
+        addSpeedSample(SystemClock.uptimeMillis(), speed);
+        sampleTimeNanos = NO_SAMPLE_TIME;
+        invalidate();
+    }
+
+    /**
+     * Updates all the flight values, including the target speed, at once, with a single
+     * invalidation.
+     */
+    public void setHudState(HudState state){
+        this.targetSpeed = state.targetSpeed;
+        setHudState(state.pitch, state.roll, state.yaw, state.airSpeed, state.verticalSpeed,
+                state.altitude);
+    }
+
+    /**
+     * Updates all the flight values at once, and records their staleness in the latency
+     * monitor.
+     *
+     * @param sampleTimeNanos time the values were received, on the {@link System#nanoTime()}
+     *                        clock.
+     * @see #getLatencyMonitor()
+     */
+    public void setHudState(float pitch, float roll, float yaw, float speed, float verticalSpeed,
+                            float altitude, long sampleTimeNanos){
+        latencyMonitor.onSampleReceived(sampleTimeNanos);
+        setHudState(pitch, roll, yaw, speed, verticalSpeed, altitude);
+        this.sampleTimeNanos = sampleTimeNanos;
+    }
+
+    /**
+     * Sets the time of the sample shown by the next frames, for views drawing the hud on their
+     * own thread.
+     */
+    void setDisplayedSampleTime(long sampleTimeNanos) {
+        this.sampleTimeNanos = sampleTimeNanos;
+    }
+
+    /**
+     * @return the sample age, and ingestion jitter histograms of the values set with a
+     * timestamp.
+     */
+    public LatencyMonitor getLatencyMonitor() {
+        return latencyMonitor;
+    }
+
     public void setVerticalSpeed(float verticalSpeed){
         this.verticalSpeed = verticalSpeed;
+        sampleTimeNanos = NO_SAMPLE_TIME;
         invalidate();
     }
 
     public void setSpeed(float speed){
         this.airSpeed = speed;
+        addSpeedSample(SystemClock.uptimeMillis(), speed);
+        sampleTimeNanos = NO_SAMPLE_TIME;
         invalidate();
     }
 
     public void setTargetSpeed(float targetSpeed){
         this.targetSpeed = targetSpeed;
+        sampleTimeNanos = NO_SAMPLE_TIME;
+        invalidate();
+    }
+
+    public HudStateSource getStateSource() {
+        return stateSource;
+    }
+
+    /**
+     * Reads the flight values from the given shared state at draw time, instead of through the
+     * setters. Several views can share the same source, e.g: to show the same vehicle on
+     * multiple displays.
+     *
+     * @param source shared state, or null to detach from the current one.
+     */
+    public void setStateSource(HudStateSource source) {
+        if (stateSource != null)
+            stateSource.removeListener(stateListener);
+
+        stateSource = source;
+        drawnVersion = 0;
+        if (source != null && getWindowToken() != null)
+            source.addListener(stateListener);
         invalidate();
     }
 
@@ -731,6 +1526,7 @@ public class HudView extends View {
 
     public void setGroundColor(int color) {
         groundPaint.setColor(color);
+        invalidateComponentLayers();
         invalidate();
     }
 
@@ -740,6 +1536,7 @@ public class HudView extends View {
 
     public void setSkyColor(int color) {
         skyPaint.setColor(color);
+        invalidateComponentLayers();
         invalidate();
     }
 
@@ -749,6 +1546,8 @@ public class HudView extends View {
 
     public void setReticleColor(int color) {
         reticlePaint.setColor(color);
+        updateSharedLayers();
+        invalidateComponentLayers();
         invalidate();
     }
 
@@ -767,6 +1566,7 @@ public class HudView extends View {
 
     public void setTextColor(int color) {
         textPaint.setColor(color);
+        invalidateComponentLayers();
         invalidate();
     }
 
@@ -776,6 +1576,7 @@ public class HudView extends View {
 
     public void setTextSize(float textSize) {
         textPaint.setTextSize(textSize);
+        invalidateComponentLayers();
         invalidate();
     }
 
@@ -785,12 +1586,220 @@ public class HudView extends View {
 
     public void setYawBgColor(int color) {
         topBarBgPaint.setColor(color);
+        invalidateComponentLayers();
+        invalidate();
+    }
+
+    public boolean isUsingSharedLayers() {
+        return useSharedLayers;
+    }
+
+    public void setUseSharedLayers(boolean useSharedLayers) {
+        this.useSharedLayers = useSharedLayers;
+        if (useSharedLayers)
+            updateSharedLayers();
+        else
+            releaseSharedLayers();
+        attitudeLayer.invalidate();
+        invalidate();
+    }
+
+    public boolean isUsingGlyphAtlas() {
+        return useGlyphAtlas;
+    }
+
+    public void setUseGlyphAtlas(boolean useGlyphAtlas) {
+        this.useGlyphAtlas = useGlyphAtlas;
+        if (!useGlyphAtlas)
+            releaseGlyphAtlas();
+        invalidateComponentLayers();
+        invalidate();
+    }
+
+    public boolean isShowingSpeedTrend() {
+        return showSpeedTrend;
+    }
+
+    public void setShowSpeedTrend(boolean showSpeedTrend) {
+        this.showSpeedTrend = showSpeedTrend;
+        speedLayer.invalidate();
         invalidate();
     }
 
+    public float getTrendTime() {
+        return trendTime;
+    }
+
+    /**
+     * @param trendTime time, in seconds, after which the speed trend vector predicts the speed.
+     */
+    public void setTrendTime(float trendTime) {
+        if (trendTime <= 0)
+            throw new IllegalArgumentException("Trend time should be positive.");
+
+        this.trendTime = trendTime;
+        invalidate();
+    }
+
+    public int getTrendColor() {
+        return trendPaint.getColor();
+    }
+
+    public void setTrendColor(int trendColor) {
+        trendPaint.setColor(trendColor);
+        speedLayer.invalidate();
+        invalidate();
+    }
+
+    /**
+     * @return the recent speeds, with their rate of change, and min, and max over the trend
+     * window.
+     */
+    public ValueHistory getSpeedHistory() {
+        return speedHistory;
+    }
+
+    public boolean isUsingComponentLayers() {
+        return useComponentLayers;
+    }
+
+    public void setUseComponentLayers(boolean useComponentLayers) {
+        this.useComponentLayers = useComponentLayers;
+        if (useComponentLayers)
+            invalidateComponentLayers();
+        else
+            releaseComponentLayers();
+        invalidate();
+    }
+
+    public boolean isAdaptiveQuality() {
+        return qualityGovernor.isEnabled();
+    }
+
+    public void setAdaptiveQuality(boolean adaptiveQuality) {
+        qualityGovernor.setEnabled(adaptiveQuality);
+        invalidate();
+    }
+
+    public float getFrameBudget() {
+        return qualityGovernor.getFrameBudget();
+    }
+
+    public void setFrameBudget(float budgetMs) {
+        qualityGovernor.setFrameBudget(budgetMs);
+    }
+
+    /**
+     * @return the current render quality level, see {@link QualityGovernor}.
+     */
+    public int getQualityLevel() {
+        return qualityGovernor.getLevel();
+    }
+
     public void setAltitude(float altitude){
         this.altitude = altitude;
+        sampleTimeNanos = NO_SAMPLE_TIME;
         invalidate();
     }
 
+
+    /**
+     * Retained rendering of one part of the hud, rendered again only when the values it depends
+     * on change.
+     */
+    private static class ComponentLayer {
+        final int component;
+
+        /**
+         * Layer bounds, in view coordinates.
+         */
+        final Rect bounds = new Rect();
+        final Canvas canvas = new Canvas();
+        Bitmap bitmap;
+        boolean dirty = true;
+
+        /*
+        Values the layer was last rendered with.
+         */
+        double firstValue;
+        double secondValue;
+        double thirdValue;
+
+        ComponentLayer(int component) {
+            this.component = component;
+        }
+
+        /**
+         * Sets the layer bounds, clipped to the view.
+         */
+        void setBounds(int left, int top, int right, int bottom, int viewWidth, int viewHeight) {
+            bounds.set(left, top, right, bottom);
+            if (!bounds.intersect(0, 0, viewWidth, viewHeight))
+                bounds.setEmpty();
+
+            if (bitmap != null && (bitmap.getWidth() != bounds.width()
+                    || bitmap.getHeight() != bounds.height()))
+                release();
+            dirty = true;
+        }
+
+        /**
+         * @return true if the layer needs to be rendered for the given values.
+         */
+        boolean needsUpdate(double first, double second, double third) {
+            if (!dirty && bitmap != null && first == firstValue && second == secondValue
+                    && third == thirdValue)
+                return false;
+
+            dirty = false;
+            firstValue = first;
+            secondValue = second;
+            thirdValue = third;
+            return true;
+        }
+
+        /**
+         * Clears the layer.
+         *
+         * @return the layer canvas, translated to the hud center.
+         */
+        Canvas beginRender(float centerX, float centerY) {
+            if (bitmap == null) {
+                bitmap = Bitmap.createBitmap(bounds.width(), bounds.height(),
+                        Bitmap.Config.ARGB_8888);
+                canvas.setBitmap(bitmap);
+            }
+            else {
+                bitmap.eraseColor(0);
+            }
+
+            canvas.save();
+            canvas.translate(centerX - bounds.left, centerY - bounds.top);
+            return canvas;
+        }
+
+        void endRender() {
+            canvas.restore();
+        }
+
+        /**
+         * @param target hud canvas, translated to the hud center.
+         */
+        void draw(Canvas target, float centerX, float centerY) {
+            target.drawBitmap(bitmap, bounds.left - centerX, bounds.top - centerY, null);
+        }
+
+        void invalidate() {
+            dirty = true;
+        }
+
+        void release() {
+            if (bitmap != null) {
+                canvas.setBitmap(null);
+                bitmap.recycle();
+                bitmap = null;
+            }
+            dirty = true;
+        }
+    }
 }
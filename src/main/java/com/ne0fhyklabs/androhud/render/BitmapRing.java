@@ -0,0 +1,186 @@
+package com.ne0fhyklabs.androhud.render;
+
+import android.graphics.Bitmap;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Bounded pool of reusable frame bitmaps, shared between a producer rendering frames, and a
+ * consumer (encoder, file writer, ...) taking them out.
+ * All the bitmaps are allocated upfront. Frames cycle between the free, and the ready queues
+ * without any per frame allocation.
+ * Frames handed back out of turn, e.g: released twice, or published without being obtained, are
+ * rejected with an {@link IllegalStateException}, as they would end up twice in the queues.
+ * This class is thread safe.
+ */
+public class BitmapRing {
+
+    /**
+     * A frame from the ring. Must be handed back through {@link #release(Frame)} once consumed.
+     */
+    public static final class Frame {
+        private final BitmapRing mRing;
+        private final Bitmap mBitmap;
+        private long mTimestamp;
+        private long mSequence;
+
+        /**
+         * One of the STATE_* constants.
+         */
+        private final AtomicInteger mState = new AtomicInteger(STATE_FREE);
+
+        Frame(BitmapRing ring, Bitmap bitmap) {
+            mRing = ring;
+            mBitmap = bitmap;
+        }
+
+        public Bitmap getBitmap() {
+            return mBitmap;
+        }
+
+        /**
+         * @return time in milliseconds of the hud state rendered in this frame.
+         */
+        public long getTimestamp() {
+            return mTimestamp;
+        }
+
+        /**
+         * @return index of this frame in the produced sequence. Gaps indicate dropped frames.
+         */
+        public long getSequence() {
+            return mSequence;
+        }
+    }
+
+    /*
+    Frames' lifecycle: free -> obtained by the producer -> ready (published) -> consumed -> free.
+    An obtained frame can also be discarded back to free.
+     */
+    private static final int STATE_FREE = 0;
+    private static final int STATE_OBTAINED = 1;
+    private static final int STATE_READY = 2;
+    private static final int STATE_CONSUMED = 3;
+
+    private static final String[] STATE_NAMES = {"free", "obtained", "ready", "consumed"};
+
+    private final Frame[] mFrames;
+    private final ArrayBlockingQueue<Frame> mFreeFrames;
+    private final ArrayBlockingQueue<Frame> mReadyFrames;
+
+    public BitmapRing(int capacity, int width, int height, Bitmap.Config config) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Ring capacity should be positive.");
+        }
+
+        mFrames = new Frame[capacity];
+        mFreeFrames = new ArrayBlockingQueue<Frame>(capacity);
+        mReadyFrames = new ArrayBlockingQueue<Frame>(capacity);
+        for (int i = 0; i < capacity; i++) {
+            mFrames[i] = new Frame(this, Bitmap.createBitmap(width, height, config));
+            mFreeFrames.add(mFrames[i]);
+        }
+    }
+
+    public int getCapacity() {
+        return mFrames.length;
+    }
+
+    /**
+     * Producer side: returns a free frame to render into, or null if all the frames are waiting
+     * to be consumed.
+     */
+    public Frame obtain() {
+        final Frame frame = mFreeFrames.poll();
+        if (frame != null)
+            frame.mState.set(STATE_OBTAINED);
+        return frame;
+    }
+
+    /**
+     * Producer side: hands a rendered frame to the consumer.
+     */
+    public void publish(Frame frame, long timestamp, long sequence) {
+        checkOwned(frame);
+        frame.mTimestamp = timestamp;
+        frame.mSequence = sequence;
+        moveFrame(frame, STATE_OBTAINED, STATE_READY, "published");
+        mReadyFrames.add(frame);
+    }
+
+    /**
+     * Producer side: returns an obtained frame without publishing it.
+     */
+    public void discard(Frame frame) {
+        checkOwned(frame);
+        moveFrame(frame, STATE_OBTAINED, STATE_FREE, "discarded");
+        mFreeFrames.add(frame);
+    }
+
+    /**
+     * Consumer side: returns the oldest rendered frame, or null if none is ready.
+     */
+    public Frame poll() {
+        return consume(mReadyFrames.poll());
+    }
+
+    /**
+     * Consumer side: waits up to the given timeout for a rendered frame.
+     */
+    public Frame poll(long timeout, TimeUnit unit) throws InterruptedException {
+        return consume(mReadyFrames.poll(timeout, unit));
+    }
+
+    /**
+     * Consumer side: waits for a rendered frame.
+     */
+    public Frame take() throws InterruptedException {
+        return consume(mReadyFrames.take());
+    }
+
+    /**
+     * Consumer side: hands a consumed frame back to the producer.
+     *
+     * @throws IllegalStateException if the frame was already released, or wasn't taken out of
+     *                               the ring.
+     */
+    public void release(Frame frame) {
+        checkOwned(frame);
+        moveFrame(frame, STATE_CONSUMED, STATE_FREE, "released");
+        mFreeFrames.add(frame);
+    }
+
+    private static Frame consume(Frame frame) {
+        if (frame != null)
+            frame.mState.set(STATE_CONSUMED);
+        return frame;
+    }
+
+    private void checkOwned(Frame frame) {
+        if (frame.mRing != this) {
+            throw new IllegalArgumentException("Frame " + frame.mSequence + " belongs to another "
+                    + "ring.");
+        }
+    }
+
+    private static void moveFrame(Frame frame, int from, int to, String action) {
+        if (!frame.mState.compareAndSet(from, to)) {
+            throw new IllegalStateException("Frame " + frame.mSequence + " can't be " + action
+                    + " while " + STATE_NAMES[frame.mState.get()] + " (expected " +
+                    STATE_NAMES[from] + ").");
+        }
+    }
+
+    /**
+     * Recycles all the bitmaps. The ring must no longer be used afterwards.
+     */
+    public void recycle() {
+        mFreeFrames.clear();
+        mReadyFrames.clear();
+        for (Frame frame : mFrames) {
+            frame.mBitmap.recycle();
+        }
+    }
+}
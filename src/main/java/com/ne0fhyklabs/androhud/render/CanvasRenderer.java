@@ -0,0 +1,164 @@
+package com.ne0fhyklabs.androhud.render;
+
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Path;
+import android.graphics.RectF;
+
+/**
+ * {@link HudRenderer} backend drawing into an android {@link Canvas}.
+ * An instance is meant to be allocated once, and pointed to the canvas of each frame with
+ * {@link #setCanvas(Canvas, int, int)}.
+ */
+public class CanvasRenderer implements HudRenderer {
+
+    private Canvas mCanvas;
+    private int mWidth;
+    private int mHeight;
+
+    /*
+    Allocated at startup, and reused to avoid unnecessary memory allocation at runtime.
+     */
+    private final Paint mFillPaint;
+    private final Paint mStrokePaint;
+    private final Paint mTextPaint;
+    private final Path mPath = new Path();
+    private final RectF mRect = new RectF();
+
+    public CanvasRenderer() {
+        mFillPaint = new Paint();
+        mFillPaint.setAntiAlias(true);
+        mFillPaint.setStyle(Paint.Style.FILL);
+
+        mStrokePaint = new Paint();
+        mStrokePaint.setAntiAlias(true);
+        mStrokePaint.setStyle(Paint.Style.STROKE);
+
+        mTextPaint = new Paint();
+        mTextPaint.setAntiAlias(true);
+    }
+
+    /**
+     * Sets the canvas the following calls draw into.
+     *
+     * @param canvas canvas to draw into.
+     * @param width  width of the drawing surface.
+     * @param height height of the drawing surface.
+     * @return this renderer.
+     */
+    public CanvasRenderer setCanvas(Canvas canvas, int width, int height) {
+        mCanvas = canvas;
+        mWidth = width;
+        mHeight = height;
+        return this;
+    }
+
+    public Canvas getCanvas() {
+        return mCanvas;
+    }
+
+    @Override
+    public int getWidth() {
+        return mWidth;
+    }
+
+    @Override
+    public int getHeight() {
+        return mHeight;
+    }
+
+    @Override
+    public void save() {
+        mCanvas.save();
+    }
+
+    @Override
+    public void restore() {
+        mCanvas.restore();
+    }
+
+    @Override
+    public void translate(float dx, float dy) {
+        mCanvas.translate(dx, dy);
+    }
+
+    @Override
+    public void rotate(float degrees) {
+        mCanvas.rotate(degrees);
+    }
+
+    @Override
+    public void clipRect(float left, float top, float right, float bottom) {
+        mCanvas.clipRect(left, top, right, bottom);
+    }
+
+    @Override
+    public void fillRect(float left, float top, float right, float bottom, int color) {
+        mFillPaint.setColor(color);
+        mCanvas.drawRect(left, top, right, bottom, mFillPaint);
+    }
+
+    @Override
+    public void strokeRect(float left, float top, float right, float bottom, int color,
+                           float strokeWidth) {
+        mCanvas.drawRect(left, top, right, bottom, stroke(color, strokeWidth));
+    }
+
+    @Override
+    public void drawLine(float startX, float startY, float stopX, float stopY, int color,
+                         float strokeWidth) {
+        mCanvas.drawLine(startX, startY, stopX, stopY, stroke(color, strokeWidth));
+    }
+
+    @Override
+    public void strokeCircle(float centerX, float centerY, float radius, int color,
+                             float strokeWidth) {
+        mCanvas.drawCircle(centerX, centerY, radius, stroke(color, strokeWidth));
+    }
+
+    @Override
+    public void strokeArc(float left, float top, float right, float bottom, float startAngle,
+                          float sweepAngle, int color, float strokeWidth) {
+        mRect.set(left, top, right, bottom);
+        mCanvas.drawArc(mRect, startAngle, sweepAngle, false, stroke(color, strokeWidth));
+    }
+
+    @Override
+    public void fillPolygon(float[] points, int pointsCount, int color) {
+        mFillPaint.setColor(color);
+        mCanvas.drawPath(polygon(points, pointsCount), mFillPaint);
+    }
+
+    @Override
+    public void strokePolygon(float[] points, int pointsCount, int color, float strokeWidth) {
+        mCanvas.drawPath(polygon(points, pointsCount), stroke(color, strokeWidth));
+    }
+
+    @Override
+    public void drawText(String text, float x, float y, int color, float textSize, int align) {
+        mTextPaint.setColor(color);
+        mTextPaint.setTextSize(textSize);
+        mTextPaint.setTextAlign(align == ALIGN_LEFT
+                ? Paint.Align.LEFT
+                : align == ALIGN_RIGHT ? Paint.Align.RIGHT : Paint.Align.CENTER);
+        mCanvas.drawText(text, x, y, mTextPaint);
+    }
+
+    private Paint stroke(int color, float strokeWidth) {
+        mStrokePaint.setColor(color);
+        mStrokePaint.setStrokeWidth(strokeWidth);
+        return mStrokePaint;
+    }
+
+    private Path polygon(float[] points, int pointsCount) {
+        mPath.reset();
+        if (pointsCount > 0) {
+            mPath.moveTo(points[0], points[1]);
+            for (int i = 1; i < pointsCount; i++) {
+                mPath.lineTo(points[2 * i], points[2 * i + 1]);
+            }
+            mPath.close();
+        }
+        return mPath;
+    }
+}
@@ -0,0 +1,142 @@
+package com.ne0fhyklabs.androhud.render;
+
+/**
+ * Picks a widget's level of detail from its size, e.g: for hud thumbnails in a list.
+ * The level depends on the widget's extent along its scale, measured in text sizes: below each
+ * threshold, labels would overlap, or ticks would blur together, so small widgets drop their tick
+ * labels first, then their minor ticks, then their secondary elements, and cost less to draw.
+ * Levels are cumulative: each level keeps the simplifications of the levels below it.
+ */
+public class DetailLevel {
+
+    /**
+     * Everything is drawn.
+     */
+    public static final int LEVEL_FULL = 0;
+
+    /**
+     * Tick labels are skipped. The widget's value stays labeled.
+     */
+    public static final int LEVEL_NO_LABELS = 1;
+
+    /**
+     * Minor ticks are skipped.
+     */
+    public static final int LEVEL_NO_MINOR_TICKS = 2;
+
+    /**
+     * Secondary elements are skipped, only the widget's value, and its frame are drawn.
+     */
+    public static final int LEVEL_PRIMARY_ONLY = 3;
+
+    private boolean mEnabled = true;
+
+    /*
+    Minimum extent for each detail, in text sizes.
+     */
+    private float mLabelsMinSize;
+    private float mMinorTicksMinSize;
+    private float mSecondaryMinSize;
+
+    /*
+    Last measured size.
+     */
+    private float mExtent;
+    private float mTextSize;
+
+    private int mLevel = LEVEL_FULL;
+
+    /**
+     * @param labelsMinSize     minimum extent, in text sizes, to draw the tick labels.
+     * @param minorTicksMinSize minimum extent, in text sizes, to draw the minor ticks.
+     * @param secondaryMinSize  minimum extent, in text sizes, to draw the secondary elements.
+     */
+    public DetailLevel(float labelsMinSize, float minorTicksMinSize, float secondaryMinSize) {
+        setThresholds(labelsMinSize, minorTicksMinSize, secondaryMinSize);
+    }
+
+    public void setThresholds(float labelsMinSize, float minorTicksMinSize,
+                              float secondaryMinSize) {
+        if (secondaryMinSize < 0 || minorTicksMinSize < secondaryMinSize
+                || labelsMinSize < minorTicksMinSize) {
+            throw new IllegalArgumentException("Detail thresholds should decrease from the " +
+                    "labels (" + labelsMinSize + ") to the minor ticks (" + minorTicksMinSize +
+                    "), and the secondary elements (" + secondaryMinSize + ").");
+        }
+
+        mLabelsMinSize = labelsMinSize;
+        mMinorTicksMinSize = minorTicksMinSize;
+        mSecondaryMinSize = secondaryMinSize;
+        updateLevel();
+    }
+
+    /**
+     * Updates the level for the widget's size. Should be called when the widget, or its text is
+     * resized.
+     *
+     * @param extent   widget's extent along its scale, in pixels.
+     * @param textSize widget's text size, in pixels.
+     */
+    public void setSize(float extent, float textSize) {
+        mExtent = extent;
+        mTextSize = textSize;
+        updateLevel();
+    }
+
+    private void updateLevel() {
+        if (!mEnabled || mExtent <= 0 || mTextSize <= 0) {
+            mLevel = LEVEL_FULL;
+            return;
+        }
+
+        final float size = mExtent / mTextSize;
+        if (size < mSecondaryMinSize)
+            mLevel = LEVEL_PRIMARY_ONLY;
+        else if (size < mMinorTicksMinSize)
+            mLevel = LEVEL_NO_MINOR_TICKS;
+        else if (size < mLabelsMinSize)
+            mLevel = LEVEL_NO_LABELS;
+        else
+            mLevel = LEVEL_FULL;
+    }
+
+    public boolean isEnabled() {
+        return mEnabled;
+    }
+
+    /**
+     * Enables, or disables the size based detail. When disabled, everything is drawn.
+     */
+    public void setEnabled(boolean enabled) {
+        mEnabled = enabled;
+        updateLevel();
+    }
+
+    public int getLevel() {
+        return mLevel;
+    }
+
+    public boolean isDrawingLabels() {
+        return mLevel < LEVEL_NO_LABELS;
+    }
+
+    public boolean isDrawingMinorTicks() {
+        return mLevel < LEVEL_NO_MINOR_TICKS;
+    }
+
+    public boolean isDrawingSecondary() {
+        return mLevel < LEVEL_PRIMARY_ONLY;
+    }
+
+    public float getLabelsMinSize() {
+        return mLabelsMinSize;
+    }
+
+    public float getMinorTicksMinSize() {
+        return mMinorTicksMinSize;
+    }
+
+    public float getSecondaryMinSize() {
+        return mSecondaryMinSize;
+    }
+}
@@ -0,0 +1,232 @@
+package com.ne0fhyklabs.androhud.render;
+
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Rect;
+import android.graphics.RectF;
+import android.graphics.Typeface;
+
+import com.ne0fhyklabs.androhud.cache.Layer;
+import com.ne0fhyklabs.androhud.cache.LayerKey;
+import com.ne0fhyklabs.androhud.cache.StaticLayerCache;
+
+/**
+ * Pre-rasterized glyphs for the small alphabet used by the hud tapes: digits, minus sign, and
+ * the compass letters.
+ * Labels are drawn as bitmap regions with cached advances, bypassing text shaping. The atlas
+ * bitmap is shared, through the {@link StaticLayerCache}, by all the atlases with the same text
+ * size, color, typeface, and stroke.
+ * Atlases must be released when no longer used.
+ */
+public class GlyphAtlas {
+
+    /**
+     * Characters supported by the atlas.
+     */
+    public static final String GLYPHS = "0123456789-NESW";
+
+    /**
+     * Padding around each glyph, in pixels, to account for anti-aliasing.
+     */
+    private static final int GLYPH_PADDING = 1;
+
+    /**
+     * Maps a character to its index in {@link #GLYPHS}, or -1 if not supported.
+     */
+    private static final byte[] GLYPH_INDEX = new byte[128];
+
+    static {
+        for (int i = 0; i < GLYPH_INDEX.length; i++) {
+            GLYPH_INDEX[i] = -1;
+        }
+        for (int i = 0; i < GLYPHS.length(); i++) {
+            GLYPH_INDEX[GLYPHS.charAt(i)] = (byte) i;
+        }
+    }
+
+    /*
+    Properties of the paint the atlas was rasterized with.
+     */
+    private final float mTextSize;
+    private final int mColor;
+    private final Typeface mTypeface;
+    private final boolean mAntiAlias;
+    private final Paint.Style mStyle;
+    private final float mStrokeWidth;
+
+    /*
+    Glyphs metrics.
+     */
+    private final Rect[] mGlyphRects = new Rect[GLYPHS.length()];
+    private final float[] mAdvances = new float[GLYPHS.length()];
+    private final float mAscent;
+
+    private Layer mLayer;
+
+    /*
+    Allocated at startup, and reused to avoid unnecessary memory allocation at runtime.
+     */
+    private final char[] mDigits = new char[11];
+    private final RectF mDstRect = new RectF();
+    private final Paint mGlyphPaint = new Paint(Paint.FILTER_BITMAP_FLAG);
+
+    /**
+     * Rasterizes, or reuses, the atlas matching the given text paint.
+     */
+    public GlyphAtlas(Paint textPaint) {
+        mTextSize = textPaint.getTextSize();
+        mColor = textPaint.getColor();
+        mTypeface = textPaint.getTypeface();
+        mAntiAlias = textPaint.isAntiAlias();
+        mStyle = textPaint.getStyle();
+        mStrokeWidth = textPaint.getStrokeWidth();
+
+        final Paint paint = new Paint(textPaint);
+        paint.setTextAlign(Paint.Align.LEFT);
+
+        mAscent = paint.ascent();
+        final int glyphHeight = (int) Math.ceil(paint.descent() - mAscent) + 2 * GLYPH_PADDING;
+        final float[] widths = new float[GLYPHS.length()];
+        paint.getTextWidths(GLYPHS, widths);
+
+        int left = 0;
+        for (int i = 0; i < widths.length; i++) {
+            final int glyphWidth = (int) Math.ceil(widths[i]) + 2 * GLYPH_PADDING;
+            mGlyphRects[i] = new Rect(left, 0, left + glyphWidth, glyphHeight);
+            mAdvances[i] = widths[i];
+            left += glyphWidth;
+        }
+
+        //Text size is already in pixels, so the density doesn't matter.
+        final LayerKey key = new LayerKey("GlyphAtlas", Math.max(1, left), Math.max(1,
+                glyphHeight), 1f, mTextSize, mColor, mTypeface, mAntiAlias, mStyle, mStrokeWidth);
+        mLayer = StaticLayerCache.getInstance().acquire(key, new StaticLayerCache.LayerRenderer() {
+            @Override
+            public void render(Canvas canvas, LayerKey key) {
+                final float baseline = GLYPH_PADDING - mAscent;
+                for (int i = 0; i < GLYPHS.length(); i++) {
+                    canvas.drawText(GLYPHS, i, i + 1, mGlyphRects[i].left + GLYPH_PADDING,
+                            baseline, paint);
+                }
+            }
+        });
+    }
+
+    /**
+     * Returns an atlas matching the given paint, reusing the current one if it still matches.
+     *
+     * @param current   current atlas. Released if it no longer matches. Can be null.
+     * @param textPaint paint the labels are drawn with.
+     * @return an atlas matching the paint.
+     */
+    public static GlyphAtlas update(GlyphAtlas current, Paint textPaint) {
+        if (current != null) {
+            if (current.matches(textPaint))
+                return current;
+            current.release();
+        }
+        return new GlyphAtlas(textPaint);
+    }
+
+    /**
+     * @return true if the atlas was rasterized with the same text properties as the given paint.
+     */
+    public boolean matches(Paint textPaint) {
+        return mLayer != null
+                && textPaint.getTextSize() == mTextSize
+                && textPaint.getColor() == mColor
+                && textPaint.getTypeface() == mTypeface
+                && textPaint.isAntiAlias() == mAntiAlias
+                && textPaint.getStyle() == mStyle
+                && textPaint.getStrokeWidth() == mStrokeWidth;
+    }
+
+    public void release() {
+        if (mLayer != null) {
+            StaticLayerCache.getInstance().release(mLayer);
+            mLayer = null;
+        }
+    }
+
+    /**
+     * @return true if all the characters of the given text are in the atlas.
+     */
+    public static boolean canDraw(CharSequence text) {
+        for (int i = 0; i < text.length(); i++) {
+            final char c = text.charAt(i);
+            if (c >= GLYPH_INDEX.length || GLYPH_INDEX[c] < 0)
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * Draws the given integer, as {@link Canvas#drawText(String, float, float, Paint)} would.
+     *
+     * @return the label's advance.
+     */
+    public float drawInt(Canvas canvas, int value, float x, float y, Paint.Align align) {
+        //Format the value without allocating.
+        int length = 0;
+        long remaining = Math.abs((long) value);
+        do {
+            mDigits[mDigits.length - 1 - length++] = (char) ('0' + remaining % 10);
+            remaining /= 10;
+        } while (remaining != 0);
+
+        if (value < 0)
+            mDigits[mDigits.length - 1 - length++] = '-';
+
+        return drawGlyphs(canvas, mDigits, mDigits.length - length, length, x, y, align);
+    }
+
+    /**
+     * Draws the given text, as {@link Canvas#drawText(String, float, float, Paint)} would.
+     * Characters missing from the atlas are skipped, see {@link #canDraw(CharSequence)}.
+     *
+     * @return the label's advance.
+     */
+    public float drawText(Canvas canvas, String text, float x, float y, Paint.Align align) {
+        final int length = Math.min(text.length(), mDigits.length);
+        text.getChars(0, length, mDigits, 0);
+        return drawGlyphs(canvas, mDigits, 0, length, x, y, align);
+    }
+
+    private float drawGlyphs(Canvas canvas, char[] text, int start, int length, float x, float y,
+                             Paint.Align align) {
+        float advance = 0;
+        for (int i = start; i < start + length; i++) {
+            final int glyph = glyphIndex(text[i]);
+            if (glyph >= 0)
+                advance += mAdvances[glyph];
+        }
+
+        if (mLayer == null)
+            return advance;
+
+        float left = x;
+        if (align == Paint.Align.CENTER)
+            left -= advance / 2;
+        else if (align == Paint.Align.RIGHT)
+            left -= advance;
+
+        final float top = y + mAscent - GLYPH_PADDING;
+        for (int i = start; i < start + length; i++) {
+            final int glyph = glyphIndex(text[i]);
+            if (glyph < 0)
+                continue;
+
+            final Rect src = mGlyphRects[glyph];
+            mDstRect.set(left - GLYPH_PADDING, top, left - GLYPH_PADDING + src.width(),
+                    top + src.height());
+            mLayer.draw(canvas, src, mDstRect, mGlyphPaint);
+            left += mAdvances[glyph];
+        }
+
+        return advance;
+    }
+
+    private static int glyphIndex(char c) {
+        return c < GLYPH_INDEX.length ? GLYPH_INDEX[c] : -1;
+    }
+}
@@ -0,0 +1,321 @@
+package com.ne0fhyklabs.androhud.render;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+
+import com.ne0fhyklabs.androhud.telemetry.HudLogPlayer;
+import com.ne0fhyklabs.androhud.telemetry.HudState;
+
+import java.io.IOException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Renders a sequence of hud states into frames, using all the cores, e.g: to burn the hud into
+ * every frame of a recorded flight video.
+ * Frames only depend on their state, so they are rendered in parallel by a pool of workers. Each
+ * worker draws with its own {@link Canvas}, and {@link HudPainter}, into one of a fixed set of
+ * reusable bitmaps. The frames are handed to the {@link FrameSink} in order, on the calling
+ * thread, while the following frames are being rendered.
+ */
+public class HudBatchRenderer {
+
+    /**
+     * Supplies the states to render, in order. Only called from the rendering thread.
+     */
+    public interface StateSource {
+        /**
+         * @param out updated with the next state.
+         * @return false once the sequence is exhausted.
+         */
+        boolean next(HudState out) throws IOException;
+    }
+
+    /**
+     * Receives the rendered frames, in order, on the rendering thread.
+     */
+    public interface FrameSink {
+        /**
+         * @param index index of the frame in the sequence.
+         * @param frame rendered frame. Reused once this returns, so it must be consumed, or
+         *              copied, before returning.
+         */
+        void onFrame(long index, Bitmap frame) throws IOException;
+    }
+
+    /**
+     * Creates the painter of each worker, e.g: to apply a theme. Called on the worker threads.
+     */
+    public interface PainterFactory {
+        HudPainter create();
+    }
+
+    /**
+     * Number of frames queued per worker. Lets the workers run ahead of the sink.
+     */
+    private static final int FRAMES_PER_WORKER = 2;
+
+    private static final PainterFactory DEFAULT_PAINTER_FACTORY = new PainterFactory() {
+        @Override
+        public HudPainter create() {
+            return new HudPainter();
+        }
+    };
+
+    private final int mWidth;
+    private final int mHeight;
+    private final int mThreadCount;
+    private final PainterFactory mPainterFactory;
+
+    /*
+    Statistics of the last render.
+     */
+    private long mFrameCount;
+    private long mElapsedNanos;
+
+    /**
+     * Renders with a worker per available core.
+     */
+    public HudBatchRenderer(int width, int height) {
+        this(width, height, Runtime.getRuntime().availableProcessors(), DEFAULT_PAINTER_FACTORY);
+    }
+
+    /**
+     * @param width          frames width in pixels.
+     * @param height         frames height in pixels.
+     * @param threadCount    number of workers.
+     * @param painterFactory creates the painter of each worker.
+     */
+    public HudBatchRenderer(int width, int height, int threadCount,
+                            PainterFactory painterFactory) {
+        if (width <= 0 || height <= 0)
+            throw new IllegalArgumentException("Frame size should be positive.");
+        if (threadCount <= 0)
+            throw new IllegalArgumentException("Thread count should be positive.");
+
+        mWidth = width;
+        mHeight = height;
+        mThreadCount = threadCount;
+        mPainterFactory = painterFactory;
+    }
+
+    /**
+     * Renders all the states supplied by the source. Blocks until the last frame has been handed
+     * to the sink.
+     *
+     * @return the number of rendered frames.
+     */
+    public long render(StateSource source, FrameSink sink) throws IOException,
+            InterruptedException {
+        final ThreadLocal<Worker> worker = new ThreadLocal<Worker>() {
+            @Override
+            protected Worker initialValue() {
+                return new Worker(mPainterFactory.create());
+            }
+        };
+
+        final Slot[] slots = new Slot[mThreadCount * FRAMES_PER_WORKER];
+        final ExecutorService executor = Executors.newFixedThreadPool(mThreadCount,
+                new ThreadFactory() {
+                    private final AtomicInteger mCount = new AtomicInteger();
+
+                    @Override
+                    public Thread newThread(Runnable runnable) {
+                        return new Thread(runnable, "HudBatchRenderer-"
+                                + mCount.getAndIncrement());
+                    }
+                });
+
+        final long startNanos = System.nanoTime();
+        long submitted = 0;
+        long completed = 0;
+        try {
+            while (true) {
+                final Slot slot;
+                final int slotIndex = (int) (submitted % slots.length);
+                if (slots[slotIndex] == null) {
+                    slot = slots[slotIndex] = new Slot(mWidth, mHeight, worker);
+                }
+                else {
+                    //Hand over the oldest frame before reusing its slot.
+                    slot = slots[slotIndex];
+                    if (slot.mPending != null) {
+                        awaitFrame(slot);
+                        sink.onFrame(completed++, slot.mBitmap);
+                    }
+                }
+
+                if (!source.next(slot.mState))
+                    break;
+
+                slot.mPending = executor.submit(slot);
+                submitted++;
+            }
+
+            //Drain the frames still being rendered.
+            while (completed < submitted) {
+                final Slot slot = slots[(int) (completed % slots.length)];
+                awaitFrame(slot);
+                sink.onFrame(completed++, slot.mBitmap);
+            }
+        } finally {
+            executor.shutdownNow();
+            executor.awaitTermination(1, TimeUnit.SECONDS);
+            for (Slot slot : slots) {
+                if (slot != null)
+                    slot.mBitmap.recycle();
+            }
+        }
+
+        mFrameCount = completed;
+        mElapsedNanos = System.nanoTime() - startNanos;
+        return completed;
+    }
+
+    private static void awaitFrame(Slot slot) throws InterruptedException {
+        try {
+            slot.mPending.get();
+            slot.mPending = null;
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Unable to render the hud frame.", e.getCause());
+        }
+    }
+
+    /**
+     * @return the number of frames rendered by the last call to render.
+     */
+    public long getFrameCount() {
+        return mFrameCount;
+    }
+
+    /**
+     * @return the frame rate achieved by the last call to render, sink time included.
+     */
+    public float getFramesPerSecond() {
+        return mElapsedNanos == 0 ? 0 : mFrameCount * 1e9f / mElapsedNanos;
+    }
+
+    public int getThreadCount() {
+        return mThreadCount;
+    }
+
+    /**
+     * Measures how the rendering throughput scales with the number of workers, by rendering the
+     * given states with 1 to maxThreadCount workers, and discarding the frames.
+     *
+     * @return the frame rates, indexed by worker count minus one.
+     */
+    public static float[] measureScaling(final HudState[] states, int width, int height,
+                                         int maxThreadCount) throws InterruptedException {
+        final float[] framesPerSecond = new float[maxThreadCount];
+        final FrameSink discard = new FrameSink() {
+            @Override
+            public void onFrame(long index, Bitmap frame) {
+            }
+        };
+
+        for (int threadCount = 1; threadCount <= maxThreadCount; threadCount++) {
+            final HudBatchRenderer renderer = new HudBatchRenderer(width, height, threadCount,
+                    DEFAULT_PAINTER_FACTORY);
+            try {
+                renderer.render(fromArray(states), discard);
+            } catch (IOException e) {
+                //Neither the source, nor the sink do any io.
+                throw new IllegalStateException(e);
+            }
+            framesPerSecond[threadCount - 1] = renderer.getFramesPerSecond();
+        }
+        return framesPerSecond;
+    }
+
+    public static StateSource fromArray(final HudState[] states) {
+        return new StateSource() {
+            private int mIndex;
+
+            @Override
+            public boolean next(HudState out) {
+                if (mIndex >= states.length)
+                    return false;
+                out.set(states[mIndex++]);
+                return true;
+            }
+        };
+    }
+
+    /**
+     * Samples a hud log at a fixed frame rate, e.g: once per video frame. The sequence ends with
+     * the frame showing the log's last sample. An empty, or already finished log, yields no
+     * frame.
+     *
+     * @param player    log to sample, from its current position.
+     * @param startTime log time of the first frame.
+     * @param frameRate number of frames per second of log time.
+     */
+    public static StateSource fromLog(final HudLogPlayer player, final long startTime,
+                                      float frameRate) {
+        if (frameRate <= 0)
+            throw new IllegalArgumentException("Frame rate should be positive.");
+
+        final double framePeriodMs = 1000.0 / frameRate;
+        return new StateSource() {
+            private final HudState mLatest = new HudState();
+            private long mFrame;
+
+            @Override
+            public boolean next(HudState out) {
+                final long logTime = startTime + Math.round(mFrame * framePeriodMs);
+                //Frames before the first sample show the default state, the sequence ends once
+                //the last sample has been shown, or right away if there is none left.
+                if (!player.advanceTo(logTime, mLatest) && player.isFinished())
+                    return false;
+
+                mFrame++;
+                out.set(mLatest);
+                return true;
+            }
+        };
+    }
+
+    /**
+     * Drawing tools owned by a worker thread.
+     */
+    private static class Worker {
+        final HudPainter mPainter;
+        final Canvas mCanvas = new Canvas();
+        final CanvasRenderer mRenderer = new CanvasRenderer();
+
+        Worker(HudPainter painter) {
+            mPainter = painter;
+        }
+    }
+
+    /**
+     * A frame in flight: its state, its bitmap, and its rendering task.
+     */
+    private static class Slot implements Runnable {
+        final HudState mState = new HudState();
+        final Bitmap mBitmap;
+        final ThreadLocal<Worker> mWorker;
+        Future<?> mPending;
+
+        Slot(int width, int height, ThreadLocal<Worker> worker) {
+            mBitmap = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+            mWorker = worker;
+        }
+
+        @Override
+        public void run() {
+            final Worker worker = mWorker.get();
+            worker.mCanvas.setBitmap(mBitmap);
+            mBitmap.eraseColor(0);
+            worker.mRenderer.setCanvas(worker.mCanvas, mBitmap.getWidth(), mBitmap.getHeight());
+            worker.mPainter.paint(worker.mRenderer, mState.pitch, mState.roll, mState.yaw,
+                    mState.airSpeed, mState.targetSpeed, mState.verticalSpeed);
+        }
+    }
+}
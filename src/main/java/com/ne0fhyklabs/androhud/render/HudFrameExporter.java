@@ -0,0 +1,197 @@
+package com.ne0fhyklabs.androhud.render;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.view.View;
+
+import com.ne0fhyklabs.androhud.legacy.HudView;
+import com.ne0fhyklabs.androhud.telemetry.HudState;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Renders a hud into pooled bitmaps on a background thread, at a fixed frame rate, e.g: to burn
+ * the hud into recorded flight video.
+ * The exporter renders its own, detached, view instance. It must not be attached to a window, or
+ * used by any other thread. This can be a {@link HudView}, or a layout composing the Simple*
+ * widgets. The latest state submitted by the telemetry side is applied to the view before each
+ * frame.
+ * The view is drawn off the ui thread, so it must not draw through an
+ * {@link com.ne0fhyklabs.androhud.cache.AsyncLayer}, which is bound to the ui thread. The
+ * exporter turns the shared layers off for a {@link HudView}. Custom views must turn them off
+ * themselves, e.g: SimplePitchRoll#setUseSharedLayers(false).
+ * Frames are taken out of the {@link BitmapRing} by the consumer. When the consumer falls
+ * behind, and no bitmap is free, the frame is dropped and counted.
+ */
+public class HudFrameExporter {
+
+    /**
+     * Applies a hud state to the exporter's view before a frame is rendered.
+     */
+    public interface StateBinder {
+        void bind(HudState state, View view);
+    }
+
+    private static final StateBinder HUD_VIEW_BINDER = new StateBinder() {
+        @Override
+        public void bind(HudState state, View view) {
+            state.applyTo((HudView) view);
+        }
+    };
+
+    private final View mView;
+    private final StateBinder mBinder;
+    private final BitmapRing mRing;
+    private final int mWidth;
+    private final int mHeight;
+    private final long mFramePeriodNs;
+
+    /*
+    Latest submitted state, guarded by mStateLock, and the copy used by the render thread.
+     */
+    private final Object mStateLock = new Object();
+    private final HudState mSubmittedState = new HudState();
+    private final HudState mRenderState = new HudState();
+
+    private final Canvas mCanvas = new Canvas();
+
+    private volatile boolean mRunning;
+    private Thread mThread;
+
+    /*
+    Export statistics.
+     */
+    private volatile long mRenderedFrameCount;
+    private volatile long mDroppedFrameCount;
+
+    public HudFrameExporter(HudView view, int width, int height, float frameRate,
+                            int ringCapacity) {
+        this(view, HUD_VIEW_BINDER, width, height, frameRate, ringCapacity);
+        view.setUseSharedLayers(false);
+    }
+
+    /**
+     * @param view         detached view to render. Must not use shared layers.
+     * @param binder       applies the submitted state to the view.
+     * @param width        frames width in pixels.
+     * @param height       frames height in pixels.
+     * @param frameRate    number of frames rendered per second.
+     * @param ringCapacity number of pooled bitmaps.
+     */
+    public HudFrameExporter(View view, StateBinder binder, int width, int height,
+                            float frameRate, int ringCapacity) {
+        if (frameRate <= 0) {
+            throw new IllegalArgumentException("Frame rate should be positive.");
+        }
+
+        mView = view;
+        mBinder = binder;
+        mWidth = width;
+        mHeight = height;
+        mFramePeriodNs = (long) (TimeUnit.SECONDS.toNanos(1) / frameRate);
+        mRing = new BitmapRing(ringCapacity, width, height, Bitmap.Config.ARGB_8888);
+    }
+
+    /**
+     * @return the ring the rendered frames are taken out of.
+     */
+    public BitmapRing getRing() {
+        return mRing;
+    }
+
+    /**
+     * Updates the state rendered by the next frames. Can be called from any thread.
+     */
+    public void submitState(HudState state) {
+        synchronized (mStateLock) {
+            mSubmittedState.set(state);
+        }
+    }
+
+    public synchronized void start() {
+        if (mThread != null)
+            return;
+
+        mRunning = true;
+        mThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                renderLoop();
+            }
+        }, "HudFrameExporter");
+        mThread.start();
+    }
+
+    /**
+     * Stops the render thread, and waits for it to finish.
+     */
+    public synchronized void stop() throws InterruptedException {
+        if (mThread == null)
+            return;
+
+        mRunning = false;
+        mThread.interrupt();
+        mThread.join();
+        mThread = null;
+    }
+
+    public long getRenderedFrameCount() {
+        return mRenderedFrameCount;
+    }
+
+    public long getDroppedFrameCount() {
+        return mDroppedFrameCount;
+    }
+
+    private void renderLoop() {
+        mView.measure(View.MeasureSpec.makeMeasureSpec(mWidth, View.MeasureSpec.EXACTLY),
+                View.MeasureSpec.makeMeasureSpec(mHeight, View.MeasureSpec.EXACTLY));
+        mView.layout(0, 0, mWidth, mHeight);
+
+        long sequence = 0;
+        long nextFrameTime = System.nanoTime();
+        while (mRunning) {
+            final long sleepNs = nextFrameTime - System.nanoTime();
+            if (sleepNs > 0) {
+                try {
+                    TimeUnit.NANOSECONDS.sleep(sleepNs);
+                } catch (InterruptedException e) {
+                    break;
+                }
+            }
+
+            synchronized (mStateLock) {
+                mRenderState.set(mSubmittedState);
+            }
+
+            final BitmapRing.Frame frame = mRing.obtain();
+            if (frame == null) {
+                mDroppedFrameCount++;
+            }
+            else {
+                mBinder.bind(mRenderState, mView);
+
+                final Bitmap bitmap = frame.getBitmap();
+                bitmap.eraseColor(Color.TRANSPARENT);
+                mCanvas.setBitmap(bitmap);
+                //The view may leave the canvas transformed, and setBitmap keeps the matrix.
+                final int saveCount = mCanvas.save();
+                mView.draw(mCanvas);
+                mCanvas.restoreToCount(saveCount);
+                mCanvas.setBitmap(null);
+
+                mRing.publish(frame, mRenderState.timestamp, sequence);
+                mRenderedFrameCount++;
+            }
+
+            sequence++;
+            nextFrameTime += mFramePeriodNs;
+
+            //Don't try to catch up after a long stall, restart the schedule from now.
+            final long now = System.nanoTime();
+            if (now - nextFrameTime > mFramePeriodNs)
+                nextFrameTime = now;
+        }
+    }
+}
@@ -0,0 +1,520 @@
+package com.ne0fhyklabs.androhud.render;
+
+import com.ne0fhyklabs.androhud.utils.HeadingLabels;
+import com.ne0fhyklabs.androhud.utils.MathUtils;
+import com.ne0fhyklabs.androhud.utils.TickIterator;
+
+/**
+ * Draws the frames rendered off screen by {@link HudBatchRenderer}, through a
+ * {@link HudRenderer}: horizon, pitch ladder, roll scale, yaw tape, reticle, speed tape, and
+ * vertical speed indicator.
+ * The layout is modeled on {@link com.ne0fhyklabs.androhud.legacy.HudView}'s, but is its own:
+ * the on screen widgets draw straight to their canvas, and aren't drawn through this class.
+ * This class doesn't depend on the android graphics classes, so its layout can be checked on
+ * the jvm, against a recording renderer.
+ * Sizes are in pixels; the defaults were taken from the
+ * {@link com.ne0fhyklabs.androhud.legacy.HudView} attribute defaults.
+ */
+public class HudPainter {
+
+    private static final int SCROLLER_VSI_RANGE = 12;
+    private static final int SCROLLER_SPEED_RANGE = 26;
+
+    // in relation to the resulting size of PITCH_FACTOR_TEXT
+    private static final float PITCH_FACTOR_TEXT_Y_OFFSET = -.16f;
+    // in relation to attHeight
+    private static final float PITCH_FACTOR_SCALE_Y_SPACE = 0.02f;
+    // in relation to width
+    private static final float PITCH_FACTOR_SCALE_TEXT_X_OFFSET = 0.025f;
+    // outermost rungs of the pitch ladder, in degrees
+    private static final int PITCH_LADDER_LIMIT = 180;
+
+    // in relation to averaged of width and height
+    private static final float HUD_FACTOR_BORDER_WIDTH = .0075f;
+    private static final float HUD_FACTOR_SCALE_THICK_TIC_STROKEWIDTH = .005f;
+    private static final float HUD_FACTOR_SCALE_THIN_TIC_STROKEWIDTH = .0025f;
+
+    // in relation to rollTopOffset
+    private static final float ROLL_FACTOR_TIC_LENGTH = .25f;
+
+    // in relation to the text size
+    private static final float YAW_FACTOR_TEXT_Y_OFFSET = -.16f;
+    // in relation to the top bar height
+    private static final float YAW_FACTOR_TICS_SMALL = .20f;
+    private static final float YAW_FACTOR_TICS_TALL = .35f;
+    private static final float YAW_FACTOR_CENTERLINE_OVERRUN = .2f;
+    private static final int YAW_DEGREES_TO_SHOW = 90;
+
+    private static final int WHITE = 0xFFFFFFFF;
+    private static final int BLACK = 0xFF000000;
+    private static final int GREEN = 0xFF00FF00;
+    private static final int VSI_COLOR = 0xFF0032FA;
+    private static final int DISABLED_GROUND_COLOR = 0xFF444444;
+    private static final int DISABLED_SKY_COLOR = 0xFFCCCCCC;
+
+    private static final float RETICLE_STROKE_WIDTH = 3;
+    private static final float TARGET_SPEED_STROKE_WIDTH = 6;
+
+    /*
+    Theme properties.
+     */
+    private boolean mEnabled = true;
+    private int mGroundColor = 0xDC94C11F;
+    private int mSkyColor = 0xDC0071BC;
+    private int mReticleColor = 0xFFFF0000;
+    private int mTextColor = WHITE;
+    private int mYawBgColor = BLACK;
+    private int mScrollerBgColor = 0x40FFFFFF;
+    private float mTextSize = 25f;
+    private float mReticleRadius = 10f;
+    private float mPitchScaleWidth = 30f;
+    private float mTopBarHeight = 30f;
+    private float mScrollerWidth = 96f;
+    private float mScrollerHeight = 200f;
+    private float mScrollerArrowHeight = 25f;
+    private float mScrollerTicWidth = 16f;
+    private float mScrollerTextHorizontalMargin = 23f;
+    private float mScrollerTextVerticalMargin = 10f;
+
+    /*
+    Layout, updated when the size, or theme changes.
+     */
+    private boolean mLayoutValid;
+    private int mWidth;
+    private int mHeight;
+    private int mAttHeight;
+    private float mBorderWidth;
+    private float mThickTicWidth;
+    private float mThinTicWidth;
+    private int mPitchTextCenterOffset;
+    private int mPitchScaleTextXOffset;
+    private int mPitchPixPerDegree;
+    private int mRollTopOffset;
+    private int mRollSizeTics;
+    private int mYawYPosText;
+    private float mYawDegreesPerPixel;
+    private int mYawSizeTicsSmall;
+    private int mYawSizeTicsTall;
+    private int mYawSizeCenterLineOverRun;
+
+    /*
+    Allocated at startup, and reused to avoid unnecessary memory allocation at runtime.
+     */
+    private final TickIterator mTicks = new TickIterator();
+    private final float[] mPolygon = new float[10];
+
+    /**
+     * Draws a hud frame covering the renderer's surface.
+     *
+     * @param renderer      backend to draw with.
+     * @param pitch         pitch in degrees.
+     * @param roll          roll in degrees.
+     * @param yaw           heading in degrees.
+     * @param speed         air speed.
+     * @param targetSpeed   target air speed, 0 to hide it.
+     * @param verticalSpeed vertical speed.
+     */
+    public void paint(HudRenderer renderer, float pitch, float roll, float yaw, float speed,
+                      float targetSpeed, float verticalSpeed) {
+        updateLayout(renderer.getWidth(), renderer.getHeight());
+
+        renderer.save();
+        renderer.translate(mWidth / 2, (mHeight + mTopBarHeight) / 2);
+
+        drawPitch(renderer, pitch, roll);
+        drawRollScale(renderer);
+        drawYaw(renderer, MathUtils.normalizeHeading(yaw));
+        drawReticle(renderer);
+        drawScrollers(renderer, speed, targetSpeed, verticalSpeed);
+
+        renderer.restore();
+    }
+
+    private void updateLayout(int width, int height) {
+        if (mLayoutValid && width == mWidth && height == mHeight)
+            return;
+
+        mWidth = width;
+        mHeight = height;
+        mAttHeight = height - (int) mTopBarHeight;
+
+        final float averageSize = (width + height) / 2;
+        mThickTicWidth = Math.max(1, averageSize * HUD_FACTOR_SCALE_THICK_TIC_STROKEWIDTH);
+        mThinTicWidth = Math.max(1, averageSize * HUD_FACTOR_SCALE_THIN_TIC_STROKEWIDTH);
+        mBorderWidth = Math.max(1, averageSize * HUD_FACTOR_BORDER_WIDTH);
+
+        mPitchTextCenterOffset = Math.round(-mTextSize / 2 - mTextSize
+                * PITCH_FACTOR_TEXT_Y_OFFSET);
+        mPitchScaleTextXOffset = Math.round(width * PITCH_FACTOR_SCALE_TEXT_X_OFFSET);
+        mPitchPixPerDegree = Math.round(mAttHeight * PITCH_FACTOR_SCALE_Y_SPACE);
+
+        mRollTopOffset = (int) mTopBarHeight;
+        mRollSizeTics = Math.round(mRollTopOffset * ROLL_FACTOR_TIC_LENGTH);
+
+        mYawSizeTicsSmall = Math.round(mTopBarHeight * YAW_FACTOR_TICS_SMALL);
+        mYawSizeTicsTall = Math.round(mTopBarHeight * YAW_FACTOR_TICS_TALL);
+        final int textOffset = Math.round(mTextSize * YAW_FACTOR_TEXT_Y_OFFSET);
+        mYawYPosText = Math.round(mYawSizeTicsSmall + (mTopBarHeight - mYawSizeTicsSmall) / 2
+                - mTextSize / 2 - textOffset);
+        mYawSizeCenterLineOverRun = Math.round(mTopBarHeight * YAW_FACTOR_CENTERLINE_OVERRUN);
+        mYawDegreesPerPixel = width / (float) YAW_DEGREES_TO_SHOW;
+
+        mLayoutValid = true;
+    }
+
+    private void drawPitch(HudRenderer renderer, float pitch, float roll) {
+        final int pitchOffset = (int) (pitch * mPitchPixPerDegree);
+        final int rollTriangleBottom = -mAttHeight / 2 + mRollTopOffset / 2 + mRollTopOffset;
+
+        renderer.save();
+        renderer.rotate(-(int) roll);
+
+        // Draw the background
+        renderer.fillRect(-mWidth, pitchOffset, mWidth, mHeight,
+                mEnabled ? mGroundColor : DISABLED_GROUND_COLOR);
+        renderer.fillRect(-mWidth, -mHeight, mWidth, pitchOffset,
+                mEnabled ? mSkyColor : DISABLED_SKY_COLOR);
+        renderer.drawLine(-mWidth, pitchOffset, mWidth, pitchOffset, WHITE, mThinTicWidth);
+
+        // Draw roll triangle
+        final int tempOffset = Math.round(RETICLE_STROKE_WIDTH + mBorderWidth / 2);
+        mPolygon[0] = 0;
+        mPolygon[1] = -mAttHeight / 2 + mRollTopOffset + tempOffset;
+        mPolygon[2] = -mRollTopOffset / 3;
+        mPolygon[3] = rollTriangleBottom + tempOffset;
+        mPolygon[4] = mRollTopOffset / 3;
+        mPolygon[5] = rollTriangleBottom + tempOffset;
+        renderer.strokePolygon(mPolygon, 3, mReticleColor, RETICLE_STROKE_WIDTH);
+
+        // Draw gauge, only walking the rungs between the roll triangle bottom, and its symmetric.
+        if (mPitchPixPerDegree > 0) {
+            final float halfPitchScaleWidth = mPitchScaleWidth / 2;
+            final int firstRung = (int) Math.floor((double) (pitchOffset + rollTriangleBottom)
+                    / mPitchPixPerDegree) + 1;
+            final int lastRung = (int) Math.ceil((double) (pitchOffset - rollTriangleBottom)
+                    / mPitchPixPerDegree) - 1;
+
+            final TickIterator ticks = mTicks.reset(Math.max(-PITCH_LADDER_LIMIT, firstRung),
+                    Math.min(PITCH_LADDER_LIMIT, lastRung), 0, pitchOffset, -mPitchPixPerDegree,
+                    10, 5);
+            while (ticks.next()) {
+                // the horizon line is already drawn
+                if (ticks.getValue() == 0)
+                    continue;
+
+                final int yPos = Math.round(ticks.getPosition());
+                if (ticks.isMajor()) {
+                    renderer.drawLine(-mPitchScaleWidth, yPos, -mPitchScaleTextXOffset, yPos,
+                            WHITE, mThinTicWidth);
+                    renderer.drawText(Integer.toString(ticks.getValue()), 0,
+                            yPos - mPitchTextCenterOffset, mTextColor, mTextSize,
+                            HudRenderer.ALIGN_CENTER);
+                    renderer.drawLine(mPitchScaleTextXOffset, yPos, mPitchScaleWidth, yPos,
+                            WHITE, mThinTicWidth);
+                }
+                else {
+                    renderer.drawLine(-halfPitchScaleWidth, yPos, halfPitchScaleWidth, yPos,
+                            WHITE, mThinTicWidth);
+                }
+            }
+        }
+
+        renderer.restore();
+    }
+
+    private void drawRollScale(HudRenderer renderer) {
+        final int r = Math.round(mAttHeight / 2 - mRollTopOffset);
+
+        // Draw the arc
+        renderer.strokeArc(-r, -r, r, r, 225, 90, WHITE, mBorderWidth);
+
+        // Draw center triangle
+        final int tempOffset = Math.round(RETICLE_STROKE_WIDTH / 2);
+        mPolygon[0] = 0;
+        mPolygon[1] = -mAttHeight / 2 + mRollTopOffset - tempOffset;
+        mPolygon[2] = -mRollTopOffset / 3;
+        mPolygon[3] = -mAttHeight / 2 + mRollTopOffset / 2 - tempOffset;
+        mPolygon[4] = mRollTopOffset / 3;
+        mPolygon[5] = -mAttHeight / 2 + mRollTopOffset / 2 - tempOffset;
+        renderer.strokePolygon(mPolygon, 3, mReticleColor, RETICLE_STROKE_WIDTH);
+
+        // Draw the ticks, the center of the circle is at: 0, 0
+        for (int i = -45; i <= 45; i += 15) {
+            if (i != 0) {
+                final double angle = Math.toRadians(i);
+                final float dx = (float) Math.sin(angle) * r;
+                final float dy = (float) Math.cos(angle) * r;
+                final float ex = (float) Math.sin(angle) * (r + mRollSizeTics);
+                final float ey = (float) Math.cos(angle) * (r + mRollSizeTics);
+                renderer.drawLine(dx, -dy, ex, -ey, WHITE, mThickTicWidth);
+            }
+        }
+    }
+
+    private void drawYaw(HudRenderer renderer, float yaw) {
+        final int yawBottom = -mAttHeight / 2;
+        renderer.fillRect(-mWidth / 2, yawBottom - mTopBarHeight, mWidth / 2, yawBottom,
+                mYawBgColor);
+        renderer.drawLine(-mWidth / 2, yawBottom, mWidth / 2, yawBottom, WHITE, mBorderWidth);
+
+        final TickIterator ticks = mTicks.resetCentered(yaw, YAW_DEGREES_TO_SHOW, 0,
+                mYawDegreesPerPixel, 45, 5);
+        while (ticks.next()) {
+            // protect from wraparound
+            final int workAngle = MathUtils.normalizeHeading(ticks.getValue());
+            final int distanceToCenter = (int) ticks.getPosition();
+
+            final String compassLabel = HeadingLabels.getCompassLabel(workAngle);
+            if (compassLabel != null) {
+                renderer.drawLine(distanceToCenter, yawBottom - mYawSizeTicsSmall,
+                        distanceToCenter, yawBottom, WHITE, mThinTicWidth);
+                renderer.drawText(compassLabel, distanceToCenter,
+                        yawBottom - mYawYPosText, mTextColor, mTextSize,
+                        HudRenderer.ALIGN_CENTER);
+            }
+            else if (HeadingLabels.isDegreeLabel(workAngle)) {
+                renderer.drawLine(distanceToCenter, yawBottom - mYawSizeTicsTall,
+                        distanceToCenter, yawBottom, WHITE, mThinTicWidth);
+                renderer.drawText(Integer.toString(workAngle), distanceToCenter,
+                        yawBottom - mYawYPosText, mTextColor, mTextSize,
+                        HudRenderer.ALIGN_CENTER);
+            }
+            else {
+                renderer.drawLine(distanceToCenter, yawBottom - mYawSizeTicsSmall,
+                        distanceToCenter, yawBottom, WHITE, mThinTicWidth);
+            }
+        }
+
+        // Draw the center line
+        renderer.drawLine(0, yawBottom - mTopBarHeight, 0, yawBottom + mYawSizeCenterLineOverRun,
+                mReticleColor, RETICLE_STROKE_WIDTH);
+    }
+
+    private void drawReticle(HudRenderer renderer) {
+        renderer.strokeCircle(0, 0, mReticleRadius, mReticleColor, RETICLE_STROKE_WIDTH);
+        renderer.drawLine(-mReticleRadius, 0, -mReticleRadius * 2, 0, mReticleColor,
+                RETICLE_STROKE_WIDTH);
+        renderer.drawLine(mReticleRadius, 0, mReticleRadius * 2, 0, mReticleColor,
+                RETICLE_STROKE_WIDTH);
+        renderer.drawLine(0, -mReticleRadius, 0, -mReticleRadius * 2, mReticleColor,
+                RETICLE_STROKE_WIDTH);
+    }
+
+    private void drawScrollers(HudRenderer renderer, float speed, float targetSpeed,
+                               float verticalSpeed) {
+        final float textHalfSize = mTextSize / 2;
+        final int borderWidth = Math.round(mBorderWidth);
+
+        /* Drawing left scroller */
+        float left = -mWidth / 2;
+        float top = -mScrollerHeight / 2;
+        float right = left + mScrollerWidth;
+        float bottom = mScrollerHeight / 2;
+        float centerY = 0;
+
+        renderer.fillRect(left, top, right, bottom, mScrollerBgColor);
+        renderer.strokeRect(left, top, right, bottom, WHITE, mBorderWidth);
+
+        renderer.save();
+        renderer.clipRect(left, top, right, bottom);
+
+        final float space = mScrollerHeight / SCROLLER_SPEED_RANGE;
+        final int start = (int) speed - SCROLLER_SPEED_RANGE / 2;
+        final int end = (int) (speed + SCROLLER_SPEED_RANGE / 2);
+
+        if (start > targetSpeed) {
+            renderer.drawLine(left, bottom, right, bottom, GREEN, TARGET_SPEED_STROKE_WIDTH);
+        }
+        else if (end < targetSpeed) {
+            renderer.drawLine(left, top, right, top, GREEN, TARGET_SPEED_STROKE_WIDTH);
+        }
+
+        final int targetSpeedTick = (int) targetSpeed;
+        if (targetSpeed != 0 && targetSpeedTick >= start && targetSpeedTick <= end) {
+            final float targetSpeedPos = centerY - space * (targetSpeedTick - (int) speed);
+            renderer.drawLine(left, targetSpeedPos, right, targetSpeedPos, GREEN,
+                    TARGET_SPEED_STROKE_WIDTH);
+        }
+
+        final float textX = right - mScrollerTextHorizontalMargin;
+        final TickIterator ticks = mTicks.reset(start, end, (int) speed, centerY, -space, 5, 5);
+        while (ticks.next()) {
+            final float lineHeight = ticks.getPosition();
+            renderer.drawLine(right, lineHeight, right - mScrollerTicWidth, lineHeight, WHITE,
+                    mThickTicWidth);
+            renderer.drawText(Integer.toString(ticks.getValue()), textX, lineHeight
+                    + textHalfSize - mScrollerTextVerticalMargin, mTextColor, mTextSize,
+                    HudRenderer.ALIGN_CENTER);
+        }
+
+        // Arrow with current speed
+        final float arrowHalfHeight = mScrollerArrowHeight / 2;
+        mPolygon[0] = left - borderWidth;
+        mPolygon[1] = -arrowHalfHeight;
+        mPolygon[2] = right - mScrollerArrowHeight / 4 - borderWidth;
+        mPolygon[3] = -arrowHalfHeight;
+        mPolygon[4] = right - borderWidth;
+        mPolygon[5] = 0;
+        mPolygon[6] = right - mScrollerArrowHeight / 4 - borderWidth;
+        mPolygon[7] = arrowHalfHeight;
+        mPolygon[8] = left - borderWidth;
+        mPolygon[9] = arrowHalfHeight;
+        renderer.fillPolygon(mPolygon, 5, BLACK);
+        renderer.strokePolygon(mPolygon, 5, mReticleColor, RETICLE_STROKE_WIDTH);
+        renderer.drawText(Integer.toString((int) speed), textX, textHalfSize
+                - mScrollerTextVerticalMargin, mTextColor, mTextSize, HudRenderer.ALIGN_CENTER);
+
+        renderer.restore();
+
+        /* Drawing right scroller */
+        right = mWidth / 2;
+        left = right - mScrollerWidth;
+
+        // Draw Vertical speed indicator
+        final float vsiWidth = mScrollerWidth / 4;
+        final float lineSpace = mScrollerHeight / SCROLLER_VSI_RANGE;
+
+        mPolygon[0] = left;
+        mPolygon[1] = top;
+        mPolygon[2] = left - vsiWidth;
+        mPolygon[3] = top + vsiWidth;
+        mPolygon[4] = left - vsiWidth;
+        mPolygon[5] = bottom - vsiWidth;
+        mPolygon[6] = left;
+        mPolygon[7] = bottom;
+        renderer.fillPolygon(mPolygon, 4, mScrollerBgColor);
+        renderer.strokePolygon(mPolygon, 4, WHITE, mBorderWidth);
+
+        final float vsiIndicatorEnd = centerY - verticalSpeed * lineSpace;
+        renderer.fillRect(left - vsiWidth, Math.min(centerY, vsiIndicatorEnd), left,
+                Math.max(centerY, vsiIndicatorEnd), VSI_COLOR);
+        renderer.drawLine(left - vsiWidth, vsiIndicatorEnd, left, vsiIndicatorEnd, WHITE,
+                mThinTicWidth);
+
+        for (int a = 1; a < SCROLLER_VSI_RANGE; a++) {
+            final float lineHeight = top + lineSpace * a;
+            renderer.drawLine(left - vsiWidth, lineHeight, left - vsiWidth + vsiWidth / 3,
+                    lineHeight, WHITE, mThickTicWidth);
+        }
+
+        // Draw VSI center indicator
+        renderer.drawLine(left + borderWidth, 0, left - vsiWidth - borderWidth, 0, mReticleColor,
+                RETICLE_STROKE_WIDTH);
+    }
+
+    /*
+    Theme properties getters, and setters
+     */
+    public boolean isEnabled() {
+        return mEnabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        mEnabled = enabled;
+    }
+
+    public int getGroundColor() {
+        return mGroundColor;
+    }
+
+    public void setGroundColor(int color) {
+        mGroundColor = color;
+    }
+
+    public int getSkyColor() {
+        return mSkyColor;
+    }
+
+    public void setSkyColor(int color) {
+        mSkyColor = color;
+    }
+
+    public int getReticleColor() {
+        return mReticleColor;
+    }
+
+    public void setReticleColor(int color) {
+        mReticleColor = color;
+    }
+
+    public float getReticleRadius() {
+        return mReticleRadius;
+    }
+
+    public void setReticleRadius(float radius) {
+        mReticleRadius = radius;
+    }
+
+    public int getTextColor() {
+        return mTextColor;
+    }
+
+    public void setTextColor(int color) {
+        mTextColor = color;
+    }
+
+    public float getTextSize() {
+        return mTextSize;
+    }
+
+    public void setTextSize(float textSize) {
+        mTextSize = textSize;
+        mLayoutValid = false;
+    }
+
+    public int getYawBgColor() {
+        return mYawBgColor;
+    }
+
+    public void setYawBgColor(int color) {
+        mYawBgColor = color;
+    }
+
+    public int getScrollerBgColor() {
+        return mScrollerBgColor;
+    }
+
+    public void setScrollerBgColor(int color) {
+        mScrollerBgColor = color;
+    }
+
+    public float getPitchScaleWidth() {
+        return mPitchScaleWidth;
+    }
+
+    public void setPitchScaleWidth(float pitchScaleWidth) {
+        mPitchScaleWidth = pitchScaleWidth;
+    }
+
+    public float getTopBarHeight() {
+        return mTopBarHeight;
+    }
+
+    public void setTopBarHeight(float topBarHeight) {
+        mTopBarHeight = topBarHeight;
+        mLayoutValid = false;
+    }
+
+    public void setScrollerSize(float width, float height) {
+        mScrollerWidth = width;
+        mScrollerHeight = height;
+    }
+
+    /**
+     * Scales all the sizes by the given factor, e.g: the display density when matching a hud
+     * view drawn on a device.
+     */
+    public void scaleSizes(float factor) {
+        mTextSize *= factor;
+        mReticleRadius *= factor;
+        mPitchScaleWidth *= factor;
+        mTopBarHeight *= factor;
+        mScrollerWidth *= factor;
+        mScrollerHeight *= factor;
+        mScrollerArrowHeight *= factor;
+        mScrollerTicWidth *= factor;
+        mScrollerTextHorizontalMargin *= factor;
+        mScrollerTextVerticalMargin *= factor;
+        mLayoutValid = false;
+    }
+}
@@ -0,0 +1,86 @@
+package com.ne0fhyklabs.androhud.render;
+
+/**
+ * Minimal set of drawing primitives needed to render the hud.
+ * The interface only uses primitive types, so the drawing code written against it doesn't
+ * depend on the android graphics classes, and can run on any graphics backend.
+ * Colors are packed ARGB ints, angles are in degrees, clockwise, and positions are in pixels with
+ * the y axis pointing down.
+ */
+public interface HudRenderer {
+
+    /*
+    Text alignments, relative to the text anchor.
+     */
+    int ALIGN_LEFT = 0;
+    int ALIGN_CENTER = 1;
+    int ALIGN_RIGHT = 2;
+
+    /**
+     * @return width in pixels of the drawing surface.
+     */
+    int getWidth();
+
+    /**
+     * @return height in pixels of the drawing surface.
+     */
+    int getHeight();
+
+    /**
+     * Saves the current transformation, and clip. Calls must be balanced by {@link #restore()}.
+     */
+    void save();
+
+    void restore();
+
+    void translate(float dx, float dy);
+
+    /**
+     * Rotates around the current origin.
+     */
+    void rotate(float degrees);
+
+    /**
+     * Intersects the current clip with the given rectangle.
+     */
+    void clipRect(float left, float top, float right, float bottom);
+
+    void fillRect(float left, float top, float right, float bottom, int color);
+
+    void strokeRect(float left, float top, float right, float bottom, int color,
+                    float strokeWidth);
+
+    void drawLine(float startX, float startY, float stopX, float stopY, int color,
+                  float strokeWidth);
+
+    void strokeCircle(float centerX, float centerY, float radius, int color, float strokeWidth);
+
+    /**
+     * Strokes an arc of the oval inscribed in the given rectangle. 0 degree is at 3 o'clock.
+     */
+    void strokeArc(float left, float top, float right, float bottom, float startAngle,
+                   float sweepAngle, int color, float strokeWidth);
+
+    /**
+     * Fills the polygon whose vertices are stored as x, y pairs in points.
+     *
+     * @param points      vertices coordinates.
+     * @param pointsCount number of vertices.
+     */
+    void fillPolygon(float[] points, int pointsCount, int color);
+
+    /**
+     * Strokes the closed polygon whose vertices are stored as x, y pairs in points.
+     *
+     * @param points      vertices coordinates.
+     * @param pointsCount number of vertices.
+     */
+    void strokePolygon(float[] points, int pointsCount, int color, float strokeWidth);
+
+    /**
+     * Draws the given text, with its baseline at y.
+     *
+     * @param align one of {@link #ALIGN_LEFT}, {@link #ALIGN_CENTER}, or {@link #ALIGN_RIGHT}.
+     */
+    void drawText(String text, float x, float y, int color, float textSize, int align);
+}
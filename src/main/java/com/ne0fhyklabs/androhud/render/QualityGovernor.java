@@ -0,0 +1,206 @@
+package com.ne0fhyklabs.androhud.render;
+
+import android.graphics.Paint;
+
+/**
+ * Adapts a widget's render quality to its draw time.
+ * The widget times each of its draw passes. When they keep overrunning the frame budget, the
+ * quality is stepped down one level at a time; it is stepped back up once the draw passes have
+ * kept enough headroom for a while. Downgrades and upgrades use different thresholds, so the
+ * quality doesn't oscillate around the budget.
+ * Levels are cumulative: each level keeps the simplifications of the levels below it.
+ * With hardware acceleration, the measured time is the time spent recording the draw commands.
+ */
+public class QualityGovernor {
+
+    /**
+     * Everything is drawn.
+     */
+    public static final int LEVEL_FULL = 0;
+
+    /**
+     * Minor ticks are skipped.
+     */
+    public static final int LEVEL_NO_MINOR_TICKS = 1;
+
+    /**
+     * Axis-aligned lines are drawn without anti-aliasing.
+     */
+    public static final int LEVEL_ALIASED_LINES = 2;
+
+    /**
+     * Only every other label is drawn.
+     */
+    public static final int LEVEL_SPARSE_LABELS = 3;
+
+    public static final int LEVEL_LOWEST = LEVEL_SPARSE_LABELS;
+
+    public static final float DEFAULT_FRAME_BUDGET_MS = 16f;
+
+    /**
+     * Number of consecutive overrunning draw passes before stepping down.
+     */
+    private static final int DOWNGRADE_FRAME_COUNT = 3;
+
+    /**
+     * Number of consecutive draw passes with headroom before stepping up.
+     */
+    private static final int UPGRADE_FRAME_COUNT = 60;
+
+    /**
+     * Fraction of the budget a draw pass must stay under to count as having headroom.
+     */
+    private static final float UPGRADE_BUDGET_FRACTION = 0.5f;
+
+    private boolean mEnabled;
+    private long mBudgetNanos;
+
+    private int mLevel = LEVEL_FULL;
+    private int mOverrunFrames;
+    private int mHeadroomFrames;
+
+    private long mFrameStartNanos;
+    private long mLastDrawNanos;
+    private long mLevelChangeCount;
+
+    public QualityGovernor() {
+        setFrameBudget(DEFAULT_FRAME_BUDGET_MS);
+    }
+
+    /**
+     * Marks the start of a draw pass.
+     */
+    public void beginFrame() {
+        if (mEnabled)
+            mFrameStartNanos = System.nanoTime();
+    }
+
+    /**
+     * Marks the end of the draw pass started by {@link #beginFrame()}, and updates the quality
+     * level. The new level applies from the next draw pass.
+     *
+     * @return true if the quality level changed.
+     */
+    public boolean endFrame() {
+        if (!mEnabled)
+            return false;
+
+        return onFrameDrawn(System.nanoTime() - mFrameStartNanos);
+    }
+
+    /**
+     * Updates the quality level based on the duration of a draw pass.
+     *
+     * @param drawNanos duration of the draw pass in nanoseconds.
+     * @return true if the quality level changed.
+     */
+    public boolean onFrameDrawn(long drawNanos) {
+        mLastDrawNanos = drawNanos;
+
+        if (drawNanos > mBudgetNanos) {
+            mHeadroomFrames = 0;
+            if (++mOverrunFrames >= DOWNGRADE_FRAME_COUNT && mLevel < LEVEL_LOWEST) {
+                mOverrunFrames = 0;
+                mLevel++;
+                mLevelChangeCount++;
+                return true;
+            }
+        }
+        else {
+            mOverrunFrames = 0;
+            if (drawNanos <= mBudgetNanos * UPGRADE_BUDGET_FRACTION) {
+                if (++mHeadroomFrames >= UPGRADE_FRAME_COUNT && mLevel > LEVEL_FULL) {
+                    mHeadroomFrames = 0;
+                    mLevel--;
+                    mLevelChangeCount++;
+                    return true;
+                }
+            }
+            else {
+                mHeadroomFrames = 0;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Goes back to full quality, and clears the frame history.
+     */
+    public void reset() {
+        mLevel = LEVEL_FULL;
+        mOverrunFrames = 0;
+        mHeadroomFrames = 0;
+        mLastDrawNanos = 0;
+    }
+
+    public boolean isEnabled() {
+        return mEnabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        mEnabled = enabled;
+        if (!enabled)
+            reset();
+    }
+
+    /**
+     * @return the current quality level, from {@link #LEVEL_FULL} to {@link #LEVEL_LOWEST}.
+     * Always {@link #LEVEL_FULL} when disabled.
+     */
+    public int getLevel() {
+        return mLevel;
+    }
+
+    public boolean isDrawingMinorTicks() {
+        return mLevel < LEVEL_NO_MINOR_TICKS;
+    }
+
+    public boolean isAliasingLines() {
+        return mLevel >= LEVEL_ALIASED_LINES;
+    }
+
+    public boolean isThinningLabels() {
+        return mLevel >= LEVEL_SPARSE_LABELS;
+    }
+
+    public float getFrameBudget() {
+        return mBudgetNanos / 1000000f;
+    }
+
+    /**
+     * @param budgetMs draw time in milliseconds a draw pass should stay under.
+     */
+    public void setFrameBudget(float budgetMs) {
+        if (!(budgetMs > 0))
+            throw new IllegalArgumentException("Frame budget should be positive: " + budgetMs);
+
+        mBudgetNanos = (long) (budgetMs * 1000000);
+    }
+
+    /**
+     * @return duration in nanoseconds of the last timed draw pass.
+     */
+    public long getLastDrawNanos() {
+        return mLastDrawNanos;
+    }
+
+    /**
+     * @return the number of times the quality level changed.
+     */
+    public long getLevelChangeCount() {
+        return mLevelChangeCount;
+    }
+
+    /**
+     * Copies the given paint with anti-aliasing disabled, for drawing axis-aligned lines.
+     *
+     * @param paint source paint.
+     * @param out   paint updated with the copy.
+     * @return out.
+     */
+    public static Paint aliasedCopy(Paint paint, Paint out) {
+        out.set(paint);
+        out.setAntiAlias(false);
+        return out;
+    }
+}
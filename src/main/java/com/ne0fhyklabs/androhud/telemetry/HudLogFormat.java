@@ -0,0 +1,88 @@
+package com.ne0fhyklabs.androhud.telemetry;
+
+/**
+ * Layout of the binary hud log files.
+ * <p/>
+ * A log is made of a header, a sequence of blocks, a sparse time index, and a footer:
+ * <p/>
+ * - header: magic (int), version (byte).
+ * <p/>
+ * - block: up to {@link #SAMPLES_PER_BLOCK} samples. The first sample of a block is a key sample
+ * holding absolute values, so decoding can start at any block. The following samples hold the
+ * delta against the previous sample. Values, quantized to 1/{@link #VALUE_SCALE} units, are
+ * stored as zigzag varints. Timestamps are stored as plain varints: their deltas are never
+ * negative, and key timestamps are expected to be positive, a negative one takes 10 bytes.
+ * <p/>
+ * - index: one fixed size entry per block: first timestamp (long), block offset (long).
+ * <p/>
+ * - footer: index offset (long), block count (int), sample count (long), magic (int).
+ * <p/>
+ * Multi-bytes fixed size fields are big endian.
+ */
+public class HudLogFormat {
+
+    private HudLogFormat(){}
+
+    public static final int MAGIC = 0x41485544; // "AHUD"
+    public static final byte VERSION = 1;
+
+    public static final int HEADER_LENGTH = 5;
+    public static final int INDEX_ENTRY_LENGTH = 16;
+    public static final int FOOTER_LENGTH = 24;
+
+    /**
+     * Number of samples between two key samples, i.e: seek granularity.
+     */
+    public static final int SAMPLES_PER_BLOCK = 64;
+
+    /**
+     * Values are stored with a 0.01 unit resolution.
+     */
+    public static final float VALUE_SCALE = 100f;
+
+    /**
+     * Number of quantized values per sample.
+     */
+    static final int VALUE_COUNT = 7;
+
+    /**
+     * Maximum encoded length of a sample: a varint timestamp, and the varint values.
+     */
+    static final int MAX_SAMPLE_LENGTH = 10 + VALUE_COUNT * 5;
+
+    static int quantize(float value) {
+        final float scaled = value * VALUE_SCALE;
+        if (scaled >= Integer.MAX_VALUE)
+            return Integer.MAX_VALUE;
+        if (scaled <= Integer.MIN_VALUE)
+            return Integer.MIN_VALUE;
+        return Math.round(scaled);
+    }
+
+    static float dequantize(int value) {
+        return value / VALUE_SCALE;
+    }
+
+    /*
+    Per sample values, in encoding order.
+     */
+    static void toQuantized(HudState state, int[] out) {
+        out[0] = quantize(state.pitch);
+        out[1] = quantize(state.roll);
+        out[2] = quantize(state.yaw);
+        out[3] = quantize(state.airSpeed);
+        out[4] = quantize(state.targetSpeed);
+        out[5] = quantize(state.verticalSpeed);
+        out[6] = quantize(state.altitude);
+    }
+
+    static void fromQuantized(int[] values, HudState out) {
+        out.pitch = dequantize(values[0]);
+        out.roll = dequantize(values[1]);
+        out.yaw = dequantize(values[2]);
+        out.airSpeed = dequantize(values[3]);
+        out.targetSpeed = dequantize(values[4]);
+        out.verticalSpeed = dequantize(values[5]);
+        out.altitude = dequantize(values[6]);
+    }
+}
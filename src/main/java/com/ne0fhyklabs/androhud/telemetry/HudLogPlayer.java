@@ -0,0 +1,55 @@
+package com.ne0fhyklabs.androhud.telemetry;
+
+/**
+ * Replays a hud log against a clock controlled by the caller, so replays are deterministic, and
+ * can run faster than real time.
+ * For example, a benchmark can step the log time by a fixed amount per frame, while a scrubbing
+ * ui can map its seek bar position to the log time.
+ */
+public class HudLogPlayer {
+
+    private final HudLogReader mReader;
+
+    /**
+     * Next sample to be played, read ahead of the playback time.
+     */
+    private final HudState mNext = new HudState();
+    private boolean mHasNext;
+
+    public HudLogPlayer(HudLogReader reader) {
+        mReader = reader;
+        seek(reader.getStartTimestamp());
+    }
+
+    /**
+     * Moves the playback to the given log time.
+     */
+    public void seek(long logTime) {
+        mReader.seek(logTime);
+        mHasNext = mReader.next(mNext);
+    }
+
+    /**
+     * Advances the playback up to the given log time.
+     *
+     * @param logTime playback time, in the log's time base.
+     * @param out     updated with the latest sample whose timestamp is at or before logTime.
+     * @return true if out was updated, false if no new sample was reached.
+     */
+    public boolean advanceTo(long logTime, HudState out) {
+        boolean updated = false;
+        while (mHasNext && mNext.timestamp <= logTime) {
+            out.set(mNext);
+            updated = true;
+            mHasNext = mReader.next(mNext);
+        }
+        return updated;
+    }
+
+    /**
+     * @return true when all the samples have been played.
+     */
+    public boolean isFinished() {
+        return !mHasNext;
+    }
+}
@@ -0,0 +1,204 @@
+package com.ne0fhyklabs.androhud.telemetry;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+import static com.ne0fhyklabs.androhud.telemetry.HudLogFormat.*;
+
+/**
+ * Reads hud state samples from a binary hud log. See {@link HudLogFormat}.
+ * The log file is memory mapped, and samples are decoded in place, so reading doesn't allocate.
+ * Logs are limited to 2GB.
+ * This class is not thread safe.
+ */
+public class HudLogReader implements Closeable {
+
+    private final ByteBuffer mBuffer;
+
+    private final long mIndexOffset;
+    private final int mBlockCount;
+    private final long mSampleCount;
+
+    /*
+    Decoding state.
+     */
+    private int mPosition;
+    private long mSampleIndex;
+    private long mTimestamp;
+    private final int[] mValues = new int[VALUE_COUNT];
+
+    /**
+     * Holds a sample decoded ahead by {@link #seek(long)}, to be returned by the next call to
+     * {@link #next(HudState)}.
+     */
+    private final HudState mPending = new HudState();
+    private boolean mHasPending;
+
+    public HudLogReader(File file) throws IOException {
+        final RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            final FileChannel channel = raf.getChannel();
+            final long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("Hud log is too large: " + size + " bytes.");
+            }
+
+            final MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            mBuffer = mapped;
+        } finally {
+            //The mapping remains valid once the file is closed.
+            raf.close();
+        }
+
+        if (mBuffer.capacity() < HEADER_LENGTH + FOOTER_LENGTH
+                || mBuffer.getInt(0) != MAGIC
+                || mBuffer.getInt(mBuffer.capacity() - 4) != MAGIC) {
+            throw new IOException("Invalid hud log: " + file);
+        }
+
+        if (mBuffer.get(4) != VERSION) {
+            throw new IOException("Unsupported hud log version: " + mBuffer.get(4));
+        }
+
+        final int footer = mBuffer.capacity() - FOOTER_LENGTH;
+        mIndexOffset = mBuffer.getLong(footer);
+        mBlockCount = mBuffer.getInt(footer + 8);
+        mSampleCount = mBuffer.getLong(footer + 12);
+
+        if (mIndexOffset < HEADER_LENGTH
+                || mIndexOffset + (long) mBlockCount * INDEX_ENTRY_LENGTH != footer) {
+            throw new IOException("Corrupted hud log index: " + file);
+        }
+
+        rewind();
+    }
+
+    public long getSampleCount() {
+        return mSampleCount;
+    }
+
+    /**
+     * @return the timestamp of the first sample, or 0 if the log is empty.
+     */
+    public long getStartTimestamp() {
+        return mBlockCount == 0 ? 0 : getBlockTimestamp(0);
+    }
+
+    /**
+     * Moves back to the first sample.
+     */
+    public void rewind() {
+        mHasPending = false;
+        mSampleIndex = 0;
+        mPosition = HEADER_LENGTH;
+    }
+
+    /**
+     * Moves to the first sample whose timestamp is greater or equal to the given one, using the
+     * index to skip to the right block.
+     *
+     * @param timestamp timestamp to seek to.
+     */
+    public void seek(long timestamp) {
+        //Binary search for the last block starting at or before the timestamp.
+        int low = 0;
+        int high = mBlockCount - 1;
+        int block = 0;
+        while (low <= high) {
+            final int mid = (low + high) >>> 1;
+            if (getBlockTimestamp(mid) <= timestamp) {
+                block = mid;
+                low = mid + 1;
+            }
+            else {
+                high = mid - 1;
+            }
+        }
+
+        mHasPending = false;
+        if (mBlockCount == 0) {
+            rewind();
+            return;
+        }
+
+        mSampleIndex = (long) block * SAMPLES_PER_BLOCK;
+        mPosition = (int) mBuffer.getLong((int) (mIndexOffset + (long) block * INDEX_ENTRY_LENGTH
+                + 8));
+
+        while (decodeNext(mPending)) {
+            if (mPending.timestamp >= timestamp) {
+                mHasPending = true;
+                return;
+            }
+        }
+    }
+
+    /**
+     * Reads the next sample.
+     *
+     * @param out updated with the sample's values.
+     * @return false when the end of the log has been reached.
+     */
+    public boolean next(HudState out) {
+        if (mHasPending) {
+            mHasPending = false;
+            out.set(mPending);
+            return true;
+        }
+
+        return decodeNext(out);
+    }
+
+    @Override
+    public void close() {
+        //Nothing to release, the mapping is released once the buffer is garbage collected.
+    }
+
+    private long getBlockTimestamp(int block) {
+        return mBuffer.getLong((int) (mIndexOffset + (long) block * INDEX_ENTRY_LENGTH));
+    }
+
+    private boolean decodeNext(HudState out) {
+        if (mSampleIndex >= mSampleCount)
+            return false;
+
+        if (mSampleIndex % SAMPLES_PER_BLOCK == 0) {
+            mTimestamp = readVarLong();
+            for (int i = 0; i < VALUE_COUNT; i++) {
+                mValues[i] = (int) unzigzag(readVarLong());
+            }
+        }
+        else {
+            mTimestamp += readVarLong();
+            for (int i = 0; i < VALUE_COUNT; i++) {
+                mValues[i] += (int) unzigzag(readVarLong());
+            }
+        }
+
+        mSampleIndex++;
+        out.timestamp = mTimestamp;
+        fromQuantized(mValues, out);
+        return true;
+    }
+
+    private long readVarLong() {
+        long value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = mBuffer.get(mPosition++);
+            value |= (long) (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0 && shift < 64);
+        return value;
+    }
+
+    private static long unzigzag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+}
@@ -0,0 +1,161 @@
+package com.ne0fhyklabs.androhud.telemetry;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+
+import static com.ne0fhyklabs.androhud.telemetry.HudLogFormat.*;
+
+/**
+ * Records hud state samples in the binary hud log format. See {@link HudLogFormat}.
+ * Samples must be appended in increasing timestamp order. Appending a sample doesn't allocate,
+ * except when the in-memory index needs to grow.
+ * This class is not thread safe.
+ */
+public class HudLogWriter implements Closeable {
+
+    private final OutputStream mOut;
+
+    /**
+     * Used to encode samples, and fixed size fields before writing them.
+     */
+    private final byte[] mBuffer = new byte[Math.max(MAX_SAMPLE_LENGTH, FOOTER_LENGTH)];
+
+    private final int[] mValues = new int[VALUE_COUNT];
+    private final int[] mPreviousValues = new int[VALUE_COUNT];
+    private long mPreviousTimestamp;
+
+    /*
+    Index of the blocks written so far.
+     */
+    private long[] mBlockTimestamps = new long[16];
+    private long[] mBlockOffsets = new long[16];
+    private int mBlockCount;
+
+    private long mSampleCount;
+    private long mOffset;
+    private boolean mClosed;
+
+    /**
+     * @param out stream the log is written to. Should be buffered. Closed along with the writer.
+     */
+    public HudLogWriter(OutputStream out) throws IOException {
+        mOut = out;
+
+        writeInt(MAGIC, mBuffer, 0);
+        mBuffer[4] = VERSION;
+        write(mBuffer, HEADER_LENGTH);
+    }
+
+    /**
+     * Appends the given sample to the log.
+     */
+    public void append(HudState sample) throws IOException {
+        if (mClosed)
+            throw new IllegalStateException("Hud log writer is closed.");
+
+        if (mSampleCount > 0 && sample.timestamp < mPreviousTimestamp) {
+            throw new IllegalArgumentException("Samples should be appended in timestamp order.");
+        }
+
+        toQuantized(sample, mValues);
+
+        int length = 0;
+        if (mSampleCount % SAMPLES_PER_BLOCK == 0) {
+            //Key sample
+            addIndexEntry(sample.timestamp, mOffset);
+            length = writeVarLong(sample.timestamp, mBuffer, length);
+            for (int i = 0; i < VALUE_COUNT; i++) {
+                length = writeVarLong(zigzag(mValues[i]), mBuffer, length);
+            }
+        }
+        else {
+            length = writeVarLong(sample.timestamp - mPreviousTimestamp, mBuffer, length);
+            for (int i = 0; i < VALUE_COUNT; i++) {
+                length = writeVarLong(zigzag((long) mValues[i] - mPreviousValues[i]), mBuffer,
+                        length);
+            }
+        }
+
+        write(mBuffer, length);
+        System.arraycopy(mValues, 0, mPreviousValues, 0, VALUE_COUNT);
+        mPreviousTimestamp = sample.timestamp;
+        mSampleCount++;
+    }
+
+    /**
+     * Writes the index, and footer, then closes the underlying stream.
+     */
+    @Override
+    public void close() throws IOException {
+        if (mClosed)
+            return;
+        mClosed = true;
+
+        try {
+            final long indexOffset = mOffset;
+            for (int i = 0; i < mBlockCount; i++) {
+                writeLong(mBlockTimestamps[i], mBuffer, 0);
+                writeLong(mBlockOffsets[i], mBuffer, 8);
+                write(mBuffer, INDEX_ENTRY_LENGTH);
+            }
+
+            writeLong(indexOffset, mBuffer, 0);
+            writeInt(mBlockCount, mBuffer, 8);
+            writeLong(mSampleCount, mBuffer, 12);
+            writeInt(MAGIC, mBuffer, 20);
+            write(mBuffer, FOOTER_LENGTH);
+        } finally {
+            mOut.close();
+        }
+    }
+
+    public long getSampleCount() {
+        return mSampleCount;
+    }
+
+    private void addIndexEntry(long timestamp, long offset) {
+        if (mBlockCount == mBlockTimestamps.length) {
+            final long[] timestamps = new long[mBlockCount * 2];
+            final long[] offsets = new long[mBlockCount * 2];
+            System.arraycopy(mBlockTimestamps, 0, timestamps, 0, mBlockCount);
+            System.arraycopy(mBlockOffsets, 0, offsets, 0, mBlockCount);
+            mBlockTimestamps = timestamps;
+            mBlockOffsets = offsets;
+        }
+
+        mBlockTimestamps[mBlockCount] = timestamp;
+        mBlockOffsets[mBlockCount] = offset;
+        mBlockCount++;
+    }
+
+    private void write(byte[] data, int length) throws IOException {
+        mOut.write(data, 0, length);
+        mOffset += length;
+    }
+
+    static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    static int writeVarLong(long value, byte[] out, int offset) {
+        while ((value & ~0x7FL) != 0) {
+            out[offset++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out[offset++] = (byte) value;
+        return offset;
+    }
+
+    private static void writeInt(int value, byte[] out, int offset) {
+        out[offset] = (byte) (value >>> 24);
+        out[offset + 1] = (byte) (value >>> 16);
+        out[offset + 2] = (byte) (value >>> 8);
+        out[offset + 3] = (byte) value;
+    }
+
+    private static void writeLong(long value, byte[] out, int offset) {
+        writeInt((int) (value >>> 32), out, offset);
+        writeInt((int) value, out, offset + 4);
+    }
+}
@@ -0,0 +1,140 @@
+package com.ne0fhyklabs.androhud.telemetry;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Decodes the packets produced by {@link HudMirrorEncoder}, to reproduce a mirrored hud.
+ * Packets must be decoded in order. When a packet is missing, the following delta packets can't
+ * be decoded, and are skipped until the next key frame; {@link #isWaitingForKeyFrame()} lets
+ * the receiver ask the sender for one.
+ */
+public class HudMirrorDecoder {
+
+    /**
+     * Number of values carried per packet.
+     */
+    static final int VALUE_COUNT = 7;
+
+    /*
+    State of the previous packet.
+     */
+    private final int[] mBits = new int[VALUE_COUNT];
+    private long mTimestamp;
+    private int mExpectedSequence;
+    private boolean mWaitingForKeyFrame = true;
+
+    /*
+    Decoding statistics.
+     */
+    private long mFrameCount;
+    private long mSkippedFrameCount;
+
+    /**
+     * Decodes the packet at the buffer's position. The position is moved past the packet, even
+     * if it's skipped.
+     *
+     * @param in  buffer holding a whole packet.
+     * @param out updated with the decoded state.
+     * @return true if out was updated, false if the packet was skipped while waiting for a key
+     * frame.
+     * @throws java.nio.BufferUnderflowException if the packet is truncated.
+     */
+    public boolean decode(ByteBuffer in, HudState out) {
+        final int flags = in.get() & 0xFF;
+        final int sequence = in.get() & 0xFF;
+        final boolean keyFrame = (flags & HudMirrorEncoder.KEY_FRAME_FLAG) != 0;
+
+        if (!keyFrame && (mWaitingForKeyFrame || sequence != mExpectedSequence)) {
+            //A packet was lost, the deltas no longer apply.
+            mWaitingForKeyFrame = true;
+            skipPacket(flags, in);
+            mSkippedFrameCount++;
+            return false;
+        }
+
+        if (keyFrame) {
+            for (int i = 0; i < mBits.length; i++) {
+                mBits[i] = 0;
+            }
+            mTimestamp = 0;
+            mWaitingForKeyFrame = false;
+        }
+
+        mTimestamp += unzigzag(readVarLong(in));
+        for (int i = 0; i < mBits.length; i++) {
+            if ((flags & (1 << i)) != 0)
+                mBits[i] ^= (int) readVarLong(in);
+        }
+
+        mExpectedSequence = (sequence + 1) & 0xFF;
+        mFrameCount++;
+
+        out.timestamp = mTimestamp;
+        fromBits(mBits, out);
+        return true;
+    }
+
+    /**
+     * @return true if the decoder lost track of the stream, and needs a key frame.
+     */
+    public boolean isWaitingForKeyFrame() {
+        return mWaitingForKeyFrame;
+    }
+
+    public long getFrameCount() {
+        return mFrameCount;
+    }
+
+    public long getSkippedFrameCount() {
+        return mSkippedFrameCount;
+    }
+
+    private static void skipPacket(int flags, ByteBuffer in) {
+        readVarLong(in);
+        for (int i = 0; i < VALUE_COUNT; i++) {
+            if ((flags & (1 << i)) != 0)
+                readVarLong(in);
+        }
+    }
+
+    /*
+    Per packet values, in encoding order.
+     */
+    static void toBits(HudState state, int[] out) {
+        out[0] = Float.floatToRawIntBits(state.pitch);
+        out[1] = Float.floatToRawIntBits(state.roll);
+        out[2] = Float.floatToRawIntBits(state.yaw);
+        out[3] = Float.floatToRawIntBits(state.airSpeed);
+        out[4] = Float.floatToRawIntBits(state.targetSpeed);
+        out[5] = Float.floatToRawIntBits(state.verticalSpeed);
+        out[6] = Float.floatToRawIntBits(state.altitude);
+    }
+
+    static void fromBits(int[] bits, HudState out) {
+        out.pitch = Float.intBitsToFloat(bits[0]);
+        out.roll = Float.intBitsToFloat(bits[1]);
+        out.yaw = Float.intBitsToFloat(bits[2]);
+        out.airSpeed = Float.intBitsToFloat(bits[3]);
+        out.targetSpeed = Float.intBitsToFloat(bits[4]);
+        out.verticalSpeed = Float.intBitsToFloat(bits[5]);
+        out.altitude = Float.intBitsToFloat(bits[6]);
+    }
+
+    private static long unzigzag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private static long readVarLong(ByteBuffer in) {
+        long value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            if (shift > 63)
+                throw new IllegalArgumentException("Malformed varint.");
+            b = in.get();
+            value |= (long) (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return value;
+    }
+}
@@ -0,0 +1,154 @@
+package com.ne0fhyklabs.androhud.telemetry;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Serializes the hud states of successive frames into compact packets, to mirror a hud onto
+ * remote displays. See {@link HudMirrorDecoder} for the receiving side.
+ * <p/>
+ * Each packet is delta encoded against the previous one: it starts with a flags byte, holding
+ * the key frame bit, and a bit per value that changed, and a sequence number byte. Then comes
+ * the timestamp delta as a zigzag varint, and for each changed value, the xor of its float bits
+ * with the previous ones as a varint. Values are carried bit for bit, so the receiving side
+ * draws exactly the same frame.
+ * <p/>
+ * Key frames are encoded against a zeroed state, so the decoder can resynchronize after a lost
+ * packet. They're sent periodically, and on request.
+ */
+public class HudMirrorEncoder {
+
+    /**
+     * Maximum length of an encoded packet.
+     */
+    public static final int MAX_PACKET_LENGTH = 2 + 10 + HudMirrorDecoder.VALUE_COUNT * 5;
+
+    public static final int DEFAULT_KEY_FRAME_INTERVAL = 30;
+
+    static final int KEY_FRAME_FLAG = 0x80;
+
+    private final int mKeyFrameInterval;
+
+    /*
+    State of the previous packet.
+     */
+    private final int[] mPreviousBits = new int[HudMirrorDecoder.VALUE_COUNT];
+    private long mPreviousTimestamp;
+    private int mSequence;
+    private int mFramesSinceKeyFrame;
+    private boolean mKeyFrameRequested = true;
+
+    /*
+    Allocated at startup, and reused to avoid unnecessary memory allocation at runtime.
+     */
+    private final int[] mBits = new int[HudMirrorDecoder.VALUE_COUNT];
+
+    /*
+    Encoding statistics.
+     */
+    private long mFrameCount;
+    private long mKeyFrameCount;
+    private long mByteCount;
+
+    public HudMirrorEncoder() {
+        this(DEFAULT_KEY_FRAME_INTERVAL);
+    }
+
+    /**
+     * @param keyFrameInterval maximum number of packets between two key frames.
+     */
+    public HudMirrorEncoder(int keyFrameInterval) {
+        if (keyFrameInterval <= 0)
+            throw new IllegalArgumentException("Key frame interval should be positive.");
+
+        mKeyFrameInterval = keyFrameInterval;
+    }
+
+    /**
+     * Forces the next packet to be a key frame, e.g: when a receiver joins, or reports a lost
+     * packet.
+     */
+    public void requestKeyFrame() {
+        mKeyFrameRequested = true;
+    }
+
+    /**
+     * Encodes the given state into the buffer, at its position.
+     *
+     * @param state state to encode.
+     * @param out   buffer to write to. Needs at least {@link #MAX_PACKET_LENGTH} bytes remaining.
+     * @return the packet length.
+     */
+    public int encode(HudState state, ByteBuffer out) {
+        if (out.remaining() < MAX_PACKET_LENGTH)
+            throw new IllegalArgumentException("Not enough space left in the output buffer.");
+
+        final boolean keyFrame = mKeyFrameRequested || mFramesSinceKeyFrame >= mKeyFrameInterval;
+        if (keyFrame) {
+            for (int i = 0; i < mPreviousBits.length; i++) {
+                mPreviousBits[i] = 0;
+            }
+            mPreviousTimestamp = 0;
+            mFramesSinceKeyFrame = 0;
+            mKeyFrameRequested = false;
+            mKeyFrameCount++;
+        }
+
+        HudMirrorDecoder.toBits(state, mBits);
+        int flags = keyFrame ? KEY_FRAME_FLAG : 0;
+        for (int i = 0; i < mBits.length; i++) {
+            if (mBits[i] != mPreviousBits[i])
+                flags |= 1 << i;
+        }
+
+        final int start = out.position();
+        out.put((byte) flags);
+        out.put((byte) mSequence);
+        writeVarLong(zigzag(state.timestamp - mPreviousTimestamp), out);
+        for (int i = 0; i < mBits.length; i++) {
+            if ((flags & (1 << i)) != 0) {
+                writeVarLong((mBits[i] ^ mPreviousBits[i]) & 0xFFFFFFFFL, out);
+                mPreviousBits[i] = mBits[i];
+            }
+        }
+
+        mPreviousTimestamp = state.timestamp;
+        mSequence = (mSequence + 1) & 0xFF;
+        mFramesSinceKeyFrame++;
+
+        final int length = out.position() - start;
+        mFrameCount++;
+        mByteCount += length;
+        return length;
+    }
+
+    public long getFrameCount() {
+        return mFrameCount;
+    }
+
+    public long getKeyFrameCount() {
+        return mKeyFrameCount;
+    }
+
+    /**
+     * @return the total length of the encoded packets.
+     */
+    public long getByteCount() {
+        return mByteCount;
+    }
+
+    public float getAverageFrameLength() {
+        return mFrameCount == 0 ? 0 : mByteCount / (float) mFrameCount;
+    }
+
+    private static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static void writeVarLong(long value, ByteBuffer out) {
+        while ((value & ~0x7FL) != 0) {
+            out.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.put((byte) value);
+    }
+}
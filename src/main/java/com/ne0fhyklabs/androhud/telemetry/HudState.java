@@ -0,0 +1,86 @@
+package com.ne0fhyklabs.androhud.telemetry;
+
+import com.ne0fhyklabs.androhud.legacy.HudView;
+import com.ne0fhyklabs.androhud.widget.SimplePitchRoll;
+import com.ne0fhyklabs.androhud.widget.SimpleScroller;
+import com.ne0fhyklabs.androhud.widget.SimpleYaw;
+
+/**
+ * Mutable holder for the values displayed by the hud widgets at a given time.
+ * Instances are meant to be reused, to avoid unnecessary memory allocation at runtime.
+ */
+public class HudState {
+
+    /**
+     * Time in milliseconds at which the values were sampled.
+     */
+    public long timestamp;
+
+    /*
+    Attitude, in degrees.
+     */
+    public float pitch;
+    public float roll;
+    public float yaw;
+
+    public float airSpeed;
+    public float targetSpeed;
+    public float verticalSpeed;
+    public float altitude;
+
+    public HudState set(HudState other) {
+        timestamp = other.timestamp;
+        pitch = other.pitch;
+        roll = other.roll;
+        yaw = other.yaw;
+        airSpeed = other.airSpeed;
+        targetSpeed = other.targetSpeed;
+        verticalSpeed = other.verticalSpeed;
+        altitude = other.altitude;
+        return this;
+    }
+
+    /**
+     * Pushes this state to the given hud view, in a single update.
+     */
+    public void applyTo(HudView hudView) {
+        hudView.setHudState(this);
+    }
+
+    /**
+     * Pushes this state to the given widgets. Any of the widgets can be null.
+     *
+     * @param pitchRoll widget for the pitch, and roll values.
+     * @param yaw       widget for the yaw value.
+     * @param speed     scroller for the air speed value.
+     * @param altitude  scroller for the altitude value.
+     */
+    public void applyTo(SimplePitchRoll pitchRoll, SimpleYaw yaw, SimpleScroller speed,
+                        SimpleScroller altitude) {
+        if (pitchRoll != null)
+            pitchRoll.setPitchRoll(pitch, roll);
+        if (yaw != null)
+            yaw.setYaw(this.yaw);
+        if (speed != null)
+            speed.setScrollTo(airSpeed);
+        if (altitude != null)
+            altitude.setScrollTo(this.altitude);
+    }
+
+    public boolean valuesEqual(HudState other) {
+        return Float.compare(pitch, other.pitch) == 0
+                && Float.compare(roll, other.roll) == 0
+                && Float.compare(yaw, other.yaw) == 0
+                && Float.compare(airSpeed, other.airSpeed) == 0
+                && Float.compare(targetSpeed, other.targetSpeed) == 0
+                && Float.compare(verticalSpeed, other.verticalSpeed) == 0
+                && Float.compare(altitude, other.altitude) == 0;
+    }
+
+    @Override
+    public String toString() {
+        return "HudState{timestamp=" + timestamp + ", pitch=" + pitch + ", roll=" + roll +
+                ", yaw=" + yaw + ", airSpeed=" + airSpeed + ", targetSpeed=" + targetSpeed +
+                ", verticalSpeed=" + verticalSpeed + ", altitude=" + altitude + "}";
+    }
+}
@@ -0,0 +1,146 @@
+package com.ne0fhyklabs.androhud.telemetry;
+
+/**
+ * Single, versioned, copy of a vehicle's hud state, shared by all the views displaying it, e.g:
+ * the hud on the tablet screen, and on a secondary display.
+ * The producer publishes each state once, whatever the number of views. Every published change
+ * bumps the version, and notifies the listeners; the views then read the latest state when they
+ * draw, and skip the update when the version they last drew is still current.
+ * Can be used from any thread.
+ */
+public class HudStateSource {
+
+    /**
+     * Notified when a new state version is published.
+     */
+    public interface Listener {
+        /**
+         * Called on the publishing thread. Implementations should only schedule the update, and
+         * read the state later, e.g: at draw time.
+         */
+        void onStateChanged(HudStateSource source, long version);
+    }
+
+    /*
+    Identifiers of the single values, used by the widgets displaying one value.
+     */
+    public static final int VALUE_PITCH = 0;
+    public static final int VALUE_ROLL = 1;
+    public static final int VALUE_YAW = 2;
+    public static final int VALUE_AIR_SPEED = 3;
+    public static final int VALUE_TARGET_SPEED = 4;
+    public static final int VALUE_VERTICAL_SPEED = 5;
+    public static final int VALUE_ALTITUDE = 6;
+
+    private static final Listener[] NO_LISTENERS = new Listener[0];
+
+    /**
+     * Latest state, guarded by this.
+     */
+    private final HudState mState = new HudState();
+    private volatile long mVersion;
+
+    /**
+     * Copy on write array, so publishing iterates without locking, or allocating.
+     */
+    private volatile Listener[] mListeners = NO_LISTENERS;
+
+    /**
+     * Publishes a new state. Listeners are only notified if a displayed value changed.
+     *
+     * @return the current version.
+     */
+    public long publish(HudState state) {
+        final long version;
+        synchronized (this) {
+            if (mVersion != 0 && mState.valuesEqual(state)) {
+                mState.timestamp = state.timestamp;
+                return mVersion;
+            }
+
+            mState.set(state);
+            version = ++mVersion;
+        }
+
+        final Listener[] listeners = mListeners;
+        for (Listener listener : listeners) {
+            listener.onStateChanged(this, version);
+        }
+        return version;
+    }
+
+    /**
+     * @return the version of the latest state. 0 until a state is published.
+     */
+    public long getVersion() {
+        return mVersion;
+    }
+
+    /**
+     * Copies the latest state.
+     *
+     * @param out updated with the latest state.
+     * @return the version of the copied state.
+     */
+    public synchronized long read(HudState out) {
+        out.set(mState);
+        return mVersion;
+    }
+
+    public synchronized void addListener(Listener listener) {
+        for (Listener registered : mListeners) {
+            if (registered == listener)
+                return;
+        }
+
+        final Listener[] listeners = new Listener[mListeners.length + 1];
+        System.arraycopy(mListeners, 0, listeners, 0, mListeners.length);
+        listeners[mListeners.length] = listener;
+        mListeners = listeners;
+    }
+
+    public synchronized void removeListener(Listener listener) {
+        for (int i = 0; i < mListeners.length; i++) {
+            if (mListeners[i] == listener) {
+                final Listener[] listeners = new Listener[mListeners.length - 1];
+                System.arraycopy(mListeners, 0, listeners, 0, i);
+                System.arraycopy(mListeners, i + 1, listeners, i, listeners.length - i);
+                mListeners = listeners;
+                return;
+            }
+        }
+    }
+
+    /**
+     * @return the number of listeners, i.e: attached views.
+     */
+    public int getListenerCount() {
+        return mListeners.length;
+    }
+
+    /**
+     * @param state   state to read from.
+     * @param valueId one of the VALUE_* identifiers.
+     * @return the identified value.
+     */
+    public static float getValue(HudState state, int valueId) {
+        switch (valueId) {
+            case VALUE_PITCH:
+                return state.pitch;
+            case VALUE_ROLL:
+                return state.roll;
+            case VALUE_YAW:
+                return state.yaw;
+            case VALUE_AIR_SPEED:
+                return state.airSpeed;
+            case VALUE_TARGET_SPEED:
+                return state.targetSpeed;
+            case VALUE_VERTICAL_SPEED:
+                return state.verticalSpeed;
+            case VALUE_ALTITUDE:
+                return state.altitude;
+            default:
+                throw new IllegalArgumentException("Unknown value id: " + valueId);
+        }
+    }
+}
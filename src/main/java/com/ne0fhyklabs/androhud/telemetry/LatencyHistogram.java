@@ -0,0 +1,154 @@
+package com.ne0fhyklabs.androhud.telemetry;
+
+/**
+ * Fixed memory histogram of durations, in microseconds.
+ * Buckets are log-linear: durations under 16us get a bucket each, then each power of two range
+ * is split in 16 buckets, so every bucket is within 1/16th (~6%) of its value. Durations past
+ * {@link #MAX_MICROS} are counted in the last bucket. Recording doesn't allocate.
+ * This class is thread safe.
+ */
+public class LatencyHistogram {
+
+    /**
+     * Number of buckets per power of two range, and number of exact buckets.
+     */
+    private static final int SUB_BUCKET_BITS = 4;
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+
+    /**
+     * Highest power of two range covered by the buckets: [2^25, 2^26) us, i.e: up to ~67s.
+     */
+    private static final int MAX_EXPONENT = 25;
+
+    public static final long MAX_MICROS = (1L << (MAX_EXPONENT + 1)) - 1;
+
+    private static final int BUCKET_COUNT = SUB_BUCKET_COUNT
+            + (MAX_EXPONENT - SUB_BUCKET_BITS + 1) * SUB_BUCKET_COUNT;
+
+    private final long[] mCounts = new long[BUCKET_COUNT];
+    private long mCount;
+    private long mSumMicros;
+    private long mMinMicros = Long.MAX_VALUE;
+    private long mMaxMicros;
+
+    /**
+     * Records a duration. Negative durations, e.g: from clock adjustments, count as 0.
+     */
+    public synchronized void record(long micros) {
+        if (micros < 0)
+            micros = 0;
+
+        mCounts[getBucketIndex(micros)]++;
+        mCount++;
+        mSumMicros += micros;
+        if (micros < mMinMicros)
+            mMinMicros = micros;
+        if (micros > mMaxMicros)
+            mMaxMicros = micros;
+    }
+
+    public synchronized void reset() {
+        for (int i = 0; i < mCounts.length; i++) {
+            mCounts[i] = 0;
+        }
+        mCount = 0;
+        mSumMicros = 0;
+        mMinMicros = Long.MAX_VALUE;
+        mMaxMicros = 0;
+    }
+
+    public synchronized long getCount() {
+        return mCount;
+    }
+
+    /**
+     * @return the shortest recorded duration, or 0 if none was recorded.
+     */
+    public synchronized long getMinMicros() {
+        return mCount == 0 ? 0 : mMinMicros;
+    }
+
+    public synchronized long getMaxMicros() {
+        return mMaxMicros;
+    }
+
+    public synchronized float getMeanMicros() {
+        return mCount == 0 ? 0 : mSumMicros / (float) mCount;
+    }
+
+    /**
+     * @param percentile in [0, 100].
+     * @return an upper bound of the given percentile, i.e: the upper bound of the bucket holding
+     * it, or 0 if no duration was recorded.
+     */
+    public synchronized long getPercentileMicros(double percentile) {
+        if (percentile < 0 || percentile > 100)
+            throw new IllegalArgumentException("Percentile should be in [0, 100].");
+
+        if (mCount == 0)
+            return 0;
+
+        final long rank = Math.max(1, (long) Math.ceil(percentile / 100 * mCount));
+        long cumulated = 0;
+        for (int i = 0; i < mCounts.length; i++) {
+            cumulated += mCounts[i];
+            if (cumulated >= rank)
+                return Math.min(getBucketUpperBound(i), mMaxMicros);
+        }
+        return mMaxMicros;
+    }
+
+    /**
+     * @return the number of buckets, see {@link #getBucketLowerBound(int)}, and
+     * {@link #getCountAt(int)}.
+     */
+    public int getBucketCount() {
+        return BUCKET_COUNT;
+    }
+
+    public synchronized long getCountAt(int bucketIndex) {
+        return mCounts[bucketIndex];
+    }
+
+    /**
+     * @return the shortest duration, in microseconds, counted in the given bucket.
+     */
+    public static long getBucketLowerBound(int bucketIndex) {
+        if (bucketIndex < SUB_BUCKET_COUNT)
+            return bucketIndex;
+
+        final int range = (bucketIndex - SUB_BUCKET_COUNT) / SUB_BUCKET_COUNT;
+        final int subBucket = (bucketIndex - SUB_BUCKET_COUNT) % SUB_BUCKET_COUNT;
+        return (long) (SUB_BUCKET_COUNT + subBucket) << range;
+    }
+
+    /**
+     * @return the longest duration, in microseconds, counted in the given bucket.
+     */
+    public static long getBucketUpperBound(int bucketIndex) {
+        if (bucketIndex < SUB_BUCKET_COUNT)
+            return bucketIndex;
+
+        final int range = (bucketIndex - SUB_BUCKET_COUNT) / SUB_BUCKET_COUNT;
+        return getBucketLowerBound(bucketIndex) + (1L << range) - 1;
+    }
+
+    static int getBucketIndex(long micros) {
+        if (micros < SUB_BUCKET_COUNT)
+            return (int) micros;
+        if (micros > MAX_MICROS)
+            return BUCKET_COUNT - 1;
+
+        final int exponent = 63 - Long.numberOfLeadingZeros(micros);
+        final int range = exponent - SUB_BUCKET_BITS;
+        final int subBucket = (int) (micros >>> range) - SUB_BUCKET_COUNT;
+        return SUB_BUCKET_COUNT + range * SUB_BUCKET_COUNT + subBucket;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "LatencyHistogram{count=" + mCount + ", min=" + getMinMicros() + "us, mean=" +
+                getMeanMicros() + "us, p50=" + getPercentileMicros(50) + "us, p99=" +
+                getPercentileMicros(99) + "us, max=" + mMaxMicros + "us}";
+    }
+}
@@ -0,0 +1,85 @@
+package com.ne0fhyklabs.androhud.telemetry;
+
+/**
+ * Measures how stale a widget's display is.
+ * Each sample is timestamped by the producer when it's received, e.g: when its telemetry packet
+ * is read, using the {@link System#nanoTime()} clock. The widget then reports:
+ * <ul>
+ * <li>the arrival of each sample at the widget, to measure the ingestion jitter: the difference
+ * between the spacing of two consecutive samples when they reached the widget, and when they
+ * were received.</li>
+ * <li>each frame it draws, with the timestamp of the sample it shows, to measure the sample age
+ * when its first frame is drawn. The frame reaches the screen on the following vsync.</li>
+ * </ul>
+ * Both are recorded in fixed memory histograms, without allocating. Thread safe, so samples can
+ * be reported from another thread than the frames.
+ */
+public class LatencyMonitor {
+
+    private static final long NO_SAMPLE = Long.MIN_VALUE;
+
+    private final LatencyHistogram mSampleAge = new LatencyHistogram();
+    private final LatencyHistogram mJitter = new LatencyHistogram();
+
+    private long mPreviousSampleTime = NO_SAMPLE;
+    private long mPreviousArrivalTime;
+    private long mDrawnSampleTime = NO_SAMPLE;
+
+    /**
+     * Reports the arrival of a sample.
+     *
+     * @param sampleTimeNanos time the sample was received, on the {@link System#nanoTime()}
+     *                        clock.
+     */
+    public synchronized void onSampleReceived(long sampleTimeNanos) {
+        final long now = System.nanoTime();
+        if (mPreviousSampleTime != NO_SAMPLE) {
+            final long transit = (now - mPreviousArrivalTime)
+                    - (sampleTimeNanos - mPreviousSampleTime);
+            mJitter.record(Math.abs(transit) / 1000);
+        }
+
+        mPreviousSampleTime = sampleTimeNanos;
+        mPreviousArrivalTime = now;
+    }
+
+    /**
+     * Reports a drawn frame. The sample age is only recorded by the first frame showing the
+     * sample.
+     *
+     * @param sampleTimeNanos timestamp of the sample shown by the frame.
+     */
+    public synchronized void onFrameDrawn(long sampleTimeNanos) {
+        if (sampleTimeNanos == mDrawnSampleTime)
+            return;
+
+        mDrawnSampleTime = sampleTimeNanos;
+        mSampleAge.record((System.nanoTime() - sampleTimeNanos) / 1000);
+    }
+
+    /**
+     * @return the histogram of the sample ages when their first frame was drawn.
+     */
+    public LatencyHistogram getSampleAge() {
+        return mSampleAge;
+    }
+
+    /**
+     * @return the histogram of the samples inter-arrival jitter.
+     */
+    public LatencyHistogram getJitter() {
+        return mJitter;
+    }
+
+    public synchronized void reset() {
+        mSampleAge.reset();
+        mJitter.reset();
+        mPreviousSampleTime = NO_SAMPLE;
+        mDrawnSampleTime = NO_SAMPLE;
+    }
+
+    @Override
+    public String toString() {
+        return "LatencyMonitor{sampleAge=" + mSampleAge + ", jitter=" + mJitter + "}";
+    }
+}
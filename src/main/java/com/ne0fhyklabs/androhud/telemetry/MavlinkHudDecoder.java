@@ -0,0 +1,342 @@
+package com.ne0fhyklabs.androhud.telemetry;
+
+import com.ne0fhyklabs.androhud.legacy.HudView;
+import com.ne0fhyklabs.androhud.widget.SimplePitchRoll;
+import com.ne0fhyklabs.androhud.widget.SimpleScroller;
+import com.ne0fhyklabs.androhud.widget.SimpleYaw;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Decodes the MAVLink ATTITUDE, and VFR_HUD messages straight from a byte buffer, and feeds the
+ * decoded values to the hud widgets.
+ * Both MAVLink v1, and v2 frames are supported. Other messages are skipped without being
+ * decoded, by scanning their bytes for the next start of frame. No object is created while
+ * decoding, so this can be used at high link rates.
+ * This class is not thread safe.
+ */
+public class MavlinkHudDecoder {
+
+    private static final float RAD_2_DEG = 180f / (float) Math.PI;
+
+    private static final int MAVLINK_V1_STX = 0xFE;
+    private static final int MAVLINK_V2_STX = 0xFD;
+
+    /*
+    Frame layout sizes.
+     */
+    private static final int MAVLINK_V1_HEADER_LENGTH = 6;
+    private static final int MAVLINK_V2_HEADER_LENGTH = 10;
+    private static final int MAVLINK_CHECKSUM_LENGTH = 2;
+    private static final int MAVLINK_V2_SIGNATURE_LENGTH = 13;
+    private static final int MAVLINK_V2_FLAG_SIGNED = 0x01;
+
+    /*
+    Supported messages ids, and crc extra bytes.
+     */
+    static final int MSG_ID_ATTITUDE = 30;
+    static final int MSG_ID_VFR_HUD = 74;
+    static final int CRC_EXTRA_ATTITUDE = 39;
+    static final int CRC_EXTRA_VFR_HUD = 20;
+    static final int PAYLOAD_LENGTH_ATTITUDE = 28;
+    static final int PAYLOAD_LENGTH_VFR_HUD = 20;
+
+    /*
+    Latest decoded values. Angles are in degrees.
+     */
+    private float mRoll;
+    private float mPitch;
+    private float mYaw;
+    private float mAirSpeed;
+    private float mGroundSpeed;
+    private float mAltitude;
+    private float mClimbRate;
+    private int mHeading;
+    private int mThrottle;
+
+    /*
+    Set when new values were decoded since the last time they were applied.
+     */
+    private boolean mAttitudeUpdated;
+    private boolean mVfrHudUpdated;
+
+    /*
+    Decoding statistics.
+     */
+    private long mAttitudeCount;
+    private long mVfrHudCount;
+    private long mSkippedFrameCount;
+    private long mCrcErrorCount;
+    private long mDroppedByteCount;
+
+    /**
+     * Decodes all the complete frames between the buffer's position and limit.
+     * On return, the buffer's position is set to the start of the first incomplete frame, if any,
+     * so the caller can compact the buffer before reading more bytes in it.
+     *
+     * @param buffer buffer holding raw MAVLink bytes.
+     * @return the number of ATTITUDE, and VFR_HUD frames decoded.
+     */
+    public int decode(ByteBuffer buffer) {
+        int decoded = 0;
+        int position = buffer.position();
+        final int limit = buffer.limit();
+
+        while (position < limit) {
+            final int stx = buffer.get(position) & 0xFF;
+            if (stx != MAVLINK_V1_STX && stx != MAVLINK_V2_STX) {
+                mDroppedByteCount++;
+                position++;
+                continue;
+            }
+
+            final boolean isV2 = stx == MAVLINK_V2_STX;
+            final int headerLength = isV2 ? MAVLINK_V2_HEADER_LENGTH : MAVLINK_V1_HEADER_LENGTH;
+            if (limit - position < headerLength)
+                break;
+
+            final int payloadLength = buffer.get(position + 1) & 0xFF;
+            final int msgId;
+            int frameLength = headerLength + payloadLength + MAVLINK_CHECKSUM_LENGTH;
+            if (isV2) {
+                if ((buffer.get(position + 2) & MAVLINK_V2_FLAG_SIGNED) != 0)
+                    frameLength += MAVLINK_V2_SIGNATURE_LENGTH;
+
+                msgId = (buffer.get(position + 7) & 0xFF)
+                        | (buffer.get(position + 8) & 0xFF) << 8
+                        | (buffer.get(position + 9) & 0xFF) << 16;
+            }
+            else {
+                msgId = buffer.get(position + 5) & 0xFF;
+            }
+
+            final int crcExtra;
+            final int maxPayloadLength;
+            if (msgId == MSG_ID_ATTITUDE) {
+                crcExtra = CRC_EXTRA_ATTITUDE;
+                maxPayloadLength = PAYLOAD_LENGTH_ATTITUDE;
+            }
+            else if (msgId == MSG_ID_VFR_HUD) {
+                crcExtra = CRC_EXTRA_VFR_HUD;
+                maxPayloadLength = PAYLOAD_LENGTH_VFR_HUD;
+            }
+            else {
+                //Not a message we care about. Its crc extra is unknown, so the frame can't be
+                //told apart from a false start of frame in noise, whose claimed length would
+                //swallow the valid frames behind it. Resync on the next byte instead.
+                mSkippedFrameCount++;
+                mDroppedByteCount++;
+                position++;
+                continue;
+            }
+
+            if (payloadLength > maxPayloadLength) {
+                //False start of frame, don't wait for the bytes it claims.
+                mCrcErrorCount++;
+                mDroppedByteCount++;
+                position++;
+                continue;
+            }
+
+            if (limit - position < frameLength)
+                break;
+
+            final int payloadStart = position + headerLength;
+            final int crcStart = payloadStart + payloadLength;
+            final int expectedCrc = (buffer.get(crcStart) & 0xFF)
+                    | (buffer.get(crcStart + 1) & 0xFF) << 8;
+            if (crc(buffer, position + 1, crcStart, crcExtra) != expectedCrc) {
+                //Likely a false start of frame. Resync on the next byte.
+                mCrcErrorCount++;
+                mDroppedByteCount++;
+                position++;
+                continue;
+            }
+
+            if (msgId == MSG_ID_ATTITUDE)
+                decodeAttitude(buffer, payloadStart, payloadLength);
+            else
+                decodeVfrHud(buffer, payloadStart, payloadLength);
+
+            decoded++;
+            position += frameLength;
+        }
+
+        buffer.position(position);
+        return decoded;
+    }
+
+    private void decodeAttitude(ByteBuffer buffer, int start, int length) {
+        mRoll = readFloat(buffer, start, length, 4) * RAD_2_DEG;
+        mPitch = readFloat(buffer, start, length, 8) * RAD_2_DEG;
+        mYaw = readFloat(buffer, start, length, 12) * RAD_2_DEG;
+        mAttitudeUpdated = true;
+        mAttitudeCount++;
+    }
+
+    private void decodeVfrHud(ByteBuffer buffer, int start, int length) {
+        mAirSpeed = readFloat(buffer, start, length, 0);
+        mGroundSpeed = readFloat(buffer, start, length, 4);
+        mAltitude = readFloat(buffer, start, length, 8);
+        mClimbRate = readFloat(buffer, start, length, 12);
+        mHeading = (short) readUInt16(buffer, start, length, 16);
+        mThrottle = readUInt16(buffer, start, length, 18);
+        mVfrHudUpdated = true;
+        mVfrHudCount++;
+    }
+
+    /**
+     * Pushes the values decoded since the last call to the given hud view, in a single update.
+     * Only the values of the message types received since are pushed, so the view's other values
+     * are left as they are.
+     *
+     * @param hudView view to update.
+     * @return true if the view was updated.
+     */
+    public boolean applyTo(HudView hudView) {
+        if (!mAttitudeUpdated && !mVfrHudUpdated)
+            return false;
+
+        if (!mVfrHudUpdated)
+            hudView.setAttitude(mPitch, mRoll, mYaw);
+        else if (!mAttitudeUpdated)
+            hudView.setAirData(mAirSpeed, mClimbRate, mAltitude);
+        else
+            hudView.setHudState(mPitch, mRoll, mYaw, mAirSpeed, mClimbRate, mAltitude);
+        mAttitudeUpdated = false;
+        mVfrHudUpdated = false;
+        return true;
+    }
+
+    /**
+     * Pushes the values decoded since the last call to the given widgets. Any of the widgets can
+     * be null.
+     *
+     * @param pitchRoll   widget for the pitch, and roll values.
+     * @param yaw         widget for the yaw value.
+     * @param airSpeed    scroller for the air speed value.
+     * @param altitude    scroller for the altitude value.
+     * @return true if the widgets were updated.
+     */
+    public boolean applyTo(SimplePitchRoll pitchRoll, SimpleYaw yaw, SimpleScroller airSpeed,
+                           SimpleScroller altitude) {
+        if (!mAttitudeUpdated && !mVfrHudUpdated)
+            return false;
+
+        if (mAttitudeUpdated) {
+            if (pitchRoll != null)
+                pitchRoll.setPitchRoll(mPitch, mRoll);
+            if (yaw != null)
+                yaw.setYaw(mYaw);
+        }
+
+        if (mVfrHudUpdated) {
+            if (airSpeed != null)
+                airSpeed.setScrollTo(mAirSpeed);
+            if (altitude != null)
+                altitude.setScrollTo(mAltitude);
+        }
+
+        mAttitudeUpdated = false;
+        mVfrHudUpdated = false;
+        return true;
+    }
+
+    /**
+     * Computes the MAVLink X.25 checksum over [start, end), followed by the crc extra byte.
+     */
+    static int crc(ByteBuffer buffer, int start, int end, int crcExtra) {
+        int crc = 0xFFFF;
+        for (int i = start; i < end; i++) {
+            crc = crcAccumulate(buffer.get(i) & 0xFF, crc);
+        }
+        return crcAccumulate(crcExtra, crc);
+    }
+
+    private static int crcAccumulate(int data, int crc) {
+        int tmp = data ^ (crc & 0xFF);
+        tmp = (tmp ^ (tmp << 4)) & 0xFF;
+        return ((crc >> 8) ^ (tmp << 8) ^ (tmp << 3) ^ (tmp >> 4)) & 0xFFFF;
+    }
+
+    /*
+    MAVLink payloads are little endian. MAVLink v2 also truncates the payload's trailing zero
+    bytes, so any byte past the payload length is read as zero.
+     */
+    private static int readByte(ByteBuffer buffer, int start, int length, int offset) {
+        return offset < length ? buffer.get(start + offset) & 0xFF : 0;
+    }
+
+    private static int readUInt16(ByteBuffer buffer, int start, int length, int offset) {
+        return readByte(buffer, start, length, offset)
+                | readByte(buffer, start, length, offset + 1) << 8;
+    }
+
+    private static float readFloat(ByteBuffer buffer, int start, int length, int offset) {
+        final int bits = readByte(buffer, start, length, offset)
+                | readByte(buffer, start, length, offset + 1) << 8
+                | readByte(buffer, start, length, offset + 2) << 16
+                | readByte(buffer, start, length, offset + 3) << 24;
+        return Float.intBitsToFloat(bits);
+    }
+
+    public float getRoll() {
+        return mRoll;
+    }
+
+    public float getPitch() {
+        return mPitch;
+    }
+
+    public float getYaw() {
+        return mYaw;
+    }
+
+    public float getAirSpeed() {
+        return mAirSpeed;
+    }
+
+    public float getGroundSpeed() {
+        return mGroundSpeed;
+    }
+
+    public float getAltitude() {
+        return mAltitude;
+    }
+
+    public float getClimbRate() {
+        return mClimbRate;
+    }
+
+    public int getHeading() {
+        return mHeading;
+    }
+
+    public int getThrottle() {
+        return mThrottle;
+    }
+
+    public long getAttitudeCount() {
+        return mAttitudeCount;
+    }
+
+    public long getVfrHudCount() {
+        return mVfrHudCount;
+    }
+
+    /**
+     * @return the number of start of frames of unsupported messages, whether genuine, or false
+     * starts in noise. Their bytes are scanned for the next start of frame.
+     */
+    public long getSkippedFrameCount() {
+        return mSkippedFrameCount;
+    }
+
+    public long getCrcErrorCount() {
+        return mCrcErrorCount;
+    }
+
+    public long getDroppedByteCount() {
+        return mDroppedByteCount;
+    }
+}
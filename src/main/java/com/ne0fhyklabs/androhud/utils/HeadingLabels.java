@@ -0,0 +1,32 @@
+package com.ne0fhyklabs.androhud.utils;
+
+/**
+ * Picks the labels of the yaw tapes ticks. Shared by the yaw widgets, so a tick is labeled the same
+ * way whatever the number of turns of its heading, e.g: -360, 0, and 720 are all "N".
+ */
+public class HeadingLabels {
+
+    private static final String COMPASS[] = {"N", "NE", "E", "SE", "S", "SW", "W", "NW"};
+
+    private HeadingLabels(){}
+
+    /**
+     * @param angle tick heading in degrees. Can be negative, or span several turns.
+     * @return the tick's compass point label, e.g: "NE", or null if the tick isn't on a multiple
+     * of 45 degrees.
+     */
+    public static String getCompassLabel(int angle){
+        final int heading = MathUtils.normalizeHeading(angle);
+        return heading % 45 == 0 ? COMPASS[heading / 45] : null;
+    }
+
+    /**
+     * @param angle tick heading in degrees. Can be negative, or span several turns.
+     * @return true if the tick is labeled with its heading within [0, 360), i.e: it's on a
+     * multiple of 15 degrees which isn't a compass point.
+     */
+    public static boolean isDegreeLabel(int angle){
+        final int heading = MathUtils.normalizeHeading(angle);
+        return heading % 15 == 0 && heading % 45 != 0;
+    }
+}
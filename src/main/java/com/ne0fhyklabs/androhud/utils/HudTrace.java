@@ -0,0 +1,107 @@
+package com.ne0fhyklabs.androhud.utils;
+
+import android.annotation.TargetApi;
+import android.os.Build;
+import android.os.Trace;
+
+import java.lang.reflect.Method;
+
+/**
+ * Optional systrace instrumentation of the hud draw phases.
+ * Disabled by default: every call then returns after reading a single static flag, so the
+ * instrumentation costs nothing in production. Sections require api 18 and above. Counters are
+ * emitted as counter tracks on api 29 and above, and as instant sections named after their
+ * value on older versions.
+ */
+public class HudTrace {
+
+    private HudTrace(){}
+
+    private static final boolean SECTIONS_SUPPORTED = Build.VERSION.SDK_INT >= Build
+            .VERSION_CODES.JELLY_BEAN_MR2;
+
+    /**
+     * Api level adding Trace.setCounter().
+     */
+    private static final int COUNTERS_API_LEVEL = 29;
+
+    private static boolean sEnabled;
+
+    /**
+     * Trace.setCounter(String, long), resolved when tracing is first enabled on api 29 and above.
+     */
+    private static Method sSetCounter;
+
+    /**
+     * Enables, or disables the hud trace sections, and counters. Meant to be called once at
+     * startup, e.g: in debug builds.
+     */
+    public static synchronized void setEnabled(boolean enabled) {
+        if (enabled && SECTIONS_SUPPORTED && sSetCounter == null
+                && Build.VERSION.SDK_INT >= COUNTERS_API_LEVEL) {
+            try {
+                sSetCounter = Trace.class.getMethod("setCounter", String.class, long.class);
+            } catch (NoSuchMethodException e) {
+                sSetCounter = null;
+            }
+        }
+        sEnabled = enabled && SECTIONS_SUPPORTED;
+    }
+
+    public static boolean isEnabled() {
+        return sEnabled;
+    }
+
+    /**
+     * Opens a trace section. Must be closed by {@link #endSection()} on the same thread.
+     *
+     * @param name section name. Should be a constant to avoid allocations.
+     */
+    public static void beginSection(String name) {
+        if (sEnabled)
+            SectionsApi18.beginSection(name);
+    }
+
+    public static void endSection() {
+        if (sEnabled)
+            SectionsApi18.endSection();
+    }
+
+    /**
+     * Updates a counter track.
+     *
+     * @param name  counter name. Should be a constant.
+     * @param value counter value.
+     */
+    public static void setCounter(String name, long value) {
+        if (!sEnabled)
+            return;
+
+        final Method setCounter = sSetCounter;
+        if (setCounter != null) {
+            try {
+                setCounter.invoke(null, name, value);
+                return;
+            } catch (Exception e) {
+                sSetCounter = null;
+            }
+        }
+
+        SectionsApi18.beginSection(name + "=" + value);
+        SectionsApi18.endSection();
+    }
+
+    /**
+     * Keeps the references to android.os.Trace out of the callers, so they load on any api.
+     */
+    @TargetApi(Build.VERSION_CODES.JELLY_BEAN_MR2)
+    private static class SectionsApi18 {
+        static void beginSection(String name) {
+            Trace.beginSection(name);
+        }
+
+        static void endSection() {
+            Trace.endSection();
+        }
+    }
+}
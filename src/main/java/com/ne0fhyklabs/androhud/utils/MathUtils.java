@@ -0,0 +1,37 @@
+package com.ne0fhyklabs.androhud.utils;
+
+/**
+ * Math helpers shared by the hud widgets.
+ */
+public class MathUtils {
+
+    private MathUtils(){}
+
+    /**
+     * Wraps the given heading within [0, 360) in constant time, whatever its magnitude.
+     * @param heading heading in degrees. Can be negative, or span several turns.
+     * @return the equivalent heading within [0, 360), or NaN for NaN, and infinite headings.
+     */
+    public static float normalizeHeading(float heading){
+        float normalized = heading % 360f;
+        if(normalized < 0)
+            normalized += 360f;
+
+        //Guard against rounding, e.g: -1e-6 + 360 == 360 in float precision.
+        if(normalized >= 360f)
+            normalized -= 360f;
+
+        //-0 and the negative multiples of 360 give -0, folded into 0.
+        return normalized == 0 ? 0f : normalized;
+    }
+
+    /**
+     * Wraps the given heading within [0, 360) in constant time, whatever its magnitude.
+     * @param heading heading in degrees. Can be negative, or span several turns.
+     * @return the equivalent heading within [0, 360).
+     */
+    public static int normalizeHeading(int heading){
+        int normalized = heading % 360;
+        return normalized < 0 ? normalized + 360 : normalized;
+    }
+}
@@ -0,0 +1,225 @@
+package com.ne0fhyklabs.androhud.utils;
+
+/**
+ * Walks the ticks of a tape, or scale, falling within a window of values.
+ * Only multiples of the minor step are visited, using integer stepping, so the work done is
+ * proportional to the number of visible ticks.
+ * An instance is meant to be allocated once by its widget, and reset before each draw pass to
+ * avoid unnecessary memory allocation at runtime.
+ */
+public class TickIterator {
+
+    /**
+     * Step between labeled ticks. Must be a multiple of the minor step.
+     */
+    private int mMajorStep = 1;
+
+    /**
+     * Step between two consecutive ticks.
+     */
+    private int mMinorStep = 1;
+
+    /**
+     * Value located at {@link #mOriginPosition}.
+     */
+    private float mOriginValue;
+
+    /**
+     * Position in pixels of {@link #mOriginValue}.
+     */
+    private float mOriginPosition;
+
+    /**
+     * Number of pixels between two consecutive values. Can be negative for scales growing towards
+     * the top, or the left.
+     */
+    private float mPixelsPerUnit;
+
+    /*
+    Iteration state. Kept as long to be safe from overflow when the window is close to the int
+    bounds.
+     */
+    private long mNextTick;
+    private long mLastTick;
+
+    /*
+    Current tick properties.
+     */
+    private int mTick;
+    private float mPosition;
+
+    /**
+     * Prepares the iterator to walk the ticks within [minValue, maxValue].
+     *
+     * @param minValue       lower bound (inclusive) of the window.
+     * @param maxValue       upper bound (inclusive) of the window.
+     * @param originValue    value located at the origin position.
+     * @param originPosition position in pixels of the origin value.
+     * @param pixelsPerUnit  number of pixels between two consecutive values.
+     * @param majorStep      step between labeled ticks.
+     * @param minorStep      step between two consecutive ticks.
+     * @return this iterator.
+     */
+    public TickIterator reset(float minValue, float maxValue, float originValue,
+                              float originPosition, float pixelsPerUnit, int majorStep,
+                              int minorStep) {
+        if (minorStep <= 0 || majorStep <= 0 || majorStep % minorStep != 0) {
+            throw new IllegalArgumentException("Major step should be a positive multiple of the " +
+                    "minor step.");
+        }
+
+        mMajorStep = majorStep;
+        mMinorStep = minorStep;
+        mOriginValue = originValue;
+        mOriginPosition = originPosition;
+        mPixelsPerUnit = pixelsPerUnit;
+
+        if (minValue > maxValue || Float.isNaN(minValue) || Float.isNaN(maxValue)) {
+            //Empty window
+            mNextTick = 1;
+            mLastTick = 0;
+        }
+        else {
+            //Clamped to the ticks representable as int, the type of the tick values
+            mNextTick = Math.max(ceilToStep(minValue, minorStep), ceilToStep(Integer.MIN_VALUE,
+                    minorStep));
+            mLastTick = Math.min(floorToStep(maxValue, minorStep), floorToStep(Integer.MAX_VALUE,
+                    minorStep));
+        }
+
+        return this;
+    }
+
+    /**
+     * Prepares the iterator to walk the ticks within the given range, centered around value.
+     *
+     * @param value          value located at the center position.
+     * @param range          width of the visible window, in value units.
+     * @param centerPosition position in pixels of the given value.
+     * @param pixelsPerUnit  number of pixels between two consecutive values.
+     * @param majorStep      step between labeled ticks.
+     * @param minorStep      step between two consecutive ticks.
+     * @return this iterator.
+     */
+    public TickIterator resetCentered(float value, float range, float centerPosition,
+                                      float pixelsPerUnit, int majorStep, int minorStep) {
+        final float halfRange = range / 2;
+        return reset(value - halfRange, value + halfRange, value, centerPosition, pixelsPerUnit,
+                majorStep, minorStep);
+    }
+
+    /**
+     * Moves to the next visible tick.
+     *
+     * @return true if a tick is available, false when the window has been exhausted.
+     */
+    public boolean next() {
+        if (mNextTick > mLastTick)
+            return false;
+
+        mTick = (int) mNextTick;
+        mNextTick += mMinorStep;
+        mPosition = mOriginPosition + (mTick - mOriginValue) * mPixelsPerUnit;
+        return true;
+    }
+
+    /**
+     * @return the value of the current tick.
+     */
+    public int getValue() {
+        return mTick;
+    }
+
+    /**
+     * @return the position in pixels of the current tick.
+     */
+    public float getPosition() {
+        return mPosition;
+    }
+
+    /**
+     * @return true if the current tick is a multiple of the major step.
+     */
+    public boolean isMajor() {
+        return mTick % mMajorStep == 0;
+    }
+
+    /**
+     * @return index of the current tick on the major scale, i.e: value / major step rounded
+     * towards negative infinity. Can be used to look up the tick's label.
+     */
+    public int getLabelId() {
+        return floorDiv(mTick, mMajorStep);
+    }
+
+    /**
+     * @return the number of ticks left to visit.
+     */
+    public int getRemaining() {
+        return mNextTick > mLastTick ? 0 : (int) ((mLastTick - mNextTick) / mMinorStep + 1);
+    }
+
+    /**
+     * Picks the smallest 1, 2 or 5 x 10^n step greater or equal to the given minimum.
+     *
+     * @param minStep minimum acceptable step, in value units.
+     * @return the selected step. Never less than 1.
+     */
+    public static int niceStep(float minStep) {
+        if (!(minStep > 1))
+            return 1;
+
+        if (minStep >= Integer.MAX_VALUE / 10)
+            return 1000000000;
+
+        int magnitude = 1;
+        while (magnitude * 10 <= minStep)
+            magnitude *= 10;
+
+        if (magnitude >= minStep)
+            return magnitude;
+        if (2 * magnitude >= minStep)
+            return 2 * magnitude;
+        if (5 * magnitude >= minStep)
+            return 5 * magnitude;
+        return 10 * magnitude;
+    }
+
+    /**
+     * Subdivides a step returned by {@link #niceStep(float)}: 10 is divided in 5, 20 in 2, 50 in 5.
+     *
+     * @param majorStep step to subdivide.
+     * @return the minor step. Always divides the major step.
+     */
+    public static int niceMinorStep(int majorStep) {
+        int mantissa = majorStep;
+        while (mantissa >= 10 && mantissa % 10 == 0)
+            mantissa /= 10;
+
+        int minorStep = mantissa == 2 ? majorStep / 2 : majorStep / 5;
+        return minorStep > 0 && majorStep % minorStep == 0 ? minorStep : majorStep;
+    }
+
+    public int getMajorStep() {
+        return mMajorStep;
+    }
+
+    public int getMinorStep() {
+        return mMinorStep;
+    }
+
+    private static long ceilToStep(double value, int step) {
+        return (long) Math.ceil(value / step) * step;
+    }
+
+    private static long floorToStep(double value, int step) {
+        return (long) Math.floor(value / step) * step;
+    }
+
+    private static int floorDiv(int x, int y) {
+        int q = x / y;
+        if ((x % y != 0) && ((x ^ y) < 0))
+            q--;
+        return q;
+    }
+}
@@ -0,0 +1,219 @@
+package com.ne0fhyklabs.androhud.utils;
+
+/**
+ * History of a value over a sliding time window, e.g: the air speed over the last seconds, to
+ * draw its trend.
+ * Samples are kept in primitive ring buffers sized at construction, so adding one doesn't
+ * allocate. The rate of change is the least squares slope of the window's samples, maintained
+ * through running sums; the window's min, and max are maintained through monotonic queues. All
+ * the queries are O(1), and adding a sample is amortized O(1).
+ * When more samples than the capacity arrive within the window, the oldest ones are dropped
+ * early.
+ */
+public class ValueHistory {
+
+    /**
+     * The running sums are rebuilt, relative to a new time origin, when the samples drift this
+     * many windows away from the current origin. Keeps the sums precise over long flights.
+     */
+    private static final int REBASE_WINDOW_COUNT = 4;
+
+    private final int mCapacity;
+    private final long mWindowMs;
+
+    /*
+    Samples ring buffers. Sample n is stored at index n % capacity.
+     */
+    private final long[] mTimes;
+    private final float[] mValues;
+    private long mNextSample;
+    private int mSize;
+
+    /*
+    Monotonic queues of sample numbers: values increase from the head of the min queue, and
+    decrease from the head of the max queue. The heads hold the window's min, and max.
+     */
+    private final long[] mMinQueue;
+    private int mMinHead;
+    private int mMinSize;
+    private final long[] mMaxQueue;
+    private int mMaxHead;
+    private int mMaxSize;
+
+    /*
+    Least squares running sums, with times in seconds from mBaseTime.
+     */
+    private long mBaseTime;
+    private double mSumT;
+    private double mSumV;
+    private double mSumTT;
+    private double mSumTV;
+
+    /**
+     * @param capacity maximum number of samples kept.
+     * @param windowMs duration of the window, in milliseconds.
+     */
+    public ValueHistory(int capacity, long windowMs) {
+        if (capacity < 2)
+            throw new IllegalArgumentException("Capacity should be at least 2.");
+        if (windowMs <= 0)
+            throw new IllegalArgumentException("Window duration should be positive.");
+
+        mCapacity = capacity;
+        mWindowMs = windowMs;
+        mTimes = new long[capacity];
+        mValues = new float[capacity];
+        mMinQueue = new long[capacity];
+        mMaxQueue = new long[capacity];
+    }
+
+    /**
+     * Adds a sample, and drops the samples which fell out of the window. NaN values are ignored.
+     *
+     * @param timeMs sample time, in milliseconds. Should not be before the previous sample.
+     * @param value  sample value.
+     */
+    public void add(long timeMs, float value) {
+        if (Float.isNaN(value))
+            return;
+
+        if (mSize > 0 && timeMs < getLatestTime()) {
+            throw new IllegalArgumentException("Samples should be added in time order (" + timeMs
+                    + " < " + getLatestTime() + ").");
+        }
+
+        while (mSize > 0 && (mSize == mCapacity || mTimes[index(oldest())] < timeMs - mWindowMs)) {
+            removeOldest();
+        }
+
+        if (mSize == 0) {
+            mBaseTime = timeMs;
+            mSumT = mSumV = mSumTT = mSumTV = 0;
+        }
+        else if (timeMs - mBaseTime > REBASE_WINDOW_COUNT * mWindowMs) {
+            rebase(timeMs);
+        }
+
+        final long sample = mNextSample++;
+        final int index = index(sample);
+        mTimes[index] = timeMs;
+        mValues[index] = value;
+        mSize++;
+        addToSums(timeMs, value, 1);
+
+        while (mMinSize > 0 && mValues[index(mMinQueue[tail(mMinHead, mMinSize)])] >= value) {
+            mMinSize--;
+        }
+        mMinQueue[(mMinHead + mMinSize++) % mCapacity] = sample;
+
+        while (mMaxSize > 0 && mValues[index(mMaxQueue[tail(mMaxHead, mMaxSize)])] <= value) {
+            mMaxSize--;
+        }
+        mMaxQueue[(mMaxHead + mMaxSize++) % mCapacity] = sample;
+    }
+
+    private void removeOldest() {
+        final long sample = oldest();
+        final int index = index(sample);
+        addToSums(mTimes[index], mValues[index], -1);
+        mSize--;
+
+        if (mMinSize > 0 && mMinQueue[mMinHead] == sample) {
+            mMinHead = (mMinHead + 1) % mCapacity;
+            mMinSize--;
+        }
+        if (mMaxSize > 0 && mMaxQueue[mMaxHead] == sample) {
+            mMaxHead = (mMaxHead + 1) % mCapacity;
+            mMaxSize--;
+        }
+    }
+
+    private void addToSums(long timeMs, float value, int sign) {
+        final double t = (timeMs - mBaseTime) / 1000.0;
+        mSumT += sign * t;
+        mSumV += sign * value;
+        mSumTT += sign * t * t;
+        mSumTV += sign * t * value;
+    }
+
+    /**
+     * Rebuilds the running sums relative to the given time origin.
+     */
+    private void rebase(long baseTime) {
+        mBaseTime = baseTime;
+        mSumT = mSumV = mSumTT = mSumTV = 0;
+        for (long sample = oldest(); sample < mNextSample; sample++) {
+            final int index = index(sample);
+            addToSums(mTimes[index], mValues[index], 1);
+        }
+    }
+
+    private long oldest() {
+        return mNextSample - mSize;
+    }
+
+    private int index(long sample) {
+        return (int) (sample % mCapacity);
+    }
+
+    private int tail(int head, int size) {
+        return (head + size - 1) % mCapacity;
+    }
+
+    public void clear() {
+        mSize = 0;
+        mMinSize = 0;
+        mMaxSize = 0;
+    }
+
+    /**
+     * @return the number of samples in the window.
+     */
+    public int size() {
+        return mSize;
+    }
+
+    public long getWindowMs() {
+        return mWindowMs;
+    }
+
+    public long getLatestTime() {
+        return mSize == 0 ? 0 : mTimes[index(mNextSample - 1)];
+    }
+
+    /**
+     * @return the latest value, or NaN if the history is empty.
+     */
+    public float getLatest() {
+        return mSize == 0 ? Float.NaN : mValues[index(mNextSample - 1)];
+    }
+
+    /**
+     * @return the window's minimum, or NaN if the history is empty.
+     */
+    public float getMin() {
+        return mMinSize == 0 ? Float.NaN : mValues[index(mMinQueue[mMinHead])];
+    }
+
+    /**
+     * @return the window's maximum, or NaN if the history is empty.
+     */
+    public float getMax() {
+        return mMaxSize == 0 ? Float.NaN : mValues[index(mMaxQueue[mMaxHead])];
+    }
+
+    /**
+     * @return the value's rate of change over the window, in units per second. 0 until the
+     * window holds two samples at different times.
+     */
+    public float getRate() {
+        if (mSize < 2)
+            return 0;
+
+        final double denominator = mSize * mSumTT - mSumT * mSumT;
+        if (denominator <= 1e-9)
+            return 0;
+
+        return (float) ((mSize * mSumTV - mSumT * mSumV) / denominator);
+    }
+}
@@ -0,0 +1,418 @@
+package com.ne0fhyklabs.androhud.widget;
+
+import android.content.Context;
+import android.content.res.TypedArray;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.Path;
+import android.graphics.Rect;
+import android.util.AttributeSet;
+import android.view.View;
+
+import com.ne0fhyklabs.androhud.R;
+import com.ne0fhyklabs.androhud.telemetry.HudState;
+import com.ne0fhyklabs.androhud.utils.MathUtils;
+
+import static com.ne0fhyklabs.androhud.utils.Constants.DEFAULT_STROKE_WIDTH;
+
+/**
+ * Draws a grid of compact hud cells, one per vehicle, in a single view.
+ * All the cells share the same paints, and static geometry. Each cell is rendered into its own
+ * bitmap, which is only redrawn when the cell's vehicle state changes. A frame then costs one
+ * bitmap blit per visible cell, plus the redraw of the cells that changed.
+ */
+public class HudGridView extends View {
+
+    private static final int DEFAULT_COLUMN_COUNT = 4;
+    private static final float DEFAULT_CELL_ASPECT_RATIO = 0.75f;
+
+    /**
+     * Number of pitch degrees spanned by a cell's height.
+     */
+    private static final float CELL_PITCH_DEGREES = 60f;
+
+    /**
+     * Per vehicle cell state.
+     */
+    private static class Cell {
+        final HudState state = new HudState();
+        String label = "";
+        boolean dirty = true;
+        Bitmap bitmap;
+    }
+
+    private Cell[] mCells = new Cell[0];
+    private int mVehicleCount;
+
+    /*
+    Grid layout properties.
+     */
+    private int mColumnCount;
+    private float mCellAspectRatio;
+    private int mCellSpacing;
+    private int mCellWidth;
+    private int mCellHeight;
+
+    /*
+    Paints shared by all the cells.
+     */
+    private final Paint mSkyPaint = new Paint();
+    private final Paint mGroundPaint = new Paint();
+    private final Paint mReticlePaint = new Paint();
+    private final Paint mTextPaint = new Paint();
+    private final Paint mBorderPaint = new Paint();
+    private final Paint mBitmapPaint = new Paint();
+
+    /**
+     * Reticle geometry shared by all the cells. Rebuilt when the cell size changes.
+     */
+    private final Path mReticlePath = new Path();
+
+    /*
+    Allocated at startup, and reused to avoid unnecessary memory allocation at runtime.
+     */
+    private final Canvas mCellCanvas = new Canvas();
+    private final Rect mClipRect = new Rect();
+    private final Rect mCellRect = new Rect();
+
+    public HudGridView(Context context) {
+        this(context, null);
+    }
+
+    public HudGridView(Context context, AttributeSet attrs) {
+        this(context, attrs, 0);
+    }
+
+    public HudGridView(Context context, AttributeSet attrs, int defStyleAttr) {
+        super(context, attrs, defStyleAttr);
+
+        final TypedArray attributes = context.obtainStyledAttributes(attrs,
+                R.styleable.HudGridView, defStyleAttr, 0);
+
+        try {
+            mColumnCount = Math.max(1, attributes.getInt(R.styleable.HudGridView_gridColumnCount,
+                    DEFAULT_COLUMN_COUNT));
+            mCellAspectRatio = attributes.getFloat(R.styleable.HudGridView_cellAspectRatio,
+                    DEFAULT_CELL_ASPECT_RATIO);
+            mCellSpacing = (int) attributes.getDimension(R.styleable.HudGridView_cellSpacing, 4f);
+
+            mSkyPaint.setColor(attributes.getColor(R.styleable.HudGridView_skyColor,
+                    Color.argb(220, 0, 113, 188)));
+            mGroundPaint.setColor(attributes.getColor(R.styleable.HudGridView_groundColor,
+                    Color.argb(220, 148, 193, 31)));
+
+            mReticlePaint.setStyle(Paint.Style.STROKE);
+            mReticlePaint.setStrokeWidth(DEFAULT_STROKE_WIDTH);
+            mReticlePaint.setAntiAlias(true);
+            mReticlePaint.setColor(attributes.getColor(R.styleable.HudGridView_reticleColor,
+                    Color.RED));
+
+            mTextPaint.setAntiAlias(true);
+            mTextPaint.setColor(attributes.getColor(R.styleable.HudGridView_android_textColor,
+                    Color.WHITE));
+            mTextPaint.setTextSize(attributes.getDimension(R.styleable.HudGridView_android_textSize,
+                    14f));
+
+            mBorderPaint.setStyle(Paint.Style.STROKE);
+            mBorderPaint.setColor(Color.WHITE);
+            mBorderPaint.setStrokeWidth(1);
+        } finally {
+            attributes.recycle();
+        }
+    }
+
+    @Override
+    protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
+        final int width = MeasureSpec.getSize(widthMeasureSpec);
+        final int cellWidth = Math.max(1, (width - getPaddingLeft() - getPaddingRight()
+                - (mColumnCount - 1) * mCellSpacing) / mColumnCount);
+        final int cellHeight = Math.max(1, Math.round(cellWidth * mCellAspectRatio));
+        final int rowCount = (mVehicleCount + mColumnCount - 1) / mColumnCount;
+        final int height = getPaddingTop() + getPaddingBottom() + rowCount * cellHeight
+                + Math.max(0, rowCount - 1) * mCellSpacing;
+
+        setMeasuredDimension(width, resolveSize(height, heightMeasureSpec));
+    }
+
+    @Override
+    protected void onLayout(boolean changed, int left, int top, int right, int bottom) {
+        super.onLayout(changed, left, top, right, bottom);
+        updateCellGeometry();
+    }
+
+    @Override
+    protected void onDetachedFromWindow() {
+        super.onDetachedFromWindow();
+        releaseCellBitmaps();
+    }
+
+    @Override
+    protected void onDraw(Canvas canvas) {
+        super.onDraw(canvas);
+
+        if (mCellWidth <= 0 || mCellHeight <= 0)
+            return;
+
+        //Only the cells within the clip bounds are drawn, e.g: when the grid is scrolled.
+        if (!canvas.getClipBounds(mClipRect))
+            return;
+
+        for (int i = 0; i < mVehicleCount; i++) {
+            getCellRect(i, mCellRect);
+            if (!mClipRect.intersects(mCellRect.left, mCellRect.top, mCellRect.right,
+                    mCellRect.bottom))
+                continue;
+
+            final Cell cell = mCells[i];
+            if (cell.bitmap == null) {
+                cell.bitmap = Bitmap.createBitmap(mCellWidth, mCellHeight,
+                        Bitmap.Config.ARGB_8888);
+                cell.dirty = true;
+            }
+
+            if (cell.dirty) {
+                //The cell's colors can be translucent, so the previous content must be cleared.
+                cell.bitmap.eraseColor(Color.TRANSPARENT);
+                mCellCanvas.setBitmap(cell.bitmap);
+                drawCell(mCellCanvas, cell);
+                mCellCanvas.setBitmap(null);
+                cell.dirty = false;
+            }
+
+            canvas.drawBitmap(cell.bitmap, mCellRect.left, mCellRect.top, mBitmapPaint);
+        }
+    }
+
+    private void drawCell(Canvas canvas, Cell cell) {
+        final HudState state = cell.state;
+        final float halfWidth = mCellWidth / 2f;
+        final float halfHeight = mCellHeight / 2f;
+        final float pitchOffset = state.pitch * mCellHeight / CELL_PITCH_DEGREES;
+        final float diagonal = mCellWidth + mCellHeight;
+        final float textSize = mTextPaint.getTextSize();
+
+        //Attitude
+        canvas.save();
+        canvas.rotate(-state.roll, halfWidth, halfHeight);
+        canvas.drawRect(-diagonal, -diagonal, diagonal, halfHeight + pitchOffset, mSkyPaint);
+        canvas.drawRect(-diagonal, halfHeight + pitchOffset, diagonal, diagonal, mGroundPaint);
+        canvas.restore();
+
+        canvas.drawPath(mReticlePath, mReticlePaint);
+
+        //Values
+        mTextPaint.setTextAlign(Paint.Align.CENTER);
+        canvas.drawText(String.valueOf((int) MathUtils.normalizeHeading(state.yaw)), halfWidth,
+                textSize, mTextPaint);
+
+        mTextPaint.setTextAlign(Paint.Align.LEFT);
+        canvas.drawText(String.valueOf((int) state.airSpeed), 2, halfHeight + textSize / 3,
+                mTextPaint);
+        canvas.drawText(cell.label, 2, mCellHeight - 2, mTextPaint);
+
+        mTextPaint.setTextAlign(Paint.Align.RIGHT);
+        canvas.drawText(String.valueOf((int) state.altitude), mCellWidth - 2,
+                halfHeight + textSize / 3, mTextPaint);
+
+        canvas.drawRect(0, 0, mCellWidth - 1, mCellHeight - 1, mBorderPaint);
+    }
+
+    /**
+     * Updates the cell size from the view's width, the column count, and the cell aspect ratio.
+     * The cell bitmaps, and the reticle are rebuilt when the size changes.
+     */
+    private void updateCellGeometry() {
+        final int width = getWidth();
+        if (width <= 0)
+            return;
+
+        final int cellWidth = Math.max(1, (width - getPaddingLeft() - getPaddingRight()
+                - (mColumnCount - 1) * mCellSpacing) / mColumnCount);
+        final int cellHeight = Math.max(1, Math.round(cellWidth * mCellAspectRatio));
+        if (cellWidth == mCellWidth && cellHeight == mCellHeight)
+            return;
+
+        mCellWidth = cellWidth;
+        mCellHeight = cellHeight;
+        releaseCellBitmaps();
+
+        final float halfWidth = mCellWidth / 2f;
+        final float halfHeight = mCellHeight / 2f;
+        final float wingSpan = mCellWidth / 6f;
+        final float wingGap = wingSpan / 3;
+
+        mReticlePath.reset();
+        mReticlePath.moveTo(halfWidth - wingSpan, halfHeight);
+        mReticlePath.lineTo(halfWidth - wingGap, halfHeight);
+        mReticlePath.lineTo(halfWidth, halfHeight + wingGap);
+        mReticlePath.lineTo(halfWidth + wingGap, halfHeight);
+        mReticlePath.lineTo(halfWidth + wingSpan, halfHeight);
+    }
+
+    private void getCellRect(int index, Rect out) {
+        final int column = index % mColumnCount;
+        final int row = index / mColumnCount;
+        final int left = getPaddingLeft() + column * (mCellWidth + mCellSpacing);
+        final int top = getPaddingTop() + row * (mCellHeight + mCellSpacing);
+        out.set(left, top, left + mCellWidth, top + mCellHeight);
+    }
+
+    private void releaseCellBitmaps() {
+        for (Cell cell : mCells) {
+            if (cell != null && cell.bitmap != null) {
+                cell.bitmap.recycle();
+                cell.bitmap = null;
+            }
+        }
+    }
+
+    private void invalidateCell(int index) {
+        if (mCellWidth <= 0 || mCellHeight <= 0)
+            return;
+
+        getCellRect(index, mCellRect);
+        invalidate(mCellRect.left, mCellRect.top, mCellRect.right, mCellRect.bottom);
+    }
+
+    private void invalidateAllCells() {
+        for (int i = 0; i < mVehicleCount; i++) {
+            mCells[i].dirty = true;
+        }
+        invalidate();
+    }
+
+    private void checkVehicleIndex(int index) {
+        if (index < 0 || index >= mVehicleCount) {
+            throw new IndexOutOfBoundsException("Invalid vehicle index: " + index);
+        }
+    }
+
+    public int getVehicleCount() {
+        return mVehicleCount;
+    }
+
+    /**
+     * Sets the number of vehicles, i.e: cells, displayed by the grid.
+     */
+    public void setVehicleCount(int vehicleCount) {
+        if (vehicleCount < 0) {
+            throw new IllegalArgumentException("Vehicle count should not be negative.");
+        }
+
+        if (vehicleCount > mCells.length) {
+            final Cell[] cells = new Cell[vehicleCount];
+            System.arraycopy(mCells, 0, cells, 0, mCells.length);
+            for (int i = mCells.length; i < vehicleCount; i++) {
+                cells[i] = new Cell();
+            }
+            mCells = cells;
+        }
+
+        mVehicleCount = vehicleCount;
+        requestLayout();
+        invalidate();
+    }
+
+    /**
+     * Updates the state of the given vehicle. Its cell is only redrawn if the values changed.
+     *
+     * @param index vehicle index.
+     * @param state vehicle's latest state. Copied, so it can be reused by the caller.
+     */
+    public void setVehicleState(int index, HudState state) {
+        checkVehicleIndex(index);
+
+        final Cell cell = mCells[index];
+        if (cell.state.valuesEqual(state)) {
+            cell.state.timestamp = state.timestamp;
+            return;
+        }
+
+        cell.state.set(state);
+        cell.dirty = true;
+        invalidateCell(index);
+    }
+
+    public HudState getVehicleState(int index) {
+        checkVehicleIndex(index);
+        return mCells[index].state;
+    }
+
+    public void setVehicleLabel(int index, String label) {
+        checkVehicleIndex(index);
+
+        final Cell cell = mCells[index];
+        cell.label = label == null ? "" : label;
+        cell.dirty = true;
+        invalidateCell(index);
+    }
+
+    public int getColumnCount() {
+        return mColumnCount;
+    }
+
+    public void setColumnCount(int columnCount) {
+        mColumnCount = Math.max(1, columnCount);
+        updateCellGeometry();
+        requestLayout();
+        invalidate();
+    }
+
+    public float getCellAspectRatio() {
+        return mCellAspectRatio;
+    }
+
+    public void setCellAspectRatio(float aspectRatio) {
+        mCellAspectRatio = aspectRatio;
+        updateCellGeometry();
+        requestLayout();
+        invalidate();
+    }
+
+    public int getSkyColor() {
+        return mSkyPaint.getColor();
+    }
+
+    public void setSkyColor(int color) {
+        mSkyPaint.setColor(color);
+        invalidateAllCells();
+    }
+
+    public int getGroundColor() {
+        return mGroundPaint.getColor();
+    }
+
+    public void setGroundColor(int color) {
+        mGroundPaint.setColor(color);
+        invalidateAllCells();
+    }
+
+    public int getReticleColor() {
+        return mReticlePaint.getColor();
+    }
+
+    public void setReticleColor(int color) {
+        mReticlePaint.setColor(color);
+        invalidateAllCells();
+    }
+
+    public int getTextColor() {
+        return mTextPaint.getColor();
+    }
+
+    public void setTextColor(int color) {
+        mTextPaint.setColor(color);
+        invalidateAllCells();
+    }
+
+    public float getTextSize() {
+        return mTextPaint.getTextSize();
+    }
+
+    public void setTextSize(float textSize) {
+        mTextPaint.setTextSize(textSize);
+        invalidateAllCells();
+    }
+}
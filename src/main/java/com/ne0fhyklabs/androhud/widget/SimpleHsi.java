@@ -0,0 +1,541 @@
+package com.ne0fhyklabs.androhud.widget;
+
+import android.content.Context;
+import android.content.res.TypedArray;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.Path;
+import android.util.AttributeSet;
+import android.view.View;
+
+import com.ne0fhyklabs.androhud.R;
+import com.ne0fhyklabs.androhud.cache.AsyncLayer;
+import com.ne0fhyklabs.androhud.cache.LayerKey;
+import com.ne0fhyklabs.androhud.cache.StaticLayerCache;
+import com.ne0fhyklabs.androhud.telemetry.HudState;
+import com.ne0fhyklabs.androhud.telemetry.HudStateSource;
+import com.ne0fhyklabs.androhud.telemetry.LatencyMonitor;
+import com.ne0fhyklabs.androhud.utils.HudTrace;
+import com.ne0fhyklabs.androhud.utils.MathUtils;
+
+import static com.ne0fhyklabs.androhud.utils.Constants.DEFAULT_STROKE_WIDTH;
+
+/**
+ * HUD horizontal situation indicator widget: a compass rose turning with the heading, with a
+ * course needle, and a bearing bug.
+ * The rose only depends on the widget's size, and theme, so it's rendered once in a shared layer,
+ * and each frame draws it with a single rotated bitmap blit, followed by the needles.
+ */
+public class SimpleHsi extends View {
+
+    private static final float DEG_2_RAD = (float) (Math.PI / 180);
+
+    /*
+    Rose graduations, in degrees.
+     */
+    private static final int MINOR_TICK_STEP = 5;
+    private static final int MAJOR_TICK_STEP = 10;
+    private static final int LABEL_STEP = 30;
+
+    private static final String ROSE_LABELS[] = {"N", "3", "6", "E", "12", "15", "S", "21", "24",
+            "W", "30", "33"};
+
+    /*
+    Sizes in relation to the rose radius.
+     */
+    private static final float MAJOR_TICK_LENGTH = 0.12f;
+    private static final float MINOR_TICK_LENGTH = 0.06f;
+    private static final float LUBBER_LINE_LENGTH = 0.2f;
+    private static final float BEARING_BUG_SIZE = 0.08f;
+    private static final float MIN_NEEDLE_RADIUS = 0.3f;
+
+    /*
+    Trace sections names. See HudTrace.
+     */
+    private static final String TRACE_DRAW = "SimpleHsi.drawHsi";
+
+    /**
+     * Sample time of values set without a timestamp.
+     */
+    private static final long NO_SAMPLE_TIME = Long.MIN_VALUE;
+
+    /**
+     * This is the view's height, accounting for padding.
+     */
+    private float mHeight;
+
+    /**
+     * This is the view's width, accounting for padding.
+     */
+    private float mWidth;
+
+    /**
+     * Canvas horizontal and vertical paddings
+     */
+    private float mCanvasXPadding;
+    private float mCanvasYPadding;
+
+    /**
+     * Side of the square holding the rose, in pixels.
+     */
+    private int mRoseSize;
+
+    /**
+     * Paint used to draw the rose's ticks, and text.
+     */
+    private Paint mTicksPaint;
+
+    /**
+     * Paint used to draw the lubber line.
+     */
+    private Paint mYawNeedlePaint;
+
+    private Paint mCourseNeedlePaint;
+    private Paint mBearingBugPaint;
+
+    /**
+     * Filters the rose layer when it's drawn rotated.
+     */
+    private final Paint mRosePaint = new Paint(Paint.FILTER_BITMAP_FLAG);
+
+    /**
+     * Heading being reflected by the view.
+     */
+    private float mYaw;
+
+    /**
+     * Course pointed by the course needle. NaN hides the needle.
+     */
+    private float mCourse;
+
+    /**
+     * Bearing pointed by the bearing bug. NaN hides the bug.
+     */
+    private float mBearing;
+
+    /**
+     * Used for drawing operations requiring a path object.
+     */
+    private final Path mPathCache = new Path();
+
+    /**
+     * Shared layer holding the rose. Rebuilt in the background when the size, or theme changes,
+     * while the previous one is drawn scaled.
+     */
+    private final AsyncLayer mRoseLayer = new AsyncLayer(new AsyncLayer.Callback() {
+        @Override
+        public void onLayerSwapped(AsyncLayer layer) {
+            invalidate();
+        }
+    });
+
+    /**
+     * Renders the rose layer with a copy of the ticks paint taken when the layer is requested.
+     * Layers are rendered off the ui thread, so it never reads the widget's fields.
+     */
+    private static class RoseRenderer implements StaticLayerCache.LayerRenderer {
+        private final Paint mTicksPaint;
+
+        RoseRenderer(Paint ticksPaint){
+            mTicksPaint = new Paint(ticksPaint);
+        }
+
+        @Override
+        public void render(Canvas canvas, LayerKey key){
+            drawRose(canvas, key.getWidth(), mTicksPaint);
+        }
+    }
+
+    /**
+     * Staleness of the displayed heading, for the headings set with a timestamp.
+     */
+    private final LatencyMonitor mLatencyMonitor = new LatencyMonitor();
+    private long mSampleTime = NO_SAMPLE_TIME;
+
+    /**
+     * Shared state the widget reads its heading from at draw time. Can be null.
+     */
+    private HudStateSource mStateSource;
+    private final HudState mSourceState = new HudState();
+    private volatile long mDrawnVersion;
+    private final HudStateSource.Listener mStateListener = new HudStateSource.Listener() {
+        @Override
+        public void onStateChanged(HudStateSource source, long version) {
+            if(version != mDrawnVersion)
+                postInvalidate();
+        }
+    };
+
+    public SimpleHsi(Context context) {
+        this(context, null);
+    }
+
+    public SimpleHsi(Context context, AttributeSet attrs) {
+        this(context, attrs, 0);
+    }
+
+    public SimpleHsi(Context context, AttributeSet attrs, int defStyleAttr) {
+        super(context, attrs, defStyleAttr);
+
+        final TypedArray attributes = context.obtainStyledAttributes(attrs, R.styleable.SimpleHsi,
+                defStyleAttr, 0);
+
+        try{
+            mTicksPaint = new Paint();
+            mTicksPaint.setStyle(Paint.Style.STROKE);
+            mTicksPaint.setStrokeWidth(DEFAULT_STROKE_WIDTH);
+            mTicksPaint.setAntiAlias(true);
+            mTicksPaint.setTextAlign(Paint.Align.CENTER);
+            mTicksPaint.setTextSize(attributes.getDimension(R.styleable.SimpleHsi_android_textSize,
+                    25f));
+            mTicksPaint.setColor(attributes.getColor(R.styleable.SimpleHsi_ticksColor, Color.WHITE));
+
+            mYaw = MathUtils.normalizeHeading(attributes.getFloat(R.styleable.SimpleHsi_yaw, 0f));
+            mCourse = MathUtils.normalizeHeading(attributes.getFloat(R.styleable.SimpleHsi_course,
+                    0f));
+            mBearing = MathUtils.normalizeHeading(attributes.getFloat(R.styleable
+                    .SimpleHsi_bearing, Float.NaN));
+
+            mYawNeedlePaint = new Paint();
+            mYawNeedlePaint.setAntiAlias(true);
+            mYawNeedlePaint.setStrokeWidth(attributes.getDimension(R.styleable
+                    .SimpleHsi_yawNeedleThickness, DEFAULT_STROKE_WIDTH));
+            mYawNeedlePaint.setColor(attributes.getColor(R.styleable.SimpleHsi_yawNeedleColor,
+                    Color.RED));
+
+            mCourseNeedlePaint = new Paint();
+            mCourseNeedlePaint.setAntiAlias(true);
+            mCourseNeedlePaint.setStyle(Paint.Style.STROKE);
+            mCourseNeedlePaint.setStrokeWidth(attributes.getDimension(R.styleable
+                    .SimpleHsi_courseNeedleThickness, 2 * DEFAULT_STROKE_WIDTH));
+            mCourseNeedlePaint.setColor(attributes.getColor(R.styleable
+                    .SimpleHsi_courseNeedleColor, Color.MAGENTA));
+
+            mBearingBugPaint = new Paint();
+            mBearingBugPaint.setAntiAlias(true);
+            mBearingBugPaint.setStyle(Paint.Style.FILL);
+            mBearingBugPaint.setColor(attributes.getColor(R.styleable.SimpleHsi_bearingBugColor,
+                    Color.CYAN));
+        }
+        finally{
+            attributes.recycle();
+        }
+    }
+
+    @Override
+    public void onDraw(Canvas canvas){
+        super.onDraw(canvas);
+
+        pullSourceState();
+
+        HudTrace.beginSection(TRACE_DRAW);
+        drawHsi(canvas);
+        HudTrace.endSection();
+
+        if(mSampleTime != NO_SAMPLE_TIME)
+            mLatencyMonitor.onFrameDrawn(mSampleTime);
+    }
+
+    private void drawHsi(Canvas canvas){
+        if(mRoseSize < 1)
+            return;
+
+        //Translate the canvas to account for the view padding
+        canvas.translate(mCanvasXPadding, mCanvasYPadding);
+
+        final float centerX = mWidth / 2;
+        final float centerY = mHeight / 2;
+        final float radius = mRoseSize / 2f;
+        final float roseLeft = centerX - radius;
+        final float roseTop = centerY - radius;
+
+        //Draw the rose, turned so the heading is at the top
+        canvas.save();
+        canvas.rotate(-mYaw, centerX, centerY);
+        if(!mRoseLayer.draw(canvas, roseLeft, roseTop, mRoseSize, mRoseSize, mRosePaint)){
+            //No layer built yet
+            canvas.translate(roseLeft, roseTop);
+            drawRose(canvas, mRoseSize, mTicksPaint);
+        }
+        canvas.restore();
+
+        //Draw the bearing bug on the rose's rim
+        if(!Float.isNaN(mBearing)){
+            final float bugSize = radius * BEARING_BUG_SIZE;
+            canvas.save();
+            canvas.rotate(mBearing - mYaw, centerX, centerY);
+
+            mPathCache.reset();
+            Path bug = mPathCache;
+            bug.moveTo(centerX - bugSize, roseTop);
+            bug.lineTo(centerX - bugSize, roseTop + bugSize);
+            bug.lineTo(centerX + bugSize, roseTop + bugSize);
+            bug.lineTo(centerX + bugSize, roseTop);
+            bug.lineTo(centerX, roseTop + bugSize / 2);
+            bug.close();
+            canvas.drawPath(bug, mBearingBugPaint);
+
+            canvas.restore();
+        }
+
+        //Draw the course needle inside the labels
+        if(!Float.isNaN(mCourse)){
+            final float needleRadius = Math.max(radius * MIN_NEEDLE_RADIUS, radius * (1 -
+                    MAJOR_TICK_LENGTH) - 1.5f * mTicksPaint.getTextSize());
+            final float headSize = needleRadius / 4;
+            final float needleTop = centerY - needleRadius;
+            canvas.save();
+            canvas.rotate(mCourse - mYaw, centerX, centerY);
+
+            canvas.drawLine(centerX, centerY + needleRadius, centerX, needleTop,
+                    mCourseNeedlePaint);
+            canvas.drawLine(centerX, needleTop, centerX - headSize, needleTop + headSize,
+                    mCourseNeedlePaint);
+            canvas.drawLine(centerX, needleTop, centerX + headSize, needleTop + headSize,
+                    mCourseNeedlePaint);
+
+            canvas.restore();
+        }
+
+        //Draw the lubber line
+        canvas.drawLine(centerX, roseTop, centerX, roseTop + radius * LUBBER_LINE_LENGTH,
+                mYawNeedlePaint);
+    }
+
+    /**
+     * Draws the parts of the hsi which only depend on the widget's size, and theme: the rose's
+     * circle, its ticks, and its labels, with north at the top.
+     * @param size side of the square holding the rose.
+     */
+    private static void drawRose(Canvas canvas, int size, Paint ticksPaint){
+        final float center = size / 2f;
+        final float radius = center - ticksPaint.getStrokeWidth();
+        final float majorTickEnd = radius * (1 - MAJOR_TICK_LENGTH);
+        final float minorTickEnd = radius * (1 - MINOR_TICK_LENGTH);
+        final float labelY = center - majorTickEnd + ticksPaint.getTextSize();
+
+        canvas.drawCircle(center, center, radius, ticksPaint);
+
+        for(int angle = 0; angle < 360; angle += MINOR_TICK_STEP){
+            final float sin = (float) Math.sin(angle * DEG_2_RAD);
+            final float cos = (float) Math.cos(angle * DEG_2_RAD);
+            final float tickEnd = angle % MAJOR_TICK_STEP == 0 ? majorTickEnd : minorTickEnd;
+
+            canvas.drawLine(center + sin * radius, center - cos * radius, center + sin * tickEnd,
+                    center - cos * tickEnd, ticksPaint);
+
+            if(angle % LABEL_STEP == 0){
+                canvas.save();
+                canvas.rotate(angle, center, center);
+                canvas.drawText(ROSE_LABELS[angle / LABEL_STEP], center, labelY, ticksPaint);
+                canvas.restore();
+            }
+        }
+    }
+
+    private LayerKey getRoseLayerKey(){
+        return new LayerKey("SimpleHsi.rose", mRoseSize, mRoseSize,
+                getResources().getDisplayMetrics().density, mTicksPaint.getColor(),
+                mTicksPaint.getStrokeWidth(), mTicksPaint.getTextSize(),
+                mTicksPaint.getTypeface());
+    }
+
+    /**
+     * Requests the rose layer matching the current size, and theme. It's built in the background
+     * if not cached yet.
+     */
+    private void updateRoseLayer(){
+        if(mRoseSize >= 1 && getWindowToken() != null)
+            mRoseLayer.request(getRoseLayerKey(), new RoseRenderer(mTicksPaint));
+    }
+
+    /**
+     * Reads the latest heading from the state source, if it changed since the last draw.
+     */
+    private void pullSourceState(){
+        if(mStateSource == null || mStateSource.getVersion() == mDrawnVersion)
+            return;
+
+        mDrawnVersion = mStateSource.read(mSourceState);
+        mYaw = MathUtils.normalizeHeading(mSourceState.yaw);
+        mSampleTime = NO_SAMPLE_TIME;
+    }
+
+    @Override
+    protected void onAttachedToWindow(){
+        super.onAttachedToWindow();
+        if(mStateSource != null)
+            mStateSource.addListener(mStateListener);
+        updateRoseLayer();
+    }
+
+    @Override
+    protected void onDetachedFromWindow(){
+        super.onDetachedFromWindow();
+        if(mStateSource != null)
+            mStateSource.removeListener(mStateListener);
+        mRoseLayer.release();
+    }
+
+    @Override
+    public void onSizeChanged(int width, int height, int oldWidth, int oldHeight){
+        super.onSizeChanged(width, height, oldWidth, oldHeight);
+
+        mCanvasXPadding = getPaddingLeft();
+        mCanvasYPadding = getPaddingTop();
+
+        //Account for padding
+        float xPad = mCanvasXPadding + getPaddingRight();
+        float yPad = mCanvasYPadding + getPaddingBottom();
+
+        mWidth = width - xPad;
+        mHeight = height - yPad;
+
+        mRoseSize = (int) Math.min(mWidth, mHeight);
+        updateRoseLayer();
+    }
+
+    public float getYaw(){
+        return mYaw;
+    }
+
+    /**
+     * Updates the heading. Unbounded headings are accepted, and wrapped within [0, 360).
+     * @param yaw heading in degrees.
+     */
+    public void setYaw(float yaw){
+        mYaw = MathUtils.normalizeHeading(yaw);
+        mSampleTime = NO_SAMPLE_TIME;
+        invalidate();
+    }
+
+    /**
+     * Updates the heading, and records its staleness in the latency monitor.
+     * @param yaw heading in degrees.
+     * @param sampleTimeNanos time the value was received, on the {@link System#nanoTime()} clock.
+     */
+    public void setYaw(float yaw, long sampleTimeNanos){
+        mLatencyMonitor.onSampleReceived(sampleTimeNanos);
+        setYaw(yaw);
+        mSampleTime = sampleTimeNanos;
+    }
+
+    /**
+     * @return the sample age, and ingestion jitter histograms of the headings set with a
+     * timestamp.
+     */
+    public LatencyMonitor getLatencyMonitor(){
+        return mLatencyMonitor;
+    }
+
+    public float getCourse(){
+        return mCourse;
+    }
+
+    /**
+     * Updates the course needle. Unbounded courses are accepted, and wrapped within [0, 360).
+     * @param course course in degrees, or NaN to hide the needle.
+     */
+    public void setCourse(float course){
+        mCourse = MathUtils.normalizeHeading(course);
+        invalidate();
+    }
+
+    public float getBearing(){
+        return mBearing;
+    }
+
+    /**
+     * Updates the bearing bug. Unbounded bearings are accepted, and wrapped within [0, 360).
+     * @param bearing bearing in degrees, or NaN to hide the bug.
+     */
+    public void setBearing(float bearing){
+        mBearing = MathUtils.normalizeHeading(bearing);
+        invalidate();
+    }
+
+    public int getTicksColor(){
+        return mTicksPaint.getColor();
+    }
+
+    public void setTicksColor(int color){
+        mTicksPaint.setColor(color);
+        updateRoseLayer();
+        invalidate();
+    }
+
+    public float getTextSize(){
+        return mTicksPaint.getTextSize();
+    }
+
+    public void setTextSize(float textSize){
+        mTicksPaint.setTextSize(textSize);
+        updateRoseLayer();
+        invalidate();
+    }
+
+    public int getYawNeedleColor(){
+        return mYawNeedlePaint.getColor();
+    }
+
+    public void setYawNeedleColor(int color){
+        mYawNeedlePaint.setColor(color);
+        invalidate();
+    }
+
+    public float getYawNeedleThickness(){
+        return mYawNeedlePaint.getStrokeWidth();
+    }
+
+    public void setYawNeedleThickness(float thickness){
+        mYawNeedlePaint.setStrokeWidth(thickness);
+        invalidate();
+    }
+
+    public int getCourseNeedleColor(){
+        return mCourseNeedlePaint.getColor();
+    }
+
+    public void setCourseNeedleColor(int color){
+        mCourseNeedlePaint.setColor(color);
+        invalidate();
+    }
+
+    public float getCourseNeedleThickness(){
+        return mCourseNeedlePaint.getStrokeWidth();
+    }
+
+    public void setCourseNeedleThickness(float thickness){
+        mCourseNeedlePaint.setStrokeWidth(thickness);
+        invalidate();
+    }
+
+    public int getBearingBugColor(){
+        return mBearingBugPaint.getColor();
+    }
+
+    public void setBearingBugColor(int color){
+        mBearingBugPaint.setColor(color);
+        invalidate();
+    }
+
+    public HudStateSource getStateSource(){
+        return mStateSource;
+    }
+
+    /**
+     * Reads the heading from the given shared state at draw time, instead of through the setter.
+     * @param source shared state, or null to detach from the current one.
+     */
+    public void setStateSource(HudStateSource source){
+        if(mStateSource != null)
+            mStateSource.removeListener(mStateListener);
+
+        mStateSource = source;
+        mDrawnVersion = 0;
+        if(source != null && getWindowToken() != null)
+            source.addListener(mStateListener);
+        invalidate();
+    }
+}
@@ -11,6 +11,16 @@ import android.util.AttributeSet;
 import android.view.View;
 
 import com.ne0fhyklabs.androhud.R;
+import com.ne0fhyklabs.androhud.cache.AsyncLayer;
+import com.ne0fhyklabs.androhud.cache.LayerKey;
+import com.ne0fhyklabs.androhud.cache.StaticLayerCache;
+import com.ne0fhyklabs.androhud.render.GlyphAtlas;
+import com.ne0fhyklabs.androhud.render.QualityGovernor;
+import com.ne0fhyklabs.androhud.telemetry.HudState;
+import com.ne0fhyklabs.androhud.telemetry.HudStateSource;
+import com.ne0fhyklabs.androhud.telemetry.LatencyMonitor;
+import com.ne0fhyklabs.androhud.utils.HudTrace;
+import com.ne0fhyklabs.androhud.utils.TickIterator;
 
 import static com.ne0fhyklabs.androhud.utils.Constants.DEFAULT_STROKE_WIDTH;
 
@@ -20,6 +30,21 @@ import static com.ne0fhyklabs.androhud.utils.Constants.DEFAULT_STROKE_WIDTH;
  */
 public class SimplePitchRoll extends View {
 
+    /**
+     * Ways the widget could handle pitch, and roll values outside of their bounds.
+     */
+    private enum OutOfRangeMode {
+        /**
+         * Reject the value with an IllegalArgumentException.
+         */
+        THROW,
+
+        /**
+         * Clamp the value to the closest bound, and count it.
+         */
+        CLAMP
+    }
+
     private final static float DEG_2_RAD = (float)Math.PI / 180f;
     /**
      * Normalized upper bound in degrees for the pitch value.
@@ -42,6 +67,20 @@ public class SimplePitchRoll extends View {
     private final static float NORMALIZED_ROLL_UPPER_BOUND = ROLL_ARC_SWEEP_ANGLE/2;
     private final static float NORMALIZED_ROLL_LOWER_BOUND = -NORMALIZED_ROLL_UPPER_BOUND;
 
+    /*
+    Trace sections, and counters names. See HudTrace.
+     */
+    private final static String TRACE_DRAW_ROLL = "SimplePitchRoll.drawRoll";
+    private final static String TRACE_DRAW_PITCH = "SimplePitchRoll.drawPitch";
+    private final static String TRACE_DRAW_RETICLE = "SimplePitchRoll.drawReticle";
+    private final static String TRACE_TICK_COUNT = "SimplePitchRoll.ticks";
+    private final static String TRACE_LABEL_COUNT = "SimplePitchRoll.labels";
+
+    /**
+     * Sample time of values set without a timestamp.
+     */
+    private final static long NO_SAMPLE_TIME = Long.MIN_VALUE;
+
     /**
      * This is the view's height accounting for padding.
      */
@@ -113,6 +152,17 @@ public class SimplePitchRoll extends View {
      */
     private float mRollMax;
 
+    /**
+     * Specify how out of range pitch, and roll values are handled.
+     */
+    private OutOfRangeMode mOutOfRangeMode;
+
+    /*
+    Number of out of range pitch, and roll values clamped so far.
+     */
+    private long mPitchOutOfRangeCount;
+    private long mRollOutOfRangeCount;
+
     /**
      * Paint used to render the hud's reticle.
      */
@@ -128,6 +178,86 @@ public class SimplePitchRoll extends View {
      */
     private final RectF mRectFCache = new RectF();
     private final Path mPathCache = new Path();
+    private final TickIterator mTickIterator = new TickIterator();
+
+    /**
+     * If true, the static roll scale is rendered once in a layer shared by all the widgets with
+     * the same size, and theme.
+     */
+    private boolean mUseSharedLayers;
+
+    /**
+     * Shared layer holding the roll scale. Rebuilt in the background when the size, or theme
+     * changes, while the previous one is drawn scaled.
+     */
+    private final AsyncLayer mRollScaleLayer = new AsyncLayer(new AsyncLayer.Callback() {
+        @Override
+        public void onLayerSwapped(AsyncLayer layer) {
+            invalidate();
+        }
+    });
+
+    /**
+     * If true, the labels are drawn from a pre-rasterized glyph atlas instead of being shaped as
+     * text on each frame.
+     */
+    private boolean mUseGlyphAtlas;
+    private GlyphAtlas mGlyphAtlas;
+
+    /**
+     * Lowers the render quality when drawing overruns the frame budget. The pitch ladder rotates
+     * with the roll, so its lines keep their anti-aliasing.
+     */
+    private final QualityGovernor mQualityGovernor = new QualityGovernor();
+
+    /**
+     * Staleness of the displayed values, for the values set with a timestamp.
+     */
+    private final LatencyMonitor mLatencyMonitor = new LatencyMonitor();
+    private long mSampleTime = NO_SAMPLE_TIME;
+
+    /**
+     * Shared state the widget reads its values from at draw time. Can be null.
+     */
+    private HudStateSource mStateSource;
+    private final HudState mSourceState = new HudState();
+    private volatile long mDrawnVersion;
+    private final HudStateSource.Listener mStateListener = new HudStateSource.Listener() {
+        @Override
+        public void onStateChanged(HudStateSource source, long version) {
+            if(version != mDrawnVersion)
+                postInvalidate();
+        }
+    };
+
+    /**
+     * Renders the shared roll scale layer from a copy of the paints, and size taken when the
+     * layer is requested. Layers are rendered off the ui thread, so it never reads the widget's
+     * fields.
+     */
+    private static class RollScaleRenderer implements StaticLayerCache.LayerRenderer {
+        private final float mWidth;
+        private final float mHeight;
+        private final float mReticleRadius;
+        private final Paint mRollPaint;
+        private final Paint mReticlePaint;
+        private final Path mPathCache = new Path();
+        private final RectF mRectFCache = new RectF();
+
+        RollScaleRenderer(SimplePitchRoll widget){
+            mWidth = widget.mWidth;
+            mHeight = widget.mHeight;
+            mReticleRadius = widget.mReticleRadius;
+            mRollPaint = new Paint(widget.mRollPaint);
+            mReticlePaint = new Paint(widget.mReticlePaint);
+        }
+
+        @Override
+        public void render(Canvas canvas, LayerKey key){
+            drawRollScale(canvas, mPathCache, mRectFCache, mWidth, mHeight, mReticleRadius,
+                    mRollPaint, mReticlePaint);
+        }
+    }
 
     public SimplePitchRoll(Context context) {
         this(context, null);
@@ -146,14 +276,16 @@ public class SimplePitchRoll extends View {
         try{
             final float textSize = attributes.getDimension(R.styleable.SimplePitchRoll_android_textSize, 20f);
 
+            mOutOfRangeMode = OutOfRangeMode.values()[attributes.getInt(R.styleable
+                    .SimplePitchRoll_outOfRangeMode, OutOfRangeMode.THROW.ordinal())];
+
             /*Pitch properties */
             mPitchMin = attributes.getFloat(R.styleable.SimplePitchRoll_pitchMin,
                     NORMALIZED_PITCH_LOWER_BOUND);
             mPitchMax = attributes.getFloat(R.styleable.SimplePitchRoll_pitchMax,
                     NORMALIZED_PITCH_UPPER_BOUND);
-            mPitch = attributes.getFloat(R.styleable.SimplePitchRoll_pitch,
-                    (mPitchMax + mPitchMin) / 2);
-            checkPitchIsWithinRange(mPitch);
+            mPitch = checkPitchIsWithinRange(attributes.getFloat(R.styleable.SimplePitchRoll_pitch,
+                    (mPitchMax + mPitchMin) / 2), (mPitchMax + mPitchMin) / 2, mOutOfRangeMode);
 
             mPitchScaleWidth = attributes.getDimension(R.styleable.SimplePitchRoll_pitchScaleWidth,
                     30f);
@@ -171,9 +303,8 @@ public class SimplePitchRoll extends View {
             mRollMin = attributes.getFloat(R.styleable.SimplePitchRoll_rollMin, NORMALIZED_ROLL_LOWER_BOUND);
             mRollMax = attributes.getFloat(R.styleable.SimplePitchRoll_rollMax,
                     NORMALIZED_ROLL_UPPER_BOUND);
-            mRoll = attributes.getFloat(R.styleable.SimplePitchRoll_roll,
-                    (mRollMax + mRollMin)/ 2);
-            checkRollIsWithinRange(mRoll);
+            mRoll = checkRollIsWithinRange(attributes.getFloat(R.styleable.SimplePitchRoll_roll,
+                    (mRollMax + mRollMin)/ 2), (mRollMax + mRollMin)/ 2, mOutOfRangeMode);
 
             mRollPaint = new Paint();
             mRollPaint.setStyle(Paint.Style.STROKE);
@@ -190,6 +321,16 @@ public class SimplePitchRoll extends View {
             mReticlePaint.setStrokeWidth(DEFAULT_STROKE_WIDTH);
             mReticlePaint.setColor(attributes.getColor(R.styleable.SimplePitchRoll_reticleColor,
                     Color.RED));
+
+            mUseSharedLayers = attributes.getBoolean(R.styleable.SimplePitchRoll_useSharedLayers,
+                    false);
+            mUseGlyphAtlas = attributes.getBoolean(R.styleable.SimplePitchRoll_glyphAtlasText,
+                    false);
+
+            mQualityGovernor.setEnabled(attributes.getBoolean(R.styleable
+                    .SimplePitchRoll_adaptiveQuality, false));
+            mQualityGovernor.setFrameBudget(attributes.getFloat(R.styleable
+                    .SimplePitchRoll_frameBudget, QualityGovernor.DEFAULT_FRAME_BUDGET_MS));
         }
         finally{
             attributes.recycle();
@@ -203,10 +344,27 @@ public class SimplePitchRoll extends View {
         //Translate the canvas to account for the view padding
         canvas.translate(mCanvasXPadding, mCanvasYPadding);
 
+        pullSourceState();
+
         //Draw each view component.
+        mQualityGovernor.beginFrame();
+
+        HudTrace.beginSection(TRACE_DRAW_ROLL);
         drawRoll(canvas);
+        HudTrace.endSection();
+
+        HudTrace.beginSection(TRACE_DRAW_PITCH);
         drawPitch(canvas);
+        HudTrace.endSection();
+
+        HudTrace.beginSection(TRACE_DRAW_RETICLE);
         drawReticle(canvas);
+        HudTrace.endSection();
+
+        mQualityGovernor.endFrame();
+
+        if(mSampleTime != NO_SAMPLE_TIME)
+            mLatencyMonitor.onFrameDrawn(mSampleTime);
     }
 
     private float normalizeRoll(float roll){
@@ -259,27 +417,62 @@ public class SimplePitchRoll extends View {
     private void drawRoll(Canvas canvas){
         final float halfWidth = mWidth / 2;
         final float halfHeight = mHeight / 2;
-        final float arcHRadius = mWidth / 2 - mReticleRadius;
-        final float arcVRadius = mHeight / 2 - mReticleRadius;
-        final float halfRadius = mReticleRadius / 2;
         final float normalizedRoll = normalizeRoll(mRoll);
 
-        mRectFCache.set(mReticleRadius, mReticleRadius, mWidth - mReticleRadius,
-                mHeight - mReticleRadius);
+        //Draw the static roll scale
+        if(!mUseSharedLayers || mWidth < 1 || mHeight < 1 || !mRollScaleLayer.draw(canvas, 0,
+                0, (int) Math.ceil(mWidth), (int) Math.ceil(mHeight))){
+            //No layer built yet
+            drawRollScale(canvas, mPathCache, mRectFCache, mWidth, mHeight, mReticleRadius,
+                    mRollPaint, mReticlePaint);
+        }
+
+        //Draw the roll triangle bottom
+        canvas.save();
 
-        //Draw the arc
-        canvas.drawArc(mRectFCache, 225, ROLL_ARC_SWEEP_ANGLE, false, mRollPaint);
+        final float tempOffset = 2 * mReticlePaint.getStrokeWidth();
+        final float rollTriangleBaseY = 2 * mReticleRadius + tempOffset;
+        canvas.rotate(-normalizedRoll, halfWidth, halfHeight);
 
-        //Draw the center triangle
         mPathCache.reset();
         Path arrow = mPathCache;
-        float tempOffset = 2 * mReticlePaint.getStrokeWidth();
-        arrow.moveTo(halfWidth, mReticleRadius - tempOffset);
-        arrow.lineTo(halfWidth - mReticleRadius, 0);
-        arrow.lineTo(halfWidth + mReticleRadius, 0);
+        arrow.moveTo(halfWidth, mReticleRadius + tempOffset);
+        arrow.lineTo(halfWidth - mReticleRadius, rollTriangleBaseY);
+        arrow.lineTo(halfWidth + mReticleRadius, rollTriangleBaseY);
         arrow.close();
         canvas.drawPath(arrow, mReticlePaint);
 
+        canvas.restore();
+    }
+
+    /**
+     * Draws the parts of the roll hud which only depend on the widget's size, and theme: the
+     * arc, its ticks, and the center triangle.
+     */
+    private static void drawRollScale(Canvas canvas, Path pathCache, RectF rectFCache,
+                                      float width, float height, float reticleRadius,
+                                      Paint rollPaint, Paint reticlePaint){
+        final float halfWidth = width / 2;
+        final float halfHeight = height / 2;
+        final float arcHRadius = width / 2 - reticleRadius;
+        final float arcVRadius = height / 2 - reticleRadius;
+        final float halfRadius = reticleRadius / 2;
+        rectFCache.set(reticleRadius, reticleRadius, width - reticleRadius,
+                height - reticleRadius);
+
+        //Draw the arc
+        canvas.drawArc(rectFCache, 225, ROLL_ARC_SWEEP_ANGLE, false, rollPaint);
+
+        //Draw the center triangle
+        pathCache.reset();
+        Path arrow = pathCache;
+        float tempOffset = 2 * reticlePaint.getStrokeWidth();
+        arrow.moveTo(halfWidth, reticleRadius - tempOffset);
+        arrow.lineTo(halfWidth - reticleRadius, 0);
+        arrow.lineTo(halfWidth + reticleRadius, 0);
+        arrow.close();
+        canvas.drawPath(arrow, reticlePaint);
+
         //Draw the ticks.
         for(int i = (int) NORMALIZED_ROLL_LOWER_BOUND; i <= 0; i+=
                 15){
@@ -294,28 +487,40 @@ public class SimplePitchRoll extends View {
                 float ey = cosI * (arcVRadius + halfRadius);
 
                 canvas.drawLine(halfWidth + dx, halfHeight -dy, halfWidth + ex, halfHeight -ey,
-                        mRollPaint);
+                        rollPaint);
 
                 //Draw symmetric ticks
                 canvas.drawLine(halfWidth - dx, halfHeight - dy, halfWidth - ex, halfHeight - ey,
-                        mRollPaint);
+                        rollPaint);
             }
         }
+    }
 
-        //Draw the roll triangle bottom
-        canvas.save();
+    private LayerKey getRollScaleLayerKey(){
+        return new LayerKey("SimplePitchRoll.rollScale", (int) Math.ceil(mWidth),
+                (int) Math.ceil(mHeight), getResources().getDisplayMetrics().density,
+                mRollPaint.getColor(), mReticlePaint.getColor(), mRollPaint.getStrokeWidth(),
+                mReticlePaint.getStrokeWidth(), mReticleRadius);
+    }
 
-        final float rollTriangleBaseY = 2 * mReticleRadius + tempOffset;
-        canvas.rotate(-normalizedRoll, halfWidth, halfHeight);
+    /**
+     * Requests the shared layers matching the current size, and theme. They're built in the
+     * background if not cached yet.
+     */
+    private void updateSharedLayers(){
+        if(mUseSharedLayers && mWidth >= 1 && mHeight >= 1 && getWindowToken() != null)
+            mRollScaleLayer.request(getRollScaleLayerKey(), new RollScaleRenderer(this));
+    }
 
-        arrow.reset();
-        arrow.moveTo(halfWidth, mReticleRadius + tempOffset);
-        arrow.lineTo(halfWidth - mReticleRadius, rollTriangleBaseY);
-        arrow.lineTo(halfWidth + mReticleRadius, rollTriangleBaseY);
-        arrow.close();
-        canvas.drawPath(arrow, mReticlePaint);
+    private void releaseSharedLayers(){
+        mRollScaleLayer.release();
+    }
 
-        canvas.restore();
+    private void releaseGlyphAtlas(){
+        if(mGlyphAtlas != null){
+            mGlyphAtlas.release();
+            mGlyphAtlas = null;
+        }
     }
 
     private void drawPitch(Canvas canvas){
@@ -332,31 +537,54 @@ public class SimplePitchRoll extends View {
         //Rotate the canvas to reflect the current roll value.
         canvas.rotate(-normalizeRoll(mRoll), halfWidth, halfHeight);
 
-        //Draw the pitch gauge
+        //Draw the pitch gauge. Only walk the ticks falling within the upper and lower limits.
         final float halfPitchScaleWidth = mPitchScaleWidth / 2;
-        for(int i = (int)NORMALIZED_PITCH_LOWER_BOUND ; i <= (int)
-                NORMALIZED_PITCH_UPPER_BOUND; i++){
-
-            float yPos = (-i* mPitchDegreesPerPixel + pitchYOffset) + halfHeight;
-            if(yPos >= upperLimit && yPos <= lowerLimit){
-                if(i % 2 == 0){
-                    canvas.drawLine(halfWidth - pitchScaleXOffset, yPos,
-                            halfWidth - mPitchScaleMargin, yPos, mPitchPaint);
-                    canvas.drawText(String.valueOf((int)denormalizePitch(i)), halfWidth,
-                            yPos + textOffset, mPitchPaint);
-                    canvas.drawLine(halfWidth + mPitchScaleMargin, yPos,
-                            halfWidth + pitchScaleXOffset, yPos, mPitchPaint);
-                }
-                else{
-                    canvas.drawLine(halfWidth - halfPitchScaleWidth, yPos,
-                            halfWidth + halfPitchScaleWidth, yPos, mPitchPaint);
+        final float zeroYPos = pitchYOffset + halfHeight;
+        final float lowerLimitDegrees = (zeroYPos - lowerLimit) / mPitchDegreesPerPixel;
+        final float upperLimitDegrees = (zeroYPos - upperLimit) / mPitchDegreesPerPixel;
+        final float minVisible = Math.max(NORMALIZED_PITCH_LOWER_BOUND,
+                Math.min(lowerLimitDegrees, upperLimitDegrees));
+        final float maxVisible = Math.min(NORMALIZED_PITCH_UPPER_BOUND,
+                Math.max(lowerLimitDegrees, upperLimitDegrees));
+
+        if(mUseGlyphAtlas)
+            mGlyphAtlas = GlyphAtlas.update(mGlyphAtlas, mPitchPaint);
+
+        final boolean thinLabels = mQualityGovernor.isThinningLabels();
+        final TickIterator ticks = mTickIterator.reset(minVisible, maxVisible, 0, zeroYPos,
+                -mPitchDegreesPerPixel, 2, mQualityGovernor.isDrawingMinorTicks() ? 1 : 2);
+        HudTrace.setCounter(TRACE_TICK_COUNT, ticks.getRemaining());
+        int labelCount = 0;
+        while(ticks.next()){
+            final float yPos = ticks.getPosition();
+            if(ticks.isMajor()){
+                canvas.drawLine(halfWidth - pitchScaleXOffset, yPos,
+                        halfWidth - mPitchScaleMargin, yPos, mPitchPaint);
+                if(!thinLabels || ticks.getLabelId() % 2 == 0){
+                    drawPitchLabel(canvas, (int)denormalizePitch(ticks.getValue()), halfWidth,
+                            yPos + textOffset);
+                    labelCount++;
                 }
+                canvas.drawLine(halfWidth + mPitchScaleMargin, yPos,
+                        halfWidth + pitchScaleXOffset, yPos, mPitchPaint);
+            }
+            else{
+                canvas.drawLine(halfWidth - halfPitchScaleWidth, yPos,
+                        halfWidth + halfPitchScaleWidth, yPos, mPitchPaint);
             }
         }
+        HudTrace.setCounter(TRACE_LABEL_COUNT, labelCount);
 
         canvas.restore();
     }
 
+    private void drawPitchLabel(Canvas canvas, int label, float x, float y){
+        if(mGlyphAtlas != null)
+            mGlyphAtlas.drawInt(canvas, label, x, y, mPitchPaint.getTextAlign());
+        else
+            canvas.drawText(String.valueOf(label), x, y, mPitchPaint);
+    }
+
     private void drawReticle(Canvas canvas){
         final float halfWidth = mWidth / 2;
         final float halfHeight = mHeight / 2;
@@ -393,6 +621,108 @@ public class SimplePitchRoll extends View {
 
         mPitchDegreesPerPixel = (mHeight - 5 * mReticleRadius) *2 / (NORMALIZED_PITCH_UPPER_BOUND -
                 NORMALIZED_PITCH_LOWER_BOUND);
+
+        updateSharedLayers();
+    }
+
+    /**
+     * Reads the latest values from the state source, if they changed since the last draw.
+     */
+    private void pullSourceState(){
+        if(mStateSource == null || mStateSource.getVersion() == mDrawnVersion)
+            return;
+
+        mDrawnVersion = mStateSource.read(mSourceState);
+        //Clamped whatever the mode: this runs while drawing, where throwing would crash the ui.
+        mPitch = checkPitchIsWithinRange(mSourceState.pitch, mPitch, OutOfRangeMode.CLAMP);
+        mRoll = checkRollIsWithinRange(mSourceState.roll, mRoll, OutOfRangeMode.CLAMP);
+        mSampleTime = NO_SAMPLE_TIME;
+    }
+
+    @Override
+    protected void onAttachedToWindow(){
+        super.onAttachedToWindow();
+        if(mStateSource != null)
+            mStateSource.addListener(mStateListener);
+        updateSharedLayers();
+    }
+
+    @Override
+    protected void onDetachedFromWindow(){
+        super.onDetachedFromWindow();
+        if(mStateSource != null)
+            mStateSource.removeListener(mStateListener);
+        releaseSharedLayers();
+        releaseGlyphAtlas();
+    }
+
+    public boolean isUsingSharedLayers(){
+        return mUseSharedLayers;
+    }
+
+    public void setUseSharedLayers(boolean useSharedLayers){
+        mUseSharedLayers = useSharedLayers;
+        if(useSharedLayers)
+            updateSharedLayers();
+        else
+            releaseSharedLayers();
+        invalidate();
+    }
+
+    public boolean isUsingGlyphAtlas(){
+        return mUseGlyphAtlas;
+    }
+
+    public void setUseGlyphAtlas(boolean useGlyphAtlas){
+        mUseGlyphAtlas = useGlyphAtlas;
+        if(!useGlyphAtlas)
+            releaseGlyphAtlas();
+        invalidate();
+    }
+
+    public boolean isAdaptiveQuality(){
+        return mQualityGovernor.isEnabled();
+    }
+
+    public void setAdaptiveQuality(boolean adaptiveQuality){
+        mQualityGovernor.setEnabled(adaptiveQuality);
+        invalidate();
+    }
+
+    public float getFrameBudget(){
+        return mQualityGovernor.getFrameBudget();
+    }
+
+    public void setFrameBudget(float budgetMs){
+        mQualityGovernor.setFrameBudget(budgetMs);
+    }
+
+    /**
+     * @return the current render quality level, see {@link QualityGovernor}.
+     */
+    public int getQualityLevel(){
+        return mQualityGovernor.getLevel();
+    }
+
+    public HudStateSource getStateSource(){
+        return mStateSource;
+    }
+
+    /**
+     * Reads the pitch, and roll from the given shared state at draw time, instead of through the
+     * setters. The values are read while drawing, so out of range values are always clamped, and
+     * counted, whatever the out of range mode.
+     * @param source shared state, or null to detach from the current one.
+     */
+    public void setStateSource(HudStateSource source){
+        if(mStateSource != null)
+            mStateSource.removeListener(mStateListener);
+
+        mStateSource = source;
+        mDrawnVersion = 0;
+        if(source != null && getWindowToken() != null)
+            source.addListener(mStateListener);
+        invalidate();
     }
 
     public float getPitchScaleWidth(){
@@ -428,6 +758,7 @@ public class SimplePitchRoll extends View {
 
     public void setRollColor(int color){
         mRollPaint.setColor(color);
+        updateSharedLayers();
         invalidate();
     }
 
@@ -445,17 +776,31 @@ public class SimplePitchRoll extends View {
     }
 
     public void setPitch(float pitch) {
-        checkPitchIsWithinRange(pitch);
-
-        this.mPitch = pitch;
+        this.mPitch = checkPitchIsWithinRange(pitch, mPitch, mOutOfRangeMode);
+        mSampleTime = NO_SAMPLE_TIME;
         invalidate();
     }
 
-    private void checkPitchIsWithinRange(float pitch){
-        if(pitch > mPitchMax || pitch < mPitchMin){
-            throw new IllegalArgumentException("Pitch vlaue should be within max pitch (" +
-                    mPitchMax + ") and min pitch (" + mPitchMin + ").");
+    /**
+     * Checks the given pitch against the pitch bounds.
+     * @param pitch pitch value to check.
+     * @param fallback value to use if the pitch is not a number, in clamp mode.
+     * @param mode how an out of range pitch is handled.
+     * @return the pitch value to use.
+     */
+    private float checkPitchIsWithinRange(float pitch, float fallback, OutOfRangeMode mode){
+        if(pitch > mPitchMax || pitch < mPitchMin || Float.isNaN(pitch)){
+            if(mode == OutOfRangeMode.CLAMP){
+                mPitchOutOfRangeCount++;
+                return pitch > mPitchMax ? mPitchMax : (pitch < mPitchMin ? mPitchMin : fallback);
+            }
+
+            if(!Float.isNaN(pitch)){
+                throw new IllegalArgumentException("Pitch vlaue should be within max pitch (" +
+                        mPitchMax + ") and min pitch (" + mPitchMin + ").");
+            }
         }
+        return pitch;
     }
 
     public float getRoll() {
@@ -463,34 +808,97 @@ public class SimplePitchRoll extends View {
     }
 
     public void setRoll(float roll) {
-        checkRollIsWithinRange(roll);
-
-        this.mRoll = roll;
+        this.mRoll = checkRollIsWithinRange(roll, mRoll, mOutOfRangeMode);
+        mSampleTime = NO_SAMPLE_TIME;
         invalidate();
     }
 
-    private void checkRollIsWithinRange(float roll){
-        if(roll > mRollMax || roll < mRollMin){
-            throw new IllegalArgumentException("Roll value should be within max roll (" +
-                    mRollMax + ") and min roll (" + mRollMin + ").");
+    /**
+     * Checks the given roll against the roll bounds.
+     * @param roll roll value to check.
+     * @param fallback value to use if the roll is not a number, in clamp mode.
+     * @param mode how an out of range roll is handled.
+     * @return the roll value to use.
+     */
+    private float checkRollIsWithinRange(float roll, float fallback, OutOfRangeMode mode){
+        if(roll > mRollMax || roll < mRollMin || Float.isNaN(roll)){
+            if(mode == OutOfRangeMode.CLAMP){
+                mRollOutOfRangeCount++;
+                return roll > mRollMax ? mRollMax : (roll < mRollMin ? mRollMin : fallback);
+            }
+
+            if(!Float.isNaN(roll)){
+                throw new IllegalArgumentException("Roll value should be within max roll (" +
+                        mRollMax + ") and min roll (" + mRollMin + ").");
+            }
         }
+        return roll;
     }
 
     public void setPitchRoll(float pitch, float roll){
-        checkPitchIsWithinRange(pitch);
-        checkRollIsWithinRange(roll);
+        //Check both values before updating any of them.
+        final float checkedPitch = checkPitchIsWithinRange(pitch, mPitch, mOutOfRangeMode);
+        final float checkedRoll = checkRollIsWithinRange(roll, mRoll, mOutOfRangeMode);
 
-        mPitch = pitch;
-        mRoll = roll;
+        mPitch = checkedPitch;
+        mRoll = checkedRoll;
+        mSampleTime = NO_SAMPLE_TIME;
         invalidate();
     }
 
+    /**
+     * Updates both values, and records their staleness in the latency monitor.
+     * @param sampleTimeNanos time the values were received, on the {@link System#nanoTime()}
+     *                        clock.
+     */
+    public void setPitchRoll(float pitch, float roll, long sampleTimeNanos){
+        mLatencyMonitor.onSampleReceived(sampleTimeNanos);
+        setPitchRoll(pitch, roll);
+        mSampleTime = sampleTimeNanos;
+    }
+
+    /**
+     * @return the sample age, and ingestion jitter histograms of the values set with a
+     * timestamp.
+     */
+    public LatencyMonitor getLatencyMonitor(){
+        return mLatencyMonitor;
+    }
+
+    public int getOutOfRangeMode(){
+        return mOutOfRangeMode.ordinal();
+    }
+
+    public void setOutOfRangeMode(int modeIndex){
+        mOutOfRangeMode = OutOfRangeMode.values()[modeIndex];
+    }
+
+    /**
+     * @return the number of out of range pitch values clamped so far.
+     */
+    public long getPitchOutOfRangeCount(){
+        return mPitchOutOfRangeCount;
+    }
+
+    /**
+     * @return the number of out of range roll values clamped so far.
+     */
+    public long getRollOutOfRangeCount(){
+        return mRollOutOfRangeCount;
+    }
+
+    public void resetOutOfRangeCounts(){
+        mPitchOutOfRangeCount = 0;
+        mRollOutOfRangeCount = 0;
+    }
+
     public float getReticleRadius(){
         return mReticleRadius;
     }
 
     public void setReticleRadius(float radius){
         mReticleRadius = radius;
+        updateSharedLayers();
         invalidate();
     }
 
@@ -500,6 +908,7 @@ public class SimplePitchRoll extends View {
 
     public void setReticleColor(int color){
         mReticlePaint.setColor(color);
+        updateSharedLayers();
         invalidate();
     }
 
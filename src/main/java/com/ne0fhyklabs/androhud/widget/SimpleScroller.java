@@ -7,10 +7,20 @@ import android.graphics.Color;
 import android.graphics.Paint;
 import android.graphics.Path;
 import android.graphics.RectF;
+import android.os.SystemClock;
 import android.util.AttributeSet;
 import android.view.View;
 
 import com.ne0fhyklabs.androhud.R;
+import com.ne0fhyklabs.androhud.render.DetailLevel;
+import com.ne0fhyklabs.androhud.render.GlyphAtlas;
+import com.ne0fhyklabs.androhud.render.QualityGovernor;
+import com.ne0fhyklabs.androhud.telemetry.HudState;
+import com.ne0fhyklabs.androhud.telemetry.HudStateSource;
+import com.ne0fhyklabs.androhud.telemetry.LatencyMonitor;
+import com.ne0fhyklabs.androhud.utils.HudTrace;
+import com.ne0fhyklabs.androhud.utils.TickIterator;
+import com.ne0fhyklabs.androhud.utils.ValueHistory;
 
 import static com.ne0fhyklabs.androhud.utils.Constants.DEFAULT_STROKE_WIDTH;
 
@@ -27,6 +37,45 @@ public class SimpleScroller extends View {
         RIGHT
     }
 
+    private static final int DEFAULT_MAJOR_TICK_STEP = 5;
+
+    /**
+     * In auto tick step mode, minimum spacing between labeled ticks in relation to the text size.
+     */
+    private static final float AUTO_MAJOR_TICK_SPACING_FACTOR = 2f;
+
+    /**
+     * In auto tick step mode, minimum spacing in pixels between unlabeled ticks.
+     */
+    private static final float AUTO_MINOR_TICK_MIN_SPACING = 4f;
+
+    /*
+    Default detail thresholds, as the widget height in text sizes.
+     */
+    private static final float DEFAULT_LABELS_MIN_SIZE = 6f;
+    private static final float DEFAULT_MINOR_TICKS_MIN_SIZE = 4f;
+    private static final float DEFAULT_SECONDARY_MIN_SIZE = 2f;
+
+    /*
+    Trace sections, and counters names. See HudTrace.
+     */
+    private static final String TRACE_DRAW = "SimpleScroller.drawScroller";
+    private static final String TRACE_TICK_COUNT = "SimpleScroller.ticks";
+    private static final String TRACE_LABEL_COUNT = "SimpleScroller.labels";
+
+    /**
+     * Sample time of values set without a timestamp.
+     */
+    private static final long NO_SAMPLE_TIME = Long.MIN_VALUE;
+
+    /*
+    Trend vector defaults. The rate of change is measured over the trend window, and the vector
+    points to the value predicted after the trend time.
+     */
+    private static final float DEFAULT_TREND_TIME = 10f;
+    private static final long TREND_WINDOW_MS = 2000;
+    private static final int TREND_HISTORY_CAPACITY = 128;
+
     /*
     Widget width and height accounting for padding.
      */
@@ -85,6 +134,94 @@ public class SimpleScroller extends View {
      */
     private final Path mCachePath = new Path();
 
+    /**
+     * Used to walk the visible ticks.
+     */
+    private final TickIterator mTickIterator = new TickIterator();
+
+    /**
+     * If true, the labels are drawn from a pre-rasterized glyph atlas instead of being shaped as
+     * text on each frame.
+     */
+    private boolean mUseGlyphAtlas;
+    private GlyphAtlas mGlyphAtlas;
+
+    /**
+     * Lowers the render quality when drawing overruns the frame budget.
+     */
+    private final QualityGovernor mQualityGovernor = new QualityGovernor();
+
+    /**
+     * Used to draw the ticks without anti-aliasing in degraded quality.
+     */
+    private final Paint mAliasedStrokeColor = new Paint();
+
+    /**
+     * Staleness of the displayed values, for the values set with a timestamp.
+     */
+    private final LatencyMonitor mLatencyMonitor = new LatencyMonitor();
+    private long mSampleTime = NO_SAMPLE_TIME;
+
+    /**
+     * Recent values, used to draw the trend vector.
+     */
+    private final ValueHistory mHistory = new ValueHistory(TREND_HISTORY_CAPACITY,
+            TREND_WINDOW_MS);
+
+    /**
+     * If true, a vector from the arrow points to the value predicted after the trend time.
+     */
+    private boolean mShowTrend;
+
+    /**
+     * Trend prediction time, in seconds.
+     */
+    private float mTrendTime;
+
+    /**
+     * Paint used to render the trend vector.
+     */
+    private Paint mTrendColor;
+
+    /**
+     * Redraws the widget once the latest value left the trend window, to hide the trend.
+     */
+    private final Runnable mTrendExpiry = new Runnable() {
+        @Override
+        public void run() {
+            invalidate();
+        }
+    };
+
+    /**
+     * Drops details from small widgets: the tick labels, then the minor ticks, then the whole
+     * scale. The box, the arrow, and the current value are always drawn.
+     */
+    private final DetailLevel mDetailLevel = new DetailLevel(DEFAULT_LABELS_MIN_SIZE,
+            DEFAULT_MINOR_TICKS_MIN_SIZE, DEFAULT_SECONDARY_MIN_SIZE);
+
+    /**
+     * Shared state the widget reads its values from at draw time. Can be null.
+     */
+    private HudStateSource mStateSource;
+    private int mSourceValueId;
+    private final HudState mSourceState = new HudState();
+    private volatile long mDrawnVersion;
+
+    /**
+     * Time of the latest publish, on the {@link SystemClock#uptimeMillis()} clock. Stamps the
+     * trend samples read from the source, since they're only read when the widget draws.
+     */
+    private volatile long mSourcePublishTime;
+    private final HudStateSource.Listener mStateListener = new HudStateSource.Listener() {
+        @Override
+        public void onStateChanged(HudStateSource source, long version) {
+            mSourcePublishTime = SystemClock.uptimeMillis();
+            if (version != mDrawnVersion)
+                postInvalidate();
+        }
+    };
+
     /**
      * Value the scroller arrow should indicate.
      */
@@ -95,6 +232,27 @@ public class SimpleScroller extends View {
      */
     private float mScrollToRange;
 
+    /**
+     * Step between labeled ticks.
+     */
+    private int mMajorTickStep;
+
+    /**
+     * Step between unlabeled ticks. Should divide the major tick step.
+     */
+    private int mMinorTickStep;
+
+    /**
+     * If true, the tick steps are picked based on the tick density.
+     */
+    private boolean mAutoTickStep;
+
+    /*
+    Tick steps used for drawing. Match the user's steps, unless auto tick step is enabled.
+     */
+    private int mDrawMajorTickStep;
+    private int mDrawMinorTickStep;
+
     public SimpleScroller(Context context) {
         this(context, null);
     }
@@ -144,8 +302,42 @@ public class SimpleScroller extends View {
             mArrowBgColor.setColor(attributes.getColor(R.styleable.SimpleScroller_arrowBgColor,
                     Color.BLACK));
 
+            mTrendColor = new Paint();
+            mTrendColor.setAntiAlias(true);
+            mTrendColor.setStyle(Paint.Style.STROKE);
+            mTrendColor.setStrokeWidth(DEFAULT_STROKE_WIDTH);
+            mTrendColor.setColor(attributes.getColor(R.styleable.SimpleScroller_trendColor,
+                    Color.MAGENTA));
+            mShowTrend = attributes.getBoolean(R.styleable.SimpleScroller_trendVector, false);
+            mTrendTime = attributes.getFloat(R.styleable.SimpleScroller_trendTime,
+                    DEFAULT_TREND_TIME);
+
             mScrollTo = attributes.getFloat(R.styleable.SimpleScroller_scrollTo, 0);
             mScrollToRange = attributes.getFloat(R.styleable.SimpleScroller_scrollToRange, 26f);
+
+            mMajorTickStep = attributes.getInt(R.styleable.SimpleScroller_majorTickStep,
+                    DEFAULT_MAJOR_TICK_STEP);
+            mMinorTickStep = attributes.getInt(R.styleable.SimpleScroller_minorTickStep,
+                    mMajorTickStep);
+            checkTickSteps(mMajorTickStep, mMinorTickStep);
+            mAutoTickStep = attributes.getBoolean(R.styleable.SimpleScroller_autoTickStep, false);
+            updateTickSteps();
+
+            mUseGlyphAtlas = attributes.getBoolean(R.styleable.SimpleScroller_glyphAtlasText,
+                    false);
+
+            mQualityGovernor.setEnabled(attributes.getBoolean(R.styleable
+                    .SimpleScroller_adaptiveQuality, false));
+            mQualityGovernor.setFrameBudget(attributes.getFloat(R.styleable
+                    .SimpleScroller_frameBudget, QualityGovernor.DEFAULT_FRAME_BUDGET_MS));
+
+            mDetailLevel.setEnabled(attributes.getBoolean(R.styleable.SimpleScroller_autoDetail,
+                    true));
+            mDetailLevel.setThresholds(attributes.getFloat(R.styleable
+                    .SimpleScroller_labelsMinSize, DEFAULT_LABELS_MIN_SIZE), attributes.getFloat(R
+                    .styleable.SimpleScroller_minorTicksMinSize, DEFAULT_MINOR_TICKS_MIN_SIZE),
+                    attributes.getFloat(R.styleable.SimpleScroller_secondaryMinSize,
+                            DEFAULT_SECONDARY_MIN_SIZE));
         } finally {
             attributes.recycle();
         }
@@ -155,6 +347,19 @@ public class SimpleScroller extends View {
     public void onDraw(Canvas canvas) {
         super.onDraw(canvas);
 
+        pullSourceState();
+
+        mQualityGovernor.beginFrame();
+        HudTrace.beginSection(TRACE_DRAW);
+        drawScroller(canvas);
+        HudTrace.endSection();
+        mQualityGovernor.endFrame();
+
+        if (mSampleTime != NO_SAMPLE_TIME)
+            mLatencyMonitor.onFrameDrawn(mSampleTime);
+    }
+
+    private void drawScroller(Canvas canvas) {
         //Translate the canvas to account for the view padding
         canvas.translate(mCanvasXPadding, mCanvasYPadding);
 
@@ -164,8 +369,6 @@ public class SimpleScroller extends View {
 
         final float centerY = mHeight / 2;
         final float ticMargin = mHeight / mScrollToRange;
-        final int start = (int) (mScrollTo - mScrollToRange / 2);
-        final int end = (int) (mScrollTo + mScrollToRange / 2);
         final float ticStart = mHandedness == Handedness.LEFT ? mWidth : 0;
         final float ticEnd = mHandedness == Handedness.LEFT ? ticStart - mTicWidth: ticStart +
                 mTicWidth;
@@ -173,14 +376,43 @@ public class SimpleScroller extends View {
                 mTextHorizontalMargin;
         final float textOffset = mStrokeColor.getTextSize() / 2 + mTextVerticalMargin;
 
-        for (int a = start; a <= end; a++) {
-            if (a % 5 == 0) {
-                float lineHeight = centerY - ticMargin * (a - mScrollTo);
-                canvas.drawLine(ticStart, lineHeight, ticEnd, lineHeight, mStrokeColor);
-                canvas.drawText(String.valueOf(a), textStart, lineHeight + textOffset, mStrokeColor);
+        final float minorTicEnd = (ticStart + ticEnd) / 2;
+
+        if (mUseGlyphAtlas)
+            mGlyphAtlas = GlyphAtlas.update(mGlyphAtlas, mStrokeColor);
+
+        final Paint ticPaint = mQualityGovernor.isAliasingLines()
+                ? QualityGovernor.aliasedCopy(mStrokeColor, mAliasedStrokeColor)
+                : mStrokeColor;
+        final int minorTickStep = mQualityGovernor.isDrawingMinorTicks()
+                && mDetailLevel.isDrawingMinorTicks()
+                ? mDrawMinorTickStep
+                : mDrawMajorTickStep;
+        final boolean thinLabels = mQualityGovernor.isThinningLabels();
+        final boolean drawLabels = mDetailLevel.isDrawingLabels();
+
+        final TickIterator ticks = mTickIterator.resetCentered(mScrollTo, mScrollToRange, centerY,
+                -ticMargin, mDrawMajorTickStep, minorTickStep);
+        final boolean drawScale = mDetailLevel.isDrawingSecondary();
+        HudTrace.setCounter(TRACE_TICK_COUNT, drawScale ? ticks.getRemaining() : 0);
+        int labelCount = 0;
+        while (drawScale && ticks.next()) {
+            float lineHeight = ticks.getPosition();
+            if (ticks.isMajor()) {
+                canvas.drawLine(ticStart, lineHeight, ticEnd, lineHeight, ticPaint);
+                if (drawLabels && (!thinLabels || ticks.getLabelId() % 2 == 0)) {
+                    drawLabel(canvas, ticks.getValue(), textStart, lineHeight + textOffset);
+                    labelCount++;
+                }
+            }
+            else {
+                canvas.drawLine(ticStart, lineHeight, minorTicEnd, lineHeight, ticPaint);
             }
         }
 
+        if (mShowTrend && drawScale)
+            drawTrend(canvas, centerY, ticMargin, (ticEnd + textStart) / 2);
+
         //Arrow with current speed
         final int borderWidth = Math.round(mArrowStrokeColor.getStrokeWidth());
         final float arrowStickX, arrowBaseX, arrowPointX;
@@ -207,11 +439,104 @@ public class SimpleScroller extends View {
         arrow.lineTo(arrowStickX, arrowEndY);
         canvas.drawPath(arrow, mArrowBgColor);
         canvas.drawPath(arrow, mArrowStrokeColor);
-        canvas.drawText(String.valueOf((int)mScrollTo), textStart, centerY + textOffset,
-                mStrokeColor);
+        drawLabel(canvas, (int) mScrollTo, textStart, centerY + textOffset);
+        HudTrace.setCounter(TRACE_LABEL_COUNT, labelCount + 1);
 
     }
 
+    /**
+     * Draws the trend vector, from the arrow to the value predicted after the trend time. Hidden
+     * while the predicted value is under the arrow.
+     */
+    private void drawTrend(Canvas canvas, float centerY, float ticMargin, float x) {
+        final float halfHeight = mHeight / 2;
+        float trendLength = getTrendRate() * mTrendTime * ticMargin;
+        if (Math.abs(trendLength) <= mArrowHeight / 2)
+            return;
+
+        trendLength = Math.max(-halfHeight, Math.min(halfHeight, trendLength));
+        final float direction = Math.signum(trendLength);
+        final float startY = centerY - direction * mArrowHeight / 2;
+        final float endY = centerY - trendLength;
+        final float headSize = mTicWidth / 3;
+
+        canvas.drawLine(x, startY, x, endY, mTrendColor);
+        canvas.drawLine(x, endY, x - headSize, endY + direction * headSize, mTrendColor);
+        canvas.drawLine(x, endY, x + headSize, endY + direction * headSize, mTrendColor);
+    }
+
+    /**
+     * @return the value's rate of change, in units per second, or 0 if no value was set during
+     * the last trend window.
+     */
+    private float getTrendRate() {
+        if (SystemClock.uptimeMillis() - mHistory.getLatestTime() > mHistory.getWindowMs())
+            return 0;
+        return mHistory.getRate();
+    }
+
+    private void drawLabel(Canvas canvas, int label, float x, float y) {
+        if (mGlyphAtlas != null)
+            mGlyphAtlas.drawInt(canvas, label, x, y, mStrokeColor.getTextAlign());
+        else
+            canvas.drawText(String.valueOf(label), x, y, mStrokeColor);
+    }
+
+    private void releaseGlyphAtlas() {
+        if (mGlyphAtlas != null) {
+            mGlyphAtlas.release();
+            mGlyphAtlas = null;
+        }
+    }
+
+    /**
+     * Reads the latest value from the state source, if it changed since the last draw.
+     */
+    private void pullSourceState() {
+        if (mStateSource == null || mStateSource.getVersion() == mDrawnVersion)
+            return;
+
+        mDrawnVersion = mStateSource.read(mSourceState);
+        mScrollTo = HudStateSource.getValue(mSourceState, mSourceValueId);
+        addHistorySample(mSourcePublishTime, mScrollTo);
+        mSampleTime = NO_SAMPLE_TIME;
+    }
+
+    /**
+     * Adds a value to the trend history, and schedules a redraw for when it leaves the trend
+     * window, so the trend is hidden once the updates stop.
+     *
+     * @param timeMs time the value was set, or published, on the
+     *               {@link SystemClock#uptimeMillis()} clock.
+     */
+    private void addHistorySample(long timeMs, float value) {
+        //Setters, and the state source stamp their samples on different threads.
+        timeMs = Math.max(timeMs, mHistory.getLatestTime());
+        mHistory.add(timeMs, value);
+
+        if (mShowTrend && getWindowToken() != null) {
+            removeCallbacks(mTrendExpiry);
+            postDelayed(mTrendExpiry, timeMs + mHistory.getWindowMs() + 1
+                    - SystemClock.uptimeMillis());
+        }
+    }
+
+    @Override
+    protected void onAttachedToWindow() {
+        super.onAttachedToWindow();
+        if (mStateSource != null)
+            mStateSource.addListener(mStateListener);
+    }
+
+    @Override
+    protected void onDetachedFromWindow() {
+        super.onDetachedFromWindow();
+        if (mStateSource != null)
+            mStateSource.removeListener(mStateListener);
+        removeCallbacks(mTrendExpiry);
+        releaseGlyphAtlas();
+    }
+
     @Override
     public void onSizeChanged(int width, int height, int oldWidth, int oldHeight) {
         super.onSizeChanged(width, height, oldWidth, oldHeight);
@@ -225,6 +550,37 @@ public class SimpleScroller extends View {
 
         mWidth = width - xPad;
         mHeight = height - yPad;
+
+        updateTickSteps();
+        mDetailLevel.setSize(mHeight, mStrokeColor.getTextSize());
+    }
+
+    private void checkTickSteps(int majorTickStep, int minorTickStep) {
+        if (minorTickStep <= 0 || majorTickStep <= 0 || majorTickStep % minorTickStep != 0) {
+            throw new IllegalArgumentException("Major tick step (" + majorTickStep + ") should be" +
+                    " a positive multiple of the minor tick step (" + minorTickStep + ").");
+        }
+    }
+
+    /**
+     * Updates the tick steps used for drawing. In auto mode, the labeled ticks are spaced so
+     * their text doesn't overlap, and the number of drawn ticks remains bounded whatever the range.
+     */
+    private void updateTickSteps() {
+        if (!mAutoTickStep || mHeight <= 0 || mScrollToRange <= 0) {
+            mDrawMajorTickStep = mMajorTickStep;
+            mDrawMinorTickStep = mMinorTickStep;
+            return;
+        }
+
+        final float unitsPerPixel = mScrollToRange / mHeight;
+        final float minMajorSpacing = AUTO_MAJOR_TICK_SPACING_FACTOR * mStrokeColor.getTextSize();
+        mDrawMajorTickStep = TickIterator.niceStep(minMajorSpacing * unitsPerPixel);
+
+        final int minorTickStep = TickIterator.niceMinorStep(mDrawMajorTickStep);
+        mDrawMinorTickStep = minorTickStep / unitsPerPixel >= AUTO_MINOR_TICK_MIN_SPACING
+                ? minorTickStep
+                : mDrawMajorTickStep;
     }
 
     public float getArrowHeight() {
@@ -296,6 +652,8 @@ public class SimpleScroller extends View {
 
     public void setTextSize(float textSize) {
         mStrokeColor.setTextSize(textSize);
+        updateTickSteps();
+        mDetailLevel.setSize(mHeight, textSize);
         invalidate();
     }
 
@@ -316,6 +674,34 @@ public class SimpleScroller extends View {
 
     public void setScrollToRange(float mScrollToRange) {
         this.mScrollToRange = mScrollToRange;
+        updateTickSteps();
+        invalidate();
+    }
+
+    public int getMajorTickStep() {
+        return mMajorTickStep;
+    }
+
+    public int getMinorTickStep() {
+        return mMinorTickStep;
+    }
+
+    public void setTickSteps(int majorTickStep, int minorTickStep) {
+        checkTickSteps(majorTickStep, minorTickStep);
+
+        mMajorTickStep = majorTickStep;
+        mMinorTickStep = minorTickStep;
+        updateTickSteps();
+        invalidate();
+    }
+
+    public boolean isAutoTickStep() {
+        return mAutoTickStep;
+    }
+
+    public void setAutoTickStep(boolean autoTickStep) {
+        mAutoTickStep = autoTickStep;
+        updateTickSteps();
         invalidate();
     }
 
@@ -325,6 +711,160 @@ public class SimpleScroller extends View {
 
     public void setScrollTo(float mScrollTo) {
         this.mScrollTo = mScrollTo;
+        addHistorySample(SystemClock.uptimeMillis(), mScrollTo);
+        mSampleTime = NO_SAMPLE_TIME;
+        invalidate();
+    }
+
+    /**
+     * Updates the indicated value, and records its staleness in the latency monitor.
+     *
+     * @param sampleTimeNanos time the value was received, on the {@link System#nanoTime()}
+     *                        clock.
+     */
+    public void setScrollTo(float scrollTo, long sampleTimeNanos) {
+        mLatencyMonitor.onSampleReceived(sampleTimeNanos);
+        setScrollTo(scrollTo);
+        mSampleTime = sampleTimeNanos;
+    }
+
+    public boolean isShowingTrend() {
+        return mShowTrend;
+    }
+
+    public void setShowTrend(boolean showTrend) {
+        mShowTrend = showTrend;
+        invalidate();
+    }
+
+    public float getTrendTime() {
+        return mTrendTime;
+    }
+
+    /**
+     * @param trendTime time, in seconds, after which the trend vector predicts the value.
+     */
+    public void setTrendTime(float trendTime) {
+        if (trendTime <= 0)
+            throw new IllegalArgumentException("Trend time should be positive.");
+
+        mTrendTime = trendTime;
+        invalidate();
+    }
+
+    public int getTrendColor() {
+        return mTrendColor.getColor();
+    }
+
+    public void setTrendColor(int trendColor) {
+        mTrendColor.setColor(trendColor);
+        invalidate();
+    }
+
+    /**
+     * @return the recent values, with their rate of change, and min, and max over the trend
+     * window.
+     */
+    public ValueHistory getHistory() {
+        return mHistory;
+    }
+
+    /**
+     * @return the sample age, and ingestion jitter histograms of the values set with a
+     * timestamp.
+     */
+    public LatencyMonitor getLatencyMonitor() {
+        return mLatencyMonitor;
+    }
+
+    public boolean isUsingGlyphAtlas() {
+        return mUseGlyphAtlas;
+    }
+
+    public void setUseGlyphAtlas(boolean useGlyphAtlas) {
+        mUseGlyphAtlas = useGlyphAtlas;
+        if (!useGlyphAtlas)
+            releaseGlyphAtlas();
+        invalidate();
+    }
+
+    public boolean isAdaptiveQuality() {
+        return mQualityGovernor.isEnabled();
+    }
+
+    public void setAdaptiveQuality(boolean adaptiveQuality) {
+        mQualityGovernor.setEnabled(adaptiveQuality);
+        invalidate();
+    }
+
+    public float getFrameBudget() {
+        return mQualityGovernor.getFrameBudget();
+    }
+
+    public void setFrameBudget(float budgetMs) {
+        mQualityGovernor.setFrameBudget(budgetMs);
+    }
+
+    /**
+     * @return the current render quality level, see {@link QualityGovernor}.
+     */
+    public int getQualityLevel() {
+        return mQualityGovernor.getLevel();
+    }
+
+    public boolean isAutoDetail() {
+        return mDetailLevel.isEnabled();
+    }
+
+    public void setAutoDetail(boolean autoDetail) {
+        mDetailLevel.setEnabled(autoDetail);
+        invalidate();
+    }
+
+    /**
+     * Sets the minimum widget heights, in text sizes, to draw each detail.
+     *
+     * @param labelsMinSize     minimum height to draw the tick labels.
+     * @param minorTicksMinSize minimum height to draw the minor ticks.
+     * @param secondaryMinSize  minimum height to draw the scale.
+     */
+    public void setDetailThresholds(float labelsMinSize, float minorTicksMinSize,
+                                    float secondaryMinSize) {
+        mDetailLevel.setThresholds(labelsMinSize, minorTicksMinSize, secondaryMinSize);
+        invalidate();
+    }
+
+    /**
+     * @return the current size based detail level, see {@link DetailLevel}.
+     */
+    public int getDetailLevel() {
+        return mDetailLevel.getLevel();
+    }
+
+    public HudStateSource getStateSource() {
+        return mStateSource;
+    }
+
+    /**
+     * Reads the scrolled value from the given shared state at draw time, instead of through the
+     * setter.
+     *
+     * @param source  shared state, or null to detach from the current one.
+     * @param valueId value to display, one of the {@link HudStateSource} VALUE_* identifiers.
+     */
+    public void setStateSource(HudStateSource source, int valueId) {
+        //Throws on unknown value ids, before any state is changed.
+        if (source != null)
+            HudStateSource.getValue(mSourceState, valueId);
+
+        if (mStateSource != null)
+            mStateSource.removeListener(mStateListener);
+
+        mStateSource = source;
+        mSourceValueId = valueId;
+        mDrawnVersion = 0;
+        if (source != null && getWindowToken() != null)
+            source.addListener(mStateListener);
         invalidate();
     }
 }
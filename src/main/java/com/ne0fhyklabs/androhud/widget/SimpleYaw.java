@@ -9,6 +9,16 @@ import android.util.AttributeSet;
 import android.view.View;
 
 import com.ne0fhyklabs.androhud.R;
+import com.ne0fhyklabs.androhud.render.DetailLevel;
+import com.ne0fhyklabs.androhud.render.GlyphAtlas;
+import com.ne0fhyklabs.androhud.render.QualityGovernor;
+import com.ne0fhyklabs.androhud.telemetry.HudState;
+import com.ne0fhyklabs.androhud.telemetry.HudStateSource;
+import com.ne0fhyklabs.androhud.telemetry.LatencyMonitor;
+import com.ne0fhyklabs.androhud.utils.HeadingLabels;
+import com.ne0fhyklabs.androhud.utils.HudTrace;
+import com.ne0fhyklabs.androhud.utils.MathUtils;
+import com.ne0fhyklabs.androhud.utils.TickIterator;
 
 import static com.ne0fhyklabs.androhud.utils.Constants.DEFAULT_STROKE_WIDTH;
 
@@ -27,7 +37,25 @@ public class SimpleYaw extends View {
 
     private static final int YAW_DEGREES_TO_SHOW = 120;
 
-    private static final String COMPASS[] = {"N", "NE", "E", "SE", "S", "SW", "W", "NW"};
+    /*
+    Default detail thresholds, as the widget width in text sizes. The degree labels are 15
+    degrees apart, i.e: an eighth of the width.
+     */
+    private static final float DEFAULT_LABELS_MIN_SIZE = 15f;
+    private static final float DEFAULT_MINOR_TICKS_MIN_SIZE = 10f;
+    private static final float DEFAULT_SECONDARY_MIN_SIZE = 5f;
+
+    /*
+    Trace sections, and counters names. See HudTrace.
+     */
+    private static final String TRACE_DRAW = "SimpleYaw.drawYaw";
+    private static final String TRACE_TICK_COUNT = "SimpleYaw.ticks";
+    private static final String TRACE_LABEL_COUNT = "SimpleYaw.labels";
+
+    /**
+     * Sample time of values set without a timestamp.
+     */
+    private static final long NO_SAMPLE_TIME = Long.MIN_VALUE;
 
     /**
      * This is the view's height, accounting for padding.
@@ -70,6 +98,55 @@ public class SimpleYaw extends View {
      */
     private Paint mYawNeedlePaint;
 
+    /**
+     * Used to walk the visible ticks.
+     */
+    private final TickIterator mTickIterator = new TickIterator();
+
+    /**
+     * If true, the labels are drawn from a pre-rasterized glyph atlas instead of being shaped as
+     * text on each frame.
+     */
+    private boolean mUseGlyphAtlas;
+    private GlyphAtlas mGlyphAtlas;
+
+    /**
+     * Lowers the render quality when drawing overruns the frame budget.
+     */
+    private final QualityGovernor mQualityGovernor = new QualityGovernor();
+
+    /**
+     * Used to draw the ticks without anti-aliasing in degraded quality.
+     */
+    private final Paint mAliasedTicksPaint = new Paint();
+
+    /**
+     * Staleness of the displayed values, for the values set with a timestamp.
+     */
+    private final LatencyMonitor mLatencyMonitor = new LatencyMonitor();
+    private long mSampleTime = NO_SAMPLE_TIME;
+
+    /**
+     * Drops details from small widgets: the degree labels, then the minor ticks, then the
+     * intercardinal headings.
+     */
+    private final DetailLevel mDetailLevel = new DetailLevel(DEFAULT_LABELS_MIN_SIZE,
+            DEFAULT_MINOR_TICKS_MIN_SIZE, DEFAULT_SECONDARY_MIN_SIZE);
+
+    /**
+     * Shared state the widget reads its values from at draw time. Can be null.
+     */
+    private HudStateSource mStateSource;
+    private final HudState mSourceState = new HudState();
+    private volatile long mDrawnVersion;
+    private final HudStateSource.Listener mStateListener = new HudStateSource.Listener() {
+        @Override
+        public void onStateChanged(HudStateSource source, long version) {
+            if(version != mDrawnVersion)
+                postInvalidate();
+        }
+    };
+
     public SimpleYaw(Context context) {
         this(context, null);
     }
@@ -97,7 +174,21 @@ public class SimpleYaw extends View {
                     25f));
             mTicksPaint.setColor(attributes.getColor(R.styleable.SimpleYaw_ticksColor, Color.WHITE));
 
-            mYaw = attributes.getFloat(R.styleable.SimpleYaw_yaw, 0f);
+            mYaw = MathUtils.normalizeHeading(attributes.getFloat(R.styleable.SimpleYaw_yaw, 0f));
+
+            mUseGlyphAtlas = attributes.getBoolean(R.styleable.SimpleYaw_glyphAtlasText, false);
+
+            mQualityGovernor.setEnabled(attributes.getBoolean(R.styleable
+                    .SimpleYaw_adaptiveQuality, false));
+            mQualityGovernor.setFrameBudget(attributes.getFloat(R.styleable.SimpleYaw_frameBudget,
+                    QualityGovernor.DEFAULT_FRAME_BUDGET_MS));
+
+            mDetailLevel.setEnabled(attributes.getBoolean(R.styleable.SimpleYaw_autoDetail, true));
+            mDetailLevel.setThresholds(attributes.getFloat(R.styleable.SimpleYaw_labelsMinSize,
+                    DEFAULT_LABELS_MIN_SIZE), attributes.getFloat(R.styleable
+                    .SimpleYaw_minorTicksMinSize, DEFAULT_MINOR_TICKS_MIN_SIZE),
+                    attributes.getFloat(R.styleable.SimpleYaw_secondaryMinSize,
+                            DEFAULT_SECONDARY_MIN_SIZE));
 
             mYawNeedlePaint = new Paint();
             mYawNeedlePaint.setAntiAlias(true);
@@ -115,6 +206,19 @@ public class SimpleYaw extends View {
     public void onDraw(Canvas canvas){
         super.onDraw(canvas);
 
+        pullSourceState();
+
+        mQualityGovernor.beginFrame();
+        HudTrace.beginSection(TRACE_DRAW);
+        drawYaw(canvas);
+        HudTrace.endSection();
+        mQualityGovernor.endFrame();
+
+        if(mSampleTime != NO_SAMPLE_TIME)
+            mLatencyMonitor.onFrameDrawn(mSampleTime);
+    }
+
+    private void drawYaw(Canvas canvas){
         //Translate the canvas to account for the view padding
         canvas.translate(mCanvasXPadding, mCanvasYPadding);
 
@@ -131,40 +235,110 @@ public class SimpleYaw extends View {
 
         final float textYPos = halfHeight + mTicksPaint.getTextSize() / 3;
 
-        final float centerDegrees = mYaw;
-        final float mod = mYaw % 5;
-        final float halfYawDegreesToShow = YAW_DEGREES_TO_SHOW / 2f;
-        for(float angle = (centerDegrees - mod) - halfYawDegreesToShow;
-                angle <= (centerDegrees - mod) + halfYawDegreesToShow;
-                angle += 5){
+        if(mUseGlyphAtlas)
+            mGlyphAtlas = GlyphAtlas.update(mGlyphAtlas, mTicksPaint);
+
+        final Paint ticksPaint = mQualityGovernor.isAliasingLines()
+                ? QualityGovernor.aliasedCopy(mTicksPaint, mAliasedTicksPaint)
+                : mTicksPaint;
+        final boolean thinLabels = mQualityGovernor.isThinningLabels()
+                || !mDetailLevel.isDrawingLabels();
+
+        //Without the minor ticks, only the labeled ones are walked. Without the secondary
+        //elements, only the cardinal headings are.
+        final int majorTickStep;
+        final int minorTickStep;
+        if(!mDetailLevel.isDrawingSecondary()){
+            majorTickStep = 90;
+            minorTickStep = 90;
+        }
+        else{
+            majorTickStep = 45;
+            minorTickStep = mQualityGovernor.isDrawingMinorTicks()
+                    && mDetailLevel.isDrawingMinorTicks() ? 5 : 15;
+        }
+        final TickIterator ticks = mTickIterator.resetCentered(mYaw, YAW_DEGREES_TO_SHOW,
+                halfWidth, mYawDegreesPerPixel, majorTickStep, minorTickStep);
+        int tickCount = 0;
+        int labelCount = 0;
+        while(ticks.next()){
+            tickCount++;
+            final int angle = ticks.getValue();
 
             //Protect from wraparound
-            float workAngle = (angle + 360f);
-            while(workAngle >= 360)
-                workAngle -= 360;
+            final int workAngle = MathUtils.normalizeHeading(angle);
 
             //Need to draw "angle". How many pixels from center should it be.
-            int distanceToCenter = (int) (((angle - centerDegrees) * mYawDegreesPerPixel) +
-                    halfWidth);
+            int distanceToCenter = (int) ticks.getPosition();
 
             canvas.drawLine(distanceToCenter, ticksStartHeight, distanceToCenter,
-                    ticksEndHeight, mTicksPaint);
+                    ticksEndHeight, ticksPaint);
 
-            String yawText = "";
-            if(workAngle % 45 == 0){
-                int index = (int) workAngle / 45;
-                yawText += COMPASS[index];
+            final String compassLabel = HeadingLabels.getCompassLabel(workAngle);
+            if(compassLabel != null){
+                drawLabel(canvas, compassLabel, distanceToCenter, textYPos);
+                labelCount++;
             }
-            else if(workAngle % 15 == 0){
-                yawText += (int)workAngle;
+            else if(HeadingLabels.isDegreeLabel(workAngle) && !thinLabels){
+                drawLabel(canvas, workAngle, distanceToCenter, textYPos);
+                labelCount++;
             }
-            canvas.drawText(yawText, distanceToCenter, textYPos, mTicksPaint);
         }
+        HudTrace.setCounter(TRACE_TICK_COUNT, tickCount);
+        HudTrace.setCounter(TRACE_LABEL_COUNT, labelCount);
 
         //Draw the center line
         canvas.drawLine(halfWidth, 0, halfWidth, mHeight, mYawNeedlePaint);
     }
 
+    private void drawLabel(Canvas canvas, String label, float x, float y){
+        if(mGlyphAtlas != null)
+            mGlyphAtlas.drawText(canvas, label, x, y, mTicksPaint.getTextAlign());
+        else
+            canvas.drawText(label, x, y, mTicksPaint);
+    }
+
+    private void drawLabel(Canvas canvas, int label, float x, float y){
+        if(mGlyphAtlas != null)
+            mGlyphAtlas.drawInt(canvas, label, x, y, mTicksPaint.getTextAlign());
+        else
+            canvas.drawText(String.valueOf(label), x, y, mTicksPaint);
+    }
+
+    private void releaseGlyphAtlas(){
+        if(mGlyphAtlas != null){
+            mGlyphAtlas.release();
+            mGlyphAtlas = null;
+        }
+    }
+
+    /**
+     * Reads the latest values from the state source, if they changed since the last draw.
+     */
+    private void pullSourceState(){
+        if(mStateSource == null || mStateSource.getVersion() == mDrawnVersion)
+            return;
+
+        mDrawnVersion = mStateSource.read(mSourceState);
+        mYaw = MathUtils.normalizeHeading(mSourceState.yaw);
+        mSampleTime = NO_SAMPLE_TIME;
+    }
+
+    @Override
+    protected void onAttachedToWindow(){
+        super.onAttachedToWindow();
+        if(mStateSource != null)
+            mStateSource.addListener(mStateListener);
+    }
+
+    @Override
+    protected void onDetachedFromWindow(){
+        super.onDetachedFromWindow();
+        if(mStateSource != null)
+            mStateSource.removeListener(mStateListener);
+        releaseGlyphAtlas();
+    }
+
     @Override
     public void onSizeChanged(int width, int height, int oldWidth, int oldHeight){
         super.onSizeChanged(width, height, oldWidth, oldHeight);
@@ -180,17 +354,42 @@ public class SimpleYaw extends View {
         mHeight = height - yPad;
 
         mYawDegreesPerPixel = mWidth / YAW_DEGREES_TO_SHOW;
+        mDetailLevel.setSize(mWidth, mTicksPaint.getTextSize());
     }
 
     public float getYaw(){
         return mYaw;
     }
 
+    /**
+     * Updates the yaw value. Unbounded headings are accepted, and wrapped within [0, 360).
+     * @param yaw heading in degrees.
+     */
     public void setYaw(float yaw){
-        mYaw = yaw;
+        mYaw = MathUtils.normalizeHeading(yaw);
+        mSampleTime = NO_SAMPLE_TIME;
         invalidate();
     }
 
+    /**
+     * Updates the yaw value, and records its staleness in the latency monitor.
+     * @param yaw heading in degrees.
+     * @param sampleTimeNanos time the value was received, on the {@link System#nanoTime()} clock.
+     */
+    public void setYaw(float yaw, long sampleTimeNanos){
+        mLatencyMonitor.onSampleReceived(sampleTimeNanos);
+        setYaw(yaw);
+        mSampleTime = sampleTimeNanos;
+    }
+
+    /**
+     * @return the sample age, and ingestion jitter histograms of the values set with a
+     * timestamp.
+     */
+    public LatencyMonitor getLatencyMonitor(){
+        return mLatencyMonitor;
+    }
+
     public int getTicksColor(){
         return mTicksPaint.getColor();
     }
@@ -224,6 +423,7 @@ public class SimpleYaw extends View {
 
     public void setTextSize(float textSize){
         mTicksPaint.setTextSize(textSize);
+        mDetailLevel.setSize(mWidth, textSize);
         invalidate();
     }
 
@@ -235,4 +435,86 @@ public class SimpleYaw extends View {
         mYawNeedlePaint.setStrokeWidth(thickness);
         invalidate();
     }
+
+    public boolean isUsingGlyphAtlas(){
+        return mUseGlyphAtlas;
+    }
+
+    public void setUseGlyphAtlas(boolean useGlyphAtlas){
+        mUseGlyphAtlas = useGlyphAtlas;
+        if(!useGlyphAtlas)
+            releaseGlyphAtlas();
+        invalidate();
+    }
+
+    public boolean isAdaptiveQuality(){
+        return mQualityGovernor.isEnabled();
+    }
+
+    public void setAdaptiveQuality(boolean adaptiveQuality){
+        mQualityGovernor.setEnabled(adaptiveQuality);
+        invalidate();
+    }
+
+    public float getFrameBudget(){
+        return mQualityGovernor.getFrameBudget();
+    }
+
+    public void setFrameBudget(float budgetMs){
+        mQualityGovernor.setFrameBudget(budgetMs);
+    }
+
+    /**
+     * @return the current render quality level, see {@link QualityGovernor}.
+     */
+    public int getQualityLevel(){
+        return mQualityGovernor.getLevel();
+    }
+
+    public boolean isAutoDetail(){
+        return mDetailLevel.isEnabled();
+    }
+
+    public void setAutoDetail(boolean autoDetail){
+        mDetailLevel.setEnabled(autoDetail);
+        invalidate();
+    }
+
+    /**
+     * Sets the minimum widget widths, in text sizes, to draw each detail.
+     * @param labelsMinSize minimum width to draw the degree labels.
+     * @param minorTicksMinSize minimum width to draw the minor ticks.
+     * @param secondaryMinSize minimum width to draw the intercardinal headings.
+     */
+    public void setDetailThresholds(float labelsMinSize, float minorTicksMinSize,
+                                    float secondaryMinSize){
+        mDetailLevel.setThresholds(labelsMinSize, minorTicksMinSize, secondaryMinSize);
+        invalidate();
+    }
+
+    /**
+     * @return the current size based detail level, see {@link DetailLevel}.
+     */
+    public int getDetailLevel(){
+        return mDetailLevel.getLevel();
+    }
+
+    public HudStateSource getStateSource(){
+        return mStateSource;
+    }
+
+    /**
+     * Reads the yaw from the given shared state at draw time, instead of through the setter.
+     * @param source shared state, or null to detach from the current one.
+     */
+    public void setStateSource(HudStateSource source){
+        if(mStateSource != null)
+            mStateSource.removeListener(mStateListener);
+
+        mStateSource = source;
+        mDrawnVersion = 0;
+        if(source != null && getWindowToken() != null)
+            source.addListener(mStateListener);
+        invalidate();
+    }
 }
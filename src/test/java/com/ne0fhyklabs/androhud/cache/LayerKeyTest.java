@@ -0,0 +1,60 @@
+package com.ne0fhyklabs.androhud.cache;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+
+public class LayerKeyTest {
+
+    @Test
+    public void equalThemesMatch() {
+        final LayerKey key = new LayerKey("layer", 10, 20, 2f, 0xFFFFFFFF, 1.5f, "typeface");
+        final LayerKey same = new LayerKey("layer", 10, 20, 2f, 0xFFFFFFFF, 1.5f, "typeface");
+
+        assertEquals(key, same);
+        assertEquals(key.hashCode(), same.hashCode());
+    }
+
+    @Test
+    public void collidingThemesDontMatch() {
+        final Object[] theme = {0, 31};
+        final Object[] colliding = {1, 0};
+        assertEquals(Arrays.hashCode(theme), Arrays.hashCode(colliding));
+
+        final LayerKey key = new LayerKey("layer", 10, 20, 2f, theme);
+        final LayerKey other = new LayerKey("layer", 10, 20, 2f, colliding);
+        assertEquals(key.hashCode(), other.hashCode());
+        assertNotEquals(key, other);
+    }
+
+    @Test
+    public void differentPropertiesDontMatch() {
+        final LayerKey key = new LayerKey("layer", 10, 20, 2f, 1.5f);
+
+        assertNotEquals(key, new LayerKey("other", 10, 20, 2f, 1.5f));
+        assertNotEquals(key, new LayerKey("layer", 11, 20, 2f, 1.5f));
+        assertNotEquals(key, new LayerKey("layer", 10, 21, 2f, 1.5f));
+        assertNotEquals(key, new LayerKey("layer", 10, 20, 3f, 1.5f));
+        assertNotEquals(key, new LayerKey("layer", 10, 20, 2f, 2.5f));
+        assertNotEquals(key, new LayerKey("layer", 10, 20, 2f, 1.5f, null));
+        assertFalse(key.equals(null));
+    }
+
+    @Test
+    public void themeIsCopied() {
+        final Object[] theme = {1, 2};
+        final LayerKey key = new LayerKey("layer", 10, 20, 2f, theme);
+        theme[1] = 3;
+
+        assertEquals(new LayerKey("layer", 10, 20, 2f, 1, 2), key);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsEmptySize() {
+        new LayerKey("layer", 0, 20, 2f);
+    }
+}
@@ -0,0 +1,357 @@
+package com.ne0fhyklabs.androhud.render;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Renders {@link HudPainter} frames against a renderer recording the drawing calls, and checks
+ * the layout of the hud parts for known states.
+ */
+public class HudPainterTest {
+
+    private static final int WIDTH = 800;
+    private static final int HEIGHT = 600;
+    private static final int GREEN = 0xFF00FF00;
+
+    /*
+    Layout of a WIDTH x HEIGHT frame with the default theme, relative to the hud center.
+     */
+    private static final int PITCH_PIX_PER_DEGREE = 11;
+    private static final float PITCH_LABEL_Y_OFFSET = 8;
+    private static final float YAW_LABEL_Y = -295;
+    private static final float SPEED_TEXT_X = -WIDTH / 2 + 96 - 23;
+    private static final float SPEED_SPACE = 200f / 26;
+
+    /**
+     * Drawing call recorded by the {@link RecordingRenderer}.
+     */
+    private static class Op {
+        final String type;
+        final float[] args;
+        final String text;
+        final int color;
+
+        Op(String type, float[] args, String text, int color) {
+            this.type = type;
+            this.args = args;
+            this.text = text;
+            this.color = color;
+        }
+    }
+
+    private static class RecordingRenderer implements HudRenderer {
+
+        final List<Op> ops = new ArrayList<Op>();
+        int depth;
+        int maxDepth;
+
+        private void record(String type, String text, int color, float... args) {
+            ops.add(new Op(type, args, text, color));
+        }
+
+        Op findText(String text) {
+            for (Op op : ops) {
+                if ("text".equals(op.type) && text.equals(op.text))
+                    return op;
+            }
+            return null;
+        }
+
+        List<Op> find(String type) {
+            final List<Op> found = new ArrayList<Op>();
+            for (Op op : ops) {
+                if (type.equals(op.type))
+                    found.add(op);
+            }
+            return found;
+        }
+
+        @Override
+        public int getWidth() {
+            return WIDTH;
+        }
+
+        @Override
+        public int getHeight() {
+            return HEIGHT;
+        }
+
+        @Override
+        public void save() {
+            depth++;
+            maxDepth = Math.max(maxDepth, depth);
+        }
+
+        @Override
+        public void restore() {
+            depth--;
+            assertTrue("Unbalanced restore.", depth >= 0);
+        }
+
+        @Override
+        public void translate(float dx, float dy) {
+            record("translate", null, 0, dx, dy);
+        }
+
+        @Override
+        public void rotate(float degrees) {
+            record("rotate", null, 0, degrees);
+        }
+
+        @Override
+        public void clipRect(float left, float top, float right, float bottom) {
+            record("clip", null, 0, left, top, right, bottom);
+        }
+
+        @Override
+        public void fillRect(float left, float top, float right, float bottom, int color) {
+            record("fillRect", null, color, left, top, right, bottom);
+        }
+
+        @Override
+        public void strokeRect(float left, float top, float right, float bottom, int color,
+                               float strokeWidth) {
+            record("strokeRect", null, color, left, top, right, bottom);
+        }
+
+        @Override
+        public void drawLine(float startX, float startY, float stopX, float stopY, int color,
+                             float strokeWidth) {
+            assertTrue(strokeWidth > 0);
+            record("line", null, color, startX, startY, stopX, stopY);
+        }
+
+        @Override
+        public void strokeCircle(float centerX, float centerY, float radius, int color,
+                                 float strokeWidth) {
+            record("circle", null, color, centerX, centerY, radius);
+        }
+
+        @Override
+        public void strokeArc(float left, float top, float right, float bottom,
+                              float startAngle, float sweepAngle, int color,
+                              float strokeWidth) {
+            record("arc", null, color, left, top, right, bottom, startAngle, sweepAngle);
+        }
+
+        @Override
+        public void fillPolygon(float[] points, int pointsCount, int color) {
+            record("fillPolygon", null, color, copy(points, pointsCount));
+        }
+
+        @Override
+        public void strokePolygon(float[] points, int pointsCount, int color,
+                                  float strokeWidth) {
+            record("strokePolygon", null, color, copy(points, pointsCount));
+        }
+
+        @Override
+        public void drawText(String text, float x, float y, int color, float textSize,
+                             int align) {
+            assertEquals(ALIGN_CENTER, align);
+            record("text", text, color, x, y, textSize);
+        }
+
+        private static float[] copy(float[] points, int pointsCount) {
+            final float[] copy = new float[pointsCount * 2];
+            System.arraycopy(points, 0, copy, 0, copy.length);
+            return copy;
+        }
+    }
+
+    private HudPainter mPainter;
+    private RecordingRenderer mRenderer;
+
+    @Before
+    public void setUp() {
+        mPainter = new HudPainter();
+        mRenderer = new RecordingRenderer();
+    }
+
+    private void paint(float pitch, float roll, float yaw, float speed, float targetSpeed,
+                       float verticalSpeed) {
+        mRenderer.ops.clear();
+        mPainter.paint(mRenderer, pitch, roll, yaw, speed, targetSpeed, verticalSpeed);
+    }
+
+    @Test
+    public void centersTheHudBelowTheTopBar() {
+        paint(0, 0, 0, 0, 0, 0);
+
+        assertEquals(0, mRenderer.depth);
+        assertTrue(mRenderer.maxDepth >= 2);
+
+        final Op translate = mRenderer.ops.get(0);
+        assertEquals("translate", translate.type);
+        assertEquals(WIDTH / 2, translate.args[0], 0);
+        assertEquals((HEIGHT + 30) / 2f, translate.args[1], 0);
+    }
+
+    @Test
+    public void drawsTheHorizonAtThePitchOffset() {
+        paint(10, 30, 0, 0, 0, 0);
+
+        final Op rotate = mRenderer.find("rotate").get(0);
+        assertEquals(-30, rotate.args[0], 0);
+
+        final List<Op> rects = mRenderer.find("fillRect");
+        final float horizon = 10 * PITCH_PIX_PER_DEGREE;
+        //Ground, then sky.
+        assertEquals(horizon, rects.get(0).args[1], 0);
+        assertEquals(horizon, rects.get(1).args[3], 0);
+        assertEquals(0xDC94C11F, rects.get(0).color);
+        assertEquals(0xDC0071BC, rects.get(1).color);
+    }
+
+    @Test
+    public void drawsTheVisiblePitchRungs() {
+        //Keeps the yaw, and speed labels away from the pitch labels.
+        paint(0, 0, 180, 100, 0, 0);
+
+        for (int rung = -20; rung <= 20; rung += 10) {
+            //The horizon isn't labeled.
+            if (rung == 0)
+                continue;
+
+            final Op label = mRenderer.findText(Integer.toString(rung));
+            assertNotNull("Missing rung " + rung, label);
+            assertEquals(0, label.args[0], 0);
+            assertEquals(-rung * PITCH_PIX_PER_DEGREE + PITCH_LABEL_Y_OFFSET, label.args[1],
+                    0);
+        }
+
+        //Past the roll triangle.
+        assertNull(mRenderer.findText("30"));
+        assertNull(mRenderer.findText("-30"));
+    }
+
+    @Test
+    public void disabledHudIsGrey() {
+        mPainter.setEnabled(false);
+        paint(0, 0, 0, 0, 0, 0);
+
+        final List<Op> rects = mRenderer.find("fillRect");
+        assertEquals(0xFF444444, rects.get(0).color);
+        assertEquals(0xFFCCCCCC, rects.get(1).color);
+    }
+
+    @Test
+    public void centersTheYawTapeOnTheHeading() {
+        paint(0, 0, 90, 0, 0, 0);
+
+        final Op east = mRenderer.findText("E");
+        assertNotNull(east);
+        assertEquals(0, east.args[0], 0);
+        assertEquals(YAW_LABEL_Y, east.args[1], 0);
+
+        final Op degrees = mRenderer.findText("105");
+        assertNotNull(degrees);
+        assertEquals(15 * WIDTH / 90f, degrees.args[0], 1);
+        assertNull(mRenderer.findText("S"));
+    }
+
+    @Test
+    public void wrapsTheYawTapeHeadings() {
+        paint(0, 0, 90 + 720, 0, 0, 0);
+        final Op wrapped = mRenderer.findText("E");
+
+        paint(0, 0, -350, 0, 0, 0);
+        final Op north = mRenderer.findText("N");
+
+        assertNotNull(wrapped);
+        assertEquals(0, wrapped.args[0], 0);
+        assertNotNull(north);
+        assertEquals(-10 * WIDTH / 90f, north.args[0], 1);
+        assertNotNull(mRenderer.findText("345"));
+    }
+
+    @Test
+    public void drawsTheSpeedTape() {
+        paint(0, 0, 180, 42.7f, 50, 0);
+
+        final Op speed = mRenderer.findText("42");
+        assertNotNull(speed);
+        assertEquals(SPEED_TEXT_X, speed.args[0], 0);
+
+        for (int tick = 30; tick <= 55; tick += 5) {
+            final Op label = mRenderer.findText(Integer.toString(tick));
+            assertNotNull("Missing speed tick " + tick, label);
+            assertEquals(SPEED_TEXT_X, label.args[0], 0);
+            assertEquals(-SPEED_SPACE * (tick - 42), label.args[1] - speed.args[1], 1e-3);
+        }
+        assertNull(mRenderer.findText("25"));
+        assertNull(mRenderer.findText("60"));
+
+        //The speed tape is clipped to its box.
+        final Op clip = mRenderer.find("clip").get(0);
+        assertEquals(-WIDTH / 2, clip.args[0], 0);
+        assertEquals(-WIDTH / 2 + 96, clip.args[2], 0);
+    }
+
+    @Test
+    public void drawsTheTargetSpeed() {
+        paint(0, 0, 0, 42.7f, 50, 0);
+        final List<Op> inside = greenLines();
+        assertEquals(1, inside.size());
+        assertEquals(-SPEED_SPACE * 8, inside.get(0).args[1], 1e-3);
+
+        //Below the tape, pinned to its bottom.
+        paint(0, 0, 0, 42.7f, 10, 0);
+        final List<Op> below = greenLines();
+        assertEquals(1, below.size());
+        assertEquals(100, below.get(0).args[1], 0);
+
+        //Above the tape, pinned to its top.
+        paint(0, 0, 0, 42.7f, 90, 0);
+        final List<Op> above = greenLines();
+        assertEquals(1, above.size());
+        assertEquals(-100, above.get(0).args[1], 0);
+    }
+
+    private List<Op> greenLines() {
+        final List<Op> lines = new ArrayList<Op>();
+        for (Op op : mRenderer.find("line")) {
+            if (op.color == GREEN)
+                lines.add(op);
+        }
+        return lines;
+    }
+
+    @Test
+    public void drawsTheVerticalSpeedBar() {
+        paint(0, 0, 0, 0, 0, 3);
+
+        final float lineSpace = 200f / 12;
+        Op bar = null;
+        for (Op op : mRenderer.find("fillRect")) {
+            if (op.color == 0xFF0032FA)
+                bar = op;
+        }
+
+        assertNotNull(bar);
+        assertEquals(-3 * lineSpace, bar.args[1], 1e-3);
+        assertEquals(0, bar.args[3], 0);
+    }
+
+    @Test
+    public void textSizeChangeUpdatesTheLayout() {
+        paint(0, 0, 90, 0, 0, 0);
+        final float before = mRenderer.findText("E").args[1];
+
+        mPainter.setTextSize(40);
+        paint(0, 0, 90, 0, 0, 0);
+        final Op east = mRenderer.findText("E");
+
+        assertEquals(40, east.args[2], 0);
+        assertFalse(before == east.args[1]);
+    }
+}
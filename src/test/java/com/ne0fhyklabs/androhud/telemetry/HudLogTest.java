@@ -0,0 +1,200 @@
+package com.ne0fhyklabs.androhud.telemetry;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class HudLogTest {
+
+    @Rule
+    public TemporaryFolder mFolder = new TemporaryFolder();
+
+    private static HudState sample(int i) {
+        final HudState state = new HudState();
+        state.timestamp = 1000 + i * 20L;
+        state.pitch = (i % 90) - 45.5f;
+        state.roll = -(i % 180) + 0.25f;
+        state.yaw = (i * 7) % 360;
+        state.airSpeed = 20 + i * 0.01f;
+        state.targetSpeed = 25;
+        state.verticalSpeed = (i % 11) - 5.37f;
+        state.altitude = 100 + i * 0.5f;
+        return state;
+    }
+
+    private File write(int count) throws IOException {
+        final File file = mFolder.newFile();
+        final HudLogWriter writer = new HudLogWriter(new BufferedOutputStream(
+                new FileOutputStream(file)));
+        for (int i = 0; i < count; i++) {
+            writer.append(sample(i));
+        }
+        assertEquals(count, writer.getSampleCount());
+        writer.close();
+        return file;
+    }
+
+    private static void assertSample(HudState expected, HudState actual) {
+        assertEquals(expected.timestamp, actual.timestamp);
+        assertEquals(expected.pitch, actual.pitch, 0.005f);
+        assertEquals(expected.roll, actual.roll, 0.005f);
+        assertEquals(expected.yaw, actual.yaw, 0.005f);
+        assertEquals(expected.airSpeed, actual.airSpeed, 0.005f);
+        assertEquals(expected.targetSpeed, actual.targetSpeed, 0.005f);
+        assertEquals(expected.verticalSpeed, actual.verticalSpeed, 0.005f);
+        assertEquals(expected.altitude, actual.altitude, 0.005f);
+    }
+
+    @Test
+    public void roundTripsSeveralBlocks() throws IOException {
+        final int count = HudLogFormat.SAMPLES_PER_BLOCK * 3 + 17;
+        final HudLogReader reader = new HudLogReader(write(count));
+
+        assertEquals(count, reader.getSampleCount());
+        assertEquals(sample(0).timestamp, reader.getStartTimestamp());
+
+        final HudState state = new HudState();
+        for (int i = 0; i < count; i++) {
+            assertTrue(reader.next(state));
+            assertSample(sample(i), state);
+        }
+        assertFalse(reader.next(state));
+
+        reader.rewind();
+        assertTrue(reader.next(state));
+        assertSample(sample(0), state);
+        reader.close();
+    }
+
+    @Test
+    public void seeksBeforeInsideAndAfterTheLog() throws IOException {
+        final int count = HudLogFormat.SAMPLES_PER_BLOCK * 4;
+        final HudLogReader reader = new HudLogReader(write(count));
+        final HudState state = new HudState();
+
+        reader.seek(0);
+        assertTrue(reader.next(state));
+        assertSample(sample(0), state);
+
+        //Exactly on a sample inside the third block.
+        final int inside = HudLogFormat.SAMPLES_PER_BLOCK * 2 + 5;
+        reader.seek(sample(inside).timestamp);
+        assertTrue(reader.next(state));
+        assertSample(sample(inside), state);
+        assertTrue(reader.next(state));
+        assertSample(sample(inside + 1), state);
+
+        //Between two samples, on a block boundary.
+        final int boundary = HudLogFormat.SAMPLES_PER_BLOCK * 3;
+        reader.seek(sample(boundary).timestamp - 1);
+        assertTrue(reader.next(state));
+        assertSample(sample(boundary), state);
+
+        //Backwards.
+        reader.seek(sample(3).timestamp);
+        assertTrue(reader.next(state));
+        assertSample(sample(3), state);
+
+        reader.seek(sample(count - 1).timestamp + 1);
+        assertFalse(reader.next(state));
+
+        reader.seek(sample(count - 1).timestamp);
+        assertTrue(reader.next(state));
+        assertSample(sample(count - 1), state);
+        assertFalse(reader.next(state));
+    }
+
+    @Test
+    public void readsEmptyLog() throws IOException {
+        final HudLogReader reader = new HudLogReader(write(0));
+        final HudState state = new HudState();
+
+        assertEquals(0, reader.getSampleCount());
+        assertEquals(0, reader.getStartTimestamp());
+        assertFalse(reader.next(state));
+
+        reader.seek(1000);
+        assertFalse(reader.next(state));
+
+        final HudLogPlayer player = new HudLogPlayer(reader);
+        assertTrue(player.isFinished());
+        assertFalse(player.advanceTo(Long.MAX_VALUE, state));
+    }
+
+    @Test
+    public void rejectsSamplesOutOfOrder() throws IOException {
+        final HudLogWriter writer = new HudLogWriter(new FileOutputStream(mFolder.newFile()));
+        writer.append(sample(10));
+
+        //Equal timestamps are allowed.
+        writer.append(sample(10));
+        try {
+            writer.append(sample(9));
+            fail("Expected an IllegalArgumentException.");
+        } catch (IllegalArgumentException e) {
+            //Expected
+        }
+        assertEquals(2, writer.getSampleCount());
+        writer.close();
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void rejectsAppendOnceClosed() throws IOException {
+        final HudLogWriter writer = new HudLogWriter(new FileOutputStream(mFolder.newFile()));
+        writer.close();
+        writer.append(sample(0));
+    }
+
+    @Test
+    public void quantizesToTheValueResolution() {
+        assertEquals(1234, HudLogFormat.quantize(12.344f));
+        assertEquals(1235, HudLogFormat.quantize(12.346f));
+        assertEquals(-1234, HudLogFormat.quantize(-12.344f));
+        assertEquals(0, HudLogFormat.quantize(0.004f));
+        assertEquals(Integer.MAX_VALUE, HudLogFormat.quantize(1e30f));
+        assertEquals(Integer.MIN_VALUE, HudLogFormat.quantize(-1e30f));
+        assertEquals(Integer.MAX_VALUE, HudLogFormat.quantize(Float.POSITIVE_INFINITY));
+        assertEquals(Integer.MIN_VALUE, HudLogFormat.quantize(Float.NEGATIVE_INFINITY));
+        assertEquals(0, HudLogFormat.quantize(Float.NaN));
+        assertEquals(-12.34f, HudLogFormat.dequantize(-1234), 1e-6f);
+    }
+
+    @Test
+    public void roundTripsValuesAtTheQuantizationLimits() throws IOException {
+        final float[] values = {1e30f, -1e30f, 0, -1e30f, 1e30f, 21474836.47f, -21474836.48f};
+
+        final File file = mFolder.newFile();
+        final HudLogWriter writer = new HudLogWriter(new FileOutputStream(file));
+        final HudState state = new HudState();
+        for (int i = 0; i < values.length; i++) {
+            //Swings between the limits, so the deltas span the whole int range.
+            state.timestamp = i;
+            state.pitch = values[i];
+            state.altitude = values[values.length - 1 - i];
+            writer.append(state);
+        }
+        writer.close();
+
+        final HudLogReader reader = new HudLogReader(file);
+        final float max = Integer.MAX_VALUE / HudLogFormat.VALUE_SCALE;
+        final float min = Integer.MIN_VALUE / HudLogFormat.VALUE_SCALE;
+        for (int i = 0; i < values.length; i++) {
+            assertTrue(reader.next(state));
+            assertEquals(i, state.timestamp);
+            assertEquals(Math.max(min, Math.min(max, values[i])), state.pitch, 1e-2f);
+            assertEquals(Math.max(min, Math.min(max, values[values.length - 1 - i])),
+                    state.altitude, 1e-2f);
+        }
+        assertFalse(reader.next(state));
+    }
+}
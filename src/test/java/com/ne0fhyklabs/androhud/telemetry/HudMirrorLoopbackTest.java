@@ -0,0 +1,149 @@
+package com.ne0fhyklabs.androhud.telemetry;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Encodes a simulated flight, decodes it back, and checks the receiver gets exactly the sent
+ * states. Reports the bytes per frame, and the encode, and decode cost.
+ */
+public class HudMirrorLoopbackTest {
+
+    private static final int FRAME_COUNT = 20000;
+    private static final long FRAME_PERIOD_MS = 33;
+
+    /**
+     * Fills the state of the given frame of a gentle turn, with telemetry rate updates: the
+     * attitude changes every frame, the air data every third frame.
+     */
+    private static void simulate(int frame, Random noise, HudState out) {
+        final double t = frame * FRAME_PERIOD_MS / 1000.0;
+        out.timestamp = 1000000 + frame * FRAME_PERIOD_MS + noise.nextInt(3);
+        out.pitch = (float) (2 + 3 * Math.sin(t / 4));
+        out.roll = (float) (25 * Math.sin(t / 10));
+        out.yaw = (float) ((t * 6) % 360);
+        if (frame % 3 == 0) {
+            out.airSpeed = (float) (22 + Math.sin(t / 3) + noise.nextGaussian() * 0.1);
+            out.verticalSpeed = (float) (Math.cos(t / 5) * 2);
+            out.altitude = (float) (120 + 10 * Math.sin(t / 5));
+        }
+        out.targetSpeed = frame < FRAME_COUNT / 2 ? 22 : 25;
+    }
+
+    private static void assertSameState(HudState expected, HudState actual) {
+        assertEquals(expected.timestamp, actual.timestamp);
+        assertTrue(expected + " != " + actual, expected.valuesEqual(actual));
+    }
+
+    @Test
+    public void loopbackReproducesStatesExactly() {
+        final HudMirrorEncoder encoder = new HudMirrorEncoder();
+        final HudMirrorDecoder decoder = new HudMirrorDecoder();
+        final ByteBuffer packet = ByteBuffer.allocate(HudMirrorEncoder.MAX_PACKET_LENGTH);
+        final Random noise = new Random(7);
+        final HudState sent = new HudState();
+        final HudState received = new HudState();
+
+        long encodeNanos = 0;
+        long decodeNanos = 0;
+        for (int frame = 0; frame < FRAME_COUNT; frame++) {
+            simulate(frame, noise, sent);
+
+            packet.clear();
+            long start = System.nanoTime();
+            encoder.encode(sent, packet);
+            encodeNanos += System.nanoTime() - start;
+
+            packet.flip();
+            start = System.nanoTime();
+            assertTrue(decoder.decode(packet, received));
+            decodeNanos += System.nanoTime() - start;
+
+            assertEquals(packet.limit(), packet.position());
+            assertSameState(sent, received);
+        }
+
+        assertEquals(FRAME_COUNT, decoder.getFrameCount());
+        assertEquals(0, decoder.getSkippedFrameCount());
+
+        //The raw state is 8 bytes of timestamp, and 7 floats.
+        final float bytesPerFrame = encoder.getAverageFrameLength();
+        assertTrue("Packets average " + bytesPerFrame + " bytes.", bytesPerFrame < 36);
+
+        System.out.println(String.format("HudMirror loopback: %.1f bytes/frame, encode %.0f "
+                + "ns/frame, decode %.0f ns/frame", bytesPerFrame,
+                encodeNanos / (double) FRAME_COUNT, decodeNanos / (double) FRAME_COUNT));
+    }
+
+    @Test
+    public void carriesSpecialValuesBitForBit() {
+        final HudState sent = new HudState();
+        sent.timestamp = -5;
+        sent.pitch = Float.NaN;
+        sent.roll = -0f;
+        sent.yaw = Float.POSITIVE_INFINITY;
+        sent.airSpeed = Float.MIN_VALUE;
+        sent.targetSpeed = Float.MAX_VALUE;
+        sent.verticalSpeed = Float.NEGATIVE_INFINITY;
+        sent.altitude = Float.intBitsToFloat(0x7FC00001);
+
+        final ByteBuffer packet = ByteBuffer.allocate(HudMirrorEncoder.MAX_PACKET_LENGTH);
+        new HudMirrorEncoder().encode(sent, packet);
+        packet.flip();
+        final HudState received = new HudState();
+        assertTrue(new HudMirrorDecoder().decode(packet, received));
+
+        assertSameState(sent, received);
+        assertEquals(0x7FC00001, Float.floatToRawIntBits(received.altitude));
+        assertEquals(Float.floatToRawIntBits(-0f), Float.floatToRawIntBits(received.roll));
+    }
+
+    @Test
+    public void resynchronizesOnKeyFrameAfterLostPacket() {
+        final HudMirrorEncoder encoder = new HudMirrorEncoder(1000);
+        final HudMirrorDecoder decoder = new HudMirrorDecoder();
+        final ByteBuffer packet = ByteBuffer.allocate(HudMirrorEncoder.MAX_PACKET_LENGTH);
+        final Random noise = new Random(3);
+        final HudState sent = new HudState();
+        final HudState received = new HudState();
+
+        for (int frame = 0; frame < 10; frame++) {
+            simulate(frame, noise, sent);
+            packet.clear();
+            encoder.encode(sent, packet);
+            packet.flip();
+
+            //Frame 4 is lost.
+            if (frame == 4)
+                continue;
+
+            final boolean decoded = decoder.decode(packet, received);
+            assertEquals(packet.limit(), packet.position());
+            if (frame < 4) {
+                assertTrue(decoded);
+                assertSameState(sent, received);
+            }
+            else {
+                assertFalse(decoded);
+                assertTrue(decoder.isWaitingForKeyFrame());
+            }
+        }
+
+        encoder.requestKeyFrame();
+        simulate(10, noise, sent);
+        packet.clear();
+        encoder.encode(sent, packet);
+        packet.flip();
+
+        assertTrue(decoder.decode(packet, received));
+        assertFalse(decoder.isWaitingForKeyFrame());
+        assertSameState(sent, received);
+        assertEquals(5, decoder.getSkippedFrameCount());
+    }
+}
@@ -0,0 +1,148 @@
+package com.ne0fhyklabs.androhud.telemetry;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Builds raw MAVLink frames for the decoder tests. The checksum is computed independently from
+ * the decoder's.
+ */
+final class MavlinkFrames {
+
+    static final int MSG_ID_HEARTBEAT = 0;
+    static final int CRC_EXTRA_HEARTBEAT = 50;
+
+    private MavlinkFrames() {
+    }
+
+    /**
+     * @param roll  in radians.
+     * @param pitch in radians.
+     * @param yaw   in radians.
+     */
+    static byte[] attitudePayload(float roll, float pitch, float yaw) {
+        return ByteBuffer.allocate(MavlinkHudDecoder.PAYLOAD_LENGTH_ATTITUDE)
+                .order(ByteOrder.LITTLE_ENDIAN)
+                .putInt(123456)
+                .putFloat(roll)
+                .putFloat(pitch)
+                .putFloat(yaw)
+                .putFloat(0.01f)
+                .putFloat(0.02f)
+                .putFloat(0.03f)
+                .array();
+    }
+
+    static byte[] vfrHudPayload(float airSpeed, float groundSpeed, float altitude, float climbRate,
+                                int heading, int throttle) {
+        return ByteBuffer.allocate(MavlinkHudDecoder.PAYLOAD_LENGTH_VFR_HUD)
+                .order(ByteOrder.LITTLE_ENDIAN)
+                .putFloat(airSpeed)
+                .putFloat(groundSpeed)
+                .putFloat(altitude)
+                .putFloat(climbRate)
+                .putShort((short) heading)
+                .putShort((short) throttle)
+                .array();
+    }
+
+    static byte[] heartbeatPayload() {
+        return new byte[]{0, 0, 0, 0, 2, 3, 81, 4, 3};
+    }
+
+    static byte[] attitudeV1(float roll, float pitch, float yaw) {
+        return v1(MavlinkHudDecoder.MSG_ID_ATTITUDE, MavlinkHudDecoder.CRC_EXTRA_ATTITUDE,
+                attitudePayload(roll, pitch, yaw));
+    }
+
+    static byte[] vfrHudV1(float airSpeed, float altitude, float climbRate) {
+        return v1(MavlinkHudDecoder.MSG_ID_VFR_HUD, MavlinkHudDecoder.CRC_EXTRA_VFR_HUD,
+                vfrHudPayload(airSpeed, airSpeed, altitude, climbRate, 90, 50));
+    }
+
+    static byte[] v1(int msgId, int crcExtra, byte[] payload) {
+        final ByteArrayOutputStream frame = new ByteArrayOutputStream();
+        frame.write(0xFE);
+        frame.write(payload.length);
+        frame.write(7);      //sequence
+        frame.write(1);      //system id
+        frame.write(1);      //component id
+        frame.write(msgId);
+        frame.write(payload, 0, payload.length);
+        return appendCrc(frame, crcExtra);
+    }
+
+    /**
+     * @param truncate if true, the payload's trailing zero bytes are dropped, as MAVLink v2 does.
+     * @param signed   if true, the frame is flagged as signed, and followed by a signature.
+     */
+    static byte[] v2(int msgId, int crcExtra, byte[] payload, boolean truncate, boolean signed) {
+        int length = payload.length;
+        if (truncate) {
+            while (length > 1 && payload[length - 1] == 0)
+                length--;
+        }
+
+        final ByteArrayOutputStream frame = new ByteArrayOutputStream();
+        frame.write(0xFD);
+        frame.write(length);
+        frame.write(signed ? 0x01 : 0);  //incompatibility flags
+        frame.write(0);                  //compatibility flags
+        frame.write(7);                  //sequence
+        frame.write(1);                  //system id
+        frame.write(1);                  //component id
+        frame.write(msgId & 0xFF);
+        frame.write((msgId >> 8) & 0xFF);
+        frame.write((msgId >> 16) & 0xFF);
+        frame.write(payload, 0, length);
+        final byte[] bytes = appendCrc(frame, crcExtra);
+        if (!signed)
+            return bytes;
+
+        final byte[] signature = new byte[13];
+        for (int i = 0; i < signature.length; i++) {
+            signature[i] = (byte) (0xA0 + i);
+        }
+        return concat(bytes, signature);
+    }
+
+    private static byte[] appendCrc(ByteArrayOutputStream frame, int crcExtra) {
+        final byte[] bytes = frame.toByteArray();
+        final int crc = crc(bytes, 1, bytes.length, crcExtra);
+        frame.write(crc & 0xFF);
+        frame.write(crc >> 8);
+        return frame.toByteArray();
+    }
+
+    /**
+     * CRC-16/MCRF4XX, i.e: the MAVLink X.25 checksum, over [start, end), followed by the crc
+     * extra byte if it's not negative.
+     */
+    static int crc(byte[] bytes, int start, int end, int crcExtra) {
+        int crc = 0xFFFF;
+        for (int i = start; i < end; i++) {
+            crc = crcByte(crc, bytes[i] & 0xFF);
+        }
+        return crcExtra < 0 ? crc : crcByte(crc, crcExtra);
+    }
+
+    /**
+     * Bit by bit reflected CRC-16, polynomial 0x8408.
+     */
+    private static int crcByte(int crc, int data) {
+        crc ^= data;
+        for (int bit = 0; bit < 8; bit++) {
+            crc = (crc & 1) != 0 ? (crc >>> 1) ^ 0x8408 : crc >>> 1;
+        }
+        return crc;
+    }
+
+    static byte[] concat(byte[]... parts) {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (byte[] part : parts) {
+            out.write(part, 0, part.length);
+        }
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,99 @@
+package com.ne0fhyklabs.androhud.telemetry;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.ByteBuffer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Measures the decoder's throughput, in packets per second, on a stream mixing v1, and v2
+ * ATTITUDE, VFR_HUD, and unsupported frames. Reports the bytes allocated while decoding when the
+ * jvm can measure them.
+ * Skipped unless the {@value #BENCHMARK_PROPERTY} system property is true, since it runs for
+ * seconds.
+ */
+public class MavlinkHudDecoderBenchmark {
+
+    static final String BENCHMARK_PROPERTY = "androhud.benchmark";
+
+    private static final int FRAME_COUNT = 10000;
+    private static final long WARMUP_NANOS = 1000000000L;
+    private static final long MEASURE_NANOS = 2000000000L;
+
+    @Before
+    public void checkEnabled() {
+        assumeTrue(Boolean.getBoolean(BENCHMARK_PROPERTY));
+    }
+
+    @Test
+    public void packetsPerSecond() {
+        final ByteBuffer stream = buildStream();
+        final MavlinkHudDecoder decoder = new MavlinkHudDecoder();
+
+        run(decoder, stream, WARMUP_NANOS);
+
+        final long allocatedBefore = getAllocatedBytes();
+        final long start = System.nanoTime();
+        final long packets = run(decoder, stream, MEASURE_NANOS);
+        final long elapsed = System.nanoTime() - start;
+        final long allocated = getAllocatedBytes() - allocatedBefore;
+
+        System.out.println(String.format("MavlinkHudDecoder: %.0f packets/s, %.1f MB/s, %s",
+                packets * 1e9 / elapsed, packets * (stream.limit() / (double) FRAME_COUNT)
+                        * 1e3 / elapsed, allocatedBefore < 0 ? "allocations not measured"
+                        : allocated + " bytes allocated"));
+    }
+
+    /**
+     * Decodes the stream repeatedly for the given duration.
+     *
+     * @return the number of packets walked, decoded or skipped.
+     */
+    private static long run(MavlinkHudDecoder decoder, ByteBuffer stream, long durationNanos) {
+        final long end = System.nanoTime() + durationNanos;
+        long packets = 0;
+        while (System.nanoTime() < end) {
+            stream.position(0);
+            final long skipped = decoder.getSkippedFrameCount();
+            final int decoded = decoder.decode(stream);
+            assertEquals(stream.limit(), stream.position());
+            packets += decoded + decoder.getSkippedFrameCount() - skipped;
+        }
+        return packets;
+    }
+
+    private static ByteBuffer buildStream() {
+        final byte[] attitudeV1 = MavlinkFrames.attitudeV1(0.1f, 0.2f, 0.3f);
+        final byte[] vfrHudV1 = MavlinkFrames.vfrHudV1(20f, 100f, 1f);
+        final byte[] attitudeV2 = MavlinkFrames.v2(MavlinkHudDecoder.MSG_ID_ATTITUDE,
+                MavlinkHudDecoder.CRC_EXTRA_ATTITUDE, MavlinkFrames.attitudePayload(0.1f, 0.2f,
+                        0.3f), true, false);
+        final byte[] heartbeat = MavlinkFrames.v1(MavlinkFrames.MSG_ID_HEARTBEAT,
+                MavlinkFrames.CRC_EXTRA_HEARTBEAT, MavlinkFrames.heartbeatPayload());
+        final byte[][] frames = {attitudeV1, vfrHudV1, attitudeV2, heartbeat};
+
+        final ByteBuffer stream = ByteBuffer.allocate(FRAME_COUNT * 64);
+        for (int i = 0; i < FRAME_COUNT; i++) {
+            stream.put(frames[i % frames.length]);
+        }
+        stream.flip();
+        return stream;
+    }
+
+    /**
+     * @return the bytes allocated by this thread, or -1 if the jvm can't measure them.
+     */
+    private static long getAllocatedBytes() {
+        final ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (!(bean instanceof com.sun.management.ThreadMXBean))
+            return -1;
+
+        return ((com.sun.management.ThreadMXBean) bean).getThreadAllocatedBytes(
+                Thread.currentThread().getId());
+    }
+}
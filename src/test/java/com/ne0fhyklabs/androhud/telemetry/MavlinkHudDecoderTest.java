@@ -0,0 +1,243 @@
+package com.ne0fhyklabs.androhud.telemetry;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+public class MavlinkHudDecoderTest {
+
+    private static final float RAD_2_DEG = (float) (180 / Math.PI);
+    private static final float EPSILON = 1e-4f;
+
+    private MavlinkHudDecoder mDecoder;
+
+    @Before
+    public void setUp() {
+        mDecoder = new MavlinkHudDecoder();
+    }
+
+    private int decode(byte[] bytes) {
+        return mDecoder.decode(ByteBuffer.wrap(bytes));
+    }
+
+    @Test
+    public void checksumMatchesReferenceCheckValue() {
+        final byte[] check = "123456789".getBytes();
+        assertEquals(0x6F91, MavlinkFrames.crc(check, 0, check.length, -1));
+
+        final byte[] frame = MavlinkFrames.attitudeV1(0.1f, 0.2f, 0.3f);
+        final int end = frame.length - 2;
+        assertEquals(MavlinkFrames.crc(frame, 1, end, MavlinkHudDecoder.CRC_EXTRA_ATTITUDE),
+                MavlinkHudDecoder.crc(ByteBuffer.wrap(frame), 1, end,
+                        MavlinkHudDecoder.CRC_EXTRA_ATTITUDE));
+    }
+
+    @Test
+    public void decodesV1Attitude() {
+        assertEquals(1, decode(MavlinkFrames.attitudeV1(0.1f, -0.2f, 1.5f)));
+
+        assertEquals(0.1f * RAD_2_DEG, mDecoder.getRoll(), EPSILON);
+        assertEquals(-0.2f * RAD_2_DEG, mDecoder.getPitch(), EPSILON);
+        assertEquals(1.5f * RAD_2_DEG, mDecoder.getYaw(), EPSILON);
+        assertEquals(1, mDecoder.getAttitudeCount());
+        assertEquals(0, mDecoder.getVfrHudCount());
+    }
+
+    @Test
+    public void decodesV1VfrHud() {
+        assertEquals(1, decode(MavlinkFrames.v1(MavlinkHudDecoder.MSG_ID_VFR_HUD,
+                MavlinkHudDecoder.CRC_EXTRA_VFR_HUD, MavlinkFrames.vfrHudPayload(12.5f, 13f,
+                        250f, -1.5f, -90, 30))));
+
+        assertEquals(12.5f, mDecoder.getAirSpeed(), 0);
+        assertEquals(13f, mDecoder.getGroundSpeed(), 0);
+        assertEquals(250f, mDecoder.getAltitude(), 0);
+        assertEquals(-1.5f, mDecoder.getClimbRate(), 0);
+        assertEquals(-90, mDecoder.getHeading());
+        assertEquals(30, mDecoder.getThrottle());
+        assertEquals(1, mDecoder.getVfrHudCount());
+    }
+
+    @Test
+    public void decodesV2Frames() {
+        final byte[] attitude = MavlinkFrames.v2(MavlinkHudDecoder.MSG_ID_ATTITUDE,
+                MavlinkHudDecoder.CRC_EXTRA_ATTITUDE, MavlinkFrames.attitudePayload(-0.05f, 0.3f,
+                        -2f), false, false);
+        final byte[] vfrHud = MavlinkFrames.v2(MavlinkHudDecoder.MSG_ID_VFR_HUD,
+                MavlinkHudDecoder.CRC_EXTRA_VFR_HUD, MavlinkFrames.vfrHudPayload(20f, 19f, 100f,
+                        2f, 270, 50), false, false);
+
+        assertEquals(2, decode(MavlinkFrames.concat(attitude, vfrHud)));
+        assertEquals(-0.05f * RAD_2_DEG, mDecoder.getRoll(), EPSILON);
+        assertEquals(0.3f * RAD_2_DEG, mDecoder.getPitch(), EPSILON);
+        assertEquals(-2f * RAD_2_DEG, mDecoder.getYaw(), EPSILON);
+        assertEquals(20f, mDecoder.getAirSpeed(), 0);
+        assertEquals(100f, mDecoder.getAltitude(), 0);
+        assertEquals(270, mDecoder.getHeading());
+    }
+
+    @Test
+    public void decodesV2TruncatedPayloads() {
+        //Zero climb rate, heading, and throttle are all truncated away.
+        final byte[] frame = MavlinkFrames.v2(MavlinkHudDecoder.MSG_ID_VFR_HUD,
+                MavlinkHudDecoder.CRC_EXTRA_VFR_HUD, MavlinkFrames.vfrHudPayload(20f, 19f, 100f,
+                        0f, 0, 0), true, false);
+        assertEquals(MavlinkHudDecoder.PAYLOAD_LENGTH_VFR_HUD - 8, frame[1]);
+
+        decode(MavlinkFrames.v1(MavlinkHudDecoder.MSG_ID_VFR_HUD,
+                MavlinkHudDecoder.CRC_EXTRA_VFR_HUD, MavlinkFrames.vfrHudPayload(1f, 1f, 1f, 5f,
+                        10, 10)));
+        assertEquals(1, decode(frame));
+        assertEquals(20f, mDecoder.getAirSpeed(), 0);
+        assertEquals(100f, mDecoder.getAltitude(), 0);
+        assertEquals(0f, mDecoder.getClimbRate(), 0);
+        assertEquals(0, mDecoder.getHeading());
+        assertEquals(0, mDecoder.getThrottle());
+    }
+
+    @Test
+    public void decodesV2SignedFrames() {
+        final byte[] signed = MavlinkFrames.v2(MavlinkHudDecoder.MSG_ID_ATTITUDE,
+                MavlinkHudDecoder.CRC_EXTRA_ATTITUDE, MavlinkFrames.attitudePayload(0.5f, 0, 0),
+                false, true);
+
+        assertEquals(2, decode(MavlinkFrames.concat(signed, MavlinkFrames.vfrHudV1(7f, 8f, 9f))));
+        assertEquals(0.5f * RAD_2_DEG, mDecoder.getRoll(), EPSILON);
+        assertEquals(7f, mDecoder.getAirSpeed(), 0);
+        assertEquals(0, mDecoder.getDroppedByteCount());
+    }
+
+    @Test
+    public void keepsIncompleteFrameForTheNextRead() {
+        final byte[] first = MavlinkFrames.attitudeV1(0.1f, 0.2f, 0.3f);
+        final byte[] second = MavlinkFrames.vfrHudV1(15f, 30f, 1f);
+        final byte[] stream = MavlinkFrames.concat(first, second);
+        final int split = first.length + 10;
+
+        final ByteBuffer buffer = ByteBuffer.allocate(256);
+        buffer.put(stream, 0, split).flip();
+        assertEquals(1, mDecoder.decode(buffer));
+        assertEquals(first.length, buffer.position());
+
+        buffer.compact();
+        buffer.put(stream, split, stream.length - split).flip();
+        assertEquals(1, mDecoder.decode(buffer));
+        assertEquals(15f, mDecoder.getAirSpeed(), 0);
+        assertEquals(buffer.limit(), buffer.position());
+    }
+
+    @Test
+    public void incompleteHeaderIsKept() {
+        final ByteBuffer buffer = ByteBuffer.wrap(Arrays.copyOf(MavlinkFrames.attitudeV1(0, 0, 0),
+                3));
+        assertEquals(0, mDecoder.decode(buffer));
+        assertEquals(0, buffer.position());
+    }
+
+    @Test
+    public void decodesFromBufferPosition() {
+        final byte[] frame = MavlinkFrames.vfrHudV1(42f, 0, 0);
+        final ByteBuffer buffer = ByteBuffer.wrap(MavlinkFrames.concat(new byte[5], frame));
+        buffer.position(5);
+
+        assertEquals(1, mDecoder.decode(buffer));
+        assertEquals(42f, mDecoder.getAirSpeed(), 0);
+        assertEquals(0, mDecoder.getDroppedByteCount());
+    }
+
+    @Test
+    public void recoversAfterTruncatedFrame() {
+        final byte[] truncated = Arrays.copyOf(MavlinkFrames.attitudeV1(1f, 1f, 1f), 20);
+        final byte[] valid = MavlinkFrames.attitudeV1(0.25f, 0, 0);
+
+        assertEquals(1, decode(MavlinkFrames.concat(truncated, valid)));
+        assertEquals(0.25f * RAD_2_DEG, mDecoder.getRoll(), EPSILON);
+        assertEquals(1, mDecoder.getAttitudeCount());
+    }
+
+    @Test
+    public void rejectsBadChecksum() {
+        final byte[] corrupted = MavlinkFrames.attitudeV1(1f, 1f, 1f);
+        corrupted[10] ^= 0x01;
+        final byte[] valid = MavlinkFrames.vfrHudV1(12f, 0, 0);
+
+        assertEquals(1, decode(MavlinkFrames.concat(corrupted, valid)));
+        assertEquals(0, mDecoder.getAttitudeCount());
+        assertEquals(1, mDecoder.getVfrHudCount());
+        assertEquals(1, mDecoder.getCrcErrorCount());
+        assertEquals(12f, mDecoder.getAirSpeed(), 0);
+    }
+
+    @Test
+    public void skipsUnsupportedMessages() {
+        final byte[] heartbeat = MavlinkFrames.v1(MavlinkFrames.MSG_ID_HEARTBEAT,
+                MavlinkFrames.CRC_EXTRA_HEARTBEAT, MavlinkFrames.heartbeatPayload());
+
+        assertEquals(2, decode(MavlinkFrames.concat(MavlinkFrames.attitudeV1(0, 0, 0), heartbeat,
+                MavlinkFrames.vfrHudV1(3f, 0, 0))));
+        assertEquals(1, mDecoder.getSkippedFrameCount());
+        assertEquals(3f, mDecoder.getAirSpeed(), 0);
+    }
+
+    @Test
+    public void strayStartOfUnsupportedFrameDoesntSwallowFrames() {
+        //Claims a 255 bytes heartbeat, covering the valid frames behind it.
+        final byte[] stray = {(byte) 0xFE, (byte) 0xFF, 0, 1, 1, 0};
+        final byte[] stream = MavlinkFrames.concat(stray, MavlinkFrames.attitudeV1(0.5f, 0, 0),
+                MavlinkFrames.vfrHudV1(21f, 0, 0));
+
+        assertEquals(2, decode(stream));
+        assertEquals(0.5f * RAD_2_DEG, mDecoder.getRoll(), EPSILON);
+        assertEquals(21f, mDecoder.getAirSpeed(), 0);
+    }
+
+    @Test
+    public void strayStartOfSupportedFrameWithOversizedPayloadDoesntStall() {
+        //Claims a 200 bytes ATTITUDE, longer than the message.
+        final byte[] stray = {(byte) 0xFD, (byte) 200, 0, 0, 0, 1, 1, 30, 0, 0};
+        final ByteBuffer buffer = ByteBuffer.wrap(MavlinkFrames.concat(stray,
+                MavlinkFrames.vfrHudV1(21f, 0, 0)));
+
+        assertEquals(1, mDecoder.decode(buffer));
+        assertEquals(buffer.limit(), buffer.position());
+    }
+
+    @Test
+    public void decodesFramesSeparatedByNoise() {
+        final Random random = new Random(42);
+        final ByteBuffer buffer = ByteBuffer.allocate(1 << 20);
+        int frames = 0;
+        while (buffer.remaining() > 1024) {
+            final byte[] noise = new byte[random.nextInt(64)];
+            random.nextBytes(noise);
+            buffer.put(noise);
+
+            final byte[] frame;
+            switch (random.nextInt(3)) {
+                case 0:
+                    frame = MavlinkFrames.attitudeV1(random.nextFloat(), random.nextFloat(),
+                            random.nextFloat());
+                    break;
+                case 1:
+                    frame = MavlinkFrames.vfrHudV1(random.nextFloat() * 50, 100, 0);
+                    break;
+                default:
+                    frame = MavlinkFrames.v2(MavlinkHudDecoder.MSG_ID_ATTITUDE,
+                            MavlinkHudDecoder.CRC_EXTRA_ATTITUDE, MavlinkFrames.attitudePayload(
+                                    random.nextFloat(), 0, 0), true, random.nextBoolean());
+                    break;
+            }
+            buffer.put(frame);
+            frames++;
+        }
+        buffer.flip();
+
+        assertEquals(frames, mDecoder.decode(buffer));
+        assertEquals(frames, mDecoder.getAttitudeCount() + mDecoder.getVfrHudCount());
+    }
+}
@@ -0,0 +1,97 @@
+package com.ne0fhyklabs.androhud.utils;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Walks the yaw tape ticks the way SimpleYaw, HudView, and HudPainter do, and checks the labels
+ * around north.
+ */
+public class HeadingLabelsTest {
+
+    /**
+     * Labels of the ticks visible around the given yaw, for a 60 degrees wide tape.
+     */
+    private static List<String> labelsAround(float yaw) {
+        final TickIterator ticks = new TickIterator().resetCentered(
+                MathUtils.normalizeHeading(yaw), 60, 0, 1, 45, 5);
+
+        final List<String> labels = new ArrayList<String>();
+        while (ticks.next()) {
+            final int angle = ticks.getValue();
+            final String compassLabel = HeadingLabels.getCompassLabel(angle);
+            if (compassLabel != null)
+                labels.add(compassLabel);
+            else if (HeadingLabels.isDegreeLabel(angle))
+                labels.add(String.valueOf(MathUtils.normalizeHeading(angle)));
+        }
+        return labels;
+    }
+
+    @Test
+    public void compassLabels() {
+        assertEquals("N", HeadingLabels.getCompassLabel(0));
+        assertEquals("NE", HeadingLabels.getCompassLabel(45));
+        assertEquals("W", HeadingLabels.getCompassLabel(270));
+        assertEquals("NW", HeadingLabels.getCompassLabel(315));
+        assertNull(HeadingLabels.getCompassLabel(15));
+        assertNull(HeadingLabels.getCompassLabel(5));
+    }
+
+    @Test
+    public void compassLabelsWrap() {
+        assertEquals("N", HeadingLabels.getCompassLabel(360));
+        assertEquals("N", HeadingLabels.getCompassLabel(-360));
+        assertEquals("N", HeadingLabels.getCompassLabel(720));
+        assertEquals("NW", HeadingLabels.getCompassLabel(-45));
+        assertEquals("NE", HeadingLabels.getCompassLabel(405));
+    }
+
+    @Test
+    public void degreeLabels() {
+        assertTrue(HeadingLabels.isDegreeLabel(15));
+        assertTrue(HeadingLabels.isDegreeLabel(-15));
+        assertTrue(HeadingLabels.isDegreeLabel(375));
+        assertFalse(HeadingLabels.isDegreeLabel(0));
+        assertFalse(HeadingLabels.isDegreeLabel(360));
+        assertFalse(HeadingLabels.isDegreeLabel(45));
+        assertFalse(HeadingLabels.isDegreeLabel(10));
+    }
+
+    @Test
+    public void labelsAroundNorth() {
+        final List<String> expected = Arrays.asList("330", "345", "N", "15", "30");
+        assertEquals(expected, labelsAround(0));
+        assertEquals(expected, labelsAround(-0f));
+        assertEquals(expected, labelsAround(360));
+        assertEquals(expected, labelsAround(-360));
+        assertEquals(expected, labelsAround(720));
+    }
+
+    @Test
+    public void labelsJustBeforeNorth() {
+        assertEquals(Arrays.asList("330", "345", "N", "15"), labelsAround(359.5f));
+        assertEquals(Arrays.asList("330", "345", "N", "15"), labelsAround(-0.5f));
+    }
+
+    @Test
+    public void labelsJustAfterNorth() {
+        assertEquals(Arrays.asList("345", "N", "15", "30"), labelsAround(0.5f));
+        assertEquals(Arrays.asList("345", "N", "15", "30"), labelsAround(360.5f));
+    }
+
+    @Test
+    public void labelsForVeryLargeHeadings() {
+        //1e9 wraps to 280, -1e9 to 80.
+        assertEquals(Arrays.asList("255", "W", "285", "300"), labelsAround(1e9f));
+        assertEquals(Arrays.asList("60", "75", "E", "105"), labelsAround(-1e9f));
+    }
+}
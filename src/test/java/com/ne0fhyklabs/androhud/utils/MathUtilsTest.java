@@ -0,0 +1,76 @@
+package com.ne0fhyklabs.androhud.utils;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class MathUtilsTest {
+
+    private static void assertHeading(float expected, float heading) {
+        final float normalized = MathUtils.normalizeHeading(heading);
+        assertEquals("heading " + heading, expected, normalized, 1e-3f);
+        assertTrue("heading " + heading, normalized >= 0 && normalized < 360);
+    }
+
+    @Test
+    public void keepsHeadingsWithinATurn() {
+        assertHeading(0, 0);
+        assertHeading(45.5f, 45.5f);
+        assertHeading(359.5f, 359.5f);
+    }
+
+    @Test
+    public void wrapsNegativeHeadings() {
+        assertHeading(350, -10);
+        assertHeading(0.5f, -359.5f);
+        assertHeading(0, -360);
+        assertHeading(270, -450);
+    }
+
+    @Test
+    public void wrapsSeveralTurns() {
+        assertHeading(0, 360);
+        assertHeading(0, 720);
+        assertHeading(10, 730);
+    }
+
+    @Test
+    public void wrapsVeryLargeHeadings() {
+        //1e9 = 2777777 * 360 + 280, exactly representable as float.
+        assertHeading(280, 1e9f);
+        assertHeading(80, -1e9f);
+        assertHeading(Float.MAX_VALUE % 360f, Float.MAX_VALUE);
+    }
+
+    @Test
+    public void foldsNegativeZeroIntoZero() {
+        assertEquals(0, Float.compare(0f, MathUtils.normalizeHeading(-0f)));
+        assertEquals(0, Float.compare(0f, MathUtils.normalizeHeading(-360f)));
+        assertEquals(0, Float.compare(0f, MathUtils.normalizeHeading(-720f)));
+    }
+
+    @Test
+    public void guardsAgainstRoundingToAFullTurn() {
+        assertHeading(0, -1e-6f);
+    }
+
+    @Test
+    public void propagatesNaN() {
+        assertTrue(Float.isNaN(MathUtils.normalizeHeading(Float.NaN)));
+        assertTrue(Float.isNaN(MathUtils.normalizeHeading(Float.POSITIVE_INFINITY)));
+        assertTrue(Float.isNaN(MathUtils.normalizeHeading(Float.NEGATIVE_INFINITY)));
+    }
+
+    @Test
+    public void wrapsIntHeadings() {
+        assertEquals(0, MathUtils.normalizeHeading(0));
+        assertEquals(0, MathUtils.normalizeHeading(-360));
+        assertEquals(0, MathUtils.normalizeHeading(720));
+        assertEquals(345, MathUtils.normalizeHeading(-15));
+        assertEquals(280, MathUtils.normalizeHeading(1000000000));
+        assertEquals(80, MathUtils.normalizeHeading(-1000000000));
+        assertEquals(Integer.MAX_VALUE % 360, MathUtils.normalizeHeading(Integer.MAX_VALUE));
+        assertEquals(Integer.MIN_VALUE % 360 + 360, MathUtils.normalizeHeading(Integer.MIN_VALUE));
+    }
+}
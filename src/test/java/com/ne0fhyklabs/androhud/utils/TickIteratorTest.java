@@ -0,0 +1,179 @@
+package com.ne0fhyklabs.androhud.utils;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TickIteratorTest {
+
+    private static List<Integer> walk(TickIterator ticks) {
+        final List<Integer> values = new ArrayList<Integer>();
+        while (ticks.next()) {
+            values.add(ticks.getValue());
+        }
+        return values;
+    }
+
+    @Test
+    public void walksNegativeRange() {
+        final TickIterator ticks = new TickIterator().reset(-23, -7, 0, 0, 1, 10, 5);
+
+        assertEquals(3, ticks.getRemaining());
+        assertEquals(Arrays.asList(-20, -15, -10), walk(ticks));
+        assertEquals(0, ticks.getRemaining());
+    }
+
+    @Test
+    public void walksRangeCrossingZero() {
+        final TickIterator ticks = new TickIterator().reset(-10, 10, 0, 100, -2, 10, 5);
+
+        final List<Integer> values = new ArrayList<Integer>();
+        final List<Boolean> majors = new ArrayList<Boolean>();
+        while (ticks.next()) {
+            values.add(ticks.getValue());
+            majors.add(ticks.isMajor());
+            assertEquals(100 - 2 * ticks.getValue(), ticks.getPosition(), 1e-6);
+        }
+
+        assertEquals(Arrays.asList(-10, -5, 0, 5, 10), values);
+        assertEquals(Arrays.asList(true, false, true, false, true), majors);
+    }
+
+    @Test
+    public void includesBoundsOnStepMultiples() {
+        assertEquals(Arrays.asList(0, 5), walk(new TickIterator().reset(0, 5, 0, 0, 1, 5, 5)));
+    }
+
+    @Test
+    public void walksCenteredWindow() {
+        final TickIterator ticks = new TickIterator().resetCentered(3, 10, 50, 4, 5, 1);
+
+        assertEquals(Arrays.asList(-2, -1, 0, 1, 2, 3, 4, 5, 6, 7, 8), walk(ticks));
+        ticks.resetCentered(3, 10, 50, 4, 5, 1);
+        assertTrue(ticks.next());
+        assertEquals(50 + (-2 - 3) * 4, ticks.getPosition(), 1e-6);
+    }
+
+    @Test
+    public void stepLargerThanRangeWithoutMultipleIsEmpty() {
+        final TickIterator ticks = new TickIterator().reset(1, 9, 0, 0, 1, 10, 10);
+
+        assertEquals(0, ticks.getRemaining());
+        assertFalse(ticks.next());
+    }
+
+    @Test
+    public void stepLargerThanRangeWithMultipleYieldsOneTick() {
+        final TickIterator ticks = new TickIterator().reset(95, 105, 0, 0, 1, 100, 100);
+
+        assertEquals(Arrays.asList(100), walk(ticks));
+    }
+
+    @Test
+    public void emptyWindows() {
+        assertFalse(new TickIterator().reset(10, 0, 0, 0, 1, 5, 5).next());
+        assertFalse(new TickIterator().reset(Float.NaN, 10, 0, 0, 1, 5, 5).next());
+        assertFalse(new TickIterator().reset(0, Float.NaN, 0, 0, 1, 5, 5).next());
+    }
+
+    @Test
+    public void hugeValuesDontOverflow() {
+        final TickIterator ticks = new TickIterator().reset(Integer.MAX_VALUE - 1000f,
+                Integer.MAX_VALUE, 0, 0, 1, 1000, 500);
+
+        final List<Integer> values = walk(ticks);
+        assertFalse(values.isEmpty());
+        for (int value : values) {
+            assertTrue(value > 0);
+            assertEquals(0, value % 500);
+        }
+        assertEquals(2147483500, (int) values.get(values.size() - 1));
+    }
+
+    @Test
+    public void hugeNegativeValuesDontOverflow() {
+        final TickIterator ticks = new TickIterator().reset(-3e9f, Integer.MIN_VALUE + 1000f, 0,
+                0, 1, 1000, 1000);
+
+        final List<Integer> values = walk(ticks);
+        assertFalse(values.isEmpty());
+        for (int value : values) {
+            assertTrue(value < 0);
+            assertEquals(0, value % 1000);
+        }
+        assertEquals(-2147483000, (int) values.get(0));
+    }
+
+    @Test
+    public void windowPastIntBoundsIsClamped() {
+        final TickIterator ticks = new TickIterator().reset(-1e12f, 1e12f, 0, 0, 1, 1000000000,
+                1000000000);
+
+        assertEquals(Arrays.asList(-2000000000, -1000000000, 0, 1000000000, 2000000000),
+                walk(ticks));
+    }
+
+    @Test
+    public void labelIdsRoundTowardsNegativeInfinity() {
+        final TickIterator ticks = new TickIterator().reset(-20, 20, 0, 0, 1, 10, 5);
+
+        final List<Integer> labelIds = new ArrayList<Integer>();
+        while (ticks.next()) {
+            labelIds.add(ticks.getLabelId());
+        }
+
+        //Ticks -20, -15, -10, -5, 0, 5, 10, 15, 20
+        assertEquals(Arrays.asList(-2, -2, -1, -1, 0, 0, 1, 1, 2), labelIds);
+    }
+
+    @Test
+    public void labelIdsStayAlternatingAcrossZero() {
+        final TickIterator ticks = new TickIterator().reset(-30, 30, 0, 0, 1, 10, 10);
+
+        int previous = Integer.MIN_VALUE;
+        while (ticks.next()) {
+            final int labelId = ticks.getLabelId();
+            if (previous != Integer.MIN_VALUE)
+                assertEquals(previous + 1, labelId);
+            previous = labelId;
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsMajorStepNotMultipleOfMinorStep() {
+        new TickIterator().reset(0, 10, 0, 0, 1, 10, 3);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsNonPositiveStep() {
+        new TickIterator().reset(0, 10, 0, 0, 1, 10, 0);
+    }
+
+    @Test
+    public void niceSteps() {
+        assertEquals(1, TickIterator.niceStep(-5));
+        assertEquals(1, TickIterator.niceStep(Float.NaN));
+        assertEquals(1, TickIterator.niceStep(1));
+        assertEquals(2, TickIterator.niceStep(1.5f));
+        assertEquals(5, TickIterator.niceStep(3));
+        assertEquals(10, TickIterator.niceStep(6));
+        assertEquals(200, TickIterator.niceStep(101));
+        assertEquals(1000000000, TickIterator.niceStep(1e12f));
+    }
+
+    @Test
+    public void niceMinorSteps() {
+        assertEquals(1, TickIterator.niceMinorStep(1));
+        assertEquals(1, TickIterator.niceMinorStep(2));
+        assertEquals(1, TickIterator.niceMinorStep(5));
+        assertEquals(2, TickIterator.niceMinorStep(10));
+        assertEquals(10, TickIterator.niceMinorStep(20));
+        assertEquals(10, TickIterator.niceMinorStep(50));
+    }
+}
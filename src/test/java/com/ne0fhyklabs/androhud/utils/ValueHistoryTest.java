@@ -0,0 +1,223 @@
+package com.ne0fhyklabs.androhud.utils;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ValueHistoryTest {
+
+    @Test
+    public void emptyHistory() {
+        final ValueHistory history = new ValueHistory(8, 1000);
+
+        assertEquals(0, history.size());
+        assertTrue(Float.isNaN(history.getLatest()));
+        assertTrue(Float.isNaN(history.getMin()));
+        assertTrue(Float.isNaN(history.getMax()));
+        assertEquals(0, history.getLatestTime());
+        assertEquals(0, history.getRate(), 0);
+    }
+
+    @Test
+    public void minMaxFollowEvictions() {
+        final ValueHistory history = new ValueHistory(16, 1000);
+        history.add(0, 5);
+        history.add(200, 9);
+        history.add(400, 1);
+        history.add(600, 7);
+
+        assertEquals(1, history.getMin(), 0);
+        assertEquals(9, history.getMax(), 0);
+
+        //Evicts the samples at 0, and 200.
+        history.add(1300, 4);
+        assertEquals(3, history.size());
+        assertEquals(1, history.getMin(), 0);
+        assertEquals(7, history.getMax(), 0);
+
+        //Evicts the sample at 400.
+        history.add(1500, 6);
+        assertEquals(4, history.getMin(), 0);
+        assertEquals(7, history.getMax(), 0);
+
+        //Evicts everything but the new sample.
+        history.add(5000, 3);
+        assertEquals(1, history.size());
+        assertEquals(3, history.getMin(), 0);
+        assertEquals(3, history.getMax(), 0);
+        assertEquals(3, history.getLatest(), 0);
+        assertEquals(5000, history.getLatestTime());
+    }
+
+    @Test
+    public void equalValuesKeepMinMaxUntilLastOneIsEvicted() {
+        final ValueHistory history = new ValueHistory(16, 1000);
+        history.add(0, 2);
+        history.add(500, 2);
+        history.add(900, 8);
+
+        history.add(1200, 5);
+        assertEquals(2, history.getMin(), 0);
+
+        history.add(1600, 5);
+        assertEquals(5, history.getMin(), 0);
+        assertEquals(8, history.getMax(), 0);
+    }
+
+    @Test
+    public void rateIsSlopeOfLinearRamp() {
+        final ValueHistory history = new ValueHistory(64, 2000);
+        for (int i = 0; i <= 20; i++) {
+            history.add(i * 100, 10 + 3f * i / 10);
+        }
+
+        assertEquals(3, history.getRate(), 1e-4);
+    }
+
+    @Test
+    public void rateIsLeastSquaresSlope() {
+        final ValueHistory history = new ValueHistory(8, 10000);
+        history.add(0, 0);
+        history.add(1000, 2);
+        history.add(2000, 1);
+        history.add(3000, 3);
+
+        //Least squares fit of (0, 0), (1, 2), (2, 1), (3, 3).
+        assertEquals(0.8f, history.getRate(), 1e-5);
+    }
+
+    @Test
+    public void rateNeedsTwoSampleTimes() {
+        final ValueHistory history = new ValueHistory(8, 1000);
+        history.add(100, 1);
+        assertEquals(0, history.getRate(), 0);
+
+        history.add(100, 5);
+        assertEquals(0, history.getRate(), 0);
+
+        history.add(600, 6);
+        assertTrue(history.getRate() > 0);
+    }
+
+    @Test
+    public void rebasingKeepsRatePrecise() {
+        final ValueHistory history = new ValueHistory(32, 1000);
+        final long start = 1000000000000L;
+
+        //Runs across many rebases, and far from the first time origin.
+        for (int i = 0; i <= 5000; i++) {
+            history.add(start + i * 50L, 100 + 0.002f * i);
+        }
+
+        assertEquals(21, history.size());
+        assertEquals(0.04f, history.getRate(), 1e-4);
+        assertEquals(start + 5000 * 50L, history.getLatestTime());
+        assertEquals(110, history.getMax(), 1e-3);
+        assertEquals(109.96f, history.getMin(), 1e-3);
+    }
+
+    @Test
+    public void rebasingAfterGapMatchesFreshHistory() {
+        final ValueHistory history = new ValueHistory(8, 1000);
+        history.add(0, 50);
+        history.add(3900, 1);
+        history.add(4000, 2);
+        history.add(4500, 4);
+
+        final ValueHistory fresh = new ValueHistory(8, 1000);
+        fresh.add(3900, 1);
+        fresh.add(4000, 2);
+        fresh.add(4500, 4);
+
+        assertEquals(3, history.size());
+        assertEquals(fresh.getRate(), history.getRate(), 1e-5);
+        assertEquals(1, history.getMin(), 0);
+        assertEquals(4, history.getMax(), 0);
+    }
+
+    @Test
+    public void capacityOverflowDropsOldestSamples() {
+        final ValueHistory history = new ValueHistory(4, 10000);
+        history.add(0, 100);
+        history.add(10, -100);
+        history.add(20, 1);
+        history.add(30, 2);
+        assertEquals(4, history.size());
+        assertEquals(-100, history.getMin(), 0);
+        assertEquals(100, history.getMax(), 0);
+
+        history.add(40, 3);
+        assertEquals(4, history.size());
+        assertEquals(-100, history.getMin(), 0);
+        assertEquals(3, history.getMax(), 0);
+
+        history.add(50, 4);
+        assertEquals(4, history.size());
+        assertEquals(1, history.getMin(), 0);
+        assertEquals(4, history.getMax(), 0);
+
+        //Samples 1, 2, 3, 4 at 10ms intervals.
+        assertEquals(100, history.getRate(), 1e-2);
+    }
+
+    @Test
+    public void ringWrapsManyTimes() {
+        final ValueHistory history = new ValueHistory(5, 10000);
+        for (int i = 0; i < 1000; i++) {
+            history.add(i, i % 7);
+        }
+
+        //Samples 995 to 999, valued 1, 2, 3, 4, 5.
+        assertEquals(5, history.size());
+        assertEquals(1, history.getMin(), 0);
+        assertEquals(5, history.getMax(), 0);
+        assertEquals(5, history.getLatest(), 0);
+    }
+
+    @Test
+    public void ignoresNaN() {
+        final ValueHistory history = new ValueHistory(8, 1000);
+        history.add(0, 1);
+        history.add(100, Float.NaN);
+
+        assertEquals(1, history.size());
+        assertEquals(0, history.getLatestTime());
+        assertEquals(1, history.getLatest(), 0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsSamplesOutOfOrder() {
+        final ValueHistory history = new ValueHistory(8, 1000);
+        history.add(100, 1);
+        history.add(99, 2);
+    }
+
+    @Test
+    public void clearEmptiesHistory() {
+        final ValueHistory history = new ValueHistory(8, 1000);
+        history.add(100, 1);
+        history.add(200, 3);
+        history.clear();
+
+        assertEquals(0, history.size());
+        assertTrue(Float.isNaN(history.getMin()));
+        assertTrue(Float.isNaN(history.getMax()));
+
+        //Earlier times are accepted again once cleared.
+        history.add(50, 7);
+        history.add(1050, 9);
+        assertEquals(7, history.getMin(), 0);
+        assertEquals(2, history.getRate(), 1e-5);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsCapacityBelowTwo() {
+        new ValueHistory(1, 1000);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsNonPositiveWindow() {
+        new ValueHistory(8, 0);
+    }
+}